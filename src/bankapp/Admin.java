@@ -3,6 +3,7 @@ package bankapp;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Represents an administrator in the banking system.
@@ -22,6 +23,14 @@ public class Admin extends User {
         super(username, password);
     }
 
+    /**
+     * Constructs an admin loaded from storage.
+     */
+    Admin(String username, String passwordHash, String hashSalt, List<BankAccount> accounts, UUID currentAccountId,
+            BankClock clock) {
+        super(username, passwordHash, hashSalt, accounts, currentAccountId, clock);
+    }
+
     /**
      * Indicates whether this user is an admin.
      *
@@ -0,0 +1,245 @@
+package bankapp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One immutable version of an account balance. Versions form a chain from
+ * newest to oldest so that a {@link BankSnapshot} taken at an earlier epoch
+ * can reconstruct the balance it saw by undoing newer deltas.
+ */
+final class BalanceVersion {
+
+    /** The writer epoch this version was installed under. */
+    final long stamp;
+
+    /** The balance after this version's change. */
+    final double balance;
+
+    /** The amount reserved by pending holds, which withdrawals cannot use. */
+    final double held;
+
+    /** The change this version applied to the previous balance. */
+    final double delta;
+
+    /** When this version was installed, in epoch milliseconds. */
+    final long changedAt;
+
+    /**
+     * The integral of the balance over time up to {@link #changedAt}, in
+     * dollar-milliseconds, measured from when the account was created.
+     */
+    final double balanceMillis;
+
+    /** The number of withdrawals completed up to and including this version. */
+    final int withdrawals;
+
+    /** The number of withdrawals declined for insufficient funds up to and including this version. */
+    final int failedWithdrawals;
+
+    /**
+     * The number of journaled changes, such as deposits, withdrawals,
+     * adjustments and declined withdrawals, up to and including this
+     * version. Each journaled change records the number it produced, so
+     * that recovery can replay an account's changes in the order they were
+     * installed whatever order their events were journaled in, and a
+     * replica started from a snapshot can tell which changes the snapshot
+     * already holds. Changes to the held amount alone are not counted.
+     */
+    final long version;
+
+    /** The previous version, or null once older versions are no longer needed. */
+    volatile BalanceVersion prev;
+
+    BalanceVersion(long stamp, double balance, double held, double delta, BalanceVersion prev, long changedAt,
+            double balanceMillis, int withdrawals, int failedWithdrawals, long version) {
+        this.stamp = stamp;
+        this.balance = balance;
+        this.held = held;
+        this.delta = delta;
+        this.prev = prev;
+        this.changedAt = changedAt;
+        this.balanceMillis = balanceMillis;
+        this.withdrawals = withdrawals;
+        this.failedWithdrawals = failedWithdrawals;
+        this.version = version;
+    }
+
+    /**
+     * Creates the version that replaces this one, carrying the balance-time
+     * integral forward to the time of the change.
+     *
+     * @param stamp      The writer epoch of the change.
+     * @param newBalance The balance after the change.
+     * @param now        The time of the change; earlier times are treated as this version's time.
+     * @return The next version, linked to this one.
+     */
+    BalanceVersion next(long stamp, double newBalance, long now) {
+        return next(stamp, newBalance, held, now);
+    }
+
+    /**
+     * Creates the version that replaces this one with a new balance and held
+     * amount, so that a capture moves both in the same compare-and-set.
+     *
+     * @param stamp      The writer epoch of the change.
+     * @param newBalance The balance after the change.
+     * @param newHeld    The held amount after the change.
+     * @param now        The time of the change.
+     * @return The next version, linked to this one.
+     */
+    BalanceVersion next(long stamp, double newBalance, double newHeld, long now) {
+        return next(stamp, newBalance, newHeld, 0, 0, 1, now);
+    }
+
+    /**
+     * Creates the version that replaces this one and also counts a completed
+     * or declined withdrawal, so that snapshots see the counts and balances
+     * of the same changes.
+     *
+     * @param stamp      The writer epoch of the change.
+     * @param newBalance The balance after the change.
+     * @param newHeld    The held amount after the change.
+     * @param withdrawn  1 if the change completes a withdrawal, otherwise 0.
+     * @param declined   1 if the change records a declined withdrawal, otherwise 0.
+     * @param changed    1 if the change is journaled, otherwise 0.
+     * @param now        The time of the change.
+     * @return The next version, linked to this one.
+     */
+    BalanceVersion next(long stamp, double newBalance, double newHeld, int withdrawn, int declined, int changed,
+            long now) {
+        long at = Math.max(now, changedAt);
+        return new BalanceVersion(stamp, newBalance, newHeld, newBalance - balance, this, at, balanceMillisAt(at),
+                withdrawals + withdrawn, failedWithdrawals + declined, version + changed);
+    }
+
+    /**
+     * Returns the integral of the balance over time up to the given time,
+     * assuming no further changes after this version.
+     *
+     * @param now The end of the integration; times before this version count as its install time.
+     * @return The integral in dollar-milliseconds.
+     */
+    double balanceMillisAt(long now) {
+        return balanceMillis + balance * Math.max(0, now - changedAt);
+    }
+
+    /**
+     * Reconstructs the balance as seen by a snapshot at the given epoch.
+     * Every version stamped below the epoch was installed before any version
+     * stamped above it, so the walk can stop at the first older version.
+     *
+     * @param epoch The snapshot epoch.
+     * @return The balance including exactly the changes stamped at or before the epoch.
+     */
+    double balanceAt(long epoch) {
+        double result = balance;
+        for (BalanceVersion version = this; version != null && version.stamp >= epoch; version = version.prev) {
+            if (version.stamp > epoch) {
+                result -= version.delta;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the withdrawals completed as seen by a snapshot at the given
+     * epoch, walking the same versions as {@link #balanceAt(long)}.
+     *
+     * @param epoch The snapshot epoch.
+     * @return The completed withdrawals stamped at or before the epoch.
+     */
+    int withdrawalsAt(long epoch) {
+        int result = withdrawals;
+        for (BalanceVersion version = this; version != null && version.stamp >= epoch; version = version.prev) {
+            BalanceVersion older = version.prev;
+            if (version.stamp > epoch && older != null) {
+                result -= version.withdrawals - older.withdrawals;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the withdrawals declined for insufficient funds as seen by a
+     * snapshot at the given epoch.
+     *
+     * @param epoch The snapshot epoch.
+     * @return The declined withdrawals stamped at or before the epoch.
+     */
+    int failedWithdrawalsAt(long epoch) {
+        int result = failedWithdrawals;
+        for (BalanceVersion version = this; version != null && version.stamp >= epoch; version = version.prev) {
+            BalanceVersion older = version.prev;
+            if (version.stamp > epoch && older != null) {
+                result -= version.failedWithdrawals - older.failedWithdrawals;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds which journaled changes a snapshot at the given epoch includes:
+     * every change numbered up to the returned version, and those numbered
+     * above it that are added to {@code above}. Writers of neighbouring
+     * epochs may install out of stamp order, so a change the snapshot
+     * includes can sit above one it does not.
+     *
+     * @param epoch The snapshot epoch.
+     * @param above Receives the numbers of included changes above the returned one.
+     * @return The number of the last change before the first one the snapshot leaves out.
+     */
+    long versionAt(long epoch, Set<Long> above) {
+        long excludedFrom = Long.MAX_VALUE;
+        List<Long> included = new ArrayList<>();
+        for (BalanceVersion version = this; version != null && version.stamp >= epoch; version = version.prev) {
+            BalanceVersion older = version.prev;
+            if (older == null || older.version == version.version) {
+                continue;
+            }
+            if (version.stamp > epoch) {
+                excludedFrom = version.version;
+            } else {
+                included.add(version.version);
+            }
+        }
+        if (excludedFrom == Long.MAX_VALUE) {
+            return version;
+        }
+        for (long change : included) {
+            if (change > excludedFrom) {
+                above.add(change);
+            }
+        }
+        return excludedFrom - 1;
+    }
+
+    /**
+     * Drops versions that no snapshot can need any more: everything below
+     * the newest version past which every older version is stamped at or
+     * below the given horizon, since every snapshot includes those changes.
+     * Writers of neighbouring epochs may install out of stamp order, so a
+     * version stamped above the horizon can sit beneath one stamped at it;
+     * the cut is always made below the deepest such version. A version
+     * stamped below the horizon has none beneath it, which ends the walk.
+     *
+     * @param horizon The oldest epoch any current or future snapshot may read at.
+     */
+    void prune(long horizon) {
+        BalanceVersion cut = null;
+        for (BalanceVersion version = this; version != null; version = version.prev) {
+            if (version.stamp > horizon) {
+                cut = null;
+            } else if (cut == null) {
+                cut = version;
+            }
+            if (version.stamp < horizon) {
+                break;
+            }
+        }
+        if (cut != null) {
+            cut.prev = null;
+        }
+    }
+}
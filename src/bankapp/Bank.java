@@ -1,13 +1,17 @@
 package bankapp;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.lang.System;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 
 /**
  * Manages user accounts in the banking application. Provides functionality for
@@ -15,16 +19,114 @@ import java.security.NoSuchAlgorithmException;
  */
 public class Bank implements Iterable<User>{
 	/**
-	 * A map storing registered users, where the key is the username and the value
-	 * is the User object.
+	 * Where registered users and their accounts are kept, by username.
 	 */
-	private Map<String, User> users;
+	private final BankRepository users;
+
+	/**
+	 * The clock journal events are stamped with, which new users' default
+	 * accounts and withdrawal limits also follow.
+	 */
+	private final BankClock clock;
+
+	/**
+	 * Journal of every mutation applied to this bank, which replicas tail.
+	 */
+	private final MutationJournal journal;
+
+	/**
+	 * Coordinates balance writers with consistent point-in-time snapshots.
+	 */
+	private final SnapshotCoordinator snapshots;
+
+	/**
+	 * Sessions opened by {@link #loginForSession(String, String)}.
+	 */
+	private final SessionManager sessions;
+
+	/**
+	 * Failed-login tracking that rejects brute-force attempts before hashing.
+	 */
+	private final LoginThrottle loginThrottle;
+
+	/**
+	 * Authorization holds placed on users' current accounts.
+	 */
+	private final HoldLedger holds;
+
+	/**
+	 * Exchange rates used to combine balances held in different currencies.
+	 */
+	private final FxRateTable fxRates;
+
+	/**
+	 * Checks run on every transfer before it is committed, such as fraud scoring.
+	 */
+	private final TransferPipeline transferPipeline;
+
+	/**
+	 * Batched, backpressured stream of journal events for consumers outside the bank.
+	 */
+	private final LedgerEventStream eventStream;
+
+	/**
+	 * Writes the journal to disk, once durability has been enabled.
+	 */
+	private volatile DurableJournal durableJournal;
+
+	/**
+	 * The journal file this bank was recovered from, and the sequence number
+	 * of the last event in it, so that durability can resume writing there.
+	 */
+	private Path recoveredFile;
+	private long recoveredSequence;
+
+	/**
+	 * The most recent system-wide totals, reused until the journal or the
+	 * exchange rates move on.
+	 */
+	private volatile SystemTotals systemTotals;
 
 	/**
 	 * Constructs an Accounts manager with an empty user database.
 	 */
 	public Bank() {
-		this.users = new HashMap<>();
+		this(BankClock.system());
+	}
+
+	/**
+	 * Constructs an Accounts manager with an empty user database whose
+	 * journal is timestamped by the given clock, for deterministic replay.
+	 *
+	 * @param clock the clock journal events are stamped with
+	 */
+	public Bank(BankClock clock) {
+		this(clock, new InMemoryBankRepository());
+	}
+
+	/**
+	 * Constructs a bank that keeps its users in the given repository, such
+	 * as an {@link LsmBankRepository} for banks too large for the heap. Every
+	 * journaled change is written through to the repository.
+	 *
+	 * @param clock the clock journal events are stamped with
+	 * @param repository where users and accounts are stored
+	 */
+	public Bank(BankClock clock, BankRepository repository) {
+		this.users = repository;
+		this.clock = clock;
+		this.journal = new MutationJournal(clock);
+		this.snapshots = new SnapshotCoordinator();
+		this.loginThrottle = new LoginThrottle(clock, Duration.ofMinutes(5), 5, 50);
+		this.sessions = new SessionManager(clock, Duration.ofHours(8), Duration.ofMinutes(30), 100_000);
+		this.holds = new HoldLedger(clock);
+		this.fxRates = new FxRateTable(BankAccount.DEFAULT_CURRENCY);
+		this.transferPipeline = new TransferPipeline();
+		this.users.open(this);
+		// Storage writes are slow, so they run after the journal lock is released rather than under it.
+		this.journal.addOrderedListener(this::writeThrough);
+		this.journal.addListener(this::revokeSessionsOnAccountClose);
+		this.eventStream = new LedgerEventStream(journal);
 	}
 
 	/**
@@ -45,12 +147,15 @@ public class Bank implements Iterable<User>{
 			System.out.println("Password should be provided.");
 			return false;
 		}
-		if (users.containsKey(username)) {
+		if (users.contains(username)) {
 			System.out.println("User: " + username + " already exists in the database.");
 			return false;
 		}
 		try {
-			users.put(username, new User(username, password));
+			if (!addRegisteredUser(new User(username, password, clock))) {
+				System.out.println("User: " + username + " already exists in the database.");
+				return false;
+			}
 		} catch (NoSuchAlgorithmException e) {
 			e.printStackTrace();
 			return false;
@@ -83,15 +188,65 @@ public class Bank implements Iterable<User>{
 			System.out.println("Password should be provided.");
 			return false;
 		}
-		if (users.containsKey(username)) {
+		if (users.contains(username)) {
+			System.out.println("User: " + username + " already exists in the database.");
+			return false;
+		}
+		if (!addRegisteredUser(user)) {
 			System.out.println("User: " + username + " already exists in the database.");
 			return false;
 		}
-		users.put(username, user);
 		System.out.println("User: " + username + " successfully added.");
 		return true;
 	}
 
+	/**
+	 * Stores a validated user and records the registration, along with each of
+	 * the user's accounts, in the journal.
+	 *
+	 * @param user the user to store
+	 * @return true if the user was stored, false if the username was taken concurrently
+	 */
+	private boolean addRegisteredUser(User user) {
+		long stamp = snapshots.enter();
+		try {
+			user.setRegisteredEpoch(stamp);
+			if (!users.add(user)) {
+				return false;
+			}
+		} finally {
+			snapshots.exit(stamp);
+		}
+		journal.append(LedgerEvent.userRegistered(user.getUsername(), user.isAdmin()));
+		user.attachToBank(journal, snapshots);
+		return true;
+	}
+
+	/**
+	 * Picks up the journal where a recovered file ends, so that the next
+	 * change is journaled as the event after the file's last one and
+	 * durability can go on appending to the file.
+	 *
+	 * @param file the recovered journal file
+	 * @param sequence the sequence number of the last event in the file
+	 */
+	synchronized void resumeFrom(Path file, long sequence) {
+		journal.resumeAfter(sequence);
+		recoveredFile = file;
+		recoveredSequence = sequence;
+	}
+
+	/**
+	 * Adds a user rebuilt from a durable journal, without journaling the
+	 * registration or the user's accounts again.
+	 *
+	 * @param user the recovered user
+	 */
+	void restoreUser(User user) {
+		users.add(user);
+		user.attachLoaded(journal, snapshots);
+	}
+
 	/**
 	 * Attempts to log in a user with the provided username and password.
 	 * 
@@ -101,20 +256,172 @@ public class Bank implements Iterable<User>{
 	 * @throws NoSuchAlgorithmException 
 	 */
 	public User login(String username, String password) throws NoSuchAlgorithmException {
-		User user = users.get(username);
-		if (user == null) {
+		return login(username, password, null);
+	}
+
+	/**
+	 * Attempts to log in a user, throttling repeated failures for the username
+	 * and for the source they come from. Throttled attempts are rejected
+	 * before the password is hashed, so they cost almost nothing. Each
+	 * attempt is counted before the password is checked, so concurrent
+	 * guesses cannot slip past the throttle together.
+	 *
+	 * @param username The username of the user.
+	 * @param password The password of the user.
+	 * @param source   Where the attempt comes from, such as a client address, or null if unknown.
+	 * @return The User object if login is successful, null otherwise.
+	 * @throws NoSuchAlgorithmException 
+	 */
+	public User login(String username, String password, String source) throws NoSuchAlgorithmException {
+		if (username == null) {
 			return null;
 		}
-		if (!user.isPasswordCorrect(password)) {
+		if (!loginThrottle.tryAttempt(username, source)) {
+			System.out.println("Too many failed login attempts. Try again later.");
 			return null;
 		}
+		User user = users.get(username);
+		if (user == null || !user.isPasswordCorrect(password)) {
+			return null;
+		}
+		loginThrottle.recordSuccess(username, source);
 		return user;
 	}
+
+	/**
+	 * Provides the failed-login throttle, for its rejection metrics.
+	 *
+	 * @return the bank's login throttle
+	 */
+	public LoginThrottle getLoginThrottle() {
+		return loginThrottle;
+	}
 	
+	/**
+	 * Logs in a user and opens a session, so that later requests can be
+	 * authenticated with {@link #authenticate(String)} without rehashing the
+	 * password.
+	 *
+	 * @param username The username of the user.
+	 * @param password The password of the user.
+	 * @return The session token, or null if the credentials are wrong.
+	 * @throws NoSuchAlgorithmException
+	 */
+	public String loginForSession(String username, String password) throws NoSuchAlgorithmException {
+		User user = login(username, password);
+		return user != null ? sessions.open(user) : null;
+	}
+
+	/**
+	 * Resolves a session token to its user.
+	 *
+	 * @param token the token returned by {@link #loginForSession(String, String)}
+	 * @return the user, or null if the session is unknown, expired or ended
+	 */
+	public User authenticate(String token) {
+		return sessions.validate(token);
+	}
+
+	/**
+	 * Ends a session.
+	 *
+	 * @param token the session token
+	 * @return true if the session was open
+	 */
+	public boolean logout(String token) {
+		return sessions.revoke(token);
+	}
+
+	/**
+	 * Provides the session cache, for its hit-rate metrics and expiry sweeps.
+	 *
+	 * @return the bank's session manager
+	 */
+	public SessionManager getSessions() {
+		return sessions;
+	}
+
+	/**
+	 * Ends a user's sessions when one of their accounts is closed, so that
+	 * clients holding the closed account must log in again.
+	 *
+	 * @param event the journaled event
+	 */
+	private void revokeSessionsOnAccountClose(LedgerEvent event) {
+		if (event.getType() == LedgerEventType.ACCOUNT_CLOSED) {
+			sessions.revokeAll(event.getUsername());
+		}
+	}
+
 	public User getUser(String username) {
 	    return users.get(username);
 	}
 
+	/**
+	 * Provides the journal of mutations applied to this bank, so that replicas
+	 * and other consumers can follow changes without polling balances.
+	 *
+	 * @return the bank's mutation journal
+	 */
+	public MutationJournal getJournal() {
+		return journal;
+	}
+
+	/**
+	 * Finds any registered user's account by its ID.
+	 *
+	 * @param accountId the UUID of the account
+	 * @return the account, or null if no registered user owns it
+	 */
+	public BankAccount findAccount(UUID accountId) {
+		String owner = users.findOwner(accountId);
+		User user = owner != null ? users.get(owner) : null;
+		return user != null ? user.getAccount(accountId) : null;
+	}
+
+	/**
+	 * Retrieves the snapshot coordinator, for repositories binding the users they load.
+	 *
+	 * @return the bank's snapshot coordinator
+	 */
+	SnapshotCoordinator getSnapshots() {
+		return snapshots;
+	}
+
+	/**
+	 * Writes each journaled change through to the repository, in journal order,
+	 * before the change's journal append returns.
+	 *
+	 * @param event the journaled event
+	 */
+	private void writeThrough(LedgerEvent event) {
+		switch (event.getType()) {
+			case ACCOUNT_OPENED -> {
+				User owner = users.get(event.getUsername());
+				if (owner != null) {
+					users.saveUser(owner);
+				}
+			}
+			case ACCOUNT_CLOSED -> users.removeAccount(event.getUsername(), event.getAccountId());
+			case DEPOSIT, WITHDRAWAL, BALANCE_ADJUSTED, FAILED_WITHDRAWAL -> {
+				BankAccount account = findAccount(event.getAccountId());
+				if (account != null) {
+					users.saveAccounts(account);
+				}
+			}
+			case TRANSFER -> {
+				BankAccount sender = findAccount(event.getAccountId());
+				BankAccount recipient = findAccount(event.getCounterpartyAccountId());
+				if (sender != null && recipient != null) {
+					users.saveAccounts(sender, recipient);
+				}
+			}
+			default -> {
+				// Registration is stored when the user is added.
+			}
+		}
+	}
+
 	
 	/**
 	 * Transfers funds from one user to another, if possible.
@@ -125,9 +432,71 @@ public class Bank implements Iterable<User>{
 	 * @return true if the transfer was successful, false otherwise
 	 */
 	public boolean transferFunds(String fromUsername, String toUsername, double amount) {
+		return transfer(fromUsername, toUsername, amount) != null;
+	}
+
+
+	/**
+	 * Transfers funds from one user to another, if possible, and reports
+	 * when the transfer is safely on disk. Once durability is enabled with
+	 * {@link #enableDurability(Path, FsyncPolicy)}, the future completes
+	 * after the journal sync covering the transfer, so many transfers
+	 * submitted at once share one sync; until then it completes immediately.
+	 *
+	 * @param fromUsername the username of the sender
+	 * @param toUsername the username of the recipient
+	 * @param amount the amount to transfer
+	 * @return a future of true once the transfer is durable, or of false if
+	 *         the transfer was rejected
+	 */
+	public CompletableFuture<Boolean> submitTransfer(String fromUsername, String toUsername, double amount) {
+		LedgerEvent event = transfer(fromUsername, toUsername, amount);
+		if (event == null) {
+			return CompletableFuture.completedFuture(false);
+		}
+		DurableJournal durable = durableJournal;
+		if (durable == null) {
+			return CompletableFuture.completedFuture(true);
+		}
+		return durable.durableThrough(event.getSequence()).thenApply(sequence -> true);
+	}
+
+
+	/**
+	 * Starts writing every change to this bank to a journal file, beginning
+	 * with the changes made so far. Registrations are written with the
+	 * user's password hash, so that {@link JournalRecovery} can rebuild the
+	 * bank from the file alone. The file must be new or empty, unless this
+	 * bank was recovered from it, in which case writing picks up after its
+	 * last event.
+	 *
+	 * @param file the journal file
+	 * @param policy when the file is synced to the storage device
+	 * @return the durable journal, which the caller closes on shutdown
+	 * @throws IOException if the file cannot be opened, or already holds
+	 *         events this bank was not recovered from
+	 * @throws IllegalStateException if durability is already enabled, or the
+	 *         journal no longer holds every event the file would need
+	 */
+	public synchronized DurableJournal enableDurability(Path file, FsyncPolicy policy) throws IOException {
+		if (durableJournal != null) {
+			throw new IllegalStateException("Durability is already enabled.");
+		}
+		boolean recovered = recoveredFile != null && Files.exists(file) && Files.isSameFile(file, recoveredFile);
+		durableJournal = new DurableJournal(journal, file, policy, users::get, recovered ? recoveredSequence : 0);
+		return durableJournal;
+	}
+
+
+	/**
+	 * Applies a transfer and journals it.
+	 *
+	 * @return the journaled transfer, or null if it was rejected
+	 */
+	private LedgerEvent transfer(String fromUsername, String toUsername, double amount) {
 	    if (fromUsername == null || toUsername == null || amount <= 0) {
 	        System.out.println("Invalid transfer parameters.");
-	        return false;
+	        return null;
 	    }
 
 	    if(fromUsername.isEmpty() || toUsername.isEmpty()) {
@@ -139,7 +508,7 @@ public class Bank implements Iterable<User>{
 
 	    if (sender == null || recipient == null) {
 	        System.out.println("Sender or recipient does not exist.");
-	        return false;
+	        return null;
 	    }
 
 	    BankAccount senderAccount = sender.getCurrentAccount();
@@ -147,34 +516,182 @@ public class Bank implements Iterable<User>{
 
 	    if (senderAccount == null || recipientAccount == null) {
 	        System.out.println("Sender or recipient does not have a valid account.");
-	        return false;
+	        return null;
+	    }
+
+	    // Moving the same amount between currencies would create or destroy money
+	    if (!senderAccount.getCurrency().equals(recipientAccount.getCurrency())) {
+	    	System.out.println("Sender and recipient accounts are held in different currencies.");
+	    	return null;
 	    }
 
-	    // Check for sufficient funds
-	    if(senderAccount.getCurrentBalance() <= amount) {
+	    // Check for sufficient funds, including any overdraft
+	    if(senderAccount.getAvailableBalance() <= amount) {
 	    	System.out.println("Sender does not have sufficient funds to transfer specified amount.");
-	    	return false;
+	    	return null;
+	    }
+
+	    TransferRequest request = null;
+	    if (!transferPipeline.isEmpty()) {
+	    	request = new TransferRequest(fromUsername, senderAccount.getId(), toUsername, recipientAccount.getId(),
+	    			amount, senderAccount.getClock().currentTimeMillis());
+	    	TransferVerdict verdict = transferPipeline.evaluate(request);
+	    	if (verdict.isBlocked()) {
+	    		System.out.println("Transfer blocked: " + String.join(", ", verdict.getReasons()));
+	    		return null;
+	    	}
+	    	if (verdict.isFlagged()) {
+	    		System.out.println("Transfer flagged for review: " + String.join(", ", verdict.getReasons()));
+	    	}
 	    }
 	    
-	    // Mimic the action of the bank retrieving the money from the sender
-	    senderAccount.withdraw(amount);
+	    // Both legs share one writer stamp, so snapshots see all of the transfer or none of it
+	    long stamp = snapshots.enter();
+	    boolean rejected = false;
+	    BankAccount.InsufficientFundsException declined = null;
+	    BalanceVersion debited;
+	    BalanceVersion credited;
+	    try {
+	    	// Mimic the action of the bank retrieving the money from the sender
+	    	while ((debited = senderAccount.withdraw(amount, stamp)) == null) {
+	    		stamp = snapshots.renew(stamp);
+	    	}
+
+	    	// Deposit to recipient's account
+	    	credited = recipientAccount.deposit(amount, stamp);
+	    } catch (IllegalArgumentException exception) {
+	    	rejected = true;
+	    	if (exception instanceof BankAccount.InsufficientFundsException) {
+	    		declined = (BankAccount.InsufficientFundsException) exception;
+	    	}
+	    	System.out.println("Transfer rejected: " + exception.getMessage());
+	    	return null;
+	    } finally {
+	    	snapshots.exit(stamp);
+	    	// Journaled only once the stamp is released, so snapshots never wait on the journal
+	    	if (declined != null) {
+	    		senderAccount.recordFailedWithdrawal(amount, declined);
+	    	}
+	    	// Stages that counted the transfer when they let it through take it back
+	    	if (rejected && request != null) {
+	    		transferPipeline.aborted(request);
+	    	}
+	    }
 
-	    // Deposit to recipient's account
-	    recipientAccount.deposit(amount);
+	    // Both legs are journaled as one event so replicas never see half a transfer; the version numbers
+	    // order it against concurrent changes to either account journaled just before or after it
+	    LedgerEvent event = journal.append(LedgerEvent.transfer(fromUsername, senderAccount.getId(), toUsername,
+	    		recipientAccount.getId(), amount, debited.version, debited.balance, credited.version, credited.balance));
+	    if (request != null) {
+	    	transferPipeline.committed(request);
+	    }
 
 	    System.out.printf("Transferred $%.2f from %s to %s\n", amount, fromUsername, toUsername);
-	    return true;
+	    return event;
+	}
+
+
+	/**
+	 * Retrieves a stream of every change recorded in this bank's journal,
+	 * which notification, analytics or replica components can subscribe to
+	 * without slowing down the accounts they observe.
+	 *
+	 * @return the bank's event stream
+	 */
+	public LedgerEventStream getEventStream() {
+		return eventStream;
+	}
+
+
+	/**
+	 * Retrieves the checks run on every transfer before it is committed.
+	 * Stages added here apply to all later transfers.
+	 *
+	 * @return the transfer pipeline
+	 */
+	public TransferPipeline getTransferPipeline() {
+		return transferPipeline;
+	}
+
+
+	/**
+	 * Reserves funds on a user's current account, to be captured or released later.
+	 *
+	 * @param username the username of the account holder
+	 * @param amount the amount to reserve
+	 * @param ttl how long the hold lasts if it is not settled
+	 * @return the pending hold, or null if it could not be placed
+	 */
+	public Hold authorizeHold(String username, double amount, Duration ttl) {
+		User user = username != null ? users.get(username) : null;
+		if (user == null || user.getCurrentAccount() == null) {
+			System.out.println("User does not have a valid account.");
+			return null;
+		}
+		try {
+			return holds.authorize(user.getCurrentAccount(), amount, ttl);
+		} catch (IllegalArgumentException exception) {
+			System.out.println("Authorization declined: " + exception.getMessage());
+			return null;
+		}
 	}
 
+	/**
+	 * Captures a pending hold, debiting the reserved account.
+	 *
+	 * @param holdId the ID of the hold
+	 * @param amount the amount to debit, at most the held amount
+	 * @return true if the hold was captured, false otherwise
+	 */
+	public boolean captureHold(UUID holdId, double amount) {
+		try {
+			holds.capture(holdId, amount);
+			return true;
+		} catch (IllegalArgumentException exception) {
+			System.out.println("Capture rejected: " + exception.getMessage());
+			return false;
+		}
+	}
 
 	/**
-	 * Provides an iterator for the Bank class in which it iterates through each user in the hashmap.
+	 * Releases a pending hold without debiting the account.
+	 *
+	 * @param holdId the ID of the hold
+	 * @return true if the hold was released, false if it was unknown or already settled
+	 */
+	public boolean releaseHold(UUID holdId) {
+		return holds.release(holdId);
+	}
+
+	/**
+	 * Retrieves the ledger of authorization holds, for example to schedule
+	 * expiry with {@link RecurringJobs#scheduleHoldExpiry}.
+	 *
+	 * @return the hold ledger
+	 */
+	public HoldLedger getHolds() {
+		return holds;
+	}
+
+	/**
+	 * Provides an iterator for the Bank class in which it iterates through each user in the repository.
 	 * @param none
-	 * @return The iterator given by the hashmap's values
+	 * @return The iterator given by the repository
 	 * */
 	@Override
 	public Iterator<User> iterator() {
-		return this.users.values().iterator();
+		return this.users.iterator();
+	}
+	
+	/**
+	 * Takes a consistent point-in-time snapshot of every user and balance.
+	 * Writers are never blocked; the snapshot waits only for transfers that
+	 * were already in flight to finish. Callers must close the snapshot.
+	 *
+	 * @return an open snapshot of the bank
+	 */
+	public BankSnapshot snapshot() {
+		return new BankSnapshot(snapshots, users);
 	}
 	
 	/**
@@ -182,50 +699,107 @@ public class Bank implements Iterable<User>{
 	 * Provides the entire set of users only to administrators
 	 * 
 	 * @param user the user attempting to gain access to all accounts in the bank
-	 * @return a reference to the all the users in the bank; if not an administrator it returns null
+	 * @return the users registered at the time of the call, as a consistent cut; if not an administrator it returns null
 	 * 
 	 * */
 	public List<User> getAllUsersIfAdmin(User user) {
 	    if (user.isAdmin()) {
-	        return new ArrayList<>(users.values());
+	    	try (BankSnapshot snapshot = snapshot()) {
+	    		return snapshot.getUsers();
+	    	}
 	    }
 	    return null;
 	}
 	
-	/**
-	 * Provides the entire balance for all accounts (independent of checkings and savings) 
-	 * summed up together for a specified user.
-	 * 
-	 * @param user the user that is being requested to get the accumulated sum of all the balances 
-	 * @return the total amount of all the balances for the user combined
-	 * */
-	private double getBalanceAcrossAllAccountsForUser(User user) {
-		double totalBalanceForAllAccounts = 0;
-		for(BankAccount bankAccount : user.getAllAccounts()) {
-			totalBalanceForAllAccounts += bankAccount.getCurrentBalance();
-		}
-		return totalBalanceForAllAccounts;
-	}
-	
 	/**
 	 * Provides to an admin the total amount of money the bank has from all users and their accounts combined.
 	 * Otherwise it treats it as an invalid access if the request did not
-	 * come from an admin.
+	 * come from an admin. The total is read from a snapshot, so transfers that
+	 * run concurrently are never counted half-applied.
 	 * 
 	 * @param user the user requesting the sum balance of the entire bank
 	 * @return the sum balance of the entire bank
 	 * @throws IllegalAccessException
 	 * */
 	public double calculateTotalSystemBalanceBasedOnAllUsers(User user) throws IllegalAccessException {
-		double total = 0.00;
 		if(user.isAdmin()) {
-			for(User userAccount: this) {
-				total += this.getBalanceAcrossAllAccountsForUser(userAccount);
-			}
-			return total;
+			SystemTotals totals = currentSystemTotals();
+			return CurrencyTotals.toMajorUnits(totals.converted, fxRates.getBaseCurrency());
 		}
 		
 		throw new IllegalAccessException();
 	}
 
+	/**
+	 * Calculates the total balance across all users separately per currency.
+	 * 
+	 * @param user the admin requesting the totals
+	 * @return the system-wide balances by currency
+	 * @throws IllegalAccessException if the user is not an admin
+	 */
+	public CurrencyTotals calculateTotalsByCurrency(User user) throws IllegalAccessException {
+		if(user.isAdmin()) {
+			return currentSystemTotals().byCurrency;
+		}
+
+		throw new IllegalAccessException();
+	}
+
+	/**
+	 * Retrieves the exchange rates used to combine balances in different currencies.
+	 * 
+	 * @return the bank's exchange rate table
+	 */
+	public FxRateTable getFxRates() {
+		return fxRates;
+	}
+
+	/**
+	 * Returns the system-wide totals, rescanning accounts only if a balance
+	 * has changed since they were last computed. Every balance change is
+	 * journaled after it is applied, so a snapshot taken after reading the
+	 * journal head includes at least every change up to that head. If only
+	 * the rates have changed, the per-currency totals are reconverted
+	 * without touching any account.
+	 */
+	private SystemTotals currentSystemTotals() {
+		long sequence = journal.headSequence();
+		long rateVersion = fxRates.getVersion();
+		SystemTotals cached = systemTotals;
+		if (cached != null && cached.sequence == sequence) {
+			if (cached.rateVersion == rateVersion) {
+				return cached;
+			}
+			cached = new SystemTotals(sequence, cached.byCurrency, rateVersion,
+					fxRates.convert(cached.byCurrency, fxRates.getBaseCurrency()));
+		} else {
+			CurrencyTotals byCurrency;
+			try (BankSnapshot snapshot = snapshot()) {
+				byCurrency = snapshot.getTotalsByCurrency();
+			}
+			cached = new SystemTotals(sequence, byCurrency, rateVersion,
+					fxRates.convert(byCurrency, fxRates.getBaseCurrency()));
+		}
+		systemTotals = cached;
+		return cached;
+	}
+
+	/**
+	 * System-wide totals as of a journal position and rate version.
+	 */
+	private static final class SystemTotals {
+		final long sequence;
+		final CurrencyTotals byCurrency;
+		final long rateVersion;
+		/** The totals converted to the base currency, in its minor units. */
+		final long converted;
+
+		SystemTotals(long sequence, CurrencyTotals byCurrency, long rateVersion, long converted) {
+			this.sequence = sequence;
+			this.byCurrency = byCurrency;
+			this.rateVersion = rateVersion;
+			this.converted = converted;
+		}
+	}
+
 }
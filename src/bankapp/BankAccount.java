@@ -1,7 +1,12 @@
 package bankapp;
 
 import java.util.List;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Currency;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Represents a bank account with a unique identifier, optional nickname, 
@@ -10,14 +15,23 @@ import java.util.UUID;
  */
 public class BankAccount {
 
+    /** The currency accounts are opened in unless another is given. */
+    public static final Currency DEFAULT_CURRENCY = Currency.getInstance("USD");
+
     /** Unique identifier for the bank account. */
     private final UUID id;
 
+    /** The currency the balance is held in. */
+    private final Currency currency;
+
     /** Optional nickname to help identify the account. */
     private String nickname;
 
-    /** Current balance of the account. */
-    private double balance;
+    /**
+     * Current balance of the account, as the newest of a chain of versions
+     * that lets snapshots read older balances without blocking writers.
+     */
+    private final AtomicReference<BalanceVersion> balance;
 
     /** Transaction log for recording deposits and withdrawals. */
     private Log transactionLog;
@@ -25,15 +39,76 @@ public class BankAccount {
     /** Log to track failed withdrawal attempts */
     private Log failedTransactionLog;
 
+    /** The user that owns this account, set once the account is added to a user. */
+    private volatile User owner;
+
+    /** Journal that balance changes are recorded to; null while unregistered. */
+    private volatile MutationJournal journal;
+
+    /** Coordinates balance versions with snapshots of the bank this account belongs to. */
+    private volatile SnapshotCoordinator snapshots;
+
+    /** Clock used to place withdrawals in limit windows. */
+    private final BankClock clock;
+
+    /** Withdrawal limits specific to this account. */
+    private final WithdrawalLimits withdrawalLimits;
+
+    /**
+     * How many entries of the transaction and failed transaction logs a
+     * {@link BankRepository} has already stored, so that only new ones are
+     * written. Only touched by the repository, while the journal delivers
+     * events to it one at a time.
+     */
+    int storedTransactions;
+    int storedFailedTransactions;
+
     /**
      * Constructs a new BankAccount with a unique ID, a zero balance,
      * and an empty transaction log.
      */
     public BankAccount() {
-        this.id = UUID.randomUUID();
-        this.transactionLog = new Log();
-        this.failedTransactionLog = new Log();
-        this.balance = 0;
+        this(BankClock.system());
+    }
+
+    /**
+     * Constructs a new BankAccount with a unique ID, a zero balance,
+     * an empty transaction log, and no withdrawal limits.
+     *
+     * @param clock The clock used to roll withdrawal limit windows over.
+     */
+    public BankAccount(BankClock clock) {
+        this(clock, DEFAULT_CURRENCY);
+    }
+
+    /**
+     * Constructs a new BankAccount in the given currency with a unique ID,
+     * a zero balance, an empty transaction log, and no withdrawal limits.
+     *
+     * @param clock    The clock used to roll withdrawal limit windows over.
+     * @param currency The currency the balance is held in.
+     */
+    public BankAccount(BankClock clock, Currency currency) {
+        this(UUID.randomUUID(), clock, currency);
+    }
+
+    /**
+     * Constructs an account with a known ID, for restoring one from storage.
+     *
+     * @param id       The account's UUID.
+     * @param clock    The clock used to roll withdrawal limit windows over.
+     * @param currency The currency the balance is held in.
+     */
+    BankAccount(UUID id, BankClock clock, Currency currency) {
+        this.id = id;
+        this.currency = currency;
+        this.clock = clock;
+        this.withdrawalLimits = new WithdrawalLimits(clock);
+        this.transactionLog = new Log(clock);
+        this.failedTransactionLog = new Log(clock);
+        this.balance = new AtomicReference<>(
+                new BalanceVersion(0, 0, 0, 0, null, clock.currentTimeMillis(), 0, 0, 0, 0));
+        this.snapshots = SnapshotCoordinator.DETACHED;
     }
 
     /**
@@ -45,6 +120,15 @@ public class BankAccount {
         return id;
     }
 
+    /**
+     * Retrieves the currency the account's balance is held in.
+     *
+     * @return The account currency.
+     */
+    public Currency getCurrency() {
+        return currency;
+    }
+
     /**
      * Retrieves the nickname of the account.
      * If no nickname is set, a default string using the ID is returned.
@@ -55,6 +139,15 @@ public class BankAccount {
         return nickname != null ? nickname : "Account " + id.toString().substring(0, 8);
     }
 
+    /**
+     * Retrieves the nickname exactly as set, without the default.
+     *
+     * @return The nickname, or null if none was set.
+     */
+    String getNicknameOrNull() {
+        return nickname;
+    }
+
     /**
      * Sets a nickname for this account.
      * 
@@ -70,7 +163,17 @@ public class BankAccount {
      * @return The current balance.
      */
     public double getCurrentBalance() {
-        return this.balance;
+        return this.balance.get().balance;
+    }
+
+    /**
+     * Returns the balance as seen by a snapshot taken at the given epoch.
+     *
+     * @param epoch The snapshot epoch.
+     * @return The balance at that point in time.
+     */
+    double getBalanceAt(long epoch) {
+        return this.balance.get().balanceAt(epoch);
     }
 
     /**
@@ -80,7 +183,19 @@ public class BankAccount {
      * @param balance The new balance to set.
      */
     public void setCurrentBalance(double balance) {
-        this.balance = balance;
+        SnapshotCoordinator coordinator = this.snapshots;
+        long stamp = coordinator.enter();
+        BalanceVersion current;
+        BalanceVersion installed;
+        try {
+            do {
+                current = this.balance.get();
+            } while ((installed = install(current, balance, stamp, coordinator)) == null);
+        } finally {
+            coordinator.exit(stamp);
+        }
+        transactionLog.recordBalanceChange(balance - current.balance);
+        record(LedgerEventType.BALANCE_ADJUSTED, balance, installed);
     }
 
     /**
@@ -90,11 +205,15 @@ public class BankAccount {
      * @throws IllegalArgumentException if the amount is negative.
      */
     public void deposit(double amount) {
-        if (amount < 0) {
-            throw new IllegalArgumentException("Deposit amount must be positive.");
+        SnapshotCoordinator coordinator = this.snapshots;
+        long stamp = coordinator.enter();
+        BalanceVersion installed;
+        try {
+            installed = deposit(amount, stamp);
+        } finally {
+            coordinator.exit(stamp);
         }
-        this.balance += amount;
-        transactionLog.addTransaction("Deposit", amount);
+        record(LedgerEventType.DEPOSIT, amount, installed);
     }
 
     /**
@@ -104,16 +223,485 @@ public class BankAccount {
      * @throws IllegalArgumentException if the amount is negative or exceeds the current balance.
      */
     public void withdraw(double amount) {
+        SnapshotCoordinator coordinator = this.snapshots;
+        long stamp = coordinator.enter();
+        InsufficientFundsException declined = null;
+        BalanceVersion installed;
+        try {
+            while ((installed = withdraw(amount, stamp)) == null) {
+                stamp = coordinator.renew(stamp);
+            }
+        } catch (InsufficientFundsException e) {
+            declined = e;
+            throw e;
+        } finally {
+            coordinator.exit(stamp);
+            if (declined != null) {
+                recordFailedWithdrawal(amount, declined);
+            }
+        }
+        record(LedgerEventType.WITHDRAWAL, amount, installed);
+    }
+
+    /**
+     * Withdraws a specified amount as part of a write the caller has already
+     * entered with the snapshot coordinator, without journaling it.
+     * Transfers use this form for both legs under a single stamp and journal
+     * one {@link LedgerEventType#TRANSFER} event instead. A withdrawal
+     * declined for insufficient funds is logged here, but journaled by the
+     * caller with {@link #recordFailedWithdrawal} once it has left the
+     * snapshot coordinator, so that snapshots never wait on the journal.
+     *
+     * <p>
+     * If the balance was last changed under a later epoch than the caller's,
+     * nothing is withdrawn and null is returned; the caller renews its stamp
+     * with {@link SnapshotCoordinator#renew(long)} and tries again.
+     *
+     * @param amount The amount to withdraw.
+     * @param stamp  The caller's writer stamp.
+     * @return The version the withdrawal installed, or null if the stamp must be renewed first.
+     * @throws InsufficientFundsException if the amount exceeds the available balance.
+     * @throws IllegalArgumentException if the amount is negative or would
+     *         exceed a withdrawal limit of the account or its owner.
+     */
+    BalanceVersion withdraw(double amount, long stamp) {
         if (amount < 0) {
             throw new IllegalArgumentException("Withdrawal amount must be positive.");
         }
-        if (this.balance < amount) {
-            System.out.println("Insufficient funds.");
-            failedTransactionLog.addTransaction("Failed Withdrawal", amount); 
-            throw new IllegalArgumentException("Insufficient funds.");
+        LimitCharge charge = acquireLimits(amount, owner != null ? owner.getWithdrawalLimits() : null);
+        SnapshotCoordinator coordinator = this.snapshots;
+        while (true) {
+            BalanceVersion current = this.balance.get();
+            if (current.stamp > stamp) {
+                charge.release();
+                return null;
+            }
+            double balanceAfter = current.balance - amount;
+            // Balance, holds and overdraft are checked against the same version the CAS replaces.
+            if (balanceAfter - current.held < -getOverdraftLimit()) {
+                // The declined attempt is counted in a version of its own, so snapshots see it in order.
+                BalanceVersion declined = install(current, current.balance, current.held, 0, 1, 1, stamp,
+                        coordinator);
+                if (declined != null) {
+                    charge.release();
+                    System.out.println("Insufficient funds.");
+                    failedTransactionLog.addTransaction("Failed Withdrawal", amount);
+                    throw new InsufficientFundsException(declined);
+                }
+            } else {
+                BalanceVersion installed = install(current, balanceAfter, current.held, 1, 0, 1, stamp, coordinator);
+                if (installed != null) {
+                    transactionLog.addBalanceChange("Withdrawal", amount, -amount);
+                    onWithdrawn(amount, balanceAfter);
+                    return installed;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns how far below zero withdrawals may take the balance. Plain
+     * accounts cannot be overdrawn.
+     *
+     * @return The overdraft limit, zero or positive.
+     */
+    public double getOverdraftLimit() {
+        return 0;
+    }
+
+    /**
+     * Returns how much can currently be withdrawn: the balance less any
+     * pending holds, plus any overdraft limit.
+     *
+     * @return The available balance.
+     */
+    public double getAvailableBalance() {
+        BalanceVersion current = this.balance.get();
+        return current.balance - current.held + getOverdraftLimit();
+    }
+
+    /**
+     * Returns the total reserved by pending holds on this account.
+     *
+     * @return The held amount.
+     */
+    public double getHeldAmount() {
+        return this.balance.get().held;
+    }
+
+    /**
+     * Reserves funds for a hold. The reservation is checked and installed in
+     * one compare-and-set, so concurrent holds and withdrawals can never
+     * together exceed the available balance. Holds are not counted against
+     * withdrawal limits until they are captured.
+     *
+     * @param amount The amount to reserve.
+     * @throws IllegalArgumentException if the amount is not positive or exceeds the available balance.
+     */
+    void hold(double amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Hold amount must be positive.");
+        }
+        SnapshotCoordinator coordinator = this.snapshots;
+        long stamp = coordinator.enter();
+        try {
+            BalanceVersion current;
+            do {
+                current = this.balance.get();
+                if (current.balance - current.held - amount < -getOverdraftLimit()) {
+                    throw new IllegalArgumentException("Insufficient funds.");
+                }
+            } while (install(current, current.balance, current.held + amount, stamp, coordinator) == null);
+        } finally {
+            coordinator.exit(stamp);
+        }
+    }
+
+    /**
+     * Returns reserved funds to the available balance.
+     *
+     * @param amount The amount a hold reserved.
+     */
+    void releaseHold(double amount) {
+        SnapshotCoordinator coordinator = this.snapshots;
+        long stamp = coordinator.enter();
+        try {
+            BalanceVersion current;
+            do {
+                current = this.balance.get();
+            } while (install(current, current.balance, Math.max(0, current.held - amount), stamp, coordinator) == null);
+        } finally {
+            coordinator.exit(stamp);
+        }
+    }
+
+    /**
+     * Settles a hold: debits the captured amount and drops the whole
+     * reservation in the same compare-and-set, then journals the debit as a
+     * withdrawal. The funds were checked when the hold was placed and the
+     * caller has already counted the debit against withdrawal limits with
+     * {@link #acquireCaptureLimits}, so the debit itself cannot fail.
+     *
+     * @param heldAmount The amount the hold reserved.
+     * @param amount     The amount to debit, at most the held amount.
+     */
+    void captureHold(double heldAmount, double amount) {
+        SnapshotCoordinator coordinator = this.snapshots;
+        long stamp = coordinator.enter();
+        BalanceVersion current;
+        BalanceVersion installed;
+        try {
+            do {
+                current = this.balance.get();
+            } while ((installed = install(current, current.balance - amount, Math.max(0, current.held - heldAmount), 1,
+                    0, 1, stamp, coordinator)) == null);
+        } finally {
+            coordinator.exit(stamp);
+        }
+        transactionLog.addBalanceChange("Withdrawal", amount, -amount);
+        onWithdrawn(amount, installed.balance);
+        record(LedgerEventType.WITHDRAWAL, amount, installed);
+    }
+
+    /**
+     * Counts a capture against this account's withdrawal limits and its
+     * owner's. This is done before the hold is settled, so a capture that
+     * would exceed a limit is rejected while the hold is still pending.
+     * Capturing nothing releases the hold and counts against no limit.
+     *
+     * @param amount The amount to be captured.
+     * @return What was counted, to give back if the capture does not go ahead.
+     * @throws IllegalArgumentException if a limit would be exceeded.
+     */
+    LimitCharge acquireCaptureLimits(double amount) {
+        if (amount <= 0) {
+            return LimitCharge.NONE;
+        }
+        return acquireLimits(amount, owner != null ? owner.getWithdrawalLimits() : null);
+    }
+
+    /**
+     * Called after each successful withdrawal, outside of any lock, so that
+     * subclasses can react to the new balance cheaply.
+     *
+     * @param amount       The amount withdrawn.
+     * @param balanceAfter The balance the withdrawal left.
+     */
+    protected void onWithdrawn(double amount, double balanceAfter) {
+    }
+
+    /**
+     * Debits a charge such as a fee regardless of the available balance or
+     * withdrawal limits, and journals it as a withdrawal.
+     *
+     * @param type   The transaction type to log, such as "Overdraft Fee".
+     * @param amount The amount to charge.
+     */
+    void charge(String type, double amount) {
+        SnapshotCoordinator coordinator = this.snapshots;
+        long stamp = coordinator.enter();
+        BalanceVersion installed;
+        try {
+            BalanceVersion current;
+            do {
+                current = this.balance.get();
+            } while ((installed = install(current, current.balance - amount, stamp, coordinator)) == null);
+        } finally {
+            coordinator.exit(stamp);
+        }
+        transactionLog.addBalanceChange(type, amount, -amount);
+        record(LedgerEventType.WITHDRAWAL, amount, installed);
+    }
+
+    /**
+     * Records a withdrawal against this account's limits and its owner's,
+     * giving everything back if any limit would be exceeded.
+     *
+     * @return What was counted, to give back if the withdrawal does not go through.
+     * @throws IllegalArgumentException if a limit would be exceeded.
+     */
+    private LimitCharge acquireLimits(double amount, WithdrawalLimits userLimits) {
+        long accountMillis = withdrawalLimits.currentTimeMillis();
+        long userMillis = 0;
+        LimitRule exceeded = withdrawalLimits.tryAcquire(amount, accountMillis);
+        if (exceeded == null && userLimits != null) {
+            userMillis = userLimits.currentTimeMillis();
+            exceeded = userLimits.tryAcquire(amount, userMillis);
+            if (exceeded != null) {
+                withdrawalLimits.release(amount, accountMillis);
+            }
+        }
+        if (exceeded != null) {
+            String measure = exceeded.getKind() == LimitRule.Kind.COUNT ? "Withdrawal limit" : "Withdrawal amount limit";
+            throw new IllegalArgumentException(measure + " reached for " + exceeded.getWindow().describe() + ".");
+        }
+        return new LimitCharge(amount, withdrawalLimits, accountMillis, userLimits, userMillis);
+    }
+
+    /**
+     * Deposits a specified amount as part of a write the caller has already
+     * entered with the snapshot coordinator, without journaling it.
+     *
+     * @param amount The amount to deposit.
+     * @param stamp  The caller's writer stamp.
+     * @return The version the deposit installed.
+     * @throws IllegalArgumentException if the amount is negative.
+     */
+    BalanceVersion deposit(double amount, long stamp) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Deposit amount must be positive.");
+        }
+        SnapshotCoordinator coordinator = this.snapshots;
+        BalanceVersion current;
+        BalanceVersion installed;
+        do {
+            current = this.balance.get();
+        } while ((installed = install(current, current.balance + amount, stamp, coordinator)) == null);
+        transactionLog.addBalanceChange("Deposit", amount, amount);
+        return installed;
+    }
+
+    /**
+     * Attempts to replace the current balance version with a new one in a
+     * single compare-and-set, pruning versions no snapshot can still read.
+     * The change counts as a balance change.
+     *
+     * @return The installed version, or null if another writer got there first.
+     */
+    private BalanceVersion install(BalanceVersion current, double newBalance, long stamp,
+            SnapshotCoordinator coordinator) {
+        return install(current, newBalance, current.held, 0, 0, 1, stamp, coordinator);
+    }
+
+    /**
+     * Attempts to replace the current balance version with one that changes
+     * only the held amount, which does not count as a balance change.
+     *
+     * @return The installed version, or null if another writer got there first.
+     */
+    private BalanceVersion install(BalanceVersion current, double newBalance, double newHeld, long stamp,
+            SnapshotCoordinator coordinator) {
+        return install(current, newBalance, newHeld, 0, 0, 0, stamp, coordinator);
+    }
+
+    /**
+     * Attempts to replace the current balance version with one that also
+     * counts a completed or declined withdrawal.
+     *
+     * @return The installed version, or null if another writer got there first.
+     */
+    private BalanceVersion install(BalanceVersion current, double newBalance, double newHeld, int withdrawn,
+            int declined, int changed, long stamp, SnapshotCoordinator coordinator) {
+        BalanceVersion next = current.next(stamp, newBalance, newHeld, withdrawn, declined, changed,
+                clock.currentTimeMillis());
+        if (!this.balance.compareAndSet(current, next)) {
+            return null;
+        }
+        next.prune(coordinator.pruneHorizon(stamp));
+        return next;
+    }
+
+    /**
+     * Returns the current balance version, so that an event can record a
+     * balance together with the version number it belongs to.
+     *
+     * @return The current version.
+     */
+    BalanceVersion currentVersion() {
+        return this.balance.get();
+    }
+
+    /**
+     * Retrieves the withdrawal limits specific to this account. Limits of the
+     * owning user apply in addition to these.
+     *
+     * @return The account's withdrawal limits.
+     */
+    public WithdrawalLimits getWithdrawalLimits() {
+        return withdrawalLimits;
+    }
+
+    /**
+     * Adds a withdrawal limit to this account.
+     *
+     * @param rule The limit to enforce.
+     */
+    public void addWithdrawalLimit(LimitRule rule) {
+        withdrawalLimits.addLimit(rule);
+    }
+
+    /**
+     * Retrieves the clock this account uses for time-dependent rules.
+     *
+     * @return The account's clock.
+     */
+    public BankClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Binds this account to the user that owns it, and through them to the
+     * journal and snapshot coordinator of the bank they are registered with.
+     * Passing null detaches the account again. A detached account keeps its
+     * coordinator and balance versions, since snapshots taken before it was
+     * closed may still read it.
+     *
+     * @param owner The owning user, or null.
+     */
+    void attach(User owner) {
+        this.owner = owner;
+        this.journal = owner != null ? owner.getJournal() : null;
+        if (owner == null) {
+            return;
+        }
+        SnapshotCoordinator coordinator = owner.getSnapshots();
+        coordinator = coordinator != null ? coordinator : SnapshotCoordinator.DETACHED;
+        if (coordinator == this.snapshots) {
+            return;
+        }
+        this.snapshots = coordinator;
+        // Stamps from another coordinator mean nothing here; restart the chain from the current balance.
+        BalanceVersion current = this.balance.get();
+        this.balance.set(new BalanceVersion(0, current.balance, current.held, current.balance, null,
+                current.changedAt, current.balanceMillis, current.withdrawals, current.failedWithdrawals,
+                current.version));
+    }
+
+    /**
+     * Restores the balance and transaction history of an account loaded from
+     * storage, before it is attached to its owner. Nothing is journaled.
+     *
+     * @param balance      The stored balance.
+     * @param transactions The stored transactions, oldest first.
+     * @param failed       The stored failed transactions, oldest first.
+     */
+    void restore(double balance, List<Transaction> transactions, List<Transaction> failed) {
+        restore(balance, transactions, failed, 0);
+    }
+
+    /**
+     * Restores an account rebuilt from a journal, continuing its version
+     * numbers after the last change replayed, so that changes journaled from
+     * now on replay after the ones already in the journal.
+     *
+     * @param balance      The replayed balance.
+     * @param transactions The replayed transactions, oldest first.
+     * @param failed       The replayed failed transactions, oldest first.
+     * @param version      The version number of the last change replayed.
+     */
+    void restore(double balance, List<Transaction> transactions, List<Transaction> failed, long version) {
+        for (Transaction transaction : transactions) {
+            transactionLog.restore(transaction);
+        }
+        for (Transaction transaction : failed) {
+            failedTransactionLog.restore(transaction);
+        }
+        storedTransactions = transactions.size();
+        storedFailedTransactions = failed.size();
+        this.balance.set(new BalanceVersion(0, balance, 0, balance, null, clock.currentTimeMillis(), 0,
+                transactionLog.countOfType("Withdrawal"), failed.size(), version));
+        transactionLog.recordBalance(balance);
+    }
+
+    /**
+     * Retrieves the transactions logged after the first few, without copying
+     * the whole log.
+     *
+     * @param from The number of transactions to skip.
+     * @return The later transactions, oldest first.
+     */
+    List<Transaction> getTransactionsFrom(int from) {
+        return transactionLog.getTransactionsFrom(from);
+    }
+
+    List<Transaction> getFailedTransactionsFrom(int from) {
+        return failedTransactionLog.getTransactionsFrom(from);
+    }
+
+    /**
+     * Returns the integral of the balance over time from the account's
+     * creation up to the given time. The integral is carried forward by every
+     * balance change, so reading it never scans history.
+     *
+     * @param now The end of the integration, in epoch milliseconds.
+     * @return The integral in dollar-milliseconds.
+     */
+    double getBalanceMillisAt(long now) {
+        return this.balance.get().balanceMillisAt(now);
+    }
+
+    /**
+     * Retrieves the username of the user this account belongs to.
+     *
+     * @return The owner's username, or null if the account has not been added to a user.
+     */
+    public String getOwner() {
+        User owner = this.owner;
+        return owner != null ? owner.getUsername() : null;
+    }
+
+    /**
+     * Journals a withdrawal that was declined for insufficient funds.
+     *
+     * @param amount   The amount that could not be withdrawn.
+     * @param declined The exception the withdrawal was declined with.
+     */
+    void recordFailedWithdrawal(double amount, InsufficientFundsException declined) {
+        record(LedgerEventType.FAILED_WITHDRAWAL, amount, declined.version);
+    }
+
+    /**
+     * Records a balance change in the bank's journal if this account is
+     * registered, with the version number and balance it installed. Events
+     * for concurrent changes may be journaled in either order; the version
+     * numbers say which was applied first.
+     */
+    private void record(LedgerEventType type, double amount, BalanceVersion installed) {
+        MutationJournal journal = this.journal;
+        if (journal != null) {
+            journal.append(LedgerEvent.balanceChange(type, getOwner(), id, amount, installed.version,
+                    installed.balance));
         }
-        this.balance -= amount;
-        transactionLog.addTransaction("Withdrawal", amount);
     }
 
     /**
@@ -129,6 +717,72 @@ public class BankAccount {
         return this.failedTransactionLog.getTransactions();
     }
 
+    /**
+     * Retrieves the totals of one day's transactions, without scanning the log.
+     *
+     * @param day The calendar day.
+     * @return The day's rollup, or null if there were no transactions that day.
+     */
+    public LogRollup getDailySummary(LocalDate day) {
+        return this.transactionLog.getDailyRollup(day);
+    }
+
+    /**
+     * Retrieves the totals of one month's transactions, without scanning the log.
+     *
+     * @param month The calendar month.
+     * @return The month's rollup, or null if there were no transactions that month.
+     */
+    public LogRollup getMonthlySummary(YearMonth month) {
+        return this.transactionLog.getMonthlyRollup(month);
+    }
+
+    /**
+     * Retrieves the time-weighted average balance over a month, without
+     * scanning the log.
+     *
+     * @param month The calendar month.
+     * @return The average daily balance.
+     */
+    public double getAverageDailyBalance(YearMonth month) {
+        return this.transactionLog.averageDailyBalance(month);
+    }
+
+    /**
+     * Counts the withdrawals completed as seen by a snapshot at the given epoch.
+     *
+     * @param epoch The snapshot epoch.
+     * @return The number of successful withdrawals at that point in time.
+     */
+    int countWithdrawalsAt(long epoch) {
+        return this.balance.get().withdrawalsAt(epoch);
+    }
+
+    /**
+     * Finds which of this account's journaled changes a snapshot at the
+     * given epoch includes.
+     *
+     * @param epoch The snapshot epoch.
+     * @param above Receives the numbers of included changes above the returned one.
+     * @return The number up to which every change is included.
+     * @see BalanceVersion#versionAt(long, Set)
+     */
+    long getVersionAt(long epoch, Set<Long> above) {
+        return this.balance.get().versionAt(epoch, above);
+    }
+
+    /**
+     * Counts the withdrawals declined for insufficient funds as seen by a
+     * snapshot at the given epoch.
+     *
+     * @param epoch The snapshot epoch.
+     * @return The number of failed withdrawals at that point in time.
+     */
+    int countFailedWithdrawalsAt(long epoch) {
+        return this.balance.get().failedWithdrawalsAt(epoch);
+    }
+
+
 
     /**
      * Prints all transactions associated with this account to the console.
@@ -140,6 +794,60 @@ public class BankAccount {
     public void printFailedTransactions() {
         failedTransactionLog.printTransactions();
     }
+
+    /**
+     * Thrown when a withdrawal would take the balance below what holds and
+     * any overdraft allow, carrying the version that counted the decline so
+     * that it can be journaled in order.
+     */
+    static final class InsufficientFundsException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        /** The version that counted the declined withdrawal. */
+        final transient BalanceVersion version;
+
+        InsufficientFundsException(BalanceVersion version) {
+            super("Insufficient funds.");
+            this.version = version;
+        }
+    }
+
+    /**
+     * A withdrawal counted against an account's limits and its owner's,
+     * with the time on each set's clock it was counted at, so that it can be
+     * given back to the windows it was counted in.
+     */
+    static final class LimitCharge {
+        /** Nothing counted, for a capture of nothing. */
+        static final LimitCharge NONE = new LimitCharge(0, null, 0, null, 0);
+
+        private final double amount;
+        private final WithdrawalLimits accountLimits;
+        private final long accountMillis;
+        private final WithdrawalLimits userLimits;
+        private final long userMillis;
+
+        LimitCharge(double amount, WithdrawalLimits accountLimits, long accountMillis, WithdrawalLimits userLimits,
+                long userMillis) {
+            this.amount = amount;
+            this.accountLimits = accountLimits;
+            this.accountMillis = accountMillis;
+            this.userLimits = userLimits;
+            this.userMillis = userMillis;
+        }
+
+        /**
+         * Gives the withdrawal back to every limit it was counted against.
+         */
+        void release() {
+            if (accountLimits != null) {
+                accountLimits.release(amount, accountMillis);
+            }
+            if (userLimits != null) {
+                userLimits.release(amount, userMillis);
+            }
+        }
+    }
     
     
 
@@ -0,0 +1,41 @@
+package bankapp;
+
+import java.time.Duration;
+
+/**
+ * Source of the current time for time-dependent banking rules, such as
+ * withdrawal limit windows. Injecting a clock lets those rules be tested
+ * deterministically.
+ */
+public interface BankClock {
+
+    /**
+     * Returns the current time.
+     *
+     * @return The current time in epoch milliseconds.
+     */
+    long currentTimeMillis();
+
+    /**
+     * Returns a clock backed by {@link System#currentTimeMillis()}.
+     *
+     * @return The system clock.
+     */
+    static BankClock system() {
+        return System::currentTimeMillis;
+    }
+
+    /**
+     * Returns a clock serving the system time cached at a fixed resolution,
+     * for banks that stamp so many transactions that reading the system
+     * clock for each shows up. The clock refreshes itself on a daemon thread
+     * until it is closed.
+     *
+     * @param resolution How often the cached time is refreshed.
+     * @return A coarse system clock.
+     * @throws IllegalArgumentException if the resolution is under a millisecond.
+     */
+    static CoarseClock coarse(Duration resolution) {
+        return new CoarseClock(resolution.toMillis());
+    }
+}
@@ -0,0 +1,196 @@
+package bankapp;
+
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * The results of one {@link ReportingEngine} run, computed from a single
+ * consistent snapshot of the bank. Balances in different currencies are
+ * never added together, so totals, top accounts and histograms are reported
+ * per currency.
+ */
+public class BankReport {
+
+    /**
+     * One account's balance as of the report's snapshot.
+     */
+    public static class AccountEntry {
+        private final UUID accountId;
+        private final String owner;
+        private final String accountType;
+        private final Currency currency;
+        private final double balance;
+
+        AccountEntry(UUID accountId, String owner, String accountType, Currency currency, double balance) {
+            this.accountId = accountId;
+            this.owner = owner;
+            this.accountType = accountType;
+            this.currency = currency;
+            this.balance = balance;
+        }
+
+        public UUID getAccountId() {
+            return accountId;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public String getAccountType() {
+            return accountType;
+        }
+
+        public Currency getCurrency() {
+            return currency;
+        }
+
+        public double getBalance() {
+            return balance;
+        }
+
+        @Override
+        public String toString() {
+            return owner + " " + accountType + " " + accountId + ": " + currency.getCurrencyCode() + " "
+                    + String.format("%.2f", balance);
+        }
+    }
+
+    private final long epoch;
+    private final Map<String, CurrencyTotals> userTotals;
+    private final Map<Currency, List<AccountEntry>> topAccounts;
+    private final double[] histogramBounds;
+    private final Map<Currency, Map<String, long[]>> histograms;
+    private final long withdrawals;
+    private final long failedWithdrawals;
+    private final Map<String, long[]> withdrawalsByType;
+
+    BankReport(long epoch, Map<String, CurrencyTotals> userTotals, Map<Currency, List<AccountEntry>> topAccounts,
+            double[] histogramBounds, Map<Currency, Map<String, long[]>> histograms, long withdrawals,
+            long failedWithdrawals, Map<String, long[]> withdrawalsByType) {
+        this.epoch = epoch;
+        this.userTotals = Collections.unmodifiableMap(userTotals);
+        this.topAccounts = Collections.unmodifiableMap(topAccounts);
+        this.histogramBounds = histogramBounds.clone();
+        this.histograms = histograms;
+        this.withdrawals = withdrawals;
+        this.failedWithdrawals = failedWithdrawals;
+        this.withdrawalsByType = withdrawalsByType;
+    }
+
+    /**
+     * Retrieves the snapshot epoch the balances were read at.
+     *
+     * @return The snapshot epoch.
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Retrieves each user's balances across all of their accounts, totalled
+     * per currency.
+     *
+     * @return Totals keyed by username.
+     */
+    public Map<String, CurrencyTotals> getUserTotals() {
+        return userTotals;
+    }
+
+    /**
+     * Retrieves the currencies any account in the report is held in.
+     *
+     * @return The currencies, in currency code order.
+     */
+    public Set<Currency> getCurrencies() {
+        return Collections.unmodifiableSet(topAccounts.keySet());
+    }
+
+    /**
+     * Retrieves the richest accounts held in one currency, richest first.
+     *
+     * @param currency The currency.
+     * @return At most the requested number of accounts; empty if the currency is absent.
+     */
+    public List<AccountEntry> getTopAccounts(Currency currency) {
+        List<AccountEntry> top = topAccounts.get(currency);
+        return top != null ? Collections.unmodifiableList(top) : List.of();
+    }
+
+    /**
+     * Retrieves the account types that appear in the histograms of any
+     * currency, such as "CheckingsAccount" and "SavingsAccount".
+     *
+     * @return The account type names.
+     */
+    public Set<String> getAccountTypes() {
+        Set<String> types = new TreeSet<>();
+        for (Map<String, long[]> byType : histograms.values()) {
+            types.addAll(byType.keySet());
+        }
+        return Collections.unmodifiableSet(types);
+    }
+
+    /**
+     * Retrieves the upper bounds of the histogram buckets. Bucket {@code i}
+     * counts balances below {@code bounds[i]}, and the final extra bucket
+     * counts the rest.
+     *
+     * @return The bucket bounds, ascending.
+     */
+    public double[] getHistogramBounds() {
+        return histogramBounds.clone();
+    }
+
+    /**
+     * Retrieves the balance histogram for one account type in one currency.
+     *
+     * @param currency    The currency the balances are held in.
+     * @param accountType The account type name.
+     * @return Account counts per bucket, one more than there are bounds; all zero if absent.
+     */
+    public long[] getHistogram(Currency currency, String accountType) {
+        Map<String, long[]> byType = histograms.get(currency);
+        long[] histogram = byType != null ? byType.get(accountType) : null;
+        return histogram != null ? histogram.clone() : new long[histogramBounds.length + 1];
+    }
+
+    /**
+     * Retrieves the fraction of all withdrawal attempts that failed.
+     *
+     * @return The failed-withdrawal rate, or 0 if nothing was withdrawn.
+     */
+    public double getFailedWithdrawalRate() {
+        return rate(withdrawals, failedWithdrawals);
+    }
+
+    /**
+     * Retrieves the fraction of withdrawal attempts that failed for one account type.
+     *
+     * @param accountType The account type name.
+     * @return The failed-withdrawal rate, or 0 if nothing was withdrawn.
+     */
+    public double getFailedWithdrawalRate(String accountType) {
+        long[] counts = withdrawalsByType.get(accountType);
+        return counts != null ? rate(counts[0], counts[1]) : 0;
+    }
+
+    /**
+     * Retrieves the number of failed withdrawals across all accounts.
+     *
+     * @return The failed withdrawal count.
+     */
+    public long getFailedWithdrawals() {
+        return failedWithdrawals;
+    }
+
+    private static double rate(long succeeded, long failed) {
+        long attempts = succeeded + failed;
+        return attempts == 0 ? 0 : (double) failed / attempts;
+    }
+}
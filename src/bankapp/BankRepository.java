@@ -0,0 +1,85 @@
+package bankapp;
+
+import java.util.UUID;
+
+/**
+ * Where a {@link Bank} keeps its users and their accounts. The bank calls
+ * {@link #add} as users register, looks them up through {@link #get}, and
+ * writes every journaled change back through the save methods, in journal
+ * order, so a repository never has to watch accounts itself.
+ */
+public interface BankRepository extends Iterable<User> {
+
+    /**
+     * Binds the repository to the bank that stores its users here. Called
+     * once, from the bank's constructor, before any other method.
+     *
+     * @param bank The owning bank.
+     */
+    void open(Bank bank);
+
+    /**
+     * Looks up a registered user. Repositories that keep users on disk load
+     * them on demand, and always return the same object for a user while
+     * anything still refers to it.
+     *
+     * @param username The username.
+     * @return The user, or null if no user has that name.
+     */
+    User get(String username);
+
+    /**
+     * Checks whether a username is taken.
+     *
+     * @param username The username.
+     * @return true if a user has that name.
+     */
+    boolean contains(String username);
+
+    /**
+     * Stores a newly registered user along with their accounts.
+     *
+     * @param user The user.
+     * @return true if the user was stored, false if the username is taken.
+     */
+    boolean add(User user);
+
+    /**
+     * Writes back a user's record and all of their accounts, such as after
+     * an account is opened.
+     *
+     * @param user The user.
+     */
+    void saveUser(User user);
+
+    /**
+     * Writes back the balances, settings and new transactions of accounts,
+     * all at once.
+     *
+     * @param accounts The changed accounts.
+     */
+    void saveAccounts(BankAccount... accounts);
+
+    /**
+     * Forgets an account that its owner has closed.
+     *
+     * @param username  The owner's username.
+     * @param accountId The UUID of the closed account.
+     */
+    void removeAccount(String username, UUID accountId);
+
+    /**
+     * Finds the username of the user owning an account.
+     *
+     * @param accountId The account's UUID.
+     * @return The owner's username, or null if no registered user owns it.
+     */
+    String findOwner(UUID accountId);
+
+    /**
+     * Returns the number of registered users.
+     *
+     * @return The user count.
+     */
+    int size();
+}
@@ -0,0 +1,214 @@
+package bankapp;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A consistent point-in-time view of every user and account balance in a
+ * {@link Bank}. Taking a snapshot never blocks writers; balances are read
+ * lazily and reconstructed as of the snapshot epoch, so a transfer is either
+ * fully visible or not visible at all. Users are read lazily too, straight
+ * from the bank's repository, so a snapshot of a bank whose users live on
+ * disk does not load them all. Snapshots pin old balance versions in memory
+ * and should be closed promptly.
+ */
+public class BankSnapshot implements AutoCloseable {
+
+    private final SnapshotCoordinator snapshots;
+    private final long epoch;
+    private final Iterable<User> liveUsers;
+    private boolean closed;
+
+    /**
+     * Opens a snapshot over the given users.
+     *
+     * @param snapshots The bank's snapshot coordinator.
+     * @param liveUsers The bank's current users; those registered after the snapshot epoch are excluded.
+     */
+    BankSnapshot(SnapshotCoordinator snapshots, Iterable<User> liveUsers) {
+        this.snapshots = snapshots;
+        this.epoch = snapshots.open();
+        this.liveUsers = liveUsers;
+    }
+
+    /**
+     * Retrieves the epoch this snapshot reads at.
+     *
+     * @return The snapshot epoch.
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Iterates over the users that were registered when the snapshot was
+     * taken. Each iteration walks the bank's current users and skips those
+     * registered since, without collecting them.
+     *
+     * @return The users in the snapshot.
+     */
+    public Iterable<User> users() {
+        return () -> new Iterator<User>() {
+            private final Iterator<User> live = liveUsers.iterator();
+            private User next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && live.hasNext()) {
+                    User user = live.next();
+                    if (user.getRegisteredEpoch() <= epoch) {
+                        next = user;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public User next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                User user = next;
+                next = null;
+                return user;
+            }
+        };
+    }
+
+    /**
+     * Retrieves the users that were registered when the snapshot was taken,
+     * collected into a list. Prefer {@link #users()} for banks too large to
+     * hold every user at once.
+     *
+     * @return A list of the users in the snapshot.
+     */
+    public List<User> getUsers() {
+        List<User> users = new ArrayList<>();
+        for (User user : users()) {
+            users.add(user);
+        }
+        return users;
+    }
+
+    /**
+     * Retrieves the accounts a user owned as of the snapshot, including any
+     * closed and excluding any opened since.
+     *
+     * @param user The user, one of {@link #getUsers()}.
+     * @return The user's accounts at the snapshot epoch.
+     */
+    public List<BankAccount> getAccounts(User user) {
+        checkOpen();
+        return user.getAccountsAt(epoch);
+    }
+
+    /**
+     * Retrieves an account's balance as of the snapshot.
+     *
+     * @param account The account to read.
+     * @return The account balance at the snapshot epoch.
+     */
+    public double getBalance(BankAccount account) {
+        checkOpen();
+        return account.getBalanceAt(epoch);
+    }
+
+    /**
+     * Retrieves how many withdrawals an account had completed as of the snapshot.
+     *
+     * @param account The account to read.
+     * @return The completed withdrawal count at the snapshot epoch.
+     */
+    public int getWithdrawals(BankAccount account) {
+        checkOpen();
+        return account.countWithdrawalsAt(epoch);
+    }
+
+    /**
+     * Retrieves how many withdrawals an account had declined for
+     * insufficient funds as of the snapshot.
+     *
+     * @param account The account to read.
+     * @return The declined withdrawal count at the snapshot epoch.
+     */
+    public int getFailedWithdrawals(BankAccount account) {
+        checkOpen();
+        return account.countFailedWithdrawalsAt(epoch);
+    }
+
+    /**
+     * Finds which of an account's journaled changes the snapshot includes,
+     * so that a reader of the journal can skip their events.
+     *
+     * @param account The account to read.
+     * @param above   Receives the version numbers of included changes above the returned one.
+     * @return The version number up to which every change is included.
+     */
+    long getVersion(BankAccount account, Set<Long> above) {
+        checkOpen();
+        return account.getVersionAt(epoch, above);
+    }
+
+    /**
+     * Retrieves the combined balance of a user's accounts as of the snapshot.
+     *
+     * @param user The user to total.
+     * @return The sum of the user's account balances at the snapshot epoch.
+     */
+    public double getUserBalance(User user) {
+        double total = 0;
+        for (BankAccount account : getAccounts(user)) {
+            total += getBalance(account);
+        }
+        return total;
+    }
+
+    /**
+     * Retrieves the total amount of money across all users as of the snapshot.
+     *
+     * @return The system-wide balance at the snapshot epoch.
+     */
+    public double getTotalBalance() {
+        double total = 0;
+        for (User user : users()) {
+            total += getUserBalance(user);
+        }
+        return total;
+    }
+
+    /**
+     * Retrieves the total amount of money across all users as of the
+     * snapshot, kept separate per currency.
+     *
+     * @return The system-wide totals by currency at the snapshot epoch.
+     */
+    public CurrencyTotals getTotalsByCurrency() {
+        CurrencyTotals.Builder totals = new CurrencyTotals.Builder();
+        for (User user : users()) {
+            for (BankAccount account : getAccounts(user)) {
+                totals.add(account.getCurrency(), getBalance(account));
+            }
+        }
+        return totals.build();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Snapshot has been closed.");
+        }
+    }
+
+    /**
+     * Releases the snapshot so that the balance versions it pinned can be pruned.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            snapshots.close(epoch);
+        }
+    }
+}
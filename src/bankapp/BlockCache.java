@@ -0,0 +1,88 @@
+package bankapp;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A least-recently-used cache of decoded {@link SSTable} blocks, shared by
+ * all tables of an {@link LsmStore} and bounded by the blocks' encoded size.
+ * Hot keys are served from here without touching the file system.
+ */
+final class BlockCache {
+
+    /** Loads a block on a cache miss. */
+    interface Loader {
+        SSTable.Block load() throws IOException;
+    }
+
+    private final long capacityBytes;
+    private final LinkedHashMap<Long, SSTable.Block> blocks;
+    private long sizeBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    BlockCache(long capacityBytes) {
+        this.capacityBytes = capacityBytes;
+        this.blocks = new LinkedHashMap<>(256, 0.75f, true);
+    }
+
+    /**
+     * Returns a cached block, loading and caching it on a miss. The load runs
+     * outside the cache lock, so a slow read never stalls cache hits.
+     */
+    SSTable.Block get(long tableId, int blockIndex, Loader loader) throws IOException {
+        Long key = (tableId << 32) | blockIndex;
+        synchronized (this) {
+            SSTable.Block block = blocks.get(key);
+            if (block != null) {
+                hits.increment();
+                return block;
+            }
+        }
+        misses.increment();
+        SSTable.Block block = loader.load();
+        synchronized (this) {
+            SSTable.Block previous = blocks.put(key, block);
+            if (previous != null) {
+                sizeBytes -= previous.sizeBytes;
+            }
+            sizeBytes += block.sizeBytes;
+            Iterator<Map.Entry<Long, SSTable.Block>> eldest = blocks.entrySet().iterator();
+            while (sizeBytes > capacityBytes && eldest.hasNext()) {
+                Map.Entry<Long, SSTable.Block> entry = eldest.next();
+                if (entry.getValue() == block) {
+                    break;
+                }
+                sizeBytes -= entry.getValue().sizeBytes;
+                eldest.remove();
+            }
+        }
+        return block;
+    }
+
+    /**
+     * Drops every block of a table that has been deleted.
+     */
+    synchronized void invalidate(long tableId) {
+        Iterator<Map.Entry<Long, SSTable.Block>> entries = blocks.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Long, SSTable.Block> entry = entries.next();
+            if (entry.getKey() >>> 32 == tableId) {
+                sizeBytes -= entry.getValue().sizeBytes;
+                entries.remove();
+            }
+        }
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+}
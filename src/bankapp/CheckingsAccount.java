@@ -1,22 +1,138 @@
 package bankapp;
 
+import java.util.Currency;
+import java.util.UUID;
+import java.util.concurrent.atomic.DoubleAdder;
+
 /**
  * Represents a checking account that allows unlimited withdrawals
- * and does not accrue interest.
+ * and does not accrue interest. A checking account may have an overdraft
+ * limit, letting withdrawals take the balance below zero down to minus the
+ * limit, with a fee queued for each withdrawal that leaves it negative.
  */
 public class CheckingsAccount extends BankAccount {
 
+    /** How far below zero the balance may go. */
+    private volatile double overdraftLimit;
+
+    /** The fee for each withdrawal that leaves the balance negative. */
+    private volatile double overdraftFee;
+
+    /** Fees queued by withdrawals and not yet charged. */
+    private final DoubleAdder pendingFees = new DoubleAdder();
+
     /**
      * Constructs a new CheckingAccount with a zero balance.
      */
     public CheckingsAccount() {
         super();
     }
-    
+
+    /**
+     * Constructs a new CheckingAccount with a zero balance whose withdrawal
+     * limits, if any are added, roll over according to the given clock.
+     *
+     * @param clock The clock used for withdrawal limit windows.
+     */
+    public CheckingsAccount(BankClock clock) {
+        super(clock);
+    }
+
+    /**
+     * Constructs a new CheckingAccount with a zero balance held in the given currency.
+     *
+     * @param clock    The clock used for withdrawal limit windows.
+     * @param currency The currency the balance is held in.
+     */
+    public CheckingsAccount(BankClock clock, Currency currency) {
+        super(clock, currency);
+    }
+
+    /**
+     * Constructs a checking account with a known ID, for restoring one from storage.
+     */
+    CheckingsAccount(UUID id, BankClock clock, Currency currency) {
+        super(id, clock, currency);
+    }
+
     /**
-     * I am leaving this barebones and only to differentiate as since it is
-     * a checkings account, it can act just like the BankAccount.
-     * Though, optionally we can add overrides to how deposit works 
-     * or add different functionalities like overdrafting.
-     * */
+     * Sets how far below zero withdrawals may take the balance. Lowering the
+     * limit does not affect a balance that is already further overdrawn;
+     * it only stops further withdrawals.
+     *
+     * @param limit The overdraft limit.
+     * @throws IllegalArgumentException if the limit is negative.
+     */
+    public void setOverdraftLimit(double limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Overdraft limit cannot be negative.");
+        }
+        this.overdraftLimit = limit;
+    }
+
+    @Override
+    public double getOverdraftLimit() {
+        return overdraftLimit;
+    }
+
+    /**
+     * Sets the fee charged for each withdrawal that leaves the balance below zero.
+     *
+     * @param fee The overdraft fee.
+     * @throws IllegalArgumentException if the fee is negative.
+     */
+    public void setOverdraftFee(double fee) {
+        if (fee < 0) {
+            throw new IllegalArgumentException("Overdraft fee cannot be negative.");
+        }
+        this.overdraftFee = fee;
+    }
+
+    public double getOverdraftFee() {
+        return overdraftFee;
+    }
+
+    /**
+     * Queues the overdraft fee when a withdrawal leaves the balance negative.
+     * Only an adder is touched here, so debits stay lock-free; the fee is
+     * charged later by {@link #collectFees()}.
+     */
+    @Override
+    protected void onWithdrawn(double amount, double balanceAfter) {
+        double fee = overdraftFee;
+        if (balanceAfter < 0 && fee > 0) {
+            pendingFees.add(fee);
+        }
+    }
+
+    /**
+     * Retrieves the overdraft fees queued but not yet charged.
+     *
+     * @return The pending fee total.
+     */
+    public double getPendingFees() {
+        return pendingFees.sum();
+    }
+
+    /**
+     * Queues fees restored from storage.
+     */
+    void restorePendingFees(double fees) {
+        pendingFees.add(fees);
+    }
+
+    /**
+     * Charges all queued overdraft fees in a single debit. Fees may take the
+     * balance beyond the overdraft limit. Typically run on a schedule with
+     * {@link RecurringJobs#scheduleFeeCollection}.
+     *
+     * @return The amount charged.
+     */
+    public double collectFees() {
+        double fees = pendingFees.sumThenReset();
+        if (fees > 0) {
+            charge("Overdraft Fee", fees);
+        }
+        return fees;
+    }
 }
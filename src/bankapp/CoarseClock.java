@@ -0,0 +1,66 @@
+package bankapp;
+
+/**
+ * A {@link BankClock} whose time is cached in a volatile field and refreshed
+ * by a daemon thread at a fixed resolution. Reading it is a single memory
+ * load, which suits hot paths that stamp every transaction and can tolerate
+ * timestamps that are up to one resolution step old.
+ */
+public class CoarseClock implements BankClock, AutoCloseable {
+
+    private final BankClock source;
+    private final Thread updater;
+    private volatile long now;
+    private volatile boolean running;
+
+    /**
+     * Constructs a clock refreshed from the system clock.
+     *
+     * @param resolutionMillis How often the cached time is refreshed.
+     */
+    public CoarseClock(long resolutionMillis) {
+        this(BankClock.system(), resolutionMillis);
+    }
+
+    /**
+     * Constructs a clock refreshed from another clock.
+     *
+     * @param source           The clock to cache.
+     * @param resolutionMillis How often the cached time is refreshed.
+     * @throws IllegalArgumentException if the resolution is not positive.
+     */
+    public CoarseClock(BankClock source, long resolutionMillis) {
+        if (resolutionMillis <= 0) {
+            throw new IllegalArgumentException("Resolution must be positive.");
+        }
+        this.source = source;
+        this.now = source.currentTimeMillis();
+        this.running = true;
+        this.updater = new Thread(() -> {
+            while (running) {
+                try {
+                    Thread.sleep(resolutionMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                now = this.source.currentTimeMillis();
+            }
+        }, "coarse-clock");
+        this.updater.setDaemon(true);
+        this.updater.start();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    /**
+     * Stops refreshing the cached time.
+     */
+    @Override
+    public void close() {
+        running = false;
+        updater.interrupt();
+    }
+}
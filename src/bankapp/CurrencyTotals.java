@@ -0,0 +1,138 @@
+package bankapp;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable balance totals kept separately per currency, in fixed-point
+ * minor units (cents for USD, yen for JPY) so that summing many accounts
+ * never accumulates floating-point error. Each balance is rounded to its
+ * currency's minor unit once, as it is added.
+ */
+public final class CurrencyTotals {
+
+    /** Totals with no currencies at all. */
+    public static final CurrencyTotals EMPTY = new Builder().build();
+
+    private final Map<Currency, Long> minorUnits;
+
+    private CurrencyTotals(Map<Currency, Long> minorUnits) {
+        this.minorUnits = Collections.unmodifiableMap(minorUnits);
+    }
+
+    /**
+     * Converts an amount to whole minor units of a currency, rounding half to even.
+     *
+     * @param amount   The amount in major units, such as dollars.
+     * @param currency The currency of the amount.
+     * @return The amount in minor units, such as cents.
+     */
+    public static long toMinorUnits(double amount, Currency currency) {
+        return BigDecimal.valueOf(amount).movePointRight(fractionDigits(currency))
+                .setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    /**
+     * Converts whole minor units of a currency back to major units.
+     *
+     * @param minorUnits The amount in minor units.
+     * @param currency   The currency of the amount.
+     * @return The amount in major units.
+     */
+    public static double toMajorUnits(long minorUnits, Currency currency) {
+        return BigDecimal.valueOf(minorUnits).movePointLeft(fractionDigits(currency)).doubleValue();
+    }
+
+    /**
+     * Returns the number of minor-unit digits of a currency, treating
+     * currencies without a minor unit as having none.
+     */
+    static int fractionDigits(Currency currency) {
+        return Math.max(0, currency.getDefaultFractionDigits());
+    }
+
+    /**
+     * Retrieves the currencies that have a total, in currency code order.
+     *
+     * @return The currencies present.
+     */
+    public Set<Currency> getCurrencies() {
+        return minorUnits.keySet();
+    }
+
+    /**
+     * Retrieves the total for one currency in minor units.
+     *
+     * @param currency The currency.
+     * @return The total, or 0 if no balance was in that currency.
+     */
+    public long getMinorUnits(Currency currency) {
+        Long total = minorUnits.get(currency);
+        return total != null ? total : 0;
+    }
+
+    /**
+     * Retrieves the total for one currency in major units.
+     *
+     * @param currency The currency.
+     * @return The total, or 0 if no balance was in that currency.
+     */
+    public double getAmount(Currency currency) {
+        return toMajorUnits(getMinorUnits(currency), currency);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Currency currency : minorUnits.keySet()) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            text.append(currency.getCurrencyCode()).append(' ')
+                    .append(BigDecimal.valueOf(getMinorUnits(currency)).movePointLeft(fractionDigits(currency))
+                            .toPlainString());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Accumulates balances into per-currency totals. Not thread-safe.
+     */
+    public static final class Builder {
+
+        private final TreeMap<Currency, Long> minorUnits =
+                new TreeMap<>((a, b) -> a.getCurrencyCode().compareTo(b.getCurrencyCode()));
+
+        /**
+         * Adds a balance to its currency's total.
+         *
+         * @param currency The currency of the balance.
+         * @param amount   The balance in major units.
+         * @return This builder.
+         */
+        public Builder add(Currency currency, double amount) {
+            return addMinorUnits(currency, toMinorUnits(amount, currency));
+        }
+
+        /**
+         * Adds an amount already in minor units to its currency's total.
+         *
+         * @param currency   The currency of the amount.
+         * @param minorUnits The amount in minor units.
+         * @return This builder.
+         */
+        public Builder addMinorUnits(Currency currency, long minorUnits) {
+            this.minorUnits.merge(currency, minorUnits, Math::addExact);
+            return this;
+        }
+
+        public CurrencyTotals build() {
+            return new CurrencyTotals(new TreeMap<>(minorUnits));
+        }
+    }
+}
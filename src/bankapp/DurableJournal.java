@@ -0,0 +1,374 @@
+package bankapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+/**
+ * Writes every event a {@link MutationJournal} records to a local file and
+ * reports when each one is safely on the storage device.
+ * <p>
+ * Appending to the file happens off the thread that changed the bank: the
+ * journal listener only encodes each event into an in-memory buffer, and a
+ * background writer hands the buffer to the file and forces it to the
+ * device. Whatever accumulates while a sync is in progress is written by the
+ * next one, so however many threads are changing the bank, they share syncs
+ * rather than each paying for its own — a group commit. The
+ * {@link FsyncPolicy} decides how soon the writer syncs once something is
+ * waiting.
+ * <p>
+ * Callers that need to know a change is durable ask for a future with
+ * {@link #durableThrough(long)}, which completes once a sync covering that
+ * sequence number finishes. Each record in the file is the length of the
+ * encoded event, a CRC32C checksum of it, and the event itself as written by
+ * {@link LedgerEvent#writeTo}. A registration written for a {@link Bank} is
+ * followed by the user's password hash and salt, which events themselves
+ * never carry, so {@link JournalRecovery} can rebuild the bank from the file.
+ */
+public class DurableJournal implements Closeable {
+
+    /** Bytes before each record's event: its length and checksum. */
+    static final int HEADER_BYTES = 8;
+
+    /** The largest encoded event a record can hold; anything longer is corrupt. */
+    static final int MAX_RECORD_BYTES = 1 << 20;
+
+    private final MutationJournal journal;
+    private final FileChannel channel;
+    private final FsyncPolicy policy;
+    private final Function<String, User> users;
+    private final LedgerListener listener;
+    private final Thread writer;
+
+    /** Encoded records not yet handed to the file; guarded by {@code this}. */
+    private ByteArrayOutputStream pending;
+    private int pendingCount;
+    private long pendingSinceNanos;
+    private long lastAppended;
+    private long durableSequence;
+    private boolean syncRequested;
+    private boolean closed;
+    private IOException failure;
+
+    /** Futures waiting for a sequence number to become durable; guarded by {@code this}. */
+    private final NavigableMap<Long, CompletableFuture<Long>> waiters;
+
+    private volatile long syncCount;
+    private volatile long syncNanos;
+    private volatile long recordsWritten;
+
+    /**
+     * Starts writing a journal to a new or empty file, beginning with the
+     * journal's first event. Recovery replays a file from its first event,
+     * so a journal that has already dropped events cannot be made durable.
+     *
+     * @param journal The journal to make durable.
+     * @param file    The file to append to, created if needed.
+     * @param policy  When to sync the file.
+     * @throws IOException           If the file cannot be opened or is not empty.
+     * @throws IllegalStateException If the journal no longer retains its first event.
+     */
+    public DurableJournal(MutationJournal journal, Path file, FsyncPolicy policy) throws IOException {
+        this(journal, file, policy, username -> null, 0);
+    }
+
+    /**
+     * Starts writing a bank's journal to a file, looking up each registered
+     * user to record their credentials. A file that already holds events
+     * up to {@code fileSequence}, because the bank was recovered from it,
+     * is appended to from the next event; otherwise the file must be empty.
+     */
+    DurableJournal(MutationJournal journal, Path file, FsyncPolicy policy, Function<String, User> users,
+            long fileSequence) throws IOException {
+        this.journal = journal;
+        this.users = users;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.policy = policy;
+        this.pending = new ByteArrayOutputStream(64 * 1024);
+        this.waiters = new TreeMap<>();
+        this.listener = this::append;
+        try {
+            if ((channel.size() == 0) != (fileSequence == 0)) {
+                throw new IOException(fileSequence == 0
+                        ? "Journal file " + file + " already holds events; recover the bank from it instead."
+                        : "Journal file " + file + " no longer holds the events the bank was recovered from.");
+            }
+            // Holding the journal lock keeps events from being appended between the backlog and the listener.
+            synchronized (journal) {
+                if (journal.headSequence() - journal.size() > fileSequence) {
+                    throw new IllegalStateException("Events up to #" + (journal.headSequence() - journal.size())
+                            + " are no longer retained, so the file could not be recovered.");
+                }
+                for (LedgerEvent event : journal.readAfter(fileSequence, Integer.MAX_VALUE)) {
+                    append(event);
+                }
+                journal.addListener(listener);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.writer = new Thread(this::writeLoop, "durable-journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Retrieves a future that completes once every event up to a sequence
+     * number is on the storage device, with the sequence number then durable.
+     * The future fails if the file cannot be written or the journal is closed
+     * before the sequence number is appended, and completes on the journal's
+     * writer thread, so callbacks attached to it should be quick.
+     *
+     * @param sequence The journal sequence number.
+     * @return The future.
+     */
+    public synchronized CompletableFuture<Long> durableThrough(long sequence) {
+        if (sequence <= durableSequence) {
+            return CompletableFuture.completedFuture(durableSequence);
+        }
+        if (failure != null) {
+            return CompletableFuture.failedFuture(failure);
+        }
+        if (closed && pendingCount == 0) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Journal is closed."));
+        }
+        return waiters.computeIfAbsent(sequence, key -> new CompletableFuture<>());
+    }
+
+    /**
+     * Syncs everything appended so far without waiting for the policy.
+     *
+     * @return A future that completes once it is durable.
+     */
+    public synchronized CompletableFuture<Long> flush() {
+        if (pendingCount > 0) {
+            syncRequested = true;
+            notifyAll();
+        }
+        return durableThrough(lastAppended);
+    }
+
+    /**
+     * Retrieves the sequence number of the newest event known to be on the
+     * storage device.
+     *
+     * @return The durable sequence number.
+     */
+    public synchronized long getDurableSequence() {
+        return durableSequence;
+    }
+
+    public FsyncPolicy getPolicy() {
+        return policy;
+    }
+
+    public long getSyncCount() {
+        return syncCount;
+    }
+
+    /**
+     * Retrieves how long syncs have taken on average.
+     *
+     * @return The mean sync latency in milliseconds, or 0 before the first sync.
+     */
+    public double getAverageSyncMillis() {
+        long syncs = syncCount;
+        return syncs == 0 ? 0 : syncNanos / 1e6 / syncs;
+    }
+
+    /**
+     * Retrieves how many events each sync has made durable on average, which
+     * shows how well concurrent changes are being grouped.
+     *
+     * @return The mean events per sync, or 0 before the first sync.
+     */
+    public double getAverageGroupSize() {
+        long syncs = syncCount;
+        return syncs == 0 ? 0 : (double) recordsWritten / syncs;
+    }
+
+    /**
+     * Stops following the journal, syncs what has been appended and closes
+     * the file.
+     */
+    @Override
+    public void close() throws IOException {
+        // Removed before taking this lock, which the listener takes while holding the journal's.
+        journal.removeListener(listener);
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        IOException error;
+        synchronized (this) {
+            error = failure;
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Encodes a journal event as a record of the file, followed for a
+     * registration by the user's credentials if the user is given.
+     */
+    static byte[] encode(LedgerEvent event, User user) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0);
+            out.writeInt(0);
+            event.writeTo(out);
+            if (event.getType() == LedgerEventType.USER_REGISTERED && user != null) {
+                out.writeUTF(user.getPasswordHash());
+                out.writeUTF(user.getHashSalt());
+            }
+            byte[] record = bytes.toByteArray();
+            CRC32C checksum = new CRC32C();
+            checksum.update(record, HEADER_BYTES, record.length - HEADER_BYTES);
+            ByteBuffer header = ByteBuffer.wrap(record, 0, HEADER_BYTES);
+            header.putInt(record.length - HEADER_BYTES);
+            header.putInt((int) checksum.getValue());
+            return record;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Buffers an appended event. Runs under the journal lock on the thread
+     * that changed the bank.
+     */
+    private void append(LedgerEvent event) {
+        User user = event.getType() == LedgerEventType.USER_REGISTERED ? users.apply(event.getUsername()) : null;
+        byte[] record = encode(event, user);
+        synchronized (this) {
+            if (closed || failure != null) {
+                return;
+            }
+            if (pendingCount == 0) {
+                pendingSinceNanos = System.nanoTime();
+            }
+            pending.write(record, 0, record.length);
+            pendingCount++;
+            lastAppended = event.getSequence();
+            if (pendingCount == 1 || pendingCount >= policy.getMaxOperations()) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * How long the writer should wait before syncing: 0 to sync now, or -1
+     * to wait until something is appended.
+     */
+    private long millisUntilSync() {
+        if (pendingCount == 0) {
+            return -1;
+        }
+        if (closed || syncRequested || pendingCount >= policy.getMaxOperations()) {
+            return 0;
+        }
+        if (policy.getMaxDelayMillis() == Long.MAX_VALUE) {
+            return -1;
+        }
+        long waited = (System.nanoTime() - pendingSinceNanos) / 1_000_000;
+        return Math.max(0, policy.getMaxDelayMillis() - waited);
+    }
+
+    private void writeLoop() {
+        while (true) {
+            byte[] batch = null;
+            int records = 0;
+            long through = 0;
+            List<CompletableFuture<Long>> abandoned = null;
+            synchronized (this) {
+                long wait;
+                while ((wait = millisUntilSync()) != 0) {
+                    if (closed) {
+                        // Nothing more will be appended, so later sequences never become durable.
+                        abandoned = new ArrayList<>(waiters.values());
+                        waiters.clear();
+                        break;
+                    }
+                    try {
+                        wait(Math.max(wait, 0));
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                if (abandoned == null) {
+                    batch = pending.toByteArray();
+                    pending.reset();
+                    records = pendingCount;
+                    pendingCount = 0;
+                    through = lastAppended;
+                    syncRequested = false;
+                }
+            }
+            if (abandoned != null) {
+                IllegalStateException closedError = new IllegalStateException("Journal is closed.");
+                for (CompletableFuture<Long> waiter : abandoned) {
+                    waiter.completeExceptionally(closedError);
+                }
+                return;
+            }
+            List<CompletableFuture<Long>> done = new ArrayList<>();
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                long start = System.nanoTime();
+                channel.force(false);
+                syncNanos += System.nanoTime() - start;
+                syncCount++;
+                recordsWritten += records;
+                synchronized (this) {
+                    durableSequence = through;
+                    Map<Long, CompletableFuture<Long>> covered = waiters.headMap(through, true);
+                    done.addAll(covered.values());
+                    covered.clear();
+                }
+            } catch (IOException e) {
+                System.out.println("Journal could not be written: " + e.getMessage());
+                synchronized (this) {
+                    failure = e;
+                    for (CompletableFuture<Long> waiter : waiters.values()) {
+                        waiter.completeExceptionally(e);
+                    }
+                    waiters.clear();
+                }
+                return;
+            }
+            for (CompletableFuture<Long> waiter : done) {
+                waiter.complete(through);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package bankapp;
+
+/**
+ * When a {@link DurableJournal} forces the events it has written to the
+ * storage device. A change is only reported durable once a sync covering it
+ * completes, so the policy trades how long callers wait for that report
+ * against how many syncs the device has to perform.
+ */
+public final class FsyncPolicy {
+
+    private final int maxOperations;
+    private final long maxDelayMillis;
+
+    private FsyncPolicy(int maxOperations, long maxDelayMillis) {
+        this.maxOperations = maxOperations;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Syncs as soon as anything is waiting to be written. Changes that
+     * arrive while a sync is in progress are written together by the next
+     * one, so concurrent writers still share syncs.
+     *
+     * @return The policy.
+     */
+    public static FsyncPolicy everyOperation() {
+        return new FsyncPolicy(1, 0);
+    }
+
+    /**
+     * Syncs once the oldest unwritten change has waited the given time,
+     * bounding how many syncs happen per second however busy the bank is.
+     *
+     * @param millis The longest a change waits before it is synced.
+     * @return The policy.
+     */
+    public static FsyncPolicy everyMillis(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Sync interval must be positive.");
+        }
+        return new FsyncPolicy(Integer.MAX_VALUE, millis);
+    }
+
+    /**
+     * Syncs once the given number of changes are waiting to be written. In a
+     * quiet bank the last few changes wait until more arrive or the journal
+     * is synced or closed explicitly.
+     *
+     * @param operations How many changes to write per sync.
+     * @return The policy.
+     */
+    public static FsyncPolicy everyOperations(int operations) {
+        if (operations <= 0) {
+            throw new IllegalArgumentException("Operations per sync must be positive.");
+        }
+        return new FsyncPolicy(operations, Long.MAX_VALUE);
+    }
+
+    int getMaxOperations() {
+        return maxOperations;
+    }
+
+    long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    @Override
+    public String toString() {
+        if (maxOperations == 1) {
+            return "every operation";
+        }
+        if (maxOperations == Integer.MAX_VALUE) {
+            return "every " + maxDelayMillis + " ms";
+        }
+        return "every " + maxOperations + " operations";
+    }
+}
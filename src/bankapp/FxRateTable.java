@@ -0,0 +1,159 @@
+package bankapp;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Exchange rates against a base currency, held in memory as an immutable
+ * table that is swapped out whole on every update. Readers never lock and
+ * always see one consistent set of rates; each update bumps a version
+ * number so that anything converted with older rates can tell it is stale.
+ * <p>
+ * A rate is the number of units of a currency worth one unit of the base
+ * currency, so the base currency's rate is always 1.
+ */
+public class FxRateTable {
+
+    private final Currency baseCurrency;
+
+    /** The current rates; replaced, never modified. */
+    private volatile Rates rates;
+
+    /**
+     * Creates a table that knows only the base currency.
+     *
+     * @param baseCurrency The currency all rates are quoted against.
+     */
+    public FxRateTable(Currency baseCurrency) {
+        this.baseCurrency = baseCurrency;
+        Map<Currency, BigDecimal> initial = new HashMap<>();
+        initial.put(baseCurrency, BigDecimal.ONE);
+        this.rates = new Rates(0, initial);
+    }
+
+    public Currency getBaseCurrency() {
+        return baseCurrency;
+    }
+
+    /**
+     * Retrieves the version of the current rates. It increases with every update.
+     *
+     * @return The rate version.
+     */
+    public long getVersion() {
+        return rates.version;
+    }
+
+    /**
+     * Sets the rate of one currency.
+     *
+     * @param currency     The currency.
+     * @param unitsPerBase How many units of the currency one unit of the base currency buys.
+     * @throws IllegalArgumentException if the rate is not positive, or the currency is the base currency.
+     */
+    public void setRate(Currency currency, double unitsPerBase) {
+        setRates(Collections.singletonMap(currency, unitsPerBase));
+    }
+
+    /**
+     * Sets several rates at once. Readers see either all of the new rates or
+     * none of them.
+     *
+     * @param unitsPerBase The new rates by currency.
+     * @throws IllegalArgumentException if any rate is not positive, or is for the base currency.
+     */
+    public synchronized void setRates(Map<Currency, Double> unitsPerBase) {
+        Map<Currency, BigDecimal> next = new HashMap<>(rates.unitsPerBase);
+        for (Map.Entry<Currency, Double> entry : unitsPerBase.entrySet()) {
+            if (entry.getKey().equals(baseCurrency)) {
+                throw new IllegalArgumentException("The base currency's rate is always 1.");
+            }
+            if (!(entry.getValue() > 0) || Double.isInfinite(entry.getValue())) {
+                throw new IllegalArgumentException("Exchange rate must be positive.");
+            }
+            next.put(entry.getKey(), BigDecimal.valueOf(entry.getValue()));
+        }
+        rates = new Rates(rates.version + 1, next);
+    }
+
+    /**
+     * Retrieves the rate of a currency.
+     *
+     * @param currency The currency.
+     * @return Units of the currency per unit of the base currency.
+     * @throws IllegalArgumentException if no rate is known for the currency.
+     */
+    public double getRate(Currency currency) {
+        return rates.rateOf(currency).doubleValue();
+    }
+
+    /**
+     * Converts an amount in minor units from one currency to another,
+     * rounding half to even.
+     *
+     * @param minorUnits The amount in minor units of the source currency.
+     * @param from       The source currency.
+     * @param to         The target currency.
+     * @return The amount in minor units of the target currency.
+     * @throws IllegalArgumentException if either rate is unknown.
+     */
+    public long convert(long minorUnits, Currency from, Currency to) {
+        return rates.convert(minorUnits, from, to);
+    }
+
+    /**
+     * Converts per-currency totals into a single total in one currency. The
+     * cost depends on the number of currencies, not the number of balances
+     * that went into the totals.
+     *
+     * @param totals The totals to convert.
+     * @param to     The target currency.
+     * @return The combined total in minor units of the target currency.
+     * @throws IllegalArgumentException if a rate is unknown.
+     */
+    public long convert(CurrencyTotals totals, Currency to) {
+        Rates current = rates;
+        long total = 0;
+        for (Currency currency : totals.getCurrencies()) {
+            total = Math.addExact(total, current.convert(totals.getMinorUnits(currency), currency, to));
+        }
+        return total;
+    }
+
+    /**
+     * One immutable version of the rate table.
+     */
+    private static final class Rates {
+
+        final long version;
+        final Map<Currency, BigDecimal> unitsPerBase;
+
+        Rates(long version, Map<Currency, BigDecimal> unitsPerBase) {
+            this.version = version;
+            this.unitsPerBase = unitsPerBase;
+        }
+
+        BigDecimal rateOf(Currency currency) {
+            BigDecimal rate = unitsPerBase.get(currency);
+            if (rate == null) {
+                throw new IllegalArgumentException("No exchange rate for " + currency.getCurrencyCode() + ".");
+            }
+            return rate;
+        }
+
+        long convert(long minorUnits, Currency from, Currency to) {
+            if (from.equals(to)) {
+                return minorUnits;
+            }
+            BigDecimal major = BigDecimal.valueOf(minorUnits).movePointLeft(CurrencyTotals.fractionDigits(from));
+            BigDecimal converted = major.multiply(rateOf(to)).divide(rateOf(from), MathContext.DECIMAL128);
+            return converted.movePointRight(CurrencyTotals.fractionDigits(to))
+                    .setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+        }
+    }
+}
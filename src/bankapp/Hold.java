@@ -0,0 +1,89 @@
+package bankapp;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Funds reserved on an account by a {@link HoldLedger} authorization, to be
+ * captured or released later. A hold settles exactly once: whichever of
+ * capture, release or expiry moves it out of {@link HoldState#PENDING}
+ * first is the one that adjusts the account.
+ */
+public class Hold {
+
+    private final UUID id;
+    private final BankAccount account;
+    private final double amount;
+    private final long createdAtMillis;
+    private final long expiresAtMillis;
+
+    /** Breaks ties between holds expiring in the same millisecond. */
+    final long sequence;
+
+    private final AtomicReference<HoldState> state;
+
+    Hold(BankAccount account, double amount, long createdAtMillis, long expiresAtMillis, long sequence) {
+        this.id = UUID.randomUUID();
+        this.account = account;
+        this.amount = amount;
+        this.createdAtMillis = createdAtMillis;
+        this.expiresAtMillis = expiresAtMillis;
+        this.sequence = sequence;
+        this.state = new AtomicReference<>(HoldState.PENDING);
+    }
+
+    /**
+     * Moves the hold out of the pending state.
+     *
+     * @param settled The state to settle into.
+     * @return true if this call settled the hold, false if it had already settled.
+     */
+    boolean settle(HoldState settled) {
+        return state.compareAndSet(HoldState.PENDING, settled);
+    }
+
+    BankAccount getAccount() {
+        return account;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    /**
+     * Retrieves the ID of the account the funds are reserved on.
+     *
+     * @return The account's UUID.
+     */
+    public UUID getAccountId() {
+        return account.getId();
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    /**
+     * Retrieves when the hold lapses if it has not been captured, in epoch
+     * milliseconds.
+     *
+     * @return The expiry time.
+     */
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    public HoldState getState() {
+        return state.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Hold %s: $%.2f on %s (%s)", id.toString().substring(0, 8), amount,
+                account.getNickname(), state.get());
+    }
+}
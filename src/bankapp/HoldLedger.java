@@ -0,0 +1,186 @@
+package bankapp;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks authorization holds for two-phase payments: funds are reserved on
+ * an account first and captured or released later.
+ * <p>
+ * Each account carries its held total in its balance version, so
+ * authorizing, capturing and releasing are single compare-and-sets and
+ * {@link BankAccount#getAvailableBalance()} stays one volatile read. Pending
+ * holds are indexed by ID for settlement and by expiry time, so
+ * {@link #expireDue()} only visits the holds that have actually lapsed.
+ */
+public class HoldLedger {
+
+    private static final Comparator<Hold> BY_EXPIRY =
+            Comparator.comparingLong(Hold::getExpiresAtMillis).thenComparingLong(hold -> hold.sequence);
+
+    private final BankClock clock;
+
+    /** Pending holds by ID. */
+    private final Map<UUID, Hold> pending;
+
+    /** Pending holds ordered by when they lapse. */
+    private final ConcurrentSkipListSet<Hold> byExpiry;
+
+    private final AtomicLong sequence;
+
+    /**
+     * Creates an empty ledger.
+     *
+     * @param clock The clock holds are timestamped and expired with.
+     */
+    public HoldLedger(BankClock clock) {
+        this.clock = clock;
+        this.pending = new ConcurrentHashMap<>();
+        this.byExpiry = new ConcurrentSkipListSet<>(BY_EXPIRY);
+        this.sequence = new AtomicLong();
+    }
+
+    /**
+     * Reserves funds on an account until they are captured, released or the
+     * hold lapses.
+     *
+     * @param account The account to reserve funds on.
+     * @param amount  The amount to reserve.
+     * @param ttl     How long the hold lasts if it is not settled.
+     * @return The pending hold.
+     * @throws IllegalArgumentException if the amount or duration is not positive,
+     *         or the account's available balance is too low.
+     */
+    public Hold authorize(BankAccount account, double amount, Duration ttl) {
+        if (ttl.isZero() || ttl.isNegative()) {
+            throw new IllegalArgumentException("Hold duration must be positive.");
+        }
+        account.hold(amount);
+        long now = clock.currentTimeMillis();
+        Hold hold = new Hold(account, amount, now, now + ttl.toMillis(), sequence.incrementAndGet());
+        pending.put(hold.getId(), hold);
+        byExpiry.add(hold);
+        return hold;
+    }
+
+    /**
+     * Captures a pending hold, debiting the account. Capturing less than was
+     * held releases the remainder. The debit counts against the withdrawal
+     * limits of the account and its owner; a capture that would exceed one
+     * is rejected and the hold stays pending.
+     *
+     * @param holdId The hold's ID.
+     * @param amount The amount to debit, at most the held amount.
+     * @return The captured hold.
+     * @throws IllegalArgumentException if the hold is unknown, already settled or
+     *         lapsed, the amount is negative or more than was held, or a
+     *         withdrawal limit would be exceeded.
+     */
+    public Hold capture(UUID holdId, double amount) {
+        Hold hold = pending.get(holdId);
+        if (hold == null) {
+            throw new IllegalArgumentException("No pending hold with that ID.");
+        }
+        if (amount < 0 || amount > hold.getAmount()) {
+            throw new IllegalArgumentException("Capture amount must be between zero and the held amount.");
+        }
+        if (hold.getExpiresAtMillis() <= clock.currentTimeMillis()) {
+            expire(hold);
+            throw new IllegalArgumentException("Hold has expired.");
+        }
+        BankAccount.LimitCharge charge = hold.getAccount().acquireCaptureLimits(amount);
+        if (!hold.settle(HoldState.CAPTURED)) {
+            charge.release();
+            throw new IllegalArgumentException("Hold has already been settled.");
+        }
+        unindex(hold);
+        hold.getAccount().captureHold(hold.getAmount(), amount);
+        return hold;
+    }
+
+    /**
+     * Releases a pending hold, returning its funds to the available balance.
+     *
+     * @param holdId The hold's ID.
+     * @return true if the hold was released, false if it was unknown or already settled.
+     */
+    public boolean release(UUID holdId) {
+        Hold hold = pending.get(holdId);
+        if (hold == null || !hold.settle(HoldState.RELEASED)) {
+            return false;
+        }
+        unindex(hold);
+        hold.getAccount().releaseHold(hold.getAmount());
+        return true;
+    }
+
+    /**
+     * Releases every pending hold that has lapsed. Each lapsed hold costs
+     * O(log n) to remove; holds not yet due are never visited. Typically
+     * run on a schedule with {@link RecurringJobs#scheduleHoldExpiry}.
+     *
+     * @return The number of holds expired.
+     */
+    public int expireDue() {
+        long now = clock.currentTimeMillis();
+        int expired = 0;
+        Hold first;
+        while ((first = firstOrNull()) != null && first.getExpiresAtMillis() <= now) {
+            if (expire(first)) {
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Retrieves a pending hold.
+     *
+     * @param holdId The hold's ID.
+     * @return The hold, or null if it is unknown or has settled.
+     */
+    public Hold getHold(UUID holdId) {
+        return pending.get(holdId);
+    }
+
+    /**
+     * Returns the number of pending holds.
+     *
+     * @return The pending hold count.
+     */
+    public int size() {
+        return pending.size();
+    }
+
+    private Hold firstOrNull() {
+        try {
+            return byExpiry.first();
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Settles a hold as expired and returns its funds, unless something else
+     * settled it first.
+     */
+    private boolean expire(Hold hold) {
+        unindex(hold);
+        if (!hold.settle(HoldState.EXPIRED)) {
+            return false;
+        }
+        hold.getAccount().releaseHold(hold.getAmount());
+        return true;
+    }
+
+    private void unindex(Hold hold) {
+        byExpiry.remove(hold);
+        pending.remove(hold.getId(), hold);
+    }
+}
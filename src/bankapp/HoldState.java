@@ -0,0 +1,20 @@
+package bankapp;
+
+/**
+ * Enum representing the lifecycle of a {@link Hold}. A hold starts out
+ * pending and settles exactly once into one of the other states.
+ */
+public enum HoldState {
+
+    /** The funds are reserved and may still be captured or released. */
+    PENDING,
+
+    /** The hold was captured and the account debited. */
+    CAPTURED,
+
+    /** The hold was released and the funds returned to the available balance. */
+    RELEASED,
+
+    /** The hold passed its expiry uncaptured and the funds were returned. */
+    EXPIRED
+}
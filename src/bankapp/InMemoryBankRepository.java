@@ -0,0 +1,109 @@
+package bankapp;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps every user on the heap, for banks that fit in memory and need no
+ * persistence. This is what a {@link Bank} uses unless given another
+ * repository.
+ */
+public class InMemoryBankRepository implements BankRepository {
+
+    /** Registered users by username. */
+    private final Map<String, User> users;
+
+    /** Every registered user's account owners by account ID. */
+    private final UuidMap<String> owners;
+
+    /** Guards {@link #owners}; lookups share the lock, updates take it exclusively. */
+    private final ReentrantReadWriteLock ownersLock;
+
+    /**
+     * Creates an empty repository.
+     */
+    public InMemoryBankRepository() {
+        this.users = new ConcurrentHashMap<>();
+        this.owners = new UuidMap<>();
+        this.ownersLock = new ReentrantReadWriteLock();
+    }
+
+    @Override
+    public void open(Bank bank) {
+    }
+
+    @Override
+    public User get(String username) {
+        return users.get(username);
+    }
+
+    @Override
+    public boolean contains(String username) {
+        return users.containsKey(username);
+    }
+
+    @Override
+    public boolean add(User user) {
+        if (users.putIfAbsent(user.getUsername(), user) != null) {
+            return false;
+        }
+        index(user);
+        return true;
+    }
+
+    /**
+     * Nothing needs writing back; only newly opened accounts need indexing.
+     */
+    @Override
+    public void saveUser(User user) {
+        index(user);
+    }
+
+    @Override
+    public void saveAccounts(BankAccount... accounts) {
+    }
+
+    @Override
+    public void removeAccount(String username, UUID accountId) {
+        ownersLock.writeLock().lock();
+        try {
+            owners.remove(accountId);
+        } finally {
+            ownersLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public String findOwner(UUID accountId) {
+        ownersLock.readLock().lock();
+        try {
+            return owners.get(accountId);
+        } finally {
+            ownersLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return users.size();
+    }
+
+    @Override
+    public Iterator<User> iterator() {
+        return users.values().iterator();
+    }
+
+    private void index(User user) {
+        ownersLock.writeLock().lock();
+        try {
+            for (BankAccount account : user.getAllAccounts()) {
+                owners.put(account.getId(), user.getUsername());
+            }
+        } finally {
+            ownersLock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package bankapp;
+
+/**
+ * How a {@link SavingsAccount} decides which balance to pay interest on.
+ */
+public enum InterestMode {
+
+    /** Interest is paid on the balance at the moment of accrual. */
+    CURRENT_BALANCE,
+
+    /**
+     * Interest is paid on the time-weighted average balance since the
+     * previous accrual, so money deposited just before month end earns
+     * only for the time it was held.
+     */
+    AVERAGE_DAILY_BALANCE
+}
@@ -0,0 +1,695 @@
+package bankapp;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32C;
+
+/**
+ * Rebuilds a {@link Bank} from the file written by a {@link DurableJournal},
+ * such as after the process was killed.
+ * <p>
+ * Recovery reads the file from the start and checks every record: that its
+ * length is plausible and fully present, that its CRC32C checksum matches,
+ * that it decodes, and that its sequence number follows the previous one.
+ * A record that fails one of the first three checks with no valid record
+ * anywhere after it is where a write was torn by the crash; it and
+ * everything after it are cut off the file, so the bank can go on appending
+ * to it. Only syncs that completed are reported durable, and a sync covers
+ * every record before it, so nothing a caller was told is durable can be
+ * cut. Damage with valid records after it, or a record out of sequence, is
+ * not a torn write, and recovery fails rather than cut records that may
+ * have been reported durable.
+ * <p>
+ * The valid records are then replayed into users, accounts, balances and
+ * transaction histories on a fork-join pool. Checksums are checked and
+ * records decoded in parallel, and accounts are partitioned by ID into
+ * shards, each replaying the events that touch its accounts on its own
+ * thread; a transfer between shards is replayed by both, each applying its
+ * own leg. Every balance change is journaled with the version number it
+ * gave its account and the balance it left, so an account's changes are
+ * replayed in the order they were applied even where concurrent changes
+ * were journaled the other way round, and each replayed account is then
+ * checked against the balance journaled with its last change; a lost or
+ * duplicated event shows up as a mismatch rather than as a silently
+ * different bank. Account types and currencies
+ * are journaled; settings such as interest rates, overdraft limits and
+ * nicknames are not and come back with their defaults, as do holds and
+ * withdrawal limit usage.
+ */
+public final class JournalRecovery {
+
+    /** Shards per pool thread, so that one busy shard does not leave the other threads idle. */
+    private static final int SHARDS_PER_THREAD = 4;
+
+    /** Records checked per leaf task; below this, splitting costs more than it saves. */
+    private static final int LEAF_RECORDS = 4_096;
+
+    private final Bank bank;
+    private final long recordCount;
+    private final long lastSequence;
+    private final long truncatedBytes;
+    private final double totalBalance;
+    private final long elapsedNanos;
+
+    private JournalRecovery(Bank bank, long recordCount, long lastSequence, long truncatedBytes, double totalBalance,
+            long elapsedNanos) {
+        this.bank = bank;
+        this.recordCount = recordCount;
+        this.lastSequence = lastSequence;
+        this.truncatedBytes = truncatedBytes;
+        this.totalBalance = totalBalance;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Recovers a bank timestamped by the system clock, using the common
+     * fork-join pool.
+     *
+     * @param file The journal file.
+     * @return The recovery, holding the rebuilt bank.
+     * @throws IOException If the file cannot be read or truncated.
+     */
+    public static JournalRecovery recover(Path file) throws IOException {
+        return recover(file, BankClock.system(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Recovers a bank using the common fork-join pool.
+     *
+     * @param file  The journal file.
+     * @param clock The clock for the rebuilt bank.
+     * @return The recovery, holding the rebuilt bank.
+     * @throws IOException If the file cannot be read or truncated.
+     */
+    public static JournalRecovery recover(Path file, BankClock clock) throws IOException {
+        return recover(file, clock, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Recovers a bank from a journal file, cutting off a torn tail. The
+     * rebuilt bank's journal continues after the last recovered event, so
+     * durability can be enabled again on the same file.
+     *
+     * @param file  The journal file.
+     * @param clock The clock for the rebuilt bank.
+     * @param pool  The pool records are checked and replayed on.
+     * @return The recovery, holding the rebuilt bank.
+     * @throws IOException           If the file cannot be read or truncated,
+     *                               does not start at the first event, or is
+     *                               damaged anywhere but in its tail.
+     * @throws IllegalStateException If a rebuilt balance differs from the
+     *                               balance journaled with its last change.
+     */
+    public static JournalRecovery recover(Path file, BankClock clock, ForkJoinPool pool) throws IOException {
+        long start = System.nanoTime();
+        List<Record> records = new ArrayList<>();
+        long truncated = readValidRecords(file, records, pool);
+
+        // Users are few and their events cheap; accounts, and the events touching them, are split into shards.
+        Map<String, RecoveredUser> users = new LinkedHashMap<>();
+        Shard[] shards = new Shard[Math.max(1, pool.getParallelism() * SHARDS_PER_THREAD)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(clock);
+        }
+        for (Record record : records) {
+            LedgerEvent event = record.event;
+            switch (event.getType()) {
+                case USER_REGISTERED -> users.put(event.getUsername(),
+                        new RecoveredUser("admin".equals(event.getDetail()), record.passwordHash, record.hashSalt));
+                case ACCOUNT_OPENED, ACCOUNT_CLOSED -> {
+                    RecoveredUser owner = users.get(event.getUsername());
+                    if (owner != null && event.getType() == LedgerEventType.ACCOUNT_OPENED) {
+                        owner.accountIds.add(event.getAccountId());
+                    } else if (owner != null) {
+                        owner.accountIds.remove(event.getAccountId());
+                    }
+                    shardOf(shards, event.getAccountId()).add(event, false);
+                }
+                case TRANSFER -> {
+                    shardOf(shards, event.getAccountId()).add(event, false);
+                    shardOf(shards, event.getCounterpartyAccountId()).add(event, true);
+                }
+                default -> shardOf(shards, event.getAccountId()).add(event, false);
+            }
+        }
+        pool.invoke(new ReplayTask(shards));
+        for (Shard shard : shards) {
+            if (shard.mismatch != null) {
+                throw new IllegalStateException(shard.mismatch);
+            }
+        }
+
+        long last = records.isEmpty() ? 0 : records.get(records.size() - 1).event.getSequence();
+        Bank bank = new Bank(clock);
+        bank.resumeFrom(file, last);
+        double total = 0;
+        for (Map.Entry<String, RecoveredUser> entry : users.entrySet()) {
+            User user = entry.getValue().build(entry.getKey(), shards, clock);
+            bank.restoreUser(user);
+            for (BankAccount account : user.getAllAccounts()) {
+                total += account.getCurrentBalance();
+            }
+        }
+        return new JournalRecovery(bank, records.size(), last, truncated, total, System.nanoTime() - start);
+    }
+
+    /**
+     * Retrieves the rebuilt bank.
+     *
+     * @return The bank.
+     */
+    public Bank getBank() {
+        return bank;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Retrieves the sequence number of the last recovered event, after which
+     * the rebuilt bank's journal continues.
+     *
+     * @return The last sequence number, or 0 for an empty journal.
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Retrieves how many bytes of torn or corrupt records were cut off the
+     * end of the file.
+     *
+     * @return The truncated byte count.
+     */
+    public long getTruncatedBytes() {
+        return truncatedBytes;
+    }
+
+    /**
+     * Retrieves the total balance of the rebuilt accounts, each of which
+     * matched the balance journaled with its last change.
+     *
+     * @return The total balance.
+     */
+    public double getTotalBalance() {
+        return totalBalance;
+    }
+
+    /**
+     * Retrieves how long reading, replaying and checking the journal took.
+     *
+     * @return The recovery time in milliseconds.
+     */
+    public double getRecoveryMillis() {
+        return elapsedNanos / 1e6;
+    }
+
+    /**
+     * A valid record: an event, and the credentials written with a registration.
+     */
+    static final class Record {
+        final LedgerEvent event;
+        final String passwordHash;
+        final String hashSalt;
+
+        Record(LedgerEvent event, String passwordHash, String hashSalt) {
+            this.event = event;
+            this.passwordHash = passwordHash;
+            this.hashSalt = hashSalt;
+        }
+    }
+
+    /**
+     * A record as framed in the file, before its checksum is checked.
+     */
+    private static final class Frame {
+        final long offset;
+        final int checksum;
+        final byte[] payload;
+
+        Frame(long offset, int checksum, byte[] payload) {
+            this.offset = offset;
+            this.checksum = checksum;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * Reads records up to the first invalid one and, if it is the torn tail,
+     * truncates the file there. Framing the records is sequential, since
+     * each length says where the next record starts; checking and decoding
+     * them is split across the pool.
+     *
+     * @return How many bytes were cut off.
+     * @throws IOException If the file is damaged before its tail or a record is out of sequence.
+     */
+    static long readValidRecords(Path file, List<Record> records, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long framedEnd = 0;
+            String problem = null;
+            List<Frame> frames = new ArrayList<>();
+            InputStream stream = new BufferedInputStream(Channels.newInputStream(channel), 1 << 16);
+            DataInputStream in = new DataInputStream(stream);
+            while (framedEnd < size) {
+                if (size - framedEnd < DurableJournal.HEADER_BYTES) {
+                    problem = "incomplete record header";
+                    break;
+                }
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || length > DurableJournal.MAX_RECORD_BYTES) {
+                    problem = "implausible record length " + length;
+                    break;
+                }
+                if (size - framedEnd - DurableJournal.HEADER_BYTES < length) {
+                    problem = "incomplete record";
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                frames.add(new Frame(framedEnd, checksum, payload));
+                framedEnd += DurableJournal.HEADER_BYTES + length;
+            }
+
+            Record[] decoded = new Record[frames.size()];
+            String[] problems = new String[frames.size()];
+            pool.invoke(new DecodeTask(frames, decoded, problems, 0, frames.size()));
+
+            long validEnd = framedEnd;
+            for (int i = 0; i < decoded.length; i++) {
+                long previous = i == 0 ? 0 : decoded[i - 1].event.getSequence();
+                if (decoded[i] != null && decoded[i].event.getSequence() != previous + 1) {
+                    if (i == 0) {
+                        throw new IOException("Journal starts at event " + decoded[i].event.getSequence()
+                                + " instead of the first.");
+                    }
+                    // An intact record out of sequence was written that way; it is not a torn write.
+                    throw new IOException("Journal event " + decoded[i].event.getSequence() + " at byte "
+                            + frames.get(i).offset + " follows event " + previous + ".");
+                }
+                if (problems[i] != null) {
+                    problem = problems[i];
+                    validEnd = frames.get(i).offset;
+                    break;
+                }
+                records.add(decoded[i]);
+            }
+            if (problem == null) {
+                return 0;
+            }
+            long following = findValidRecord(channel, validEnd + 1, size);
+            if (following >= 0) {
+                throw new IOException("Journal is damaged at byte " + validEnd + " (" + problem
+                        + ") but a valid record follows at byte " + following + ".");
+            }
+            System.out.println("Journal truncated at byte " + validEnd + " of " + size + ": " + problem + ".");
+            channel.truncate(validEnd);
+            channel.force(true);
+            return size - validEnd;
+        }
+    }
+
+    /**
+     * Searches the file from a position to its end for a record with a
+     * plausible length that fits in the file and a matching checksum,
+     * whether or not it lines up with the records before it. Only a file
+     * whose first bad record has none after it ends in a torn write.
+     *
+     * @return The offset of the first such record, or -1 if there is none.
+     */
+    private static long findValidRecord(FileChannel channel, long from, long size) throws IOException {
+        if (size - from < DurableJournal.HEADER_BYTES) {
+            return -1;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate((int) Math.min(size - from, Integer.MAX_VALUE - 8));
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, from + bytes.position()) < 0) {
+                break;
+            }
+        }
+        bytes.flip();
+        CRC32C checksum = new CRC32C();
+        int end = bytes.limit();
+        for (int position = 0; position + DurableJournal.HEADER_BYTES <= end; position++) {
+            int length = bytes.getInt(position);
+            int payload = position + DurableJournal.HEADER_BYTES;
+            if (length <= 0 || length > DurableJournal.MAX_RECORD_BYTES || length > end - payload) {
+                continue;
+            }
+            checksum.reset();
+            checksum.update(bytes.slice(payload, length));
+            if ((int) checksum.getValue() == bytes.getInt(position + 4)) {
+                return from + position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks and decodes a range of frames, recording why any frame is invalid.
+     */
+    private static final class DecodeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Frame> frames;
+        private final transient Record[] decoded;
+        private final String[] problems;
+        private final int from;
+        private final int to;
+
+        DecodeTask(List<Frame> frames, Record[] decoded, String[] problems, int from, int to) {
+            this.frames = frames;
+            this.decoded = decoded;
+            this.problems = problems;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_RECORDS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DecodeTask(frames, decoded, problems, from, middle),
+                        new DecodeTask(frames, decoded, problems, middle, to));
+                return;
+            }
+            CRC32C checksum = new CRC32C();
+            for (int i = from; i < to; i++) {
+                Frame frame = frames.get(i);
+                checksum.reset();
+                checksum.update(frame.payload, 0, frame.payload.length);
+                if ((int) checksum.getValue() != frame.checksum) {
+                    problems[i] = "checksum mismatch";
+                    continue;
+                }
+                try {
+                    decoded[i] = decode(frame.payload);
+                } catch (IOException e) {
+                    problems[i] = "undecodable record: " + e.getMessage();
+                }
+            }
+        }
+    }
+
+    private static Record decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        try {
+            LedgerEvent event = LedgerEvent.readFrom(in);
+            String passwordHash = null;
+            String hashSalt = null;
+            if (event.getType() == LedgerEventType.USER_REGISTERED && in.available() > 0) {
+                passwordHash = in.readUTF();
+                hashSalt = in.readUTF();
+            }
+            if (in.available() > 0) {
+                throw new IOException(in.available() + " unexpected trailing bytes");
+            }
+            return new Record(event, passwordHash, hashSalt);
+        } catch (EOFException e) {
+            throw new IOException("record ends early", e);
+        }
+    }
+
+    /**
+     * Replays every shard, each as its own task, on the pool that runs this
+     * task rather than on whichever pool the caller happens to be in.
+     */
+    private static final class ReplayTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Shard[] shards;
+
+        ReplayTask(Shard[] shards) {
+            this.shards = shards;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(shards);
+        }
+    }
+
+    private static Shard shardOf(Shard[] shards, UUID accountId) {
+        return shards[Math.floorMod(accountId == null ? 0 : accountId.hashCode(), shards.length)];
+    }
+
+    /**
+     * The accounts whose IDs hash to one shard, each replayed from the events
+     * touching it in the order its changes were applied. Events are journaled
+     * after their changes, so two concurrent changes to an account may be
+     * journaled in either order; each records the version number it gave the
+     * account, and an account's events are replayed by those numbers, with
+     * events that record none keeping their place after the one journaled
+     * before them. A transfer between accounts in two shards is replayed by
+     * both, each applying only the leg for its own account, so no account is
+     * ever touched by two threads.
+     */
+    static final class Shard extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient BankClock clock;
+        final transient Map<UUID, List<Leg>> histories = new HashMap<>();
+        final transient Map<UUID, RecoveredAccount> accounts = new HashMap<>();
+        final transient Map<UUID, BankAccount> built = new HashMap<>();
+
+        /** Why the first account found not to match its journaled balance did not, or null. */
+        String mismatch;
+
+        Shard(BankClock clock) {
+            this.clock = clock;
+        }
+
+        /**
+         * Adds an event, in sequence order, to the history of the account it
+         * applies to.
+         *
+         * @param credit Whether the account is the credited one of a transfer.
+         */
+        void add(LedgerEvent event, boolean credit) {
+            UUID accountId = credit ? event.getCounterpartyAccountId() : event.getAccountId();
+            List<Leg> history = histories.computeIfAbsent(accountId, id -> new ArrayList<>());
+            long version = credit ? event.getCounterpartyVersion() : event.getAccountVersion();
+            long order = version > 0 || history.isEmpty() ? version : history.get(history.size() - 1).order;
+            history.add(new Leg(event, credit, order));
+        }
+
+        @Override
+        protected void compute() {
+            for (Map.Entry<UUID, List<Leg>> entry : histories.entrySet()) {
+                List<Leg> history = entry.getValue();
+                // The sort is stable, so events with the same number stay in sequence order.
+                history.sort(Comparator.comparingLong(leg -> leg.order));
+                for (Leg leg : history) {
+                    apply(entry.getKey(), leg);
+                }
+            }
+            for (Map.Entry<UUID, RecoveredAccount> entry : accounts.entrySet()) {
+                RecoveredAccount account = entry.getValue();
+                double journaled = account.journaledBalance;
+                // Replay repeats the live arithmetic in order, so only a missing or misplaced event differs.
+                if (mismatch == null && account.complete && !Double.isNaN(journaled)
+                        && Math.abs(account.balance - journaled) > 1e-6 * Math.max(1, Math.abs(journaled))) {
+                    mismatch = String.format("Account %s replays to %.2f but was journaled at %.2f.",
+                            entry.getKey(), account.balance, journaled);
+                }
+                built.put(entry.getKey(), account.build(entry.getKey(), clock));
+            }
+        }
+
+        private void apply(UUID accountId, Leg leg) {
+            LedgerEvent event = leg.event;
+            long version = leg.credit ? event.getCounterpartyVersion() : event.getAccountVersion();
+            double balanceAfter = leg.credit ? event.getCounterpartyBalanceAfter() : event.getBalanceAfter();
+            if (event.getType() == LedgerEventType.ACCOUNT_OPENED) {
+                accounts.put(accountId, new RecoveredAccount(event.getDetail(), event.getCurrency(),
+                        event.getAmount(), version));
+                return;
+            }
+            if (event.getType() == LedgerEventType.ACCOUNT_CLOSED) {
+                accounts.remove(accountId);
+                return;
+            }
+            RecoveredAccount account = accounts.get(accountId);
+            if (account == null) {
+                return;
+            }
+            double amount = event.getAmount();
+            switch (event.getType()) {
+                case DEPOSIT -> account.credit(version, amount, event.getTimestamp(), balanceAfter);
+                case WITHDRAWAL -> account.debit(version, amount, event.getTimestamp(), balanceAfter);
+                case TRANSFER -> {
+                    if (leg.credit) {
+                        account.credit(version, amount, event.getTimestamp(), balanceAfter);
+                    } else {
+                        account.debit(version, amount, event.getTimestamp(), balanceAfter);
+                    }
+                }
+                case BALANCE_ADJUSTED -> {
+                    if (account.advance(version, balanceAfter)) {
+                        account.balance = amount;
+                    }
+                }
+                case FAILED_WITHDRAWAL -> {
+                    if (account.advance(version, balanceAfter)) {
+                        account.failed.add(new Transaction("Failed Withdrawal", amount, event.getTimestamp()));
+                    }
+                }
+                default -> {
+                    // Registrations are replayed before the shards run.
+                }
+            }
+        }
+    }
+
+    /**
+     * One account's side of an event, placed in the account's history by the
+     * version number it records.
+     */
+    static final class Leg {
+        final LedgerEvent event;
+        final boolean credit;
+        final long order;
+
+        Leg(LedgerEvent event, boolean credit, long order) {
+            this.event = event;
+            this.credit = credit;
+            this.order = order;
+        }
+    }
+
+    static final class RecoveredUser {
+        final boolean admin;
+        final String passwordHash;
+        final String hashSalt;
+        final List<UUID> accountIds = new ArrayList<>();
+
+        RecoveredUser(boolean admin, String passwordHash, String hashSalt) {
+            this.admin = admin;
+            this.passwordHash = passwordHash;
+            this.hashSalt = hashSalt;
+        }
+
+        /**
+         * Builds the user around their replayed accounts. The current account
+         * is the first one opened for them.
+         */
+        User build(String username, Shard[] shards, BankClock clock) {
+            List<BankAccount> owned = new ArrayList<>(accountIds.size());
+            for (UUID id : accountIds) {
+                BankAccount account = shardOf(shards, id).built.get(id);
+                if (account != null) {
+                    owned.add(account);
+                }
+            }
+            UUID current = accountIds.isEmpty() ? null : accountIds.get(0);
+            // Without recorded credentials the user cannot log in until they are reset.
+            String hash = passwordHash != null ? passwordHash : "";
+            String salt = hashSalt != null ? hashSalt : "";
+            return admin ? new Admin(username, hash, salt, owned, current, clock)
+                    : new User(username, hash, salt, owned, current, clock);
+        }
+    }
+
+    static final class RecoveredAccount {
+        final String type;
+        final Currency currency;
+        final List<Transaction> transactions = new ArrayList<>();
+        final List<Transaction> failed = new ArrayList<>();
+        double balance;
+
+        /** The balance journaled with the last change replayed, or NaN if that change did not record one. */
+        double journaledBalance;
+
+        /** The version number of the last change replayed. */
+        long version;
+
+        /**
+         * Whether every change since the account was opened has been
+         * replayed. A change missing from the middle of an account's numbers
+         * was journaled after a later one and lost with the torn tail of the
+         * file; its caller was never told it was durable, so the later
+         * changes stand without it, but the balances journaled with them no
+         * longer match.
+         */
+        boolean complete;
+
+        RecoveredAccount(String type, Currency currency, double openingBalance, long openingVersion) {
+            this.type = type;
+            this.currency = currency != null ? currency : BankAccount.DEFAULT_CURRENCY;
+            this.balance = openingBalance;
+            this.journaledBalance = openingBalance;
+            this.version = openingVersion;
+            this.complete = true;
+        }
+
+        /**
+         * Moves the account on to a change's version number, unless the
+         * opening balance already counts the change. A change journaled
+         * without a version number always applies, but leaves the balance
+         * unchecked.
+         *
+         * @return false if the change is to be skipped.
+         */
+        boolean advance(long changeVersion, double balanceAfter) {
+            if (changeVersion == 0) {
+                journaledBalance = Double.NaN;
+                return true;
+            }
+            if (changeVersion <= version) {
+                return false;
+            }
+            complete &= changeVersion == version + 1;
+            version = changeVersion;
+            journaledBalance = balanceAfter;
+            return true;
+        }
+
+        void credit(long changeVersion, double amount, long timestamp, double balanceAfter) {
+            if (advance(changeVersion, balanceAfter)) {
+                balance += amount;
+                transactions.add(new Transaction("Deposit", amount, timestamp));
+            }
+        }
+
+        void debit(long changeVersion, double amount, long timestamp, double balanceAfter) {
+            if (advance(changeVersion, balanceAfter)) {
+                balance -= amount;
+                transactions.add(new Transaction("Withdrawal", amount, timestamp));
+            }
+        }
+
+        BankAccount build(UUID id, BankClock clock) {
+            BankAccount account;
+            if ("SavingsAccount".equals(type)) {
+                account = new SavingsAccount(id, 0.01, clock, currency);
+            } else if ("CheckingsAccount".equals(type)) {
+                account = new CheckingsAccount(id, clock, currency);
+            } else {
+                account = new BankAccount(id, clock, currency);
+            }
+            account.restore(balance, transactions, failed, version);
+            return account;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package bankapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * Streams a {@link MutationJournal} to replicas over a local socket. Each
+ * client sends the last sequence number it has applied, then receives frames
+ * of the form {@code [int count][long headSequence][count events]}. An empty
+ * frame is sent as a heartbeat when no new events arrive, so clients can
+ * still measure how far behind they are.
+ */
+public class JournalServer implements AutoCloseable {
+
+    /** Maximum number of events sent per frame. */
+    private static final int FRAME_SIZE = 256;
+
+    /** How long to wait for new events before sending a heartbeat. */
+    private static final long HEARTBEAT_MILLIS = 500;
+
+    private final MutationJournal journal;
+    private final ServerSocket serverSocket;
+    private volatile boolean running;
+
+    /**
+     * Binds a server on the loopback interface.
+     *
+     * @param journal The journal to stream.
+     * @param port    The port to listen on, or 0 for any free port.
+     * @throws IOException If the socket cannot be bound.
+     */
+    public JournalServer(MutationJournal journal, int port) throws IOException {
+        this.journal = journal;
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     *
+     * @return The local port.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Starts accepting replica connections on a daemon thread.
+     */
+    public void start() {
+        running = true;
+        Thread acceptor = new Thread(this::acceptLoop, "journal-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket client = serverSocket.accept();
+                Thread streamer = new Thread(() -> stream(client), "journal-streamer");
+                streamer.setDaemon(true);
+                streamer.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.out.println("Journal server stopped accepting connections: " + e.getMessage());
+                }
+                return;
+            }
+        }
+    }
+
+    private void stream(Socket client) {
+        try (Socket socket = client;
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            long position = in.readLong();
+            // The journal keeps what this replica has not been sent yet, however far behind it falls.
+            journal.acknowledge(client, position);
+            while (running) {
+                List<LedgerEvent> events = journal.poll(position, FRAME_SIZE, HEARTBEAT_MILLIS);
+                out.writeInt(events.size());
+                out.writeLong(journal.headSequence());
+                for (LedgerEvent event : events) {
+                    event.writeTo(out);
+                    position = event.getSequence();
+                }
+                out.flush();
+                journal.acknowledge(client, position);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The replica disconnected or asked for truncated events; it must reconnect.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            journal.release(client);
+        }
+    }
+
+    /**
+     * Stops accepting connections and ends all streams.
+     *
+     * @throws IOException If the server socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+    }
+}
@@ -0,0 +1,361 @@
+package bankapp;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Currency;
+import java.util.UUID;
+
+/**
+ * Immutable record of a single mutation applied to a {@link Bank}.
+ * Events are created unsequenced by the bank and stamped with a sequence
+ * number and timestamp when appended to a {@link MutationJournal}.
+ */
+public class LedgerEvent {
+
+    /** Position of this event in the journal; 0 until appended. */
+    private final long sequence;
+
+    /** Wall-clock time the event was appended, in epoch milliseconds. */
+    private final long timestamp;
+
+    /** The kind of mutation this event records. */
+    private final LedgerEventType type;
+
+    /** The user the mutation applies to (the sender for transfers). */
+    private final String username;
+
+    /** The account the mutation applies to (the debited account for transfers). */
+    private final UUID accountId;
+
+    /** The amount of money involved, or 0 for non-monetary events. */
+    private final double amount;
+
+    /** The receiving user of a transfer, otherwise null. */
+    private final String counterparty;
+
+    /** The credited account of a transfer, otherwise null. */
+    private final UUID counterpartyAccountId;
+
+    /** Extra information, such as the account type of an opened account. */
+    private final String detail;
+
+    /** The currency of an opened account, otherwise null. */
+    private final Currency currency;
+
+    /** The version number the mutation gave the account it applies to, or 0 if not recorded. */
+    private final long accountVersion;
+
+    /** The balance of the account the mutation applies to once applied, or NaN if not recorded. */
+    private final double balanceAfter;
+
+    /** The version number a transfer gave the credited account, otherwise 0. */
+    private final long counterpartyVersion;
+
+    /** The balance of the credited account of a transfer once applied, otherwise NaN. */
+    private final double counterpartyBalanceAfter;
+
+    private LedgerEvent(long sequence, long timestamp, LedgerEventType type, String username, UUID accountId,
+            double amount, String counterparty, UUID counterpartyAccountId, String detail, Currency currency,
+            long accountVersion, double balanceAfter, long counterpartyVersion, double counterpartyBalanceAfter) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.type = type;
+        this.username = username;
+        this.accountId = accountId;
+        this.amount = amount;
+        this.counterparty = counterparty;
+        this.counterpartyAccountId = counterpartyAccountId;
+        this.detail = detail;
+        this.currency = currency;
+        this.accountVersion = accountVersion;
+        this.balanceAfter = balanceAfter;
+        this.counterpartyVersion = counterpartyVersion;
+        this.counterpartyBalanceAfter = counterpartyBalanceAfter;
+    }
+
+    /**
+     * Creates an event recording the registration of a user.
+     *
+     * @param username The registered username.
+     * @param admin    Whether the user is an administrator.
+     * @return The unsequenced event.
+     */
+    public static LedgerEvent userRegistered(String username, boolean admin) {
+        return new LedgerEvent(0, 0, LedgerEventType.USER_REGISTERED, username, null, 0, null, null,
+                admin ? "admin" : "user", null, 0, Double.NaN, 0, Double.NaN);
+    }
+
+    /**
+     * Creates an event recording an account being opened for a user, with
+     * its type, currency, opening balance and the version number of that
+     * balance. Changes already counted in the opening balance may still be
+     * journaled after it; their version numbers are no higher than its.
+     *
+     * @param username The owner of the account.
+     * @param account  The opened account.
+     * @return The unsequenced event.
+     */
+    public static LedgerEvent accountOpened(String username, BankAccount account) {
+        BalanceVersion opening = account.currentVersion();
+        return new LedgerEvent(0, 0, LedgerEventType.ACCOUNT_OPENED, username, account.getId(), opening.balance,
+                null, null, account.getClass().getSimpleName(), account.getCurrency(), opening.version,
+                opening.balance, 0, Double.NaN);
+    }
+
+    /**
+     * Creates an event recording an account being removed from a user.
+     *
+     * @param username  The owner of the account.
+     * @param accountId The removed account's ID.
+     * @return The unsequenced event.
+     */
+    public static LedgerEvent accountClosed(String username, UUID accountId) {
+        return new LedgerEvent(0, 0, LedgerEventType.ACCOUNT_CLOSED, username, accountId, 0, null, null, null, null,
+                0, Double.NaN, 0, Double.NaN);
+    }
+
+    /**
+     * Creates an event recording a deposit, withdrawal or failed withdrawal on
+     * a single account, without the balance it left.
+     *
+     * @param type      The kind of balance event.
+     * @param username  The owner of the account.
+     * @param accountId The account's ID.
+     * @param amount    The amount involved.
+     * @return The unsequenced event.
+     */
+    public static LedgerEvent balanceChange(LedgerEventType type, String username, UUID accountId, double amount) {
+        return balanceChange(type, username, accountId, amount, 0, Double.NaN);
+    }
+
+    /**
+     * Creates an event recording a change to a single account, such as a
+     * deposit or a declined withdrawal, along with the version number the
+     * change gave the account and the balance it left.
+     *
+     * @param type         The kind of balance event.
+     * @param username     The owner of the account.
+     * @param accountId    The account's ID.
+     * @param amount       The amount involved.
+     * @param version      The account's version number once the change was applied.
+     * @param balanceAfter The account's balance once the change was applied.
+     * @return The unsequenced event.
+     */
+    public static LedgerEvent balanceChange(LedgerEventType type, String username, UUID accountId, double amount,
+            long version, double balanceAfter) {
+        return new LedgerEvent(0, 0, type, username, accountId, amount, null, null, null, null, version,
+                balanceAfter, 0, Double.NaN);
+    }
+
+    /**
+     * Creates an event recording a transfer between two users' accounts.
+     *
+     * @param fromUsername  The sending user.
+     * @param fromAccountId The debited account.
+     * @param toUsername    The receiving user.
+     * @param toAccountId   The credited account.
+     * @param amount        The amount transferred.
+     * @param fromVersion   The debited account's version number once the transfer was applied.
+     * @param fromBalance   The debited account's balance once the transfer was applied.
+     * @param toVersion     The credited account's version number once the transfer was applied.
+     * @param toBalance     The credited account's balance once the transfer was applied.
+     * @return The unsequenced event.
+     */
+    public static LedgerEvent transfer(String fromUsername, UUID fromAccountId, String toUsername,
+            UUID toAccountId, double amount, long fromVersion, double fromBalance, long toVersion, double toBalance) {
+        return new LedgerEvent(0, 0, LedgerEventType.TRANSFER, fromUsername, fromAccountId, amount, toUsername,
+                toAccountId, null, null, fromVersion, fromBalance, toVersion, toBalance);
+    }
+
+    /**
+     * Returns a copy of this event stamped with its journal position and time.
+     *
+     * @param sequence  The journal sequence number.
+     * @param timestamp The append time in epoch milliseconds.
+     * @return The sequenced event.
+     */
+    LedgerEvent sequenced(long sequence, long timestamp) {
+        return new LedgerEvent(sequence, timestamp, type, username, accountId, amount, counterparty,
+                counterpartyAccountId, detail, currency, accountVersion, balanceAfter, counterpartyVersion,
+                counterpartyBalanceAfter);
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public LedgerEventType getType() {
+        return type;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public UUID getAccountId() {
+        return accountId;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public String getCounterparty() {
+        return counterparty;
+    }
+
+    public UUID getCounterpartyAccountId() {
+        return counterpartyAccountId;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    /**
+     * Retrieves the version number the mutation gave the account it applies
+     * to, the debited account for transfers. An account's changes are
+     * numbered in the order they were applied, which concurrent changes'
+     * events are not necessarily journaled in.
+     *
+     * @return The version number, or 0 if the event does not record one.
+     */
+    public long getAccountVersion() {
+        return accountVersion;
+    }
+
+    /**
+     * Retrieves the balance the mutation left in the account it applies to,
+     * the debited account for transfers. Recovery checks its replayed
+     * balances against these.
+     *
+     * @return The balance once applied, or NaN if the event does not record one.
+     */
+    public double getBalanceAfter() {
+        return balanceAfter;
+    }
+
+    /**
+     * Retrieves the version number a transfer gave the credited account.
+     *
+     * @return The credited account's version number, or 0 for other events.
+     */
+    public long getCounterpartyVersion() {
+        return counterpartyVersion;
+    }
+
+    /**
+     * Retrieves the balance a transfer left in the credited account.
+     *
+     * @return The credited account's balance once applied, or NaN for other events.
+     */
+    public double getCounterpartyBalanceAfter() {
+        return counterpartyBalanceAfter;
+    }
+
+    /**
+     * Writes this event in a compact binary form, used to ship events to
+     * replicas over a socket.
+     *
+     * @param out The destination stream.
+     * @throws IOException If writing fails.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(sequence);
+        out.writeLong(timestamp);
+        out.writeByte(type.ordinal());
+        writeString(out, username);
+        writeUuid(out, accountId);
+        out.writeDouble(amount);
+        writeString(out, counterparty);
+        writeUuid(out, counterpartyAccountId);
+        writeString(out, detail);
+        writeString(out, currency != null ? currency.getCurrencyCode() : null);
+        out.writeLong(accountVersion);
+        out.writeDouble(balanceAfter);
+        out.writeLong(counterpartyVersion);
+        out.writeDouble(counterpartyBalanceAfter);
+    }
+
+    /**
+     * Reads an event previously written with {@link #writeTo(DataOutput)}.
+     *
+     * @param in The source stream.
+     * @return The decoded event.
+     * @throws IOException If reading fails or the stream ends early.
+     */
+    public static LedgerEvent readFrom(DataInput in) throws IOException {
+        long sequence = in.readLong();
+        long timestamp = in.readLong();
+        int ordinal = in.readUnsignedByte();
+        LedgerEventType[] types = LedgerEventType.values();
+        if (ordinal >= types.length) {
+            throw new IOException("Unknown ledger event type: " + ordinal);
+        }
+        String username = readString(in);
+        UUID accountId = readUuid(in);
+        double amount = in.readDouble();
+        String counterparty = readString(in);
+        UUID counterpartyAccountId = readUuid(in);
+        String detail = readString(in);
+        String currencyCode = readString(in);
+        Currency currency;
+        try {
+            currency = currencyCode != null ? Currency.getInstance(currencyCode) : null;
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown currency: " + currencyCode, e);
+        }
+        long accountVersion = in.readLong();
+        double balanceAfter = in.readDouble();
+        long counterpartyVersion = in.readLong();
+        double counterpartyBalanceAfter = in.readDouble();
+        return new LedgerEvent(sequence, timestamp, types[ordinal], username, accountId, amount, counterparty,
+                counterpartyAccountId, detail, currency, accountVersion, balanceAfter, counterpartyVersion,
+                counterpartyBalanceAfter);
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeUuid(DataOutput out, UUID value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.getMostSignificantBits());
+            out.writeLong(value.getLeastSignificantBits());
+        }
+    }
+
+    private static UUID readUuid(DataInput in) throws IOException {
+        return in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append('#').append(sequence).append(' ').append(type).append(' ').append(username);
+        if (type.changesBalance() || type == LedgerEventType.FAILED_WITHDRAWAL) {
+            text.append(String.format(" $%.2f", amount));
+        }
+        if (counterparty != null) {
+            text.append(" -> ").append(counterparty);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,347 @@
+package bankapp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the events a {@link MutationJournal} records — registrations,
+ * deposits, withdrawals, failed withdrawals, transfers and the rest — to any
+ * number of {@link Flow.Subscriber}s, in batches and with backpressure.
+ * <p>
+ * Each item is a batch of up to a fixed number of events in sequence order,
+ * and each unit of demand a subscriber requests is one batch. Events are
+ * handed to subscribers on an executor, never on the thread that changed
+ * the bank: the journal listener only copies each event into every
+ * subscriber's bounded buffer. A subscriber that falls so far behind that its
+ * buffer fills is not allowed to slow the bank down either; it instead
+ * catches up by reading the missed events back from the journal, and fails
+ * with an {@link IllegalStateException} only if the journal has already
+ * truncated them.
+ */
+public class LedgerEventStream implements Flow.Publisher<List<LedgerEvent>>, AutoCloseable {
+
+    private final MutationJournal journal;
+    private final Executor executor;
+    private final int bufferSize;
+    private final int maxBatchSize;
+
+    private final List<StreamSubscription> subscriptions;
+    private final LedgerListener listener;
+    private volatile boolean closed;
+
+    /**
+     * Creates a stream over a journal that delivers on the common fork-join
+     * pool, buffers up to 1,024 events per subscriber and batches up to 256.
+     *
+     * @param journal The journal to publish.
+     */
+    public LedgerEventStream(MutationJournal journal) {
+        this(journal, ForkJoinPool.commonPool(), 1_024, 256);
+    }
+
+    /**
+     * Creates a stream over a journal.
+     *
+     * @param journal      The journal to publish.
+     * @param executor     Runs deliveries to subscribers.
+     * @param bufferSize   How many undelivered events to buffer per subscriber.
+     * @param maxBatchSize The most events delivered in one batch.
+     */
+    public LedgerEventStream(MutationJournal journal, Executor executor, int bufferSize, int maxBatchSize) {
+        if (bufferSize < 1 || maxBatchSize < 1) {
+            throw new IllegalArgumentException("Buffer and batch sizes must be positive.");
+        }
+        this.journal = journal;
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+        this.maxBatchSize = maxBatchSize;
+        this.subscriptions = new CopyOnWriteArrayList<>();
+        this.listener = this::publish;
+        journal.addListener(listener);
+    }
+
+    /**
+     * Subscribes to events appended from now on.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<LedgerEvent>> subscriber) {
+        subscribe(subscriber, -1);
+    }
+
+    /**
+     * Subscribes to events after a given sequence number, replaying those
+     * still retained by the journal before continuing with new ones.
+     *
+     * @param subscriber    The subscriber.
+     * @param afterSequence The last sequence number the subscriber has seen.
+     */
+    public void subscribe(Flow.Subscriber<? super List<LedgerEvent>> subscriber, long afterSequence) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber cannot be null.");
+        }
+        StreamSubscription subscription = new StreamSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        // Holding the journal lock keeps events from being appended while the start point is chosen.
+        synchronized (journal) {
+            if (closed) {
+                subscription.complete();
+                return;
+            }
+            long head = journal.headSequence();
+            long start = afterSequence < 0 ? head : Math.min(afterSequence, head);
+            subscription.start(start, start < head);
+            subscriptions.add(subscription);
+        }
+        subscription.schedule();
+    }
+
+    /**
+     * Retrieves the sequence number of the newest event the journal no
+     * longer retains, so that a subscriber that fell behind can resume after
+     * it.
+     *
+     * @return The last truncated sequence number, or the one before the first event ever appended.
+     */
+    public long getTruncatedSequence() {
+        synchronized (journal) {
+            return journal.headSequence() - journal.size();
+        }
+    }
+
+    /**
+     * Retrieves the number of current subscribers.
+     *
+     * @return The subscriber count.
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Stops publishing. Subscribers receive the events already buffered for
+     * them and then complete.
+     */
+    @Override
+    public void close() {
+        synchronized (journal) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            journal.removeListener(listener);
+        }
+        for (StreamSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    /**
+     * Copies an appended event to every subscriber. Runs under the journal
+     * lock on the thread that changed the bank.
+     */
+    private void publish(LedgerEvent event) {
+        for (StreamSubscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    /**
+     * One subscriber's buffer, demand and delivery state. Deliveries are
+     * serialized by a work-in-progress counter, so at most one executor task
+     * signals the subscriber at a time.
+     */
+    private final class StreamSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super List<LedgerEvent>> subscriber;
+
+        /** Buffered events, oldest at {@code head}; guarded by {@code this}. */
+        private final LedgerEvent[] buffer;
+        private int head;
+        private int count;
+
+        /**
+         * The sequence number of the newest event buffered or delivered;
+         * guarded by {@code this}.
+         */
+        private long lastSequence;
+
+        /**
+         * Whether the buffer overflowed and missed events must be read back
+         * from the journal; guarded by {@code this}.
+         */
+        private boolean catchingUp;
+
+        /** The sequence number of the newest event delivered; touched only while draining. */
+        private long delivered;
+
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger workInProgress = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile boolean completed;
+        private volatile Throwable failure;
+
+        StreamSubscription(Flow.Subscriber<? super List<LedgerEvent>> subscriber) {
+            this.subscriber = subscriber;
+            this.buffer = new LedgerEvent[bufferSize];
+        }
+
+        /**
+         * Sets where delivery starts, before the subscription is published
+         * to the journal listener.
+         */
+        synchronized void start(long afterSequence, boolean replay) {
+            lastSequence = afterSequence;
+            delivered = afterSequence;
+            catchingUp = replay;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                failure = new IllegalArgumentException("Demand must be positive, got " + n + ".");
+            } else {
+                demand.getAndAccumulate(n,
+                        (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        void offer(LedgerEvent event) {
+            synchronized (this) {
+                if (cancelled || event.getSequence() <= lastSequence) {
+                    return;
+                }
+                lastSequence = event.getSequence();
+                if (catchingUp) {
+                    return;
+                }
+                if (count == buffer.length) {
+                    // Drop the buffer and read everything undelivered back from the journal instead.
+                    catchingUp = true;
+                    clear();
+                    return;
+                }
+                buffer[(head + count) % buffer.length] = event;
+                count++;
+            }
+            if (demand.get() > 0) {
+                schedule();
+            }
+        }
+
+        void complete() {
+            completed = true;
+            schedule();
+        }
+
+        void schedule() {
+            if (workInProgress.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                while (!cancelled) {
+                    if (failure != null) {
+                        cancel();
+                        subscriber.onError(failure);
+                        break;
+                    }
+                    boolean done = completed;
+                    List<LedgerEvent> batch;
+                    if (demand.get() == 0) {
+                        if (done && isDrained()) {
+                            cancel();
+                            subscriber.onComplete();
+                        }
+                        break;
+                    }
+                    try {
+                        batch = nextBatch();
+                    } catch (IllegalStateException e) {
+                        cancel();
+                        subscriber.onError(new IllegalStateException("Subscriber fell behind the journal: "
+                                + e.getMessage(), e));
+                        break;
+                    }
+                    if (batch.isEmpty()) {
+                        if (done) {
+                            cancel();
+                            subscriber.onComplete();
+                        }
+                        break;
+                    }
+                    if (demand.get() != Long.MAX_VALUE) {
+                        demand.decrementAndGet();
+                    }
+                    delivered = batch.get(batch.size() - 1).getSequence();
+                    try {
+                        subscriber.onNext(batch);
+                    } catch (RuntimeException e) {
+                        // A subscriber that throws has broken its contract; stop delivering to it.
+                        cancel();
+                        break;
+                    }
+                }
+                missed = workInProgress.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private synchronized boolean isDrained() {
+            return count == 0 && !catchingUp;
+        }
+
+        /**
+         * Takes the next batch of undelivered events from the buffer, or from
+         * the journal while catching up.
+         */
+        private List<LedgerEvent> nextBatch() {
+            synchronized (this) {
+                if (!catchingUp) {
+                    int size = Math.min(count, maxBatchSize);
+                    List<LedgerEvent> batch = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        batch.add(buffer[head]);
+                        buffer[head] = null;
+                        head = (head + 1) % buffer.length;
+                    }
+                    count -= size;
+                    return batch;
+                }
+            }
+            // Nothing is appended while the journal lock is held, so an incomplete read means caught up.
+            synchronized (journal) {
+                List<LedgerEvent> batch = journal.readAfter(delivered, maxBatchSize);
+                if (batch.size() < maxBatchSize) {
+                    synchronized (this) {
+                        catchingUp = false;
+                        lastSequence = Math.max(lastSequence, journal.headSequence());
+                    }
+                }
+                return batch.isEmpty() ? Collections.emptyList() : batch;
+            }
+        }
+
+        private void clear() {
+            for (int i = 0; i < count; i++) {
+                buffer[(head + i) % buffer.length] = null;
+            }
+            head = 0;
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package bankapp;
+
+/**
+ * Enum representing the kinds of mutations a {@link Bank} records in its
+ * {@link MutationJournal}. Each type corresponds to one observable change
+ * to users, accounts or balances.
+ */
+public enum LedgerEventType {
+
+    /** A new user (or admin) was registered with the bank. */
+    USER_REGISTERED,
+
+    /** A bank account was opened for, or attached to, a registered user. */
+    ACCOUNT_OPENED,
+
+    /** A bank account was removed from a registered user. */
+    ACCOUNT_CLOSED,
+
+    /** Money was deposited into an account. */
+    DEPOSIT,
+
+    /** Money was withdrawn from an account. */
+    WITHDRAWAL,
+
+    /** An account balance was overwritten directly; the amount is the new balance. */
+    BALANCE_ADJUSTED,
+
+    /** A withdrawal was attempted but rejected. */
+    FAILED_WITHDRAWAL,
+
+    /** Money moved from one user's current account to another's. */
+    TRANSFER;
+
+    /**
+     * Indicates whether events of this type change an account balance.
+     *
+     * @return true for deposits, withdrawals, adjustments and transfers.
+     */
+    public boolean changesBalance() {
+        return this == DEPOSIT || this == WITHDRAWAL || this == BALANCE_ADJUSTED || this == TRANSFER;
+    }
+}
@@ -0,0 +1,18 @@
+package bankapp;
+
+/**
+ * Callback notified synchronously each time a {@link MutationJournal} appends
+ * an event, on the thread that performed the mutation. Listeners added with
+ * {@link MutationJournal#addListener} run under the journal lock and must be
+ * quick; slower ones, such as storage writes, are added with
+ * {@link MutationJournal#addOrderedListener}.
+ */
+public interface LedgerListener {
+
+    /**
+     * Called after an event has been appended to the journal.
+     *
+     * @param event The sequenced event.
+     */
+    void onEvent(LedgerEvent event);
+}
@@ -0,0 +1,234 @@
+package bankapp;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+
+/**
+ * Tracks usage of a single {@link LimitRule} and rolls its window over
+ * automatically as time passes. Every operation is O(1): calendar windows
+ * cache their current boundaries, and sliding windows are a fixed ring of
+ * sub-buckets (a small timing wheel) with a running total.
+ */
+abstract class LimitCounter {
+
+    /** The rule this counter enforces. */
+    final LimitRule rule;
+
+    LimitCounter(LimitRule rule) {
+        this.rule = rule;
+    }
+
+    /**
+     * Creates the counter appropriate for a rule's window.
+     *
+     * @param rule The rule to track.
+     * @param zone The time zone calendar windows roll over in.
+     * @return A new counter with no usage.
+     */
+    static LimitCounter forRule(LimitRule rule, ZoneId zone) {
+        if (rule.getWindow().getType() == LimitWindow.Type.SLIDING) {
+            return new Sliding(rule);
+        }
+        return new Calendar(rule, zone);
+    }
+
+    /**
+     * Uses part of the limit if enough remains in the current window.
+     *
+     * @param usage The usage to add (1 for count rules, the amount otherwise).
+     * @param now   The current time in epoch milliseconds.
+     * @return true if the usage was recorded, false if it would exceed the limit.
+     */
+    synchronized boolean tryAcquire(double usage, long now) {
+        roll(now);
+        if (total() + usage > rule.getMaximum()) {
+            return false;
+        }
+        add(usage);
+        return true;
+    }
+
+    /**
+     * Gives back usage recorded by a withdrawal that did not go through,
+     * from the window or sub-bucket it was recorded in. Usage that has
+     * already expired is not given back again.
+     *
+     * @param usage      The usage to remove.
+     * @param acquiredAt When the usage was recorded, in epoch milliseconds.
+     * @param now        The current time in epoch milliseconds.
+     */
+    synchronized void release(double usage, long acquiredAt, long now) {
+        roll(now);
+        remove(usage, acquiredAt);
+    }
+
+    /**
+     * Records usage carried over from a counter this one replaces.
+     *
+     * @param usage The usage to add.
+     * @param now   The current time in epoch milliseconds.
+     */
+    synchronized void seed(double usage, long now) {
+        roll(now);
+        add(usage);
+    }
+
+    /**
+     * Returns the usage within the current window.
+     *
+     * @param now The current time in epoch milliseconds.
+     * @return The used portion of the limit.
+     */
+    synchronized double used(long now) {
+        roll(now);
+        return total();
+    }
+
+    /**
+     * Clears all usage in the current window.
+     */
+    abstract void reset();
+
+    /** Advances the window to the given time, discarding expired usage. */
+    abstract void roll(long now);
+
+    /** Returns usage in the current window. */
+    abstract double total();
+
+    /** Adds usage to the current window. */
+    abstract void add(double usage);
+
+    /** Removes usage recorded at the given time, if its window has not expired. */
+    abstract void remove(double usage, long acquiredAt);
+
+    /**
+     * A counter for calendar day or month windows. The current window's
+     * boundaries are cached so that roll-over checks are two comparisons.
+     */
+    private static class Calendar extends LimitCounter {
+        private final ZoneId zone;
+        private long windowStart;
+        private long windowEnd;
+        private double used;
+
+        Calendar(LimitRule rule, ZoneId zone) {
+            super(rule);
+            this.zone = zone;
+            this.windowStart = Long.MAX_VALUE;
+            this.windowEnd = Long.MIN_VALUE;
+        }
+
+        @Override
+        void roll(long now) {
+            if (now >= windowStart && now < windowEnd) {
+                return;
+            }
+            LocalDate today = Instant.ofEpochMilli(now).atZone(zone).toLocalDate();
+            LocalDate start = rule.getWindow().getType() == LimitWindow.Type.CALENDAR_MONTH
+                    ? today.withDayOfMonth(1) : today;
+            LocalDate end = rule.getWindow().getType() == LimitWindow.Type.CALENDAR_MONTH
+                    ? start.plusMonths(1) : start.plusDays(1);
+            long newStart = ZonedDateTime.of(start.atStartOfDay(), zone).toInstant().toEpochMilli();
+            // Only a move into a later window clears usage; a clock stepping backwards keeps it.
+            if (newStart > windowStart || windowStart == Long.MAX_VALUE) {
+                used = 0;
+            }
+            windowStart = newStart;
+            windowEnd = ZonedDateTime.of(end.atStartOfDay(), zone).toInstant().toEpochMilli();
+        }
+
+        @Override
+        synchronized void reset() {
+            used = 0;
+        }
+
+        @Override
+        double total() {
+            return used;
+        }
+
+        @Override
+        void add(double usage) {
+            used += usage;
+        }
+
+        @Override
+        void remove(double usage, long acquiredAt) {
+            if (acquiredAt >= windowStart && acquiredAt < windowEnd) {
+                used -= Math.min(usage, used);
+            }
+        }
+    }
+
+    /**
+     * A counter for sliding windows, kept as a ring of sub-buckets each
+     * covering 1/{@value #BUCKETS} of the window.
+     */
+    private static class Sliding extends LimitCounter {
+        private static final int BUCKETS = 64;
+
+        private final long bucketMillis;
+        private final double[] buckets;
+        private long currentBucket;
+        private double total;
+
+        Sliding(LimitRule rule) {
+            super(rule);
+            this.bucketMillis = Math.max(1, rule.getWindow().getLengthMillis() / BUCKETS);
+            this.buckets = new double[BUCKETS];
+            this.currentBucket = Long.MIN_VALUE;
+        }
+
+        @Override
+        void roll(long now) {
+            long bucket = now / bucketMillis;
+            if (bucket <= currentBucket) {
+                return;
+            }
+            if (currentBucket == Long.MIN_VALUE || bucket - currentBucket >= BUCKETS) {
+                Arrays.fill(buckets, 0);
+                total = 0;
+            } else {
+                for (long expired = currentBucket + 1; expired <= bucket; expired++) {
+                    int slot = (int) Math.floorMod(expired, (long) BUCKETS);
+                    total -= buckets[slot];
+                    buckets[slot] = 0;
+                }
+            }
+            currentBucket = bucket;
+        }
+
+        @Override
+        synchronized void reset() {
+            Arrays.fill(buckets, 0);
+            total = 0;
+        }
+
+        @Override
+        double total() {
+            return total;
+        }
+
+        @Override
+        void add(double usage) {
+            int slot = (int) Math.floorMod(currentBucket, (long) BUCKETS);
+            buckets[slot] += usage;
+            total += usage;
+        }
+
+        @Override
+        void remove(double usage, long acquiredAt) {
+            long bucket = acquiredAt / bucketMillis;
+            if (bucket > currentBucket || currentBucket - bucket >= BUCKETS) {
+                return;
+            }
+            int slot = (int) Math.floorMod(bucket, (long) BUCKETS);
+            double removed = Math.min(usage, buckets[slot]);
+            buckets[slot] -= removed;
+            total -= removed;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package bankapp;
+
+/**
+ * A limit on withdrawals within a {@link LimitWindow}, measured either as
+ * the number of withdrawals or the total amount withdrawn.
+ */
+public class LimitRule {
+
+    /**
+     * What a limit rule measures.
+     */
+    public enum Kind {
+        /** The number of withdrawals. */
+        COUNT,
+        /** The total amount withdrawn. */
+        AMOUNT
+    }
+
+    private final Kind kind;
+    private final double maximum;
+    private final LimitWindow window;
+
+    private LimitRule(Kind kind, double maximum, LimitWindow window) {
+        if (maximum < 0) {
+            throw new IllegalArgumentException("Limit maximum cannot be negative.");
+        }
+        if (window == null) {
+            throw new IllegalArgumentException("Limit window must be provided.");
+        }
+        this.kind = kind;
+        this.maximum = maximum;
+        this.window = window;
+    }
+
+    /**
+     * Creates a rule limiting the number of withdrawals per window.
+     *
+     * @param maxWithdrawals The maximum number of withdrawals.
+     * @param window         The window the count is measured over.
+     * @return The count rule.
+     */
+    public static LimitRule count(int maxWithdrawals, LimitWindow window) {
+        return new LimitRule(Kind.COUNT, maxWithdrawals, window);
+    }
+
+    /**
+     * Creates a rule limiting the total amount withdrawn per window.
+     *
+     * @param maxAmount The maximum total amount.
+     * @param window    The window the amount is measured over.
+     * @return The amount rule.
+     */
+    public static LimitRule amount(double maxAmount, LimitWindow window) {
+        return new LimitRule(Kind.AMOUNT, maxAmount, window);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public double getMaximum() {
+        return maximum;
+    }
+
+    public LimitWindow getWindow() {
+        return window;
+    }
+
+    /**
+     * Returns how much of this limit a withdrawal of the given amount uses.
+     *
+     * @param amount The withdrawal amount.
+     * @return 1 for count rules, otherwise the amount.
+     */
+    double usageOf(double amount) {
+        return kind == Kind.COUNT ? 1 : amount;
+    }
+}
@@ -0,0 +1,89 @@
+package bankapp;
+
+import java.time.Duration;
+
+/**
+ * The period over which a {@link LimitRule} accumulates usage: either a
+ * calendar period that rolls over at midnight or on the first of the month,
+ * or a sliding window of fixed length ending at the current time.
+ */
+public class LimitWindow {
+
+    /**
+     * The kinds of window a limit can be measured over.
+     */
+    public enum Type {
+        /** Resets at midnight each day. */
+        CALENDAR_DAY,
+        /** Resets at midnight on the first of each month. */
+        CALENDAR_MONTH,
+        /** Covers a fixed duration ending now. */
+        SLIDING
+    }
+
+    private final Type type;
+    private final long lengthMillis;
+
+    private LimitWindow(Type type, long lengthMillis) {
+        this.type = type;
+        this.lengthMillis = lengthMillis;
+    }
+
+    /**
+     * Creates a window that resets at midnight each day.
+     *
+     * @return The calendar day window.
+     */
+    public static LimitWindow calendarDay() {
+        return new LimitWindow(Type.CALENDAR_DAY, 0);
+    }
+
+    /**
+     * Creates a window that resets at the start of each month.
+     *
+     * @return The calendar month window.
+     */
+    public static LimitWindow calendarMonth() {
+        return new LimitWindow(Type.CALENDAR_MONTH, 0);
+    }
+
+    /**
+     * Creates a window covering the given duration up to the current time.
+     *
+     * @param length The window length; must be positive.
+     * @return The sliding window.
+     * @throws IllegalArgumentException if the length is not positive.
+     */
+    public static LimitWindow sliding(Duration length) {
+        if (length == null || length.toMillis() <= 0) {
+            throw new IllegalArgumentException("Sliding window length must be positive.");
+        }
+        return new LimitWindow(Type.SLIDING, length.toMillis());
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the length of a sliding window.
+     *
+     * @return The length in milliseconds, or 0 for calendar windows.
+     */
+    public long getLengthMillis() {
+        return lengthMillis;
+    }
+
+    /**
+     * Describes the window for use in error messages, e.g. "this month".
+     *
+     * @return A short human-readable description.
+     */
+    public String describe() {
+        return switch (type) {
+            case CALENDAR_DAY -> "today";
+            case CALENDAR_MONTH -> "this month";
+            case SLIDING -> "the last " + Duration.ofMillis(lengthMillis).toString().substring(2).toLowerCase();
+        };
+    }
+}
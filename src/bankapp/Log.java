@@ -1,27 +1,278 @@
 package bankapp;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
 public class Log {
     private ArrayList<Transaction> transactions;
+    private final BankClock clock;
+    private final ZoneId zone;
+
+    /** Rollups per calendar day and month, updated as transactions are added. */
+    private final TreeMap<LocalDate, LogRollup> daily;
+    private final TreeMap<YearMonth, LogRollup> monthly;
+
+    /** The rollups new transactions most recently fell into, to skip date arithmetic on the common path. */
+    private LogRollup currentDay;
+    private LogRollup currentMonth;
+
+    /**
+     * The balance after the last balance-aware transaction, or NaN if none
+     * has been recorded. Balance changes are added to it, starting from zero.
+     */
+    private double lastBalance;
 
     public Log() {
-        transactions = new ArrayList<>();
+        this(BankClock.system());
+    }
+
+    /**
+     * Creates an empty log that stamps transactions using the given clock.
+     *
+     * @param clock The clock transactions are timestamped with.
+     */
+    public Log(BankClock clock) {
+        this(clock, ZoneId.systemDefault());
+    }
+
+    /**
+     * Creates an empty log that stamps transactions using the given clock and
+     * rolls them up by day and month in the given time zone.
+     *
+     * @param clock The clock transactions are timestamped with.
+     * @param zone  The time zone that decides where days and months begin.
+     */
+    public Log(BankClock clock, ZoneId zone) {
+        this.transactions = new ArrayList<>();
+        this.clock = clock;
+        this.zone = zone;
+        this.daily = new TreeMap<>();
+        this.monthly = new TreeMap<>();
+        this.lastBalance = Double.NaN;
     }
 
-    public void addTransaction(String type, double amount) {
+    public synchronized void addTransaction(String type, double amount) {
     	if (amount < 0) {
             throw new IllegalArgumentException("Transaction amount cannot be negative.");
         }
-    	Transaction transaction = new Transaction(type, amount);
+    	Transaction transaction = new Transaction(type, amount, clock.currentTimeMillis());
     	transactions.add(transaction);
+    	long at = transaction.getTimestampMillis();
+    	dayOf(at).addTransaction(type, amount);
+    	monthOf(at).addTransaction(type, amount);
+    }
+
+    /**
+     * Adds a transaction along with the account balance it left behind, so
+     * that rollups can track opening, closing, minimum and average balances.
+     *
+     * @param type         The transaction type, such as "Deposit".
+     * @param amount       The transaction amount.
+     * @param balanceAfter The account balance after the transaction.
+     */
+    public synchronized void addTransaction(String type, double amount, double balanceAfter) {
+        addTransaction(type, amount);
+        long at = transactions.get(transactions.size() - 1).getTimestampMillis();
+        double before = lastBalance;
+        if (Double.isNaN(before)) {
+            before = "Deposit".equals(type) ? balanceAfter - amount
+                    : "Withdrawal".equals(type) ? balanceAfter + amount : balanceAfter;
+        }
+        recordBalance(before, balanceAfter, at);
+    }
+
+    /**
+     * Adds a transaction that changed the account balance by the given
+     * amount. The balance it left behind is taken from the log's own running
+     * balance rather than from the caller. Concurrent changes may be logged
+     * in a different order than they were applied. Even so, the rollups see
+     * a sequence of balances that adds up and closes at the account's
+     * balance.
+     *
+     * @param type   The transaction type, such as "Deposit".
+     * @param amount The transaction amount.
+     * @param change The signed change to the balance, such as minus the amount for a withdrawal.
+     */
+    public synchronized void addBalanceChange(String type, double amount, double change) {
+        addTransaction(type, amount);
+        long at = transactions.get(transactions.size() - 1).getTimestampMillis();
+        double before = runningBalance();
+        recordBalance(before, before + change, at);
+    }
+
+    /**
+     * Records a signed change to the running balance that is not itself a
+     * transaction, such as an administrative adjustment.
+     *
+     * @param change The signed change to the balance.
+     */
+    public synchronized void recordBalanceChange(double change) {
+        double before = runningBalance();
+        recordBalance(before, before + change, clock.currentTimeMillis());
+    }
+
+    /**
+     * Records a balance change that is not itself a transaction, such as an
+     * administrative adjustment.
+     *
+     * @param balance The new balance.
+     */
+    public synchronized void recordBalance(double balance) {
+        double before = Double.isNaN(lastBalance) ? balance : lastBalance;
+        recordBalance(before, balance, clock.currentTimeMillis());
+    }
+
+    /**
+     * Appends a transaction restored from storage, keeping its original
+     * timestamp. Its counts are rolled up, but balances are only known again
+     * from the next balance-aware transaction on.
+     *
+     * @param transaction The stored transaction.
+     */
+    synchronized void restore(Transaction transaction) {
+        transactions.add(transaction);
+        long at = transaction.getTimestampMillis();
+        dayOf(at).addTransaction(transaction.getType(), transaction.getAmount());
+        monthOf(at).addTransaction(transaction.getType(), transaction.getAmount());
+    }
+
+    /**
+     * Returns the transactions after the first few.
+     *
+     * @param from The number of transactions to skip.
+     * @return A copy of the later transactions.
+     */
+    synchronized List<Transaction> getTransactionsFrom(int from) {
+        return new ArrayList<>(transactions.subList(Math.min(from, transactions.size()), transactions.size()));
+    }
+
+    public synchronized ArrayList<Transaction> getTransactions() {
+        return new ArrayList<>(transactions);
+    }
+
+    /**
+     * Returns the number of transactions logged.
+     *
+     * @return The transaction count.
+     */
+    public synchronized int size() {
+        return transactions.size();
+    }
+
+    /**
+     * Counts the logged transactions of one type without copying the log.
+     *
+     * @param type The transaction type, such as "Withdrawal".
+     * @return The number of matching transactions.
+     */
+    public synchronized int countOfType(String type) {
+        int count = 0;
+        for (Transaction transaction : transactions) {
+            if (transaction.getType().equals(type)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the rollup of one day's transactions.
+     *
+     * @param day The calendar day.
+     * @return A copy of the day's rollup, or null if nothing was logged that day.
+     */
+    public synchronized LogRollup getDailyRollup(LocalDate day) {
+        LogRollup rollup = daily.get(day);
+        return rollup != null ? rollup.copy() : null;
+    }
+
+    /**
+     * Returns the rollup of one month's transactions.
+     *
+     * @param month The calendar month.
+     * @return A copy of the month's rollup, or null if nothing was logged that month.
+     */
+    public synchronized LogRollup getMonthlyRollup(YearMonth month) {
+        LogRollup rollup = monthly.get(month);
+        return rollup != null ? rollup.copy() : null;
     }
 
-    public ArrayList<Transaction> getTransactions() {
-        return transactions;
+    /**
+     * Combines the daily rollups of a range of days. The cost depends on the
+     * number of days with activity, not on the number of transactions.
+     *
+     * @param from  The first day, inclusive.
+     * @param until The last day, exclusive.
+     * @return A rollup covering the range; empty if nothing was logged.
+     */
+    public synchronized LogRollup summarize(LocalDate from, LocalDate until) {
+        LogRollup summary = new LogRollup(startOf(from), startOf(until));
+        for (LogRollup day : daily.subMap(from, until).values()) {
+            summary.merge(day);
+        }
+        return summary;
     }
 
-    public void printTransactions() {
+    /**
+     * Computes the time-weighted average balance over a range of days, from
+     * the balances recorded with each transaction. Days without activity
+     * count at the balance carried into them, and a range reaching into the
+     * future is averaged only up to the current time.
+     *
+     * @param from  The first day, inclusive.
+     * @param until The last day, exclusive.
+     * @return The average daily balance, or 0 if the range has not begun.
+     */
+    public synchronized double averageDailyBalance(LocalDate from, LocalDate until) {
+        long start = startOf(from);
+        long end = Math.min(startOf(until), clock.currentTimeMillis());
+        if (end <= start) {
+            return 0;
+        }
+        double carried = balanceBefore(daily.headMap(from, false));
+        double total = 0;
+        long cursor = start;
+        for (LogRollup day : daily.subMap(from, until).values()) {
+            if (!day.hasBalance() || day.getStartMillis() >= end) {
+                continue;
+            }
+            total += carried * (day.getStartMillis() - cursor);
+            total += day.balanceMillisUntil(end);
+            carried = day.getClosingBalance();
+            cursor = Math.min(day.getEndMillis(), end);
+        }
+        total += carried * (end - cursor);
+        return total / (end - start);
+    }
+
+    /**
+     * Computes the time-weighted average balance over a calendar month in
+     * constant time from the month's rollup. A month still in progress is
+     * averaged up to the current time.
+     *
+     * @param month The calendar month.
+     * @return The average daily balance, or 0 if the month has not begun.
+     */
+    public synchronized double averageDailyBalance(YearMonth month) {
+        long start = startOf(month.atDay(1));
+        long end = Math.min(startOf(month.plusMonths(1).atDay(1)), clock.currentTimeMillis());
+        if (end <= start) {
+            return 0;
+        }
+        LogRollup rollup = monthly.get(month);
+        if (rollup != null && rollup.hasBalance()) {
+            return rollup.balanceMillisUntil(end) / (end - start);
+        }
+        return balanceBefore(monthly.headMap(month, false));
+    }
+
+    public synchronized void printTransactions() {
         if (transactions.isEmpty()) {
             System.out.println("No transactions found.");
         } else {
@@ -30,4 +281,53 @@ public class Log {
             }
         }
     }
+
+    /**
+     * Finds the closing balance of the latest rollup that recorded one.
+     */
+    private static double balanceBefore(NavigableMap<?, LogRollup> earlier) {
+        for (LogRollup rollup : earlier.descendingMap().values()) {
+            if (rollup.hasBalance()) {
+                return rollup.getClosingBalance();
+            }
+        }
+        return 0;
+    }
+
+    private double runningBalance() {
+        return Double.isNaN(lastBalance) ? 0 : lastBalance;
+    }
+
+    private void recordBalance(double before, double after, long at) {
+        dayOf(at).recordBalance(before, after, at);
+        monthOf(at).recordBalance(before, after, at);
+        lastBalance = after;
+    }
+
+    private LogRollup dayOf(long at) {
+        LogRollup day = currentDay;
+        if (day != null && at >= day.getStartMillis() && at < day.getEndMillis()) {
+            return day;
+        }
+        LocalDate date = Instant.ofEpochMilli(at).atZone(zone).toLocalDate();
+        day = daily.computeIfAbsent(date, d -> new LogRollup(startOf(d), startOf(d.plusDays(1))));
+        currentDay = day;
+        return day;
+    }
+
+    private LogRollup monthOf(long at) {
+        LogRollup month = currentMonth;
+        if (month != null && at >= month.getStartMillis() && at < month.getEndMillis()) {
+            return month;
+        }
+        YearMonth yearMonth = YearMonth.from(Instant.ofEpochMilli(at).atZone(zone));
+        month = monthly.computeIfAbsent(yearMonth,
+                m -> new LogRollup(startOf(m.atDay(1)), startOf(m.plusMonths(1).atDay(1))));
+        currentMonth = month;
+        return month;
+    }
+
+    private long startOf(LocalDate day) {
+        return day.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
 }
@@ -0,0 +1,224 @@
+package bankapp;
+
+/**
+ * Running totals for the transactions a {@link Log} recorded during one
+ * period, such as a day or a month. Rollups are updated in constant time as
+ * each transaction is added, so period summaries never rescan the log.
+ * <p>
+ * Balance figures are known only for transactions logged with the balance
+ * they left behind; {@link #hasBalance()} reports whether any were.
+ */
+public class LogRollup {
+
+    private final long startMillis;
+    private final long endMillis;
+
+    private int count;
+    private int depositCount;
+    private double depositTotal;
+    private int withdrawalCount;
+    private double withdrawalTotal;
+    private int otherCount;
+    private double otherTotal;
+
+    private boolean hasBalance;
+    private double openingBalance;
+    private double closingBalance;
+    private double minBalance;
+    private double maxBalance;
+    private long lastChangeMillis;
+
+    /** Integral of the balance over time from the period start to the last change, in dollar-milliseconds. */
+    private double balanceMillis;
+
+    LogRollup(long startMillis, long endMillis) {
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+    }
+
+    /**
+     * Returns an independent copy, so callers cannot observe later updates.
+     * Called with the owning log's lock held.
+     */
+    LogRollup copy() {
+        LogRollup copy = new LogRollup(startMillis, endMillis);
+        copy.count = count;
+        copy.depositCount = depositCount;
+        copy.depositTotal = depositTotal;
+        copy.withdrawalCount = withdrawalCount;
+        copy.withdrawalTotal = withdrawalTotal;
+        copy.otherCount = otherCount;
+        copy.otherTotal = otherTotal;
+        copy.hasBalance = hasBalance;
+        copy.openingBalance = openingBalance;
+        copy.closingBalance = closingBalance;
+        copy.minBalance = minBalance;
+        copy.maxBalance = maxBalance;
+        copy.lastChangeMillis = lastChangeMillis;
+        copy.balanceMillis = balanceMillis;
+        return copy;
+    }
+
+    /**
+     * Counts a transaction.
+     */
+    void addTransaction(String type, double amount) {
+        count++;
+        if ("Deposit".equals(type)) {
+            depositCount++;
+            depositTotal += amount;
+        } else if ("Withdrawal".equals(type)) {
+            withdrawalCount++;
+            withdrawalTotal += amount;
+        } else {
+            otherCount++;
+            otherTotal += amount;
+        }
+    }
+
+    /**
+     * Records the balance changing at the given time.
+     *
+     * @param openingBalance The balance at the start of the period, used if this is its first balance change.
+     * @param balance        The balance after the change.
+     * @param atMillis       When the balance changed.
+     */
+    void recordBalance(double openingBalance, double balance, long atMillis) {
+        long at = Math.max(startMillis, Math.min(endMillis, atMillis));
+        if (!hasBalance) {
+            hasBalance = true;
+            this.openingBalance = openingBalance;
+            minBalance = Math.min(openingBalance, balance);
+            maxBalance = Math.max(openingBalance, balance);
+            balanceMillis = openingBalance * (at - startMillis);
+        } else {
+            // Appends racing on the log lock may arrive slightly out of time order.
+            balanceMillis += closingBalance * Math.max(0, at - lastChangeMillis);
+            minBalance = Math.min(minBalance, balance);
+            maxBalance = Math.max(maxBalance, balance);
+        }
+        closingBalance = balance;
+        lastChangeMillis = Math.max(lastChangeMillis, at);
+    }
+
+    /**
+     * Folds a later period into this one.
+     */
+    void merge(LogRollup later) {
+        count += later.count;
+        depositCount += later.depositCount;
+        depositTotal += later.depositTotal;
+        withdrawalCount += later.withdrawalCount;
+        withdrawalTotal += later.withdrawalTotal;
+        otherCount += later.otherCount;
+        otherTotal += later.otherTotal;
+        if (later.hasBalance) {
+            if (!hasBalance) {
+                hasBalance = true;
+                openingBalance = later.openingBalance;
+                minBalance = later.minBalance;
+                maxBalance = later.maxBalance;
+            } else {
+                minBalance = Math.min(minBalance, later.minBalance);
+                maxBalance = Math.max(maxBalance, later.maxBalance);
+            }
+            closingBalance = later.closingBalance;
+            lastChangeMillis = later.lastChangeMillis;
+        }
+    }
+
+    /**
+     * Returns the integral of the balance over this period up to a time,
+     * assuming the balance held steady after the last change.
+     *
+     * @param untilMillis The end of the integration, clamped to the period.
+     * @return The integral in dollar-milliseconds.
+     */
+    double balanceMillisUntil(long untilMillis) {
+        long until = Math.max(startMillis, Math.min(endMillis, untilMillis));
+        return balanceMillis + closingBalance * Math.max(0, until - lastChangeMillis);
+    }
+
+    /**
+     * Retrieves the start of the period, in epoch milliseconds.
+     *
+     * @return The inclusive period start.
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * Retrieves the end of the period, in epoch milliseconds.
+     *
+     * @return The exclusive period end.
+     */
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    /**
+     * Retrieves the number of transactions in the period.
+     *
+     * @return The transaction count.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public int getDepositCount() {
+        return depositCount;
+    }
+
+    public double getDepositTotal() {
+        return depositTotal;
+    }
+
+    public int getWithdrawalCount() {
+        return withdrawalCount;
+    }
+
+    public double getWithdrawalTotal() {
+        return withdrawalTotal;
+    }
+
+    /**
+     * Retrieves the number of transactions that were neither deposits nor
+     * withdrawals, such as failed withdrawals.
+     *
+     * @return The count of other transactions.
+     */
+    public int getOtherCount() {
+        return otherCount;
+    }
+
+    public double getOtherTotal() {
+        return otherTotal;
+    }
+
+    /**
+     * Retrieves whether any balance was recorded in the period. The balance
+     * getters return 0 when it was not.
+     *
+     * @return true if balance figures are available.
+     */
+    public boolean hasBalance() {
+        return hasBalance;
+    }
+
+    public double getOpeningBalance() {
+        return openingBalance;
+    }
+
+    public double getClosingBalance() {
+        return closingBalance;
+    }
+
+    public double getMinBalance() {
+        return minBalance;
+    }
+
+    public double getMaxBalance() {
+        return maxBalance;
+    }
+}
@@ -0,0 +1,227 @@
+package bankapp;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks failed login attempts per username and per source (for example a
+ * client address) so that brute-force and credential-stuffing attempts are
+ * rejected before any password hashing is done.
+ * <p>
+ * Each key has a failure score that halves every half-life, so a user who
+ * mistypes a password a few times is never locked out for long, while a
+ * sustained attack stays throttled. An attempt is counted as a failure when
+ * it is admitted, in the same step as the check, so concurrent guesses cannot
+ * all pass the check before any of them is counted. Scores live in lock stripes chosen by key
+ * hash, so logins for different users rarely contend. Keys whose score has
+ * decayed away are dropped, which keeps memory bounded by the attack rate.
+ */
+public class LoginThrottle {
+
+    private static final int STRIPES = 64;
+
+    /** Stripes sweep decayed keys when they grow past this many entries. */
+    private static final int SWEEP_THRESHOLD = 1024;
+
+    /** Scores below this are treated as zero and their keys dropped. */
+    private static final double NEGLIGIBLE = 0.05;
+
+    private static final class Score {
+        double value;
+        long updatedAt;
+    }
+
+    private static final class Stripe {
+        final Map<String, Score> scores = new HashMap<>();
+        int sweepAt = SWEEP_THRESHOLD;
+    }
+
+    private final BankClock clock;
+    private final double halfLifeMillis;
+    private final int maxUsernameFailures;
+    private final int maxSourceFailures;
+    private final Stripe[] stripes;
+    private final LongAdder rejected;
+
+    /**
+     * Constructs a throttle.
+     *
+     * @param clock               The clock scores decay by.
+     * @param halfLife            How long a failure takes to count half as much.
+     * @param maxUsernameFailures The decayed failure score at which a username is throttled.
+     * @param maxSourceFailures   The decayed failure score at which a source is throttled.
+     * @throws IllegalArgumentException if the half-life or a threshold is not positive.
+     */
+    public LoginThrottle(BankClock clock, Duration halfLife, int maxUsernameFailures, int maxSourceFailures) {
+        if (halfLife.toMillis() <= 0 || maxUsernameFailures <= 0 || maxSourceFailures <= 0) {
+            throw new IllegalArgumentException("Throttle half-life and thresholds must be positive.");
+        }
+        this.clock = clock;
+        this.halfLifeMillis = halfLife.toMillis();
+        this.maxUsernameFailures = maxUsernameFailures;
+        this.maxSourceFailures = maxSourceFailures;
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.rejected = new LongAdder();
+    }
+
+    /**
+     * Admits an attempt if neither the username nor the source is throttled,
+     * counting it as a failure against both before the password is checked.
+     * Each key is checked and counted atomically, so no more attempts are
+     * admitted than the thresholds allow. A successful login takes the count
+     * back through {@link #recordSuccess(String, String)}.
+     *
+     * @param username The username being logged in to.
+     * @param source   Where the attempt comes from, or null if unknown.
+     * @return true if the attempt may check the password, false if it was rejected as throttled.
+     */
+    public boolean tryAttempt(String username, String source) {
+        long now = clock.currentTimeMillis();
+        String user = usernameKey(username);
+        if (!incrementBelow(user, now, maxUsernameFailures)) {
+            rejected.increment();
+            return false;
+        }
+        if (source != null && !incrementBelow(sourceKey(source), now, maxSourceFailures)) {
+            decrement(user, now);
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Clears a username's failures after a successful login. The source's
+     * failures are kept, since one source may be trying many usernames.
+     *
+     * @param username The username that logged in.
+     */
+    public void recordSuccess(String username) {
+        String key = usernameKey(username);
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            stripe.scores.remove(key);
+        }
+    }
+
+    /**
+     * Clears a username's failures after a successful login that was
+     * admitted by {@link #tryAttempt}, and takes back the attempt it counted
+     * against the source.
+     *
+     * @param username The username that logged in.
+     * @param source   Where the attempt came from, or null if unknown.
+     */
+    public void recordSuccess(String username, String source) {
+        recordSuccess(username);
+        if (source != null) {
+            decrement(sourceKey(source), clock.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Returns the current decayed failure score of a username.
+     *
+     * @param username The username.
+     * @return The failure score.
+     */
+    public double getUsernameScore(String username) {
+        return score(usernameKey(username), clock.currentTimeMillis());
+    }
+
+    /**
+     * Returns how many attempts have been rejected as throttled.
+     *
+     * @return The rejection count.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    private double score(String key, long now) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Score score = stripe.scores.get(key);
+            return score != null ? decayed(score, now) : 0;
+        }
+    }
+
+    private void increment(String key, long now) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Score score = stripe.scores.get(key);
+            if (score == null) {
+                score = new Score();
+                score.updatedAt = now;
+                stripe.scores.put(key, score);
+            }
+            score.value = decayed(score, now) + 1;
+            score.updatedAt = now;
+            if (stripe.scores.size() >= stripe.sweepAt) {
+                sweep(stripe, now);
+            }
+        }
+    }
+
+    private boolean incrementBelow(String key, long now, int max) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Score score = stripe.scores.get(key);
+            if (score != null && decayed(score, now) >= max) {
+                return false;
+            }
+            increment(key, now);
+            return true;
+        }
+    }
+
+    private void decrement(String key, long now) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Score score = stripe.scores.get(key);
+            if (score != null) {
+                score.value = Math.max(0, decayed(score, now) - 1);
+                score.updatedAt = now;
+            }
+        }
+    }
+
+    /**
+     * Drops keys whose score has decayed away. Called with the stripe's lock held.
+     */
+    private void sweep(Stripe stripe, long now) {
+        Iterator<Score> scores = stripe.scores.values().iterator();
+        while (scores.hasNext()) {
+            Score score = scores.next();
+            if (decayed(score, now) < NEGLIGIBLE) {
+                scores.remove();
+            }
+        }
+        // If most keys are still live, wait for the stripe to double before sweeping again.
+        stripe.sweepAt = Math.max(SWEEP_THRESHOLD, stripe.scores.size() * 2);
+    }
+
+    private double decayed(Score score, long now) {
+        long elapsed = Math.max(0, now - score.updatedAt);
+        return score.value * Math.pow(0.5, elapsed / halfLifeMillis);
+    }
+
+    private Stripe stripeFor(String key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    private static String usernameKey(String username) {
+        return "u:" + username;
+    }
+
+    private static String sourceKey(String source) {
+        return "s:" + source;
+    }
+}
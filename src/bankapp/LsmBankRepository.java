@@ -0,0 +1,468 @@
+package bankapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps users, accounts and transaction logs in an {@link LsmStore} on local
+ * disk, so that only the working set of users lives on the heap.
+ * <p>
+ * Each entity has its own keys: {@code u/<username>} holds a user's
+ * password hash and account IDs, {@code a/<id>} an account's balance and
+ * settings, {@code o/<id>} its owner, and {@code t/<id>/<n>} and
+ * {@code f/<id>/<n>} its transactions and failed transactions, and
+ * {@code m/users} the number of users. A balance change therefore rewrites
+ * one small account record and appends the new transactions, whatever the
+ * size of the history.
+ * <p>
+ * Loaded users are kept in two tiers. The frequently used are held
+ * strongly by a {@link TinyLfuCache} bounded by weight, counting one for
+ * each user, account and stored transaction; the rest are held weakly, so a
+ * user stays loaded exactly as long as something still refers to them and
+ * the bank never ends up with two live copies of one user.
+ * <p>
+ * Withdrawal limits are stored with their usage in the account and user
+ * records, which are rewritten on every change to a balance, so a user
+ * read back after being collected is held to the limits they had. Holds
+ * are not stored; a pending hold refers to its account and so keeps the
+ * account's owner loaded until it is settled.
+ */
+public class LsmBankRepository implements BankRepository, Closeable {
+
+    private static final String USER_PREFIX = "u/";
+    private static final String ACCOUNT_PREFIX = "a/";
+    private static final String OWNER_PREFIX = "o/";
+    private static final String TRANSACTION_PREFIX = "t/";
+    private static final String FAILED_PREFIX = "f/";
+    private static final String USER_COUNT_KEY = "m/users";
+
+    private static final long MEMTABLE_LIMIT_BYTES = 4L << 20;
+
+    private final LsmStore store;
+    private final BankClock clock;
+
+    /** Every loaded user, held weakly. */
+    private final ConcurrentHashMap<String, UserReference> loaded;
+    private final ReferenceQueue<User> collected;
+
+    /** The frequently used users, held strongly. */
+    private final TinyLfuCache<String, User> workingSet;
+
+    /** Serializes loading users and registering new ones. */
+    private final Object loadLock;
+
+    private final AtomicInteger size;
+    private final LongAdder loads;
+
+    private volatile MutationJournal journal;
+    private volatile SnapshotCoordinator snapshots;
+
+    /**
+     * A weak reference that remembers which username it was filed under.
+     */
+    private static final class UserReference extends WeakReference<User> {
+        final String username;
+
+        UserReference(User user, ReferenceQueue<User> queue) {
+            super(user, queue);
+            this.username = user.getUsername();
+        }
+    }
+
+    /**
+     * Opens a repository in a directory with a working set weighing up to
+     * 1,000,000 users, accounts and transactions, and a 64 MB block cache.
+     *
+     * @param directory The directory holding the store's files.
+     * @throws IOException If the store cannot be opened.
+     */
+    public LsmBankRepository(Path directory) throws IOException {
+        this(directory, BankClock.system(), 1_000_000, 64L << 20);
+    }
+
+    /**
+     * Opens a repository in a directory.
+     *
+     * @param directory        The directory holding the store's files.
+     * @param clock            The clock restored accounts use.
+     * @param workingSetWeight How many users, accounts and transactions the
+     *                         strongly held users may weigh in total.
+     * @param blockCacheBytes  How many bytes of table blocks to keep cached.
+     * @throws IOException If the store cannot be opened.
+     */
+    public LsmBankRepository(Path directory, BankClock clock, long workingSetWeight, long blockCacheBytes)
+            throws IOException {
+        this.store = new LsmStore(directory, MEMTABLE_LIMIT_BYTES, blockCacheBytes);
+        this.clock = clock;
+        this.loaded = new ConcurrentHashMap<>();
+        this.collected = new ReferenceQueue<>();
+        this.workingSet = new TinyLfuCache<>(workingSetWeight, LsmBankRepository::weigh);
+        this.loadLock = new Object();
+        this.size = new AtomicInteger(storedUserCount());
+        this.loads = new LongAdder();
+    }
+
+    @Override
+    public void open(Bank bank) {
+        this.journal = bank.getJournal();
+        this.snapshots = bank.getSnapshots();
+    }
+
+    @Override
+    public User get(String username) {
+        User user = workingSet.get(username);
+        if (user != null) {
+            return user;
+        }
+        user = loadedUser(username);
+        if (user != null) {
+            workingSet.put(username, user);
+            return user;
+        }
+        synchronized (loadLock) {
+            expungeCollected();
+            user = loadedUser(username);
+            if (user == null) {
+                user = load(username);
+                if (user == null) {
+                    return null;
+                }
+                loads.increment();
+                user.attachLoaded(journal, snapshots);
+                loaded.put(username, new UserReference(user, collected));
+            }
+        }
+        workingSet.put(username, user);
+        return user;
+    }
+
+    @Override
+    public boolean contains(String username) {
+        return loadedUser(username) != null || read(USER_PREFIX + username) != null;
+    }
+
+    @Override
+    public boolean add(User user) {
+        synchronized (loadLock) {
+            if (contains(user.getUsername())) {
+                return false;
+            }
+            Batch batch = new Batch();
+            try {
+                addUser(batch, user);
+                batch.entries.put(USER_COUNT_KEY, encodeCount(size.get() + 1));
+                write(batch);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            expungeCollected();
+            loaded.put(user.getUsername(), new UserReference(user, collected));
+            size.incrementAndGet();
+        }
+        workingSet.put(user.getUsername(), user);
+        return true;
+    }
+
+    @Override
+    public void saveUser(User user) {
+        Batch batch = new Batch();
+        try {
+            addUser(batch, user);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        write(batch);
+        workingSet.reweigh(user.getUsername());
+    }
+
+    @Override
+    public void saveAccounts(BankAccount... accounts) {
+        Batch batch = new Batch();
+        try {
+            for (BankAccount account : accounts) {
+                addAccount(batch, account);
+                // The owner's limits may have counted this change too.
+                User owner = account.getOwner() != null ? loadedUser(account.getOwner()) : null;
+                if (owner != null && !owner.getWithdrawalLimits().isEmpty()) {
+                    batch.entries.put(USER_PREFIX + owner.getUsername(), StorageCodec.encodeUser(owner));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        write(batch);
+        // Each stored transaction adds to its owner's weight in the working set.
+        for (BankAccount account : accounts) {
+            if (account.getOwner() != null) {
+                workingSet.reweigh(account.getOwner());
+            }
+        }
+    }
+
+    @Override
+    public void removeAccount(String username, UUID accountId) {
+        Batch batch = new Batch();
+        batch.entries.put(ACCOUNT_PREFIX + accountId, null);
+        batch.entries.put(OWNER_PREFIX + accountId, null);
+        try {
+            for (String key : store.scan(TRANSACTION_PREFIX + accountId + "/").keySet()) {
+                batch.entries.put(key, null);
+            }
+            for (String key : store.scan(FAILED_PREFIX + accountId + "/").keySet()) {
+                batch.entries.put(key, null);
+            }
+            User owner = get(username);
+            if (owner != null) {
+                batch.entries.put(USER_PREFIX + username, StorageCodec.encodeUser(owner));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        write(batch);
+        workingSet.reweigh(username);
+    }
+
+    @Override
+    public String findOwner(UUID accountId) {
+        byte[] owner = read(OWNER_PREFIX + accountId);
+        return owner != null ? new String(owner, StandardCharsets.UTF_8) : null;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Iterates over every stored user, reading the user records from the
+     * store and loading each user only as it is reached.
+     */
+    @Override
+    public Iterator<User> iterator() {
+        Iterator<Map.Entry<String, byte[]>> records = store.cursor(USER_PREFIX);
+        return new Iterator<User>() {
+            private User next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && records.hasNext()) {
+                    next = get(records.next().getKey().substring(USER_PREFIX.length()));
+                }
+                return next != null;
+            }
+
+            @Override
+            public User next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                User user = next;
+                next = null;
+                return user;
+            }
+        };
+    }
+
+    /**
+     * Retrieves the underlying store, for inspecting its tables and cache.
+     *
+     * @return The store.
+     */
+    public LsmStore getStore() {
+        return store;
+    }
+
+    /**
+     * Retrieves the cache of strongly held users, for its hit rate and
+     * eviction counts.
+     *
+     * @return The user cache.
+     */
+    public TinyLfuCache<String, User> getUserCache() {
+        return workingSet;
+    }
+
+    /**
+     * Retrieves how many users have been read back from the store, as
+     * opposed to found already loaded.
+     *
+     * @return The number of users loaded from storage.
+     */
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    /**
+     * Closes the store. Everything written so far is recovered when the
+     * repository is opened again.
+     */
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+
+    /**
+     * Reads the stored number of users, counting the user records for a
+     * store written before the count was kept.
+     */
+    private int storedUserCount() throws IOException {
+        byte[] count = store.get(USER_COUNT_KEY);
+        if (count != null) {
+            return ByteBuffer.wrap(count).getInt();
+        }
+        int counted = 0;
+        for (Iterator<Map.Entry<String, byte[]>> records = store.cursor(USER_PREFIX); records.hasNext();) {
+            records.next();
+            counted++;
+        }
+        return counted;
+    }
+
+    private static byte[] encodeCount(int count) {
+        return ByteBuffer.allocate(Integer.BYTES).putInt(count).array();
+    }
+
+    private User loadedUser(String username) {
+        UserReference reference = loaded.get(username);
+        return reference != null ? reference.get() : null;
+    }
+
+    /**
+     * Weighs a user by their records in the store: one for the user, and one
+     * for each account and each of its stored transactions. Users are
+     * weighed again each time their records are written.
+     */
+    private static int weigh(User user) {
+        long weight = 1;
+        for (BankAccount account : user.getAllAccounts()) {
+            weight += 1 + account.storedTransactions + account.storedFailedTransactions;
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Drops references to users the garbage collector has reclaimed.
+     */
+    private void expungeCollected() {
+        UserReference reference;
+        while ((reference = (UserReference) collected.poll()) != null) {
+            loaded.remove(reference.username, reference);
+        }
+    }
+
+    private User load(String username) {
+        try {
+            byte[] record = store.get(USER_PREFIX + username);
+            if (record == null) {
+                return null;
+            }
+            StorageCodec.UserRecord user = StorageCodec.decodeUser(record);
+            List<BankAccount> accounts = new ArrayList<>();
+            for (UUID accountId : user.accountIds) {
+                byte[] account = store.get(ACCOUNT_PREFIX + accountId);
+                if (account != null) {
+                    accounts.add(StorageCodec.decodeAccount(accountId, account, clock,
+                            transactions(TRANSACTION_PREFIX + accountId + "/"),
+                            transactions(FAILED_PREFIX + accountId + "/")));
+                }
+            }
+            return StorageCodec.buildUser(username, user, accounts, clock);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<Transaction> transactions(String prefix) throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        for (byte[] transaction : store.scan(prefix).values()) {
+            transactions.add(StorageCodec.decodeTransaction(transaction));
+        }
+        return transactions;
+    }
+
+    private void addUser(Batch batch, User user) throws IOException {
+        batch.entries.put(USER_PREFIX + user.getUsername(), StorageCodec.encodeUser(user));
+        for (BankAccount account : user.getAllAccounts()) {
+            batch.entries.put(OWNER_PREFIX + account.getId(), user.getUsername().getBytes(StandardCharsets.UTF_8));
+            addAccount(batch, account);
+        }
+    }
+
+    /**
+     * Adds an account's record and any transactions not yet stored to a
+     * batch, and arranges for the account's stored counts to advance once
+     * the batch is written.
+     */
+    private void addAccount(Batch batch, BankAccount account) throws IOException {
+        batch.entries.put(ACCOUNT_PREFIX + account.getId(), StorageCodec.encodeAccount(account));
+        int stored = account.storedTransactions;
+        for (Transaction transaction : account.getTransactionsFrom(stored)) {
+            batch.entries.put(transactionKey(TRANSACTION_PREFIX, account.getId(), stored++),
+                    StorageCodec.encodeTransaction(transaction));
+        }
+        int storedFailed = account.storedFailedTransactions;
+        for (Transaction transaction : account.getFailedTransactionsFrom(storedFailed)) {
+            batch.entries.put(transactionKey(FAILED_PREFIX, account.getId(), storedFailed++),
+                    StorageCodec.encodeTransaction(transaction));
+        }
+        int transactions = stored;
+        int failed = storedFailed;
+        batch.onWritten.add(() -> {
+            account.storedTransactions = transactions;
+            account.storedFailedTransactions = failed;
+        });
+    }
+
+    private static String transactionKey(String prefix, UUID accountId, int index) {
+        // Zero-padded so that keys sort in log order.
+        String digits = Integer.toString(index);
+        StringBuilder key = new StringBuilder(prefix.length() + 48).append(prefix).append(accountId).append('/');
+        for (int i = digits.length(); i < 10; i++) {
+            key.append('0');
+        }
+        return key.append(digits).toString();
+    }
+
+    private byte[] read(String key) {
+        try {
+            return store.get(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(Batch batch) {
+        try {
+            store.write(batch.entries);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (Runnable written : batch.onWritten) {
+            written.run();
+        }
+    }
+
+    /**
+     * Writes to apply to the store together, and what to do once they are.
+     */
+    private static final class Batch {
+        final Map<String, byte[]> entries = new LinkedHashMap<>();
+        final List<Runnable> onWritten = new ArrayList<>();
+    }
+}
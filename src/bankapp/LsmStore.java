@@ -0,0 +1,656 @@
+package bankapp;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32C;
+
+/**
+ * An embedded log-structured merge tree mapping string keys to byte values
+ * in a directory of local files.
+ * <p>
+ * Writes are appended to a write-ahead log and applied to an in-memory
+ * sorted memtable. Once the memtable grows past its limit it is written out
+ * as an immutable {@link SSTable} and the log starts afresh; as tables pile
+ * up, the newest are merged into tiers of roughly geometric size. Reads
+ * check the memtable and then the tables from newest to oldest, skipping
+ * tables whose Bloom filter rules the key out and reading blocks through a
+ * shared {@link BlockCache}.
+ * <p>
+ * Writers are serialized; readers never lock and always see a consistent
+ * set of memtable and tables. Writes reach the operating system before
+ * {@link #write} returns but are only forced to the device by {@link #sync()}.
+ * <p>
+ * Each batch is one log record: its length, a CRC32C checksum, and its
+ * entries. Opening the store replays whole batches only, so a batch is
+ * recovered all or nothing. A bad record with no valid one after it is a
+ * write torn by a crash and is cut off the log; damage with valid records
+ * after it fails the open instead.
+ */
+public class LsmStore implements Closeable {
+
+    private static final String WAL_NAME = "wal.log";
+    private static final String TABLE_PREFIX = "table-";
+    private static final String TABLE_SUFFIX = ".sst";
+
+    /** Bytes before each logged batch: its length and checksum. */
+    private static final int WAL_HEADER_BYTES = 8;
+
+    /** A flush that leaves more tables than this merges the newest of them. */
+    private static final int MAX_TABLES = 4;
+
+    /** Approximate per-entry overhead of the memtable, on top of the key and value. */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final Path directory;
+    private final long memtableLimitBytes;
+    private final BlockCache cache;
+
+    /** The memtable and tables readers see; replaced, never modified, by writers. */
+    private volatile State state;
+
+    private FileChannel walChannel;
+    private DataOutputStream wal;
+    private final ByteArrayOutputStream walBatch = new ByteArrayOutputStream();
+    private final DataOutputStream walBatchOut = new DataOutputStream(walBatch);
+    private final CRC32C walChecksum = new CRC32C();
+    private long memtableBytes;
+    private long nextTableId;
+    private boolean closed;
+
+    /**
+     * The memtable and the tables beneath it, newest first.
+     */
+    private static final class State {
+        final ConcurrentSkipListMap<String, byte[]> memtable;
+        final List<SSTable> tables;
+
+        State(ConcurrentSkipListMap<String, byte[]> memtable, List<SSTable> tables) {
+            this.memtable = memtable;
+            this.tables = tables;
+        }
+    }
+
+    /**
+     * Opens the store in a directory, creating it if needed, and recovers any
+     * writes the log holds that had not yet been written to a table.
+     *
+     * @param directory          The directory holding the store's files.
+     * @param memtableLimitBytes How large the memtable may grow before it is written out.
+     * @param blockCacheBytes    How many bytes of table blocks to keep cached.
+     * @throws IOException If the files cannot be read or created.
+     */
+    public LsmStore(Path directory, long memtableLimitBytes, long blockCacheBytes) throws IOException {
+        this.directory = directory;
+        this.memtableLimitBytes = memtableLimitBytes;
+        this.cache = new BlockCache(blockCacheBytes);
+        Files.createDirectories(directory);
+        for (Path temp : list("*.tmp")) {
+            Files.delete(temp);
+        }
+
+        ConcurrentSkipListMap<String, byte[]> memtable = new ConcurrentSkipListMap<>();
+        Path walPath = directory.resolve(WAL_NAME);
+        if (Files.exists(walPath)) {
+            replay(walPath, memtable);
+        }
+
+        List<SSTable> tables = new ArrayList<>();
+        List<Path> tableFiles = list(TABLE_PREFIX + "*" + TABLE_SUFFIX);
+        tableFiles.sort(Collections.reverseOrder((a, b) -> Long.compare(tableId(a), tableId(b))));
+        for (Path file : tableFiles) {
+            long id = tableId(file);
+            tables.add(SSTable.open(id, file, cache));
+            nextTableId = Math.max(nextTableId, id + 1);
+        }
+        this.state = new State(memtable, Collections.unmodifiableList(tables));
+        openWal(StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Looks up a key.
+     *
+     * @param key The key.
+     * @return The value, or null if the key is absent or deleted.
+     * @throws IOException If a table cannot be read.
+     */
+    public byte[] get(String key) throws IOException {
+        while (true) {
+            State current = state;
+            try {
+                byte[] value = current.memtable.get(key);
+                for (int i = 0; value == null && i < current.tables.size(); i++) {
+                    value = current.tables.get(i).get(key);
+                }
+                return value == SSTable.TOMBSTONE ? null : value;
+            } catch (ClosedChannelException e) {
+                // A compaction retired a table mid-read; its data lives on in the newer state.
+                if (current == state) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects every live entry whose key starts with a prefix.
+     *
+     * @param prefix The key prefix.
+     * @return The matching entries in key order.
+     * @throws IOException If a table cannot be read.
+     */
+    public NavigableMap<String, byte[]> scan(String prefix) throws IOException {
+        while (true) {
+            State current = state;
+            try {
+                TreeMap<String, byte[]> found = new TreeMap<>();
+                String end = prefix + Character.MAX_VALUE;
+                found.putAll(current.memtable.subMap(prefix, true, end, true));
+                for (SSTable table : current.tables) {
+                    table.scan(prefix, found);
+                }
+                found.values().removeIf(value -> value == SSTable.TOMBSTONE);
+                return found;
+            } catch (ClosedChannelException e) {
+                if (current == state) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Iterates lazily over every live entry whose key starts with a prefix,
+     * in key order, merging the memtable and tables as it goes rather than
+     * collecting the matches first. The iterator sees the store as of when
+     * it reaches each key; if a compaction retires a table it was reading,
+     * it carries on from the same key in the newer tables.
+     *
+     * @param prefix The key prefix.
+     * @return The matching entries.
+     * @throws UncheckedIOException If a table cannot be read.
+     */
+    public Iterator<Map.Entry<String, byte[]>> cursor(String prefix) {
+        return new Iterator<Map.Entry<String, byte[]>>() {
+            private State source = state;
+            private Iterator<Map.Entry<String, byte[]>> entries = entries(source, prefix);
+            private Map.Entry<String, byte[]> next;
+            private String last;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    try {
+                        if (!entries.hasNext()) {
+                            return false;
+                        }
+                        Map.Entry<String, byte[]> entry = entries.next();
+                        if (!entry.getKey().startsWith(prefix)) {
+                            entries = Collections.emptyIterator();
+                            return false;
+                        }
+                        if (last == null || entry.getKey().compareTo(last) > 0) {
+                            next = entry;
+                            last = entry.getKey();
+                        }
+                    } catch (UncheckedIOException e) {
+                        if (!(e.getCause() instanceof ClosedChannelException) || source == state) {
+                            throw e;
+                        }
+                        // A compaction retired a table mid-scan; pick up where it left off.
+                        source = state;
+                        entries = entries(source, last != null ? last : prefix);
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public Map.Entry<String, byte[]> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry<String, byte[]> result = next;
+                next = null;
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Merges the memtable and tables of a state from a key onwards, with the
+     * newest value of each key winning and deleted keys left out.
+     */
+    private static Iterator<Map.Entry<String, byte[]>> entries(State source, String from) {
+        List<Iterator<Map.Entry<String, byte[]>>> sources = new ArrayList<>();
+        sources.add(source.memtable.tailMap(from, true).entrySet().iterator());
+        for (SSTable table : source.tables) {
+            sources.add(table.iterator(from));
+        }
+        return merge(sources, true);
+    }
+
+    /**
+     * Stores a value under a key.
+     *
+     * @param key   The key.
+     * @param value The value.
+     * @throws IOException If the write cannot be logged.
+     */
+    public void put(String key, byte[] value) throws IOException {
+        write(Collections.singletonMap(key, value));
+    }
+
+    /**
+     * Deletes a key.
+     *
+     * @param key The key.
+     * @throws IOException If the deletion cannot be logged.
+     */
+    public void delete(String key) throws IOException {
+        write(Collections.singletonMap(key, null));
+    }
+
+    /**
+     * Applies several writes with a single log append, so that after a crash
+     * either all of them or none are recovered. A null value deletes its key.
+     *
+     * @param batch The values to store by key.
+     * @throws IOException If the writes cannot be logged.
+     */
+    public synchronized void write(Map<String, byte[]> batch) throws IOException {
+        if (closed) {
+            throw new IOException("Store is closed.");
+        }
+        walBatch.reset();
+        walBatchOut.writeInt(batch.size());
+        for (Map.Entry<String, byte[]> entry : batch.entrySet()) {
+            byte[] value = entry.getValue();
+            walBatchOut.writeUTF(entry.getKey());
+            if (value == null) {
+                walBatchOut.writeInt(-1);
+            } else {
+                walBatchOut.writeInt(value.length);
+                walBatchOut.write(value);
+            }
+        }
+        byte[] record = walBatch.toByteArray();
+        walChecksum.reset();
+        walChecksum.update(record);
+        wal.writeInt(record.length);
+        wal.writeInt((int) walChecksum.getValue());
+        wal.write(record);
+        wal.flush();
+        ConcurrentSkipListMap<String, byte[]> memtable = state.memtable;
+        for (Map.Entry<String, byte[]> entry : batch.entrySet()) {
+            byte[] value = entry.getValue() != null ? entry.getValue() : SSTable.TOMBSTONE;
+            memtable.put(entry.getKey(), value);
+            memtableBytes += entry.getKey().length() * 2L + value.length + ENTRY_OVERHEAD;
+        }
+        if (memtableBytes >= memtableLimitBytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the memtable out as a new table and starts a fresh log, merging
+     * tables if too many have accumulated.
+     *
+     * @throws IOException If the table cannot be written.
+     */
+    public synchronized void flush() throws IOException {
+        State current = state;
+        if (current.memtable.isEmpty()) {
+            return;
+        }
+        long id = nextTableId++;
+        Path path = tablePath(id);
+        SSTable.write(path, current.memtable.entrySet().iterator(), current.memtable.size());
+        List<SSTable> tables = new ArrayList<>();
+        tables.add(SSTable.open(id, path, cache));
+        tables.addAll(current.tables);
+        state = new State(new ConcurrentSkipListMap<>(), Collections.unmodifiableList(tables));
+        memtableBytes = 0;
+        wal.close();
+        openWal(StandardOpenOption.TRUNCATE_EXISTING);
+        if (tables.size() > MAX_TABLES) {
+            mergeNewest(tierSize(tables));
+        }
+    }
+
+    /**
+     * Merges every table into one, dropping deleted keys and overwritten
+     * values. Flushes merge the newest tables on their own as they pile up.
+     *
+     * @throws IOException If the merged table cannot be written.
+     */
+    public synchronized void compact() throws IOException {
+        if (state.tables.size() >= 2) {
+            mergeNewest(state.tables.size());
+        }
+    }
+
+    /**
+     * Chooses how many of the newest tables to merge after a flush: at
+     * least two, extended over each older table no larger than everything
+     * newer combined. Tables therefore grow in roughly geometric tiers, so
+     * each entry is rewritten a logarithmic number of times rather than on
+     * every merge.
+     */
+    private static int tierSize(List<SSTable> tables) {
+        int count = 2;
+        long merged = tables.get(0).sizeBytes + tables.get(1).sizeBytes;
+        while (count < tables.size() && merged >= tables.get(count).sizeBytes) {
+            merged += tables.get(count).sizeBytes;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Replaces the newest tables with one merged table. Deleted keys can be
+     * dropped only when every table is merged; otherwise the deletion must
+     * survive to hide older values further down.
+     */
+    private void mergeNewest(int count) throws IOException {
+        State current = state;
+        List<SSTable> merging = current.tables.subList(0, count);
+        boolean all = count == current.tables.size();
+        long id = nextTableId++;
+        Path path = tablePath(id);
+        int entries = 0;
+        for (SSTable table : merging) {
+            entries += table.entryCount;
+        }
+        List<Iterator<Map.Entry<String, byte[]>>> sources = new ArrayList<>();
+        for (SSTable table : merging) {
+            sources.add(table.iterator());
+        }
+        SSTable.write(path, merge(sources, all), entries);
+        List<SSTable> tables = new ArrayList<>();
+        tables.add(SSTable.open(id, path, cache));
+        tables.addAll(current.tables.subList(count, current.tables.size()));
+        state = new State(current.memtable, Collections.unmodifiableList(tables));
+        for (SSTable retired : merging) {
+            retired.close();
+            cache.invalidate(retired.id);
+            Files.delete(retired.path);
+        }
+    }
+
+    /**
+     * Forces logged writes to the storage device.
+     *
+     * @throws IOException If the log cannot be synced.
+     */
+    public synchronized void sync() throws IOException {
+        wal.flush();
+        walChannel.force(false);
+    }
+
+    /**
+     * Retrieves the number of tables on disk.
+     *
+     * @return The table count.
+     */
+    public int getTableCount() {
+        return state.tables.size();
+    }
+
+    /**
+     * Retrieves how many block reads were served from the cache.
+     *
+     * @return The cache hit count.
+     */
+    public long getCacheHits() {
+        return cache.getHits();
+    }
+
+    /**
+     * Retrieves how many block reads had to go to disk.
+     *
+     * @return The cache miss count.
+     */
+    public long getCacheMisses() {
+        return cache.getMisses();
+    }
+
+    /**
+     * Closes the log and tables. Unflushed writes stay in the log and are
+     * recovered the next time the store is opened.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        wal.close();
+        for (SSTable table : state.tables) {
+            table.close();
+        }
+    }
+
+    /**
+     * Merges sorted sources ordered newest first into one sorted stream in
+     * which the newest value of each key wins. Only one entry per source is
+     * held in memory at a time.
+     *
+     * @param dropDeleted Whether deleted keys can be left out altogether.
+     */
+    private static Iterator<Map.Entry<String, byte[]>> merge(List<Iterator<Map.Entry<String, byte[]>>> sources,
+            boolean dropDeleted) {
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>();
+        for (int i = 0; i < sources.size(); i++) {
+            Cursor cursor = new Cursor(sources.get(i), i);
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+        }
+        return new Iterator<Map.Entry<String, byte[]>>() {
+            private Map.Entry<String, byte[]> next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && !cursors.isEmpty()) {
+                    Cursor newest = cursors.poll();
+                    Map.Entry<String, byte[]> entry = newest.head;
+                    if (newest.advance()) {
+                        cursors.add(newest);
+                    }
+                    // Older copies of the key sort right behind the newest one; skip them.
+                    while (!cursors.isEmpty() && cursors.peek().head.getKey().equals(entry.getKey())) {
+                        Cursor older = cursors.poll();
+                        if (older.advance()) {
+                            cursors.add(older);
+                        }
+                    }
+                    if (!dropDeleted || entry.getValue() != SSTable.TOMBSTONE) {
+                        next = entry;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Map.Entry<String, byte[]> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry<String, byte[]> result = next;
+                next = null;
+                return result;
+            }
+        };
+    }
+
+    /**
+     * A position in one source during a merge, ordered by key and then by
+     * source age so that the newest copy of a key comes first.
+     */
+    private static final class Cursor implements Comparable<Cursor> {
+        final Iterator<Map.Entry<String, byte[]>> entries;
+        final int age;
+        Map.Entry<String, byte[]> head;
+
+        Cursor(Iterator<Map.Entry<String, byte[]>> entries, int age) {
+            this.entries = entries;
+            this.age = age;
+        }
+
+        boolean advance() {
+            head = entries.hasNext() ? entries.next() : null;
+            return head != null;
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            int byKey = head.getKey().compareTo(other.head.getKey());
+            return byKey != 0 ? byKey : Integer.compare(age, other.age);
+        }
+    }
+
+    /**
+     * Applies every intact batch in the log to the memtable, and cuts a torn
+     * batch off the end of the log.
+     *
+     * @throws IOException If the log cannot be read, or is damaged before its tail.
+     */
+    private void replay(Path walPath, Map<String, byte[]> memtable) throws IOException {
+        byte[] log = Files.readAllBytes(walPath);
+        int offset = 0;
+        String problem = null;
+        while (offset < log.length) {
+            problem = replayBatch(log, offset, memtable);
+            if (problem != null) {
+                break;
+            }
+            offset += WAL_HEADER_BYTES + readInt(log, offset);
+        }
+        if (problem == null) {
+            return;
+        }
+        for (int position = offset + 1; position + WAL_HEADER_BYTES <= log.length; position++) {
+            if (checksumMatches(log, position)) {
+                throw new IOException("Log " + walPath + " is damaged at byte " + offset + " (" + problem
+                        + ") but a valid batch follows at byte " + position + ".");
+            }
+        }
+        try (FileChannel channel = FileChannel.open(walPath, StandardOpenOption.WRITE)) {
+            channel.truncate(offset);
+            channel.force(false);
+        }
+        System.out.println("Log truncated at byte " + offset + " of " + log.length + ": " + problem + ".");
+    }
+
+    /**
+     * Decodes the batch logged at an offset and, only if all of it is
+     * intact, applies it to the memtable.
+     *
+     * @return Why the batch is invalid, or null if it was applied.
+     */
+    private String replayBatch(byte[] log, int offset, Map<String, byte[]> memtable) {
+        if (log.length - offset < WAL_HEADER_BYTES) {
+            return "incomplete header";
+        }
+        int length = readInt(log, offset);
+        if (length <= 0 || length > log.length - offset - WAL_HEADER_BYTES) {
+            return "implausible batch length " + length;
+        }
+        if (!checksumMatches(log, offset)) {
+            return "checksum mismatch";
+        }
+        Map<String, byte[]> entries = new TreeMap<>();
+        try {
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(log, offset + WAL_HEADER_BYTES, length));
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                int valueLength = in.readInt();
+                if (valueLength > in.available()) {
+                    return "undecodable batch";
+                }
+                byte[] value = valueLength < 0 ? SSTable.TOMBSTONE : new byte[valueLength];
+                in.readFully(value);
+                entries.put(key, value);
+            }
+            if (in.available() != 0) {
+                return "undecodable batch";
+            }
+        } catch (IOException | RuntimeException e) {
+            return "undecodable batch";
+        }
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            memtable.put(entry.getKey(), entry.getValue());
+            memtableBytes += entry.getKey().length() * 2L + entry.getValue().length + ENTRY_OVERHEAD;
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether the bytes at a position frame a batch that fits in the
+     * log and whose checksum matches.
+     */
+    private static boolean checksumMatches(byte[] log, int position) {
+        int length = readInt(log, position);
+        if (length <= 0 || length > log.length - position - WAL_HEADER_BYTES) {
+            return false;
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(log, position + WAL_HEADER_BYTES, length);
+        return (int) checksum.getValue() == readInt(log, position + 4);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16)
+                | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+    }
+
+    private void openWal(StandardOpenOption mode) throws IOException {
+        walChannel = FileChannel.open(directory.resolve(WAL_NAME), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, mode);
+        wal = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(walChannel), 1 << 16));
+    }
+
+    private List<Path> list(String glob) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, glob)) {
+            for (Path entry : entries) {
+                paths.add(entry);
+            }
+        }
+        return paths;
+    }
+
+    private Path tablePath(long id) {
+        return directory.resolve(String.format("%s%012d%s", TABLE_PREFIX, id, TABLE_SUFFIX));
+    }
+
+    private static long tableId(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(TABLE_PREFIX.length(), name.length() - TABLE_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,44 @@
+package bankapp;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link BankClock} that only moves when told to, for deterministic tests
+ * and simulations.
+ */
+public class ManualClock implements BankClock {
+
+    private final AtomicLong now;
+
+    /**
+     * Constructs a clock stopped at the given time.
+     *
+     * @param startMillis The initial time in epoch milliseconds.
+     */
+    public ManualClock(long startMillis) {
+        this.now = new AtomicLong(startMillis);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now.get();
+    }
+
+    /**
+     * Moves the clock forward.
+     *
+     * @param millis The number of milliseconds to advance by.
+     */
+    public void advance(long millis) {
+        now.addAndGet(millis);
+    }
+
+    /**
+     * Sets the clock to an absolute time.
+     *
+     * @param millis The new time in epoch milliseconds.
+     */
+    public void setTime(long millis) {
+        now.set(millis);
+    }
+}
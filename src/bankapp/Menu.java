@@ -1,6 +1,7 @@
 package bankapp;
 
 import java.security.NoSuchAlgorithmException;
+import java.util.Currency;
 import java.util.List;
 import java.util.Scanner;
 
@@ -184,7 +185,8 @@ public class Menu {
             System.out.println("1. View all users.");
             System.out.println("2. View total system balance.");
             System.out.println("3. Add a new admin.");
-            System.out.println("4. Logout.");
+            System.out.println("4. View reports.");
+            System.out.println("5. Logout.");
             System.out.print("Selection: ");
             int userInput = (int) this.getUserInput();
             
@@ -210,6 +212,10 @@ public class Menu {
                 // View total system balance
                 try {
                     double total = accounts.calculateTotalSystemBalanceBasedOnAllUsers(currentUser);
+                    CurrencyTotals byCurrency = accounts.calculateTotalsByCurrency(currentUser);
+                    if (byCurrency.getCurrencies().size() > 1) {
+                        System.out.println("\nBalances by currency: " + byCurrency);
+                    }
                     System.out.println("\nTotal balance across all accounts: $" + total + "\n");
                 } catch (IllegalAccessException exception) {
                     exception.printStackTrace();
@@ -228,6 +234,10 @@ public class Menu {
 				this.registerAdmin(username, password);
             }
             case 4 -> {
+                // View reports
+                this.printReport(new ReportingEngine(accounts).run(5));
+            }
+            case 5 -> {
                 // Logout
                 System.out.println("\nLogging out...\n");
                 currentUser = null;
@@ -235,6 +245,37 @@ public class Menu {
             default -> System.out.println("\nInvalid selection. Please choose a valid option.\n");
         }
     }
+
+    /**
+     * Prints the richest accounts, balance histograms and failed-withdrawal
+     * rates from a report.
+     *
+     * @param report the report to print
+     */
+    private void printReport(BankReport report) {
+        double[] bounds = report.getHistogramBounds();
+        for (Currency currency : report.getCurrencies()) {
+            String code = currency.getCurrencyCode();
+            System.out.println("\nRichest " + code + " accounts:");
+            for (BankReport.AccountEntry entry : report.getTopAccounts(currency)) {
+                System.out.println("- " + entry);
+            }
+            for (String type : report.getAccountTypes()) {
+                long[] histogram = report.getHistogram(currency, type);
+                System.out.println("\n" + type + " " + code + " balances:");
+                for (int i = 0; i < histogram.length; i++) {
+                    String range = i < bounds.length ? "below " + code + " " + bounds[i]
+                            : code + " " + bounds[bounds.length - 1] + " and above";
+                    System.out.println("  " + range + ": " + histogram[i]);
+                }
+            }
+        }
+        System.out.println();
+        for (String type : report.getAccountTypes()) {
+            System.out.printf("%s failed withdrawals: %.1f%%%n", type, 100 * report.getFailedWithdrawalRate(type));
+        }
+        System.out.printf("%nFailed withdrawal rate overall: %.1f%%%n%n", 100 * report.getFailedWithdrawalRate());
+    }
     
     /**
      * Register a new admin if possible.
@@ -0,0 +1,302 @@
+package bankapp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An in-memory, append-only journal of every mutation applied to a
+ * {@link Bank}. Each appended event receives the next sequence number,
+ * starting at 1, so readers can tail the journal from any position.
+ * <p>
+ * Only recent events are kept in memory: the newest
+ * {@link #DEFAULT_RETAINED_EVENTS} by default, plus any older ones that a
+ * reader such as a replica has registered it still needs with
+ * {@link #acknowledge(Object, long)}. Reading events that have been let go
+ * fails with an {@link IllegalStateException}.
+ */
+public class MutationJournal implements ReplicationSource {
+
+    /** How many of the newest events are kept for readers that have not registered. */
+    public static final int DEFAULT_RETAINED_EVENTS = 65_536;
+
+    /** Retained events; {@code events.get(i)} has sequence {@code firstSequence + i}. */
+    private final ArrayList<LedgerEvent> events;
+
+    /** Listeners notified, in order, of every appended event while the journal lock is held. */
+    private final List<LedgerListener> listeners;
+
+    /** Listeners notified, in order, of every appended event after the journal lock is released. */
+    private final List<LedgerListener> orderedListeners;
+
+    /** Events not yet passed to the ordered listeners; guarded by {@code this}. */
+    private final ArrayDeque<LedgerEvent> undelivered;
+
+    /** Held while passing events to the ordered listeners, so that they see them in order. */
+    private final Object deliveryLock;
+
+    /** The last sequence number each registered reader has read; guarded by {@code this}. */
+    private final Map<Object, Long> readers;
+
+    /** How many of the newest events are always retained. */
+    private final int retainedEvents;
+
+    /** Clock events are timestamped with. */
+    private final BankClock clock;
+
+    /** Sequence number of the oldest retained event. */
+    private long firstSequence;
+
+    /** Sequence number of the newest appended event. */
+    private long lastSequence;
+
+    /**
+     * Constructs an empty journal timestamped by the system clock.
+     */
+    public MutationJournal() {
+        this(BankClock.system());
+    }
+
+    /**
+     * Constructs an empty journal.
+     *
+     * @param clock The clock events are timestamped with.
+     */
+    public MutationJournal(BankClock clock) {
+        this(clock, DEFAULT_RETAINED_EVENTS);
+    }
+
+    /**
+     * Constructs an empty journal that keeps a given number of the newest
+     * events for readers that have not registered.
+     *
+     * @param clock          The clock events are timestamped with.
+     * @param retainedEvents How many of the newest events to keep; at least 1.
+     */
+    public MutationJournal(BankClock clock, int retainedEvents) {
+        if (retainedEvents < 1) {
+            throw new IllegalArgumentException("At least one event must be retained.");
+        }
+        this.clock = clock;
+        this.retainedEvents = retainedEvents;
+        this.events = new ArrayList<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.orderedListeners = new CopyOnWriteArrayList<>();
+        this.undelivered = new ArrayDeque<>();
+        this.deliveryLock = new Object();
+        this.readers = new WeakHashMap<>();
+        this.firstSequence = 1;
+        this.lastSequence = 0;
+    }
+
+    /**
+     * Appends an event, assigning it the next sequence number and the current
+     * time. Listeners added with {@link #addListener} are notified while the
+     * journal lock is held; those added with {@link #addOrderedListener} are
+     * notified after it is released, before this method returns. Both see
+     * events in sequence order.
+     *
+     * @param event The unsequenced event to append.
+     * @return The sequenced event as stored in the journal.
+     */
+    public LedgerEvent append(LedgerEvent event) {
+        LedgerEvent sequenced;
+        synchronized (this) {
+            sequenced = event.sequenced(lastSequence + 1, clock.currentTimeMillis());
+            events.add(sequenced);
+            lastSequence++;
+            for (LedgerListener listener : listeners) {
+                listener.onEvent(sequenced);
+            }
+            if (!orderedListeners.isEmpty()) {
+                undelivered.add(sequenced);
+            }
+            trim();
+            notifyAll();
+        }
+        // An event appended from a listener under the lock is delivered by the append that holds it.
+        if (!Thread.holdsLock(this)) {
+            deliver();
+        }
+        return sequenced;
+    }
+
+    /**
+     * Passes undelivered events to the ordered listeners. Whichever appending
+     * thread gets here first delivers everything queued so far, including
+     * events appended by threads waiting behind it, so slow listeners such as
+     * storage writes are batched without holding up the journal.
+     */
+    private void deliver() {
+        synchronized (deliveryLock) {
+            while (true) {
+                List<LedgerEvent> batch;
+                synchronized (this) {
+                    if (undelivered.isEmpty()) {
+                        return;
+                    }
+                    batch = new ArrayList<>(undelivered);
+                    undelivered.clear();
+                }
+                for (LedgerEvent event : batch) {
+                    for (LedgerListener listener : orderedListeners) {
+                        listener.onEvent(event);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Lets go of events that no registered reader needs and that are older
+     * than the retained window. Events are let go in chunks, so that the
+     * list is not shifted on every append.
+     */
+    private void trim() {
+        if (events.size() < retainedEvents + Math.max(1, retainedEvents / 4)) {
+            return;
+        }
+        long through = lastSequence - retainedEvents;
+        for (long position : readers.values()) {
+            through = Math.min(through, position);
+        }
+        truncateThrough(through);
+    }
+
+    /**
+     * Registers a listener to be called for every event appended from now
+     * on, while the journal lock is held. Listeners must be quick, since no
+     * other event can be appended until they return.
+     *
+     * @param listener The listener to add.
+     */
+    public void addListener(LedgerListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Registers a listener to be called for every event appended from now
+     * on, in sequence order but without holding the journal lock, for work
+     * too slow to hold up other appends, such as writing to storage. Each
+     * event is delivered before the append that produced it returns.
+     *
+     * @param listener The listener to add.
+     */
+    public void addOrderedListener(LedgerListener listener) {
+        orderedListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a previously added listener of either kind.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeListener(LedgerListener listener) {
+        listeners.remove(listener);
+        orderedListeners.remove(listener);
+    }
+
+    /**
+     * Registers or moves a reader's position, so that the events after it
+     * are retained until the reader has read them, however far it falls
+     * behind. Readers are held weakly, so one that is dropped without
+     * calling {@link #release(Object)} stops pinning events once collected.
+     *
+     * @param reader   The reader, such as a replica.
+     * @param sequence The last sequence number the reader has read.
+     */
+    @Override
+    public synchronized void acknowledge(Object reader, long sequence) {
+        readers.put(reader, Math.max(sequence, firstSequence - 1));
+    }
+
+    /**
+     * Unregisters a reader, letting go of the events it was pinning.
+     *
+     * @param reader The reader passed to {@link #acknowledge(Object, long)}.
+     */
+    @Override
+    public synchronized void release(Object reader) {
+        readers.remove(reader);
+    }
+
+    /**
+     * Returns retained events after the given sequence number without waiting.
+     *
+     * @param afterSequence The last sequence number the caller has seen.
+     * @param maxEvents     The maximum number of events to return.
+     * @return The events in sequence order.
+     * @throws IllegalStateException If the requested events were already truncated.
+     */
+    public synchronized List<LedgerEvent> readAfter(long afterSequence, int maxEvents) {
+        if (afterSequence + 1 < firstSequence) {
+            throw new IllegalStateException("Events up to #" + (firstSequence - 1) + " have been truncated.");
+        }
+        if (afterSequence >= lastSequence || maxEvents <= 0) {
+            return Collections.emptyList();
+        }
+        int from = (int) (afterSequence + 1 - firstSequence);
+        int to = (int) Math.min(events.size(), (long) from + maxEvents);
+        return new ArrayList<>(events.subList(from, to));
+    }
+
+    @Override
+    public synchronized List<LedgerEvent> poll(long afterSequence, int maxEvents, long timeoutMillis)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while (afterSequence >= lastSequence && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return readAfter(afterSequence, maxEvents);
+    }
+
+    @Override
+    public synchronized long headSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Discards retained events up to and including the given sequence number,
+     * for example once every replica has applied them.
+     *
+     * @param sequence The newest sequence number that may be discarded.
+     */
+    public synchronized void truncateThrough(long sequence) {
+        long limit = Math.min(sequence, lastSequence);
+        if (limit < firstSequence) {
+            return;
+        }
+        events.subList(0, (int) (limit + 1 - firstSequence)).clear();
+        firstSequence = limit + 1;
+    }
+
+    /**
+     * Continues numbering after events recovered from elsewhere, such as a
+     * {@link DurableJournal} file, so the next event appended gets the
+     * following sequence number. Only valid while the journal is empty.
+     *
+     * @param sequence The sequence number of the last recovered event.
+     */
+    synchronized void resumeAfter(long sequence) {
+        if (!events.isEmpty() || lastSequence != 0) {
+            throw new IllegalStateException("Only an empty journal can resume.");
+        }
+        firstSequence = sequence + 1;
+        lastSequence = sequence;
+    }
+
+    /**
+     * Returns the number of events currently retained in memory.
+     *
+     * @return The retained event count.
+     */
+    public synchronized int size() {
+        return events.size();
+    }
+}
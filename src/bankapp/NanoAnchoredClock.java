@@ -0,0 +1,26 @@
+package bankapp;
+
+/**
+ * A {@link BankClock} that reads the wall clock once and afterwards advances
+ * by {@link System#nanoTime()}. It is cheap to read and never steps
+ * backwards when the system clock is adjusted, which keeps transaction
+ * timestamps ordered within a process.
+ */
+public class NanoAnchoredClock implements BankClock {
+
+    private final long anchorMillis;
+    private final long anchorNanos;
+
+    /**
+     * Constructs a clock anchored to the current wall-clock time.
+     */
+    public NanoAnchoredClock() {
+        this.anchorMillis = System.currentTimeMillis();
+        this.anchorNanos = System.nanoTime();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return anchorMillis + (System.nanoTime() - anchorNanos) / 1_000_000L;
+    }
+}
@@ -0,0 +1,116 @@
+package bankapp;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * An alert for a customer about a change to one of their accounts, queued
+ * by a {@link NotificationDispatcher} for delivery to the customer's
+ * registered destination.
+ */
+public class Notification {
+
+    /** The kinds of change customers are alerted to. */
+    public enum Kind {
+        /** A withdrawal from one of the customer's accounts was declined. */
+        WITHDRAWAL_DECLINED,
+
+        /** A transfer from another customer arrived. */
+        TRANSFER_RECEIVED
+    }
+
+    private final long id;
+    private final String destination;
+    private final String username;
+    private final Kind kind;
+    private final UUID accountId;
+    private final double amount;
+    private final long timestampMillis;
+    private final String message;
+
+    Notification(long id, String destination, String username, Kind kind, UUID accountId, double amount,
+            long timestampMillis, String message) {
+        this.id = id;
+        this.destination = destination;
+        this.username = username;
+        this.kind = kind;
+        this.accountId = accountId;
+        this.amount = amount;
+        this.timestampMillis = timestampMillis;
+        this.message = message;
+    }
+
+    /**
+     * Retrieves the notification's ID, which increases in the order
+     * notifications were queued and lets a destination discard duplicates
+     * of a batch that was delivered but not acknowledged.
+     *
+     * @return The notification ID.
+     */
+    public long getId() {
+        return id;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public UUID getAccountId() {
+        return accountId;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    /**
+     * Retrieves when the change happened.
+     *
+     * @return The time of the change in epoch milliseconds.
+     */
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeLong(id);
+        out.writeUTF(destination);
+        out.writeUTF(username);
+        out.writeUTF(kind.name());
+        out.writeLong(accountId.getMostSignificantBits());
+        out.writeLong(accountId.getLeastSignificantBits());
+        out.writeDouble(amount);
+        out.writeLong(timestampMillis);
+        out.writeUTF(message);
+    }
+
+    static Notification readFrom(DataInput in) throws IOException {
+        long id = in.readLong();
+        String destination = in.readUTF();
+        String username = in.readUTF();
+        Kind kind = Kind.valueOf(in.readUTF());
+        UUID accountId = new UUID(in.readLong(), in.readLong());
+        double amount = in.readDouble();
+        long timestampMillis = in.readLong();
+        return new Notification(id, destination, username, kind, accountId, amount, timestampMillis, in.readUTF());
+    }
+
+    @Override
+    public String toString() {
+        return "#" + id + " to " + username + ": " + message;
+    }
+}
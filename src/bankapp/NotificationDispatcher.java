@@ -0,0 +1,627 @@
+package bankapp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Alerts customers when a withdrawal from one of their accounts is declined
+ * or a transfer reaches them, by subscribing to a bank's
+ * {@link LedgerEventStream} and sending notifications to each customer's
+ * registered destination through a {@link NotificationEndpoint}.
+ * <p>
+ * Every notification is written to a queue in an {@link LsmStore} before
+ * delivery and removed once the endpoint accepts it, so notifications
+ * pending when the dispatcher closes or crashes are sent when it is opened
+ * again over the same directory. Each destination has its own queue, sent
+ * in batches, oldest first, with at most one delivery in flight. A failed
+ * delivery is retried after an exponentially growing pause; after too many
+ * failures in a row the batch is set aside as dead letters so the
+ * destination's later notifications can still go out. Dead letters are
+ * kept in the same store until they are cleared, and the store also
+ * records the next notification ID with every queued batch, so IDs keep
+ * rising across restarts even when the queue was empty.
+ * <p>
+ * The next batch of events is requested only once the notifications for the
+ * last one are stored, and the store records the sequence number of the
+ * last event handled, so a dispatcher subscribed through
+ * {@link #subscribeTo(LedgerEventStream)} picks up where it left off. If
+ * the store cannot be written, the dispatcher stops taking events and
+ * resubscribes after the last stored event, backing off like a failed
+ * delivery, and gives up once the attempts run out. If it falls behind the
+ * events the journal retains, it resumes after the oldest one left; the
+ * notifications in between are lost. Either way {@link #getFailure()}
+ * reports what went wrong.
+ * <p>
+ * A slow or failing destination only delays its own queue. The bank never
+ * waits for deliveries: events reach the dispatcher through the event
+ * stream, off the thread that changed the bank.
+ */
+public class NotificationDispatcher implements Flow.Subscriber<List<LedgerEvent>>, Closeable {
+
+    private static final String QUEUE_PREFIX = "q/";
+    private static final String DEAD_LETTER_PREFIX = "d/";
+    private static final String NEXT_ID_KEY = "m/next-id";
+    private static final String SEQUENCE_KEY = "m/sequence";
+    private static final long STORE_BYTES = 1L << 20;
+
+    private final NotificationEndpoint endpoint;
+    private final LsmStore queue;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final int maxBatchSize;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int maxAttempts;
+
+    /** Registered destinations by username. */
+    private final ConcurrentHashMap<String, String> destinations;
+
+    /** Pending notifications by destination. */
+    private final ConcurrentHashMap<String, DestinationQueue> queues;
+
+    private final AtomicLong nextId;
+    private final List<Notification> deadLetters;
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    private volatile LedgerEventStream stream;
+    private volatile Flow.Subscription subscription;
+    private volatile boolean closed;
+
+    /** The sequence number of the last event whose notifications are stored, or -1 before the first. */
+    private volatile long storedSequence;
+
+    /** Failed store writes in a row; touched only by the thread handling events. */
+    private int storeFailures;
+
+    private volatile Throwable failure;
+    private volatile boolean stopped;
+
+    private NotificationDispatcher(Builder builder) throws IOException {
+        this.endpoint = builder.endpoint;
+        this.queue = new LsmStore(builder.directory, STORE_BYTES, STORE_BYTES);
+        this.scheduler = new ScheduledThreadPoolExecutor(builder.deliveryThreads, runnable -> {
+            Thread thread = new Thread(runnable, "notification-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.maxBatchSize = builder.maxBatchSize;
+        this.initialBackoffMillis = builder.initialBackoff.toMillis();
+        this.maxBackoffMillis = builder.maxBackoff.toMillis();
+        this.maxAttempts = builder.maxAttempts;
+        this.destinations = new ConcurrentHashMap<>();
+        this.queues = new ConcurrentHashMap<>();
+        this.deadLetters = new ArrayList<>();
+
+        byte[] storedNextId = queue.get(NEXT_ID_KEY);
+        long next = storedNextId != null ? new DataInputStream(new ByteArrayInputStream(storedNextId)).readLong() : 1;
+        for (byte[] record : queue.scan(DEAD_LETTER_PREFIX).values()) {
+            Notification notification = decode(record);
+            next = Math.max(next, notification.getId() + 1);
+            deadLetters.add(notification);
+        }
+        for (byte[] record : queue.scan(QUEUE_PREFIX).values()) {
+            Notification notification = decode(record);
+            next = Math.max(next, notification.getId() + 1);
+            enqueue(notification);
+        }
+        this.nextId = new AtomicLong(next);
+        byte[] sequence = queue.get(SEQUENCE_KEY);
+        this.storedSequence = sequence != null
+                ? new DataInputStream(new ByteArrayInputStream(sequence)).readLong() : -1;
+    }
+
+    /**
+     * Subscribes to a bank's events after the last one this dispatcher's
+     * store has handled, or to new events if it has handled none. The stream
+     * is remembered, so the dispatcher can resubscribe to it after a failure.
+     *
+     * @param stream The bank's event stream.
+     */
+    public void subscribeTo(LedgerEventStream stream) {
+        this.stream = stream;
+        stream.subscribe(this, storedSequence);
+    }
+
+    /**
+     * Sends a customer's alerts to a destination, such as a webhook URL,
+     * from now on.
+     *
+     * @param username    The customer.
+     * @param destination Where their notifications go.
+     */
+    public void register(String username, String destination) {
+        destinations.put(username, destination);
+    }
+
+    /**
+     * Stops queueing alerts for a customer. Notifications already queued are
+     * still delivered.
+     *
+     * @param username The customer.
+     * @return true if the customer had a destination registered.
+     */
+    public boolean unregister(String username) {
+        return destinations.remove(username) != null;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (closed) {
+            subscription.cancel();
+            return;
+        }
+        subscription.request(1);
+    }
+
+    /**
+     * Queues notifications for the events in a batch, then asks for the
+     * next batch once they are safely stored. If they cannot be stored, the
+     * subscription is cancelled and the batch is read again when the
+     * dispatcher resubscribes.
+     */
+    @Override
+    public void onNext(List<LedgerEvent> events) {
+        long first = events.get(0).getSequence();
+        long last = events.get(events.size() - 1).getSequence();
+        List<Notification> notifications = new ArrayList<>();
+        for (LedgerEvent event : events) {
+            Notification notification = toNotification(event);
+            if (notification != null) {
+                notifications.add(notification);
+            }
+        }
+        if (!notifications.isEmpty()) {
+            try {
+                Map<String, byte[]> records = new LinkedHashMap<>();
+                for (Notification notification : notifications) {
+                    records.put(key(QUEUE_PREFIX, notification), encode(notification));
+                }
+                // Stored with the batch, so IDs handed out are never reused after a restart.
+                records.put(NEXT_ID_KEY, encodeLong(nextId.get()));
+                records.put(SEQUENCE_KEY, encodeLong(last));
+                queue.write(records);
+            } catch (IOException e) {
+                System.out.println("Could not queue " + notifications.size() + " notifications: " + e.getMessage());
+                subscription.cancel();
+                failure = e;
+                // Everything before this batch is stored or needed no notification.
+                storedSequence = first - 1;
+                resubscribe(e, ++storeFailures);
+                return;
+            }
+            for (Notification notification : notifications) {
+                enqueue(notification);
+            }
+        }
+        storedSequence = last;
+        storeFailures = 0;
+        if (!closed) {
+            subscription.request(1);
+        }
+    }
+
+    /**
+     * Resumes after the oldest event the journal still retains if the
+     * dispatcher fell behind it, and otherwise stops taking events.
+     */
+    @Override
+    public void onError(Throwable throwable) {
+        failure = throwable;
+        LedgerEventStream current = stream;
+        if (throwable instanceof IllegalStateException && current != null && !closed) {
+            long truncated = current.getTruncatedSequence();
+            if (truncated > storedSequence) {
+                System.out.println("Notifications for events #" + (storedSequence + 1) + " to #" + truncated
+                        + " were lost: " + throwable.getMessage());
+                storedSequence = truncated;
+                resubscribe(throwable, 0);
+                return;
+            }
+        }
+        stop(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+    }
+
+    /**
+     * Retrieves the most recent problem taking events from the stream: a
+     * failed store write, or the stream failing the subscription.
+     *
+     * @return The failure, or null if there has been none.
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Tells whether the dispatcher gave up on taking events after a
+     * failure. Notifications already queued are still delivered.
+     *
+     * @return true if the dispatcher no longer takes events.
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Retrieves the number of notifications still waiting to be delivered.
+     *
+     * @return The pending count across all destinations.
+     */
+    public int getPendingCount() {
+        int pending = 0;
+        for (DestinationQueue destination : queues.values()) {
+            pending += destination.size();
+        }
+        return pending;
+    }
+
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    /**
+     * Retrieves the number of failed deliveries that were retried or gave up.
+     *
+     * @return The failed delivery count.
+     */
+    public long getFailedDeliveryCount() {
+        return retries.sum();
+    }
+
+    /**
+     * Retrieves the notifications given up on after too many failed
+     * deliveries, including those from earlier runs. They are no longer in
+     * the queue.
+     *
+     * @return A copy of the dead letters, oldest first.
+     */
+    public List<Notification> getDeadLetters() {
+        synchronized (deadLetters) {
+            return new ArrayList<>(deadLetters);
+        }
+    }
+
+    /**
+     * Discards every dead letter, in memory and on disk.
+     *
+     * @return The number of dead letters discarded.
+     * @throws IOException If the store cannot be written.
+     */
+    public int clearDeadLetters() throws IOException {
+        synchronized (deadLetters) {
+            Map<String, byte[]> deletes = new LinkedHashMap<>();
+            for (Notification notification : deadLetters) {
+                deletes.put(key(DEAD_LETTER_PREFIX, notification), null);
+            }
+            queue.write(deletes);
+            int cleared = deadLetters.size();
+            deadLetters.clear();
+            return cleared;
+        }
+    }
+
+    /**
+     * Stops taking events and delivering notifications. Undelivered
+     * notifications stay queued on disk.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        Flow.Subscription current = subscription;
+        if (current != null) {
+            current.cancel();
+        }
+        // Interrupting a delivery could close the queue's files under it, so running deliveries may finish.
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        queue.close();
+    }
+
+    private Notification toNotification(LedgerEvent event) {
+        String username;
+        Notification.Kind kind;
+        UUID accountId;
+        String message;
+        if (event.getType() == LedgerEventType.FAILED_WITHDRAWAL) {
+            username = event.getUsername();
+            kind = Notification.Kind.WITHDRAWAL_DECLINED;
+            accountId = event.getAccountId();
+            message = String.format("A withdrawal of $%.2f was declined.", event.getAmount());
+        } else if (event.getType() == LedgerEventType.TRANSFER) {
+            username = event.getCounterparty();
+            kind = Notification.Kind.TRANSFER_RECEIVED;
+            accountId = event.getCounterpartyAccountId();
+            message = String.format("You received $%.2f from %s.", event.getAmount(), event.getUsername());
+        } else {
+            return null;
+        }
+        String destination = username != null ? destinations.get(username) : null;
+        if (destination == null) {
+            return null;
+        }
+        return new Notification(nextId.getAndIncrement(), destination, username, kind, accountId,
+                event.getAmount(), event.getTimestamp(), message);
+    }
+
+    /**
+     * Subscribes again after the last stored event, after a pause that grows
+     * with the failures in a row, or stops once there have been too many.
+     */
+    private void resubscribe(Throwable cause, int failures) {
+        LedgerEventStream current = stream;
+        if (current == null || failures >= maxAttempts || closed) {
+            stop(cause);
+            return;
+        }
+        long delay = failures == 0 ? 0 : backoffMillis(failures);
+        try {
+            scheduler.schedule(() -> current.subscribe(this, storedSequence), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed meanwhile; the next run resumes from the stored sequence.
+        }
+    }
+
+    private void stop(Throwable cause) {
+        if (closed) {
+            return;
+        }
+        stopped = true;
+        System.out.println("Notifications stopped after event #" + storedSequence + ": " + cause.getMessage());
+    }
+
+    private void enqueue(Notification notification) {
+        queues.computeIfAbsent(notification.getDestination(), DestinationQueue::new).add(notification);
+    }
+
+    private long backoffMillis(int failures) {
+        int doublings = Math.min(failures - 1, 30);
+        return Math.min(maxBackoffMillis, initialBackoffMillis << doublings);
+    }
+
+    /**
+     * Takes notifications out of the queue, storing them as dead letters in
+     * the same write if they were given up on.
+     */
+    private void remove(List<Notification> notifications, boolean dead) throws IOException {
+        Map<String, byte[]> writes = new LinkedHashMap<>();
+        for (Notification notification : notifications) {
+            writes.put(key(QUEUE_PREFIX, notification), null);
+            if (dead) {
+                writes.put(key(DEAD_LETTER_PREFIX, notification), encode(notification));
+            }
+        }
+        queue.write(writes);
+    }
+
+    private static String key(String prefix, Notification notification) {
+        // Zero-padded so that keys sort in ID order.
+        return prefix + String.format("%019d", notification.getId());
+    }
+
+    private static Notification decode(byte[] record) throws IOException {
+        return Notification.readFrom(new DataInputStream(new ByteArrayInputStream(record)));
+    }
+
+    private static byte[] encodeLong(long value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8);
+        new DataOutputStream(bytes).writeLong(value);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encode(Notification notification) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        notification.writeTo(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    /**
+     * One destination's pending notifications. At most one delivery task is
+     * scheduled or running per destination, which keeps its notifications
+     * in order and a slow destination from taking more than one thread.
+     */
+    private final class DestinationQueue {
+        private final String destination;
+        private final ArrayDeque<Notification> pending;
+        private boolean scheduled;
+        private int failures;
+
+        DestinationQueue(String destination) {
+            this.destination = destination;
+            this.pending = new ArrayDeque<>();
+        }
+
+        synchronized void add(Notification notification) {
+            pending.add(notification);
+            if (!scheduled && !closed) {
+                scheduled = true;
+                submit(0);
+            }
+        }
+
+        /**
+         * Schedules the next delivery attempt, unless the dispatcher is
+         * closing, in which case the notifications wait on disk for the next
+         * run.
+         */
+        private void submit(long delayMillis) {
+            try {
+                scheduler.schedule(this::deliver, delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Closed between the check and the submission.
+            }
+        }
+
+        synchronized int size() {
+            return pending.size();
+        }
+
+        private void deliver() {
+            List<Notification> batch = new ArrayList<>();
+            synchronized (this) {
+                Iterator<Notification> oldest = pending.iterator();
+                while (batch.size() < maxBatchSize && oldest.hasNext()) {
+                    batch.add(oldest.next());
+                }
+                if (batch.isEmpty()) {
+                    scheduled = false;
+                    return;
+                }
+            }
+            try {
+                endpoint.deliver(destination, batch);
+            } catch (IOException | RuntimeException e) {
+                failed(batch, e);
+                return;
+            }
+            finish(batch, true);
+        }
+
+        private void failed(List<Notification> batch, Exception e) {
+            retries.increment();
+            long delay;
+            synchronized (this) {
+                failures++;
+                if (failures < maxAttempts) {
+                    delay = backoffMillis(failures);
+                } else {
+                    delay = -1;
+                }
+            }
+            if (delay >= 0) {
+                submit(delay);
+                return;
+            }
+            System.out.println("Giving up on " + batch.size() + " notifications to " + destination + ": "
+                    + e.getMessage());
+            finish(batch, false);
+        }
+
+        /**
+         * Removes a delivered or abandoned batch and moves on to the next.
+         */
+        private void finish(List<Notification> batch, boolean sent) {
+            try {
+                remove(batch, !sent);
+            } catch (IOException e) {
+                // Left on disk, the batch is sent again after a restart; destinations ignore repeats.
+                System.out.println("Could not remove delivered notifications: " + e.getMessage());
+            }
+            synchronized (this) {
+                for (int i = 0; i < batch.size(); i++) {
+                    pending.poll();
+                }
+                failures = 0;
+                if (sent) {
+                    delivered.add(batch.size());
+                } else {
+                    synchronized (deadLetters) {
+                        deadLetters.addAll(batch);
+                    }
+                }
+                if (pending.isEmpty() || closed) {
+                    scheduled = false;
+                } else {
+                    submit(0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds a {@link NotificationDispatcher}. Anything not set keeps its
+     * default: batches of up to 50 notifications, retries starting after one
+     * second and doubling up to five minutes, giving up after 10 failures in
+     * a row, and 4 delivery threads.
+     */
+    public static final class Builder {
+        private final NotificationEndpoint endpoint;
+        private final Path directory;
+        private int maxBatchSize = 50;
+        private Duration initialBackoff = Duration.ofSeconds(1);
+        private Duration maxBackoff = Duration.ofMinutes(5);
+        private int maxAttempts = 10;
+        private int deliveryThreads = 4;
+
+        /**
+         * Starts a builder.
+         *
+         * @param endpoint  Where notifications are sent.
+         * @param directory The directory holding the persistent queue.
+         */
+        public Builder(NotificationEndpoint endpoint, Path directory) {
+            this.endpoint = endpoint;
+            this.directory = directory;
+        }
+
+        public Builder maxBatchSize(int size) {
+            this.maxBatchSize = size;
+            return this;
+        }
+
+        /**
+         * Sets the pause before the first retry and the most it may grow to.
+         *
+         * @param initial The pause after the first failure.
+         * @param max     The longest pause.
+         * @return This builder.
+         */
+        public Builder backoff(Duration initial, Duration max) {
+            this.initialBackoff = initial;
+            this.maxBackoff = max;
+            return this;
+        }
+
+        public Builder maxAttempts(int attempts) {
+            this.maxAttempts = attempts;
+            return this;
+        }
+
+        public Builder deliveryThreads(int threads) {
+            this.deliveryThreads = threads;
+            return this;
+        }
+
+        /**
+         * Opens the dispatcher, queueing any notifications left from a
+         * previous run for delivery.
+         *
+         * @return The dispatcher.
+         * @throws IOException If the queue cannot be opened.
+         */
+        public NotificationDispatcher build() throws IOException {
+            if (maxBatchSize < 1 || maxAttempts < 1 || deliveryThreads < 1) {
+                throw new IllegalArgumentException("Batch size, attempts and threads must be positive.");
+            }
+            return new NotificationDispatcher(this);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package bankapp;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where a {@link NotificationDispatcher} sends notifications, such as a
+ * webhook client posting each batch to the destination's URL.
+ */
+public interface NotificationEndpoint {
+
+    /**
+     * Delivers a batch of notifications to one destination. Returning
+     * normally acknowledges the whole batch; throwing leaves it queued to be
+     * retried, so a destination may see a batch again and should use the
+     * notification IDs to ignore repeats.
+     *
+     * @param destination   The destination the customer registered.
+     * @param notifications The notifications, oldest first.
+     * @throws IOException If the batch could not be delivered.
+     */
+    void deliver(String destination, List<Notification> notifications) throws IOException;
+}
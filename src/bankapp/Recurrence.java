@@ -0,0 +1,58 @@
+package bankapp;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * Decides when a recurring {@link ScheduledJob} runs next.
+ */
+public interface Recurrence {
+
+    /**
+     * Returns the next run time after a run that was due at the given time.
+     *
+     * @param previousRunMillis The time the previous run was due, in epoch milliseconds.
+     * @return The next run time in epoch milliseconds.
+     */
+    long nextRunAfter(long previousRunMillis);
+
+    /**
+     * Creates a recurrence with a fixed period.
+     *
+     * @param period The time between runs; must be positive.
+     * @return The fixed-period recurrence.
+     * @throws IllegalArgumentException if the period is not positive.
+     */
+    static Recurrence every(Duration period) {
+        long periodMillis = period.toMillis();
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("Recurrence period must be positive.");
+        }
+        return previous -> previous + periodMillis;
+    }
+
+    /**
+     * Creates a recurrence that runs on the day and time of the first run
+     * each calendar month. Each month is clamped to its own last day, so a
+     * job first run on the 31st runs on the 28th or 29th of February and
+     * on the 31st again in March.
+     *
+     * @param firstRunMillis The first run, whose day of month and time are kept, in epoch milliseconds.
+     * @param zone           The time zone the calendar is evaluated in.
+     * @return The monthly recurrence.
+     */
+    static Recurrence monthly(long firstRunMillis, ZoneId zone) {
+        ZonedDateTime anchor = Instant.ofEpochMilli(firstRunMillis).atZone(zone);
+        int dayOfMonth = anchor.getDayOfMonth();
+        LocalTime time = anchor.toLocalTime();
+        return previous -> {
+            YearMonth month = YearMonth.from(Instant.ofEpochMilli(previous).atZone(zone)).plusMonths(1);
+            return ZonedDateTime.of(month.atDay(Math.min(dayOfMonth, month.lengthOfMonth())), time, zone)
+                    .toInstant().toEpochMilli();
+        };
+    }
+}
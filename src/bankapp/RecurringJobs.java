@@ -0,0 +1,92 @@
+package bankapp;
+
+/**
+ * Factory methods for the recurring per-account jobs the bank runs on a
+ * {@link TimingWheelScheduler}.
+ */
+public final class RecurringJobs {
+
+    private RecurringJobs() {
+    }
+
+    /**
+     * Schedules interest to be accrued on a savings account.
+     *
+     * @param scheduler      The scheduler to run the job on.
+     * @param account        The savings account to accrue interest on.
+     * @param firstRunMillis When to accrue first, in epoch milliseconds.
+     * @param recurrence     How often to accrue, typically {@link Recurrence#monthly}.
+     * @return The scheduled job.
+     */
+    public static ScheduledJob scheduleInterest(TimingWheelScheduler scheduler, SavingsAccount account,
+            long firstRunMillis, Recurrence recurrence) {
+        return scheduler.scheduleRecurring(account::accrueInterest, firstRunMillis, recurrence);
+    }
+
+    /**
+     * Schedules queued overdraft fees to be charged to a checking account.
+     *
+     * @param scheduler      The scheduler to run the job on.
+     * @param account        The checking account whose fees to collect.
+     * @param firstRunMillis When to collect first, in epoch milliseconds.
+     * @param recurrence     How often to collect, such as daily.
+     * @return The scheduled job.
+     */
+    public static ScheduledJob scheduleFeeCollection(TimingWheelScheduler scheduler, CheckingsAccount account,
+            long firstRunMillis, Recurrence recurrence) {
+        return scheduler.scheduleRecurring(account::collectFees, firstRunMillis, recurrence);
+    }
+
+    /**
+     * Schedules lapsed authorization holds to be released.
+     *
+     * @param scheduler      The scheduler to run the job on.
+     * @param holds          The ledger whose lapsed holds to release.
+     * @param firstRunMillis When to sweep first, in epoch milliseconds.
+     * @param recurrence     How often to sweep, such as every minute.
+     * @return The scheduled job.
+     */
+    public static ScheduledJob scheduleHoldExpiry(TimingWheelScheduler scheduler, HoldLedger holds,
+            long firstRunMillis, Recurrence recurrence) {
+        return scheduler.scheduleRecurring(holds::expireDue, firstRunMillis, recurrence);
+    }
+
+    /**
+     * Schedules accounts idle for an hour to be forgotten by a velocity
+     * scoring stage.
+     *
+     * @param scheduler      The scheduler to run the job on.
+     * @param stage          The stage whose idle accounts to forget.
+     * @param firstRunMillis When to sweep first, in epoch milliseconds.
+     * @param recurrence     How often to sweep, such as every five minutes.
+     * @return The scheduled job.
+     */
+    public static ScheduledJob scheduleVelocitySweep(TimingWheelScheduler scheduler, VelocityScoringStage stage,
+            long firstRunMillis, Recurrence recurrence) {
+        return scheduler.scheduleRecurring(stage::removeIdle, firstRunMillis, recurrence);
+    }
+
+    /**
+     * Schedules a standing transfer between two users' current accounts.
+     * Runs that fail, for example for insufficient funds, are skipped and
+     * the transfer is tried again at its next occurrence.
+     *
+     * @param scheduler      The scheduler to run the job on.
+     * @param bank           The bank both users are registered with.
+     * @param fromUsername   The paying user.
+     * @param toUsername     The receiving user.
+     * @param amount         The amount to transfer each time.
+     * @param firstRunMillis When to transfer first, in epoch milliseconds.
+     * @param recurrence     How often to transfer.
+     * @return The scheduled job.
+     * @throws IllegalArgumentException if the amount is not positive.
+     */
+    public static ScheduledJob scheduleStandingTransfer(TimingWheelScheduler scheduler, Bank bank,
+            String fromUsername, String toUsername, double amount, long firstRunMillis, Recurrence recurrence) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Standing transfer amount must be positive.");
+        }
+        return scheduler.scheduleRecurring(() -> bank.transferFunds(fromUsername, toUsername, amount),
+                firstRunMillis, recurrence);
+    }
+}
@@ -0,0 +1,483 @@
+package bankapp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A read-only copy of a {@link Bank} maintained by tailing the primary's
+ * mutation stream. Admin reporting (user listings, system totals, all
+ * transactions) can run against the replica without touching the primary's
+ * write path. Balances and per-user totals are kept pre-aggregated so every
+ * report is a lookup rather than a scan.
+ * <p>
+ * A replica either follows its source from the first event or, through
+ * {@link #fromSnapshot(Bank)}, starts from a snapshot of the primary and
+ * follows the journal from its head, which works however many events the
+ * journal has already let go. If the follower cannot go on, for instance
+ * because the events it needs were let go, it stops and reports why
+ * through {@link #getFailure()}.
+ */
+public class ReplicaBank implements AutoCloseable {
+
+    /** Maximum number of events applied per poll of the source. */
+    private static final int BATCH_SIZE = 512;
+
+    /** How long the background follower waits for new events per poll. */
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    /** The stream of events this replica follows. */
+    private final ReplicationSource source;
+
+    /** Replicated users keyed by username. */
+    private final Map<String, ReplicaUser> users;
+
+    /** Replicated accounts keyed by account ID. */
+    private final Map<UUID, ReplicaAccount> accounts;
+
+    /** Deposits, withdrawals and transfers in sequence order. */
+    private final List<LedgerEvent> transactions;
+
+    /** Sequence number of the last applied event. */
+    private volatile long appliedSequence;
+
+    /** Sum of all replicated account balances. */
+    private volatile double systemBalance;
+
+    /** Number of failed withdrawals seen in the stream. */
+    private volatile long failedWithdrawals;
+
+    /** Delay between the primary appending the last applied event and the replica applying it. */
+    private volatile long lastReplicationDelayMillis;
+
+    /** Background thread following the source, if started. */
+    private Thread follower;
+
+    /** Whether the background follower should keep running. */
+    private volatile boolean running;
+
+    /** Why the replica stopped following its source, or null while it can go on. */
+    private volatile RuntimeException failure;
+
+    /**
+     * Constructs an empty replica that follows the given source from its
+     * first event.
+     *
+     * @param source The primary's journal, or a socket connection to it.
+     */
+    public ReplicaBank(ReplicationSource source) {
+        this(source, 0);
+    }
+
+    /**
+     * Constructs an empty replica that follows a source after an event.
+     */
+    private ReplicaBank(ReplicationSource source, long afterSequence) {
+        this.source = source;
+        this.users = new ConcurrentHashMap<>();
+        this.accounts = new ConcurrentHashMap<>();
+        this.transactions = new ArrayList<>();
+        this.appliedSequence = afterSequence;
+        source.acknowledge(this, afterSequence);
+    }
+
+    /**
+     * Constructs a replica of a bank from a snapshot of its users and
+     * balances, following the bank's journal from the head it had when the
+     * snapshot was taken. Events journaled after that head for changes the
+     * snapshot already holds are recognised by their account version
+     * numbers and skipped. Only transactions journaled after the head are
+     * listed by {@link #getAllTransactions()}.
+     *
+     * @param primary The bank to replicate.
+     * @return The replica, caught up to the snapshot but not yet started.
+     */
+    public static ReplicaBank fromSnapshot(Bank primary) {
+        MutationJournal journal = primary.getJournal();
+        ReplicaBank replica;
+        // Every event up to the head is then for a change the snapshot, opened later, includes.
+        synchronized (journal) {
+            replica = new ReplicaBank(journal, journal.headSequence());
+        }
+        try (BankSnapshot snapshot = primary.snapshot()) {
+            synchronized (replica) {
+                for (User user : snapshot.users()) {
+                    ReplicaUser replicated = new ReplicaUser(user.isAdmin());
+                    replica.users.put(user.getUsername(), replicated);
+                    for (BankAccount account : snapshot.getAccounts(user)) {
+                        ReplicaAccount copy = new ReplicaAccount(user.getUsername(),
+                                account.getClass().getSimpleName());
+                        copy.snapshotVersion = snapshot.getVersion(account, copy.snapshotChanges);
+                        copy.balance = snapshot.getBalance(account);
+                        replica.accounts.put(account.getId(), copy);
+                        replicated.accountIds.add(account.getId());
+                        replicated.totalBalance += copy.balance;
+                        replica.systemBalance += copy.balance;
+                        replica.failedWithdrawals += snapshot.getFailedWithdrawals(account);
+                    }
+                }
+            }
+        }
+        return replica;
+    }
+
+    /**
+     * Applies every event currently available from the source on the calling
+     * thread. Useful for deterministic tests and for one-off report refreshes.
+     *
+     * @return The number of events applied.
+     * @throws InterruptedException  If interrupted while reading the source.
+     * @throws IllegalStateException If the source no longer has the events the replica needs.
+     */
+    public synchronized int catchUp() throws InterruptedException {
+        int applied = 0;
+        List<LedgerEvent> batch;
+        try {
+            while (!(batch = source.poll(appliedSequence, BATCH_SIZE, 0)).isEmpty()) {
+                applyAll(batch);
+                applied += batch.size();
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+            throw e;
+        }
+        return applied;
+    }
+
+    /**
+     * Starts a daemon thread that continuously tails the source.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        follower = new Thread(this::follow, "replica-follower");
+        follower.setDaemon(true);
+        follower.start();
+    }
+
+    /**
+     * Stops the background follower, if running, and waits for it to exit,
+     * letting the source discard the events it was keeping for this replica.
+     */
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = follower;
+            follower = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        source.release(this);
+    }
+
+    private void follow() {
+        while (running) {
+            try {
+                List<LedgerEvent> batch = source.poll(appliedSequence, BATCH_SIZE, POLL_TIMEOUT_MILLIS);
+                synchronized (this) {
+                    applyAll(batch);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                // Such as the journal having let go of events the replica had not read yet.
+                failure = e;
+                running = false;
+                System.out.println("Replica stopped after event " + appliedSequence + ": " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Retrieves why the replica stopped following its source. A replica
+     * that has failed keeps serving the state it had reached, but falls
+     * further behind; replace it, for example with {@link #fromSnapshot}.
+     *
+     * @return The failure, or null if the replica has not failed.
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Indicates whether the replica has stopped following its source
+     * because of a failure.
+     *
+     * @return true if {@link #getFailure()} has a failure to report.
+     */
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    private void applyAll(List<LedgerEvent> batch) {
+        for (LedgerEvent event : batch) {
+            if (event.getSequence() <= appliedSequence) {
+                continue;
+            }
+            apply(event);
+            appliedSequence = event.getSequence();
+            lastReplicationDelayMillis = Math.max(0, System.currentTimeMillis() - event.getTimestamp());
+        }
+        if (!batch.isEmpty()) {
+            source.acknowledge(this, appliedSequence);
+        }
+    }
+
+    private void apply(LedgerEvent event) {
+        switch (event.getType()) {
+            case USER_REGISTERED -> users.putIfAbsent(event.getUsername(),
+                    new ReplicaUser("admin".equals(event.getDetail())));
+            case ACCOUNT_OPENED -> {
+                if (accounts.containsKey(event.getAccountId())) {
+                    // Already in the snapshot the replica started from.
+                    return;
+                }
+                ReplicaUser owner = users.get(event.getUsername());
+                ReplicaAccount account = new ReplicaAccount(event.getUsername(), event.getDetail());
+                accounts.put(event.getAccountId(), account);
+                if (owner != null) {
+                    owner.accountIds.add(event.getAccountId());
+                }
+                adjust(event.getAccountId(), event.getAmount());
+            }
+            case ACCOUNT_CLOSED -> {
+                ReplicaAccount account = accounts.get(event.getAccountId());
+                if (account != null) {
+                    adjust(event.getAccountId(), -account.balance);
+                    accounts.remove(event.getAccountId());
+                    ReplicaUser owner = users.get(account.owner);
+                    if (owner != null) {
+                        owner.accountIds.remove(event.getAccountId());
+                    }
+                }
+            }
+            case DEPOSIT, WITHDRAWAL, BALANCE_ADJUSTED, FAILED_WITHDRAWAL -> {
+                ReplicaAccount account = accounts.get(event.getAccountId());
+                if (account != null && account.inSnapshot(event.getAccountVersion())) {
+                    return;
+                }
+                switch (event.getType()) {
+                    case DEPOSIT -> adjust(event.getAccountId(), event.getAmount());
+                    case WITHDRAWAL -> adjust(event.getAccountId(), -event.getAmount());
+                    case BALANCE_ADJUSTED -> {
+                        if (account != null) {
+                            adjust(event.getAccountId(), event.getAmount() - account.balance);
+                        }
+                    }
+                    default -> failedWithdrawals++;
+                }
+            }
+            case TRANSFER -> {
+                ReplicaAccount from = accounts.get(event.getAccountId());
+                ReplicaAccount to = accounts.get(event.getCounterpartyAccountId());
+                boolean debited = from == null || !from.inSnapshot(event.getAccountVersion());
+                boolean credited = to == null || !to.inSnapshot(event.getCounterpartyVersion());
+                if (!debited && !credited) {
+                    return;
+                }
+                if (debited) {
+                    adjust(event.getAccountId(), -event.getAmount());
+                }
+                if (credited) {
+                    adjust(event.getCounterpartyAccountId(), event.getAmount());
+                }
+            }
+        }
+        if (event.getType() == LedgerEventType.DEPOSIT || event.getType() == LedgerEventType.WITHDRAWAL
+                || event.getType() == LedgerEventType.TRANSFER) {
+            transactions.add(event);
+        }
+    }
+
+    /**
+     * Applies a balance delta to an account and the running user and system totals.
+     */
+    private void adjust(UUID accountId, double delta) {
+        ReplicaAccount account = accounts.get(accountId);
+        if (account == null) {
+            return;
+        }
+        account.balance += delta;
+        ReplicaUser owner = users.get(account.owner);
+        if (owner != null) {
+            owner.totalBalance += delta;
+        }
+        systemBalance += delta;
+    }
+
+    /**
+     * Returns the usernames of every replicated user.
+     *
+     * @return The usernames, in no particular order.
+     */
+    public List<String> getUsernames() {
+        return new ArrayList<>(users.keySet());
+    }
+
+    /**
+     * Indicates whether a replicated user is an administrator.
+     *
+     * @param username The username to look up.
+     * @return true if the user exists and is an admin.
+     */
+    public boolean isAdmin(String username) {
+        ReplicaUser user = users.get(username);
+        return user != null && user.admin;
+    }
+
+    /**
+     * Returns the combined balance of all of a user's accounts.
+     *
+     * @param username The username to look up.
+     * @return The user's total balance, or 0 if the user is unknown.
+     */
+    public double getUserBalance(String username) {
+        ReplicaUser user = users.get(username);
+        return user != null ? user.totalBalance : 0;
+    }
+
+    /**
+     * Returns the IDs of a user's replicated accounts.
+     *
+     * @param username The username to look up.
+     * @return The account IDs, or an empty set if the user is unknown.
+     */
+    public Set<UUID> getAccountIds(String username) {
+        ReplicaUser user = users.get(username);
+        return user != null ? Collections.unmodifiableSet(user.accountIds) : Collections.emptySet();
+    }
+
+    /**
+     * Returns the balance of a replicated account.
+     *
+     * @param accountId The account to look up.
+     * @return The balance, or 0 if the account is unknown.
+     */
+    public double getAccountBalance(UUID accountId) {
+        ReplicaAccount account = accounts.get(accountId);
+        return account != null ? account.balance : 0;
+    }
+
+    /**
+     * Returns the type of a replicated account, such as "SavingsAccount".
+     *
+     * @param accountId The account to look up.
+     * @return The account's class name, or null if the account is unknown.
+     */
+    public String getAccountType(UUID accountId) {
+        ReplicaAccount account = accounts.get(accountId);
+        return account != null ? account.type : null;
+    }
+
+    /**
+     * Returns the total amount of money across all replicated accounts, as
+     * of the last applied event.
+     *
+     * @return The system-wide balance.
+     */
+    public double getSystemBalance() {
+        return systemBalance;
+    }
+
+    /**
+     * Returns every replicated deposit, withdrawal and transfer.
+     *
+     * @return A copy of the replicated transactions in sequence order.
+     */
+    public synchronized List<LedgerEvent> getAllTransactions() {
+        return new ArrayList<>(transactions);
+    }
+
+    /**
+     * Returns the number of failed withdrawals seen in the stream.
+     *
+     * @return The failed withdrawal count.
+     */
+    public long getFailedWithdrawalCount() {
+        return failedWithdrawals;
+    }
+
+    /**
+     * Returns the sequence number of the last event applied to this replica.
+     *
+     * @return The applied sequence number.
+     */
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * Returns how many events the replica is behind its source.
+     *
+     * @return The number of known but unapplied events.
+     */
+    public long getLagInEvents() {
+        return Math.max(0, source.headSequence() - appliedSequence);
+    }
+
+    /**
+     * Returns the delay between the primary appending the most recently
+     * applied event and this replica applying it.
+     *
+     * @return The replication delay in milliseconds.
+     */
+    public long getLastReplicationDelayMillis() {
+        return lastReplicationDelayMillis;
+    }
+
+    /**
+     * A replicated user with a pre-aggregated total across their accounts.
+     */
+    private static class ReplicaUser {
+        private final boolean admin;
+        private final Set<UUID> accountIds;
+        private volatile double totalBalance;
+
+        ReplicaUser(boolean admin) {
+            this.admin = admin;
+            this.accountIds = ConcurrentHashMap.newKeySet();
+        }
+    }
+
+    /**
+     * A replicated account balance, and which of the account's changes the
+     * snapshot the replica started from already holds.
+     */
+    private static class ReplicaAccount {
+        private final String owner;
+        private final String type;
+        private volatile double balance;
+        private long snapshotVersion;
+        private final Set<Long> snapshotChanges = new HashSet<>();
+
+        ReplicaAccount(String owner, String type) {
+            this.owner = owner;
+            this.type = type;
+        }
+
+        /**
+         * Checks whether the change that gave the account a version number
+         * is already in the snapshot. Events without a version number
+         * predate snapshots and are always applied.
+         */
+        boolean inSnapshot(long version) {
+            return version != 0 && (version <= snapshotVersion || snapshotChanges.contains(version));
+        }
+    }
+}
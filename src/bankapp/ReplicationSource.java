@@ -0,0 +1,49 @@
+package bankapp;
+
+import java.util.List;
+
+/**
+ * A stream of sequenced {@link LedgerEvent}s that a {@link ReplicaBank} can
+ * tail. Implemented in-process by {@link MutationJournal} and over a local
+ * socket by {@link SocketReplicationSource}.
+ */
+public interface ReplicationSource {
+
+    /**
+     * Returns the next events after a given sequence number, waiting up to
+     * the given timeout for at least one to become available.
+     *
+     * @param afterSequence The last sequence number the caller has applied.
+     * @param maxEvents     The maximum number of events to return.
+     * @param timeoutMillis How long to wait if nothing is available; 0 returns immediately.
+     * @return The events in sequence order; empty if none arrived in time.
+     * @throws InterruptedException If the caller is interrupted while waiting.
+     */
+    List<LedgerEvent> poll(long afterSequence, int maxEvents, long timeoutMillis) throws InterruptedException;
+
+    /**
+     * Returns the sequence number of the newest event known to the source.
+     *
+     * @return The head sequence number, or 0 if no events exist.
+     */
+    long headSequence();
+
+    /**
+     * Tells the source how far a reader has read, so that a source which
+     * lets old events go keeps those the reader has not read yet. Sources
+     * that keep nothing on a reader's behalf ignore it.
+     *
+     * @param reader   The reader, such as a replica.
+     * @param sequence The last sequence number the reader has applied.
+     */
+    default void acknowledge(Object reader, long sequence) {
+    }
+
+    /**
+     * Tells the source a reader has stopped reading from it.
+     *
+     * @param reader The reader passed to {@link #acknowledge(Object, long)}.
+     */
+    default void release(Object reader) {
+    }
+}
@@ -0,0 +1,238 @@
+package bankapp;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes admin reports over every user of a {@link Bank} in parallel.
+ * <p>
+ * A report reads one {@link BankSnapshot}, so its figures are consistent
+ * with each other even while transfers continue: accounts, balances and
+ * withdrawal counts are all read as of the snapshot. Balances are never
+ * added across currencies; totals, top-N lists and histograms are kept per
+ * currency. The user list is split recursively across a fork-join pool; each
+ * leaf fills its own slice of the per-user totals and keeps its own bounded
+ * top-N heaps, histograms and withdrawal counts, which are merged pairwise on
+ * the way back up. No state is shared between leaves, so the work scales
+ * with the number of cores.
+ */
+public class ReportingEngine {
+
+    /** Default histogram bucket bounds, in major units of each account's currency. */
+    public static final double[] DEFAULT_BOUNDS = { 0, 100, 1_000, 10_000, 100_000 };
+
+    /** Users per leaf task; below this, splitting costs more than it saves. */
+    private static final int LEAF_USERS = 256;
+
+    private static final Comparator<BankReport.AccountEntry> BY_BALANCE =
+            Comparator.comparingDouble(BankReport.AccountEntry::getBalance);
+
+    private static final Comparator<Currency> BY_CODE = Comparator.comparing(Currency::getCurrencyCode);
+
+    private final Bank bank;
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs an engine that runs on the common fork-join pool.
+     *
+     * @param bank The bank to report on.
+     */
+    public ReportingEngine(Bank bank) {
+        this(bank, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs an engine that runs on the given pool.
+     *
+     * @param bank The bank to report on.
+     * @param pool The pool to run report tasks on.
+     */
+    public ReportingEngine(Bank bank, ForkJoinPool pool) {
+        this.bank = bank;
+        this.pool = pool;
+    }
+
+    /**
+     * Runs a report with the default histogram buckets.
+     *
+     * @param topN The number of richest accounts to list.
+     * @return The report.
+     */
+    public BankReport run(int topN) {
+        return run(topN, DEFAULT_BOUNDS);
+    }
+
+    /**
+     * Runs a report.
+     *
+     * @param topN   The number of richest accounts to list.
+     * @param bounds Ascending histogram bucket upper bounds.
+     * @return The report.
+     * @throws IllegalArgumentException if topN is negative or the bounds are not ascending.
+     */
+    public BankReport run(int topN, double[] bounds) {
+        if (topN < 0) {
+            throw new IllegalArgumentException("Top-N count cannot be negative.");
+        }
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("Histogram bounds must be ascending.");
+            }
+        }
+        try (BankSnapshot snapshot = bank.snapshot()) {
+            List<User> users = snapshot.getUsers();
+            CurrencyTotals[] totals = new CurrencyTotals[users.size()];
+            Partial result = pool.invoke(new ReportTask(snapshot, users, totals, 0, users.size(), topN, bounds));
+
+            Map<String, CurrencyTotals> userTotals = new LinkedHashMap<>();
+            for (int i = 0; i < users.size(); i++) {
+                userTotals.put(users.get(i).getUsername(), totals[i]);
+            }
+            Map<Currency, List<BankReport.AccountEntry>> top = new TreeMap<>(BY_CODE);
+            result.top.forEach((currency, entries) -> {
+                List<BankReport.AccountEntry> sorted = new ArrayList<>(entries);
+                sorted.sort(BY_BALANCE.reversed());
+                top.put(currency, sorted);
+            });
+            return new BankReport(snapshot.getEpoch(), userTotals, top, bounds, result.histograms,
+                    result.withdrawals, result.failedWithdrawals, result.withdrawalsByType);
+        }
+    }
+
+    /**
+     * Aggregates computed by one task over its range of users.
+     */
+    private static final class Partial {
+        final Map<Currency, PriorityQueue<BankReport.AccountEntry>> top = new HashMap<>();
+        /** Per currency, then per type: account counts by balance bucket. */
+        final Map<Currency, Map<String, long[]>> histograms = new HashMap<>();
+        /** Per type: {successful withdrawals, failed withdrawals}. */
+        final Map<String, long[]> withdrawalsByType = new HashMap<>();
+        long withdrawals;
+        long failedWithdrawals;
+
+        void offer(BankReport.AccountEntry entry, int topN) {
+            if (topN == 0) {
+                return;
+            }
+            PriorityQueue<BankReport.AccountEntry> heap =
+                    top.computeIfAbsent(entry.getCurrency(), currency -> new PriorityQueue<>(BY_BALANCE));
+            if (heap.size() < topN) {
+                heap.add(entry);
+            } else if (entry.getBalance() > heap.peek().getBalance()) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+
+        void merge(Partial other, int topN) {
+            for (PriorityQueue<BankReport.AccountEntry> heap : other.top.values()) {
+                for (BankReport.AccountEntry entry : heap) {
+                    offer(entry, topN);
+                }
+            }
+            other.histograms.forEach((currency, byType) -> byType.forEach(
+                    (type, counts) -> add(histograms.computeIfAbsent(currency, c -> new HashMap<>()), type, counts)));
+            other.withdrawalsByType.forEach((type, counts) -> add(withdrawalsByType, type, counts));
+            withdrawals += other.withdrawals;
+            failedWithdrawals += other.failedWithdrawals;
+        }
+
+        private static void add(Map<String, long[]> target, String type, long[] counts) {
+            long[] existing = target.putIfAbsent(type, counts);
+            if (existing != null) {
+                for (int i = 0; i < counts.length; i++) {
+                    existing[i] += counts[i];
+                }
+            }
+        }
+    }
+
+    private static final class ReportTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient BankSnapshot snapshot;
+        private final transient List<User> users;
+        private final CurrencyTotals[] totals;
+        private final int from;
+        private final int to;
+        private final int topN;
+        private final double[] bounds;
+
+        ReportTask(BankSnapshot snapshot, List<User> users, CurrencyTotals[] totals, int from, int to, int topN,
+                double[] bounds) {
+            this.snapshot = snapshot;
+            this.users = users;
+            this.totals = totals;
+            this.from = from;
+            this.to = to;
+            this.topN = topN;
+            this.bounds = bounds;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= LEAF_USERS) {
+                return computeLeaf();
+            }
+            int middle = (from + to) >>> 1;
+            ReportTask left = new ReportTask(snapshot, users, totals, from, middle, topN, bounds);
+            ReportTask right = new ReportTask(snapshot, users, totals, middle, to, topN, bounds);
+            left.fork();
+            Partial result = right.compute();
+            result.merge(left.join(), topN);
+            return result;
+        }
+
+        private Partial computeLeaf() {
+            Partial partial = new Partial();
+            for (int i = from; i < to; i++) {
+                User user = users.get(i);
+                CurrencyTotals.Builder total = new CurrencyTotals.Builder();
+                for (BankAccount account : snapshot.getAccounts(user)) {
+                    double balance = snapshot.getBalance(account);
+                    Currency currency = account.getCurrency();
+                    String type = account.getClass().getSimpleName();
+                    total.add(currency, balance);
+                    partial.offer(new BankReport.AccountEntry(account.getId(), user.getUsername(), type, currency,
+                            balance), topN);
+                    partial.histograms.computeIfAbsent(currency, c -> new HashMap<>())
+                            .computeIfAbsent(type, t -> new long[bounds.length + 1])[bucketOf(balance)]++;
+
+                    int succeeded = snapshot.getWithdrawals(account);
+                    int failed = snapshot.getFailedWithdrawals(account);
+                    long[] counts = partial.withdrawalsByType.computeIfAbsent(type, t -> new long[2]);
+                    counts[0] += succeeded;
+                    counts[1] += failed;
+                    partial.withdrawals += succeeded;
+                    partial.failedWithdrawals += failed;
+                }
+                totals[i] = total.build();
+            }
+            return partial;
+        }
+
+        private int bucketOf(double balance) {
+            int low = 0;
+            int high = bounds.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (balance < bounds[middle]) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package bankapp;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable, sorted table of keys and values on disk, written once by an
+ * {@link LsmStore} flush or compaction. The file holds roughly 4 KB data
+ * blocks, then a sparse index of each block's first key, then a Bloom filter,
+ * then a fixed-size footer locating the two. Only the index and the filter
+ * stay in memory; blocks are read on demand through a {@link BlockCache}.
+ */
+final class SSTable {
+
+    /** Marks a deleted key in a block and in lookups. */
+    static final byte[] TOMBSTONE = new byte[0];
+
+    private static final int TARGET_BLOCK_BYTES = 4096;
+    private static final int FOOTER_BYTES = 24;
+    private static final int MAGIC = 0x4c534d31;
+
+    final long id;
+    final Path path;
+    final int entryCount;
+    final long sizeBytes;
+    private final FileChannel channel;
+    private final BlockCache cache;
+    private final String[] firstKeys;
+    private final long[] blockOffsets;
+    private final int[] blockLengths;
+    private final BloomFilter bloom;
+
+    /**
+     * A decoded data block: its keys in order and the matching values.
+     */
+    static final class Block {
+        final String[] keys;
+        final byte[][] values;
+        final int sizeBytes;
+
+        Block(String[] keys, byte[][] values, int sizeBytes) {
+            this.keys = keys;
+            this.values = values;
+            this.sizeBytes = sizeBytes;
+        }
+    }
+
+    private SSTable(long id, Path path, int entryCount, long sizeBytes, FileChannel channel, BlockCache cache, String[] firstKeys,
+            long[] blockOffsets, int[] blockLengths, BloomFilter bloom) {
+        this.id = id;
+        this.path = path;
+        this.entryCount = entryCount;
+        this.sizeBytes = sizeBytes;
+        this.channel = channel;
+        this.cache = cache;
+        this.firstKeys = firstKeys;
+        this.blockOffsets = blockOffsets;
+        this.blockLengths = blockLengths;
+        this.bloom = bloom;
+    }
+
+    /**
+     * Writes sorted entries to a new table file. The file is written under a
+     * temporary name and moved into place, so a crash never leaves a
+     * partial table behind.
+     *
+     * @param path    Where the table should end up.
+     * @param entries The entries in key order; {@link #TOMBSTONE} values mark deletions.
+     * @param count   The number of entries, or an upper bound on it, used to size the Bloom filter.
+     */
+    static void write(Path path, Iterator<Map.Entry<String, byte[]>> entries, int count) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        List<String> firstKeys = new ArrayList<>();
+        List<long[]> blocks = new ArrayList<>();
+        BloomFilter bloom = new BloomFilter(count);
+        try (OutputStream file = Files.newOutputStream(temp);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            ByteArrayOutputStream blockBytes = new ByteArrayOutputStream(TARGET_BLOCK_BYTES * 2);
+            DataOutputStream block = new DataOutputStream(blockBytes);
+            long offset = 0;
+            int written = 0;
+            while (entries.hasNext()) {
+                Map.Entry<String, byte[]> entry = entries.next();
+                written++;
+                if (blockBytes.size() == 0) {
+                    firstKeys.add(entry.getKey());
+                }
+                bloom.add(entry.getKey());
+                block.writeUTF(entry.getKey());
+                byte[] value = entry.getValue();
+                if (value == TOMBSTONE) {
+                    block.writeInt(-1);
+                } else {
+                    block.writeInt(value.length);
+                    block.write(value);
+                }
+                if (blockBytes.size() >= TARGET_BLOCK_BYTES) {
+                    blocks.add(new long[] { offset, blockBytes.size() });
+                    offset += blockBytes.size();
+                    blockBytes.writeTo(out);
+                    blockBytes.reset();
+                }
+            }
+            if (blockBytes.size() > 0) {
+                blocks.add(new long[] { offset, blockBytes.size() });
+                offset += blockBytes.size();
+                blockBytes.writeTo(out);
+            }
+            ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+            DataOutputStream index = new DataOutputStream(indexBytes);
+            index.writeInt(blocks.size());
+            for (int i = 0; i < blocks.size(); i++) {
+                index.writeUTF(firstKeys.get(i));
+                index.writeLong(blocks.get(i)[0]);
+                index.writeInt((int) blocks.get(i)[1]);
+            }
+            indexBytes.writeTo(out);
+            long indexOffset = offset;
+            long bloomOffset = indexOffset + indexBytes.size();
+            bloom.writeTo(out);
+            out.writeLong(indexOffset);
+            out.writeLong(bloomOffset);
+            out.writeInt(written);
+            out.writeInt(MAGIC);
+            out.flush();
+            file.flush();
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Opens a table file, reading its index and Bloom filter into memory.
+     *
+     * @param id    A number unique among the store's tables, used to key cached blocks.
+     * @param path  The table file.
+     * @param cache The cache blocks are read through.
+     */
+    static SSTable open(long id, Path path, BlockCache cache) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < FOOTER_BYTES) {
+                throw new IOException("Table file is too short: " + path);
+            }
+            ByteBuffer footer = read(channel, size - FOOTER_BYTES, FOOTER_BYTES);
+            long indexOffset = footer.getLong();
+            long bloomOffset = footer.getLong();
+            int entryCount = footer.getInt();
+            if (footer.getInt() != MAGIC) {
+                throw new IOException("Not a table file: " + path);
+            }
+            DataInputStream index = stream(read(channel, indexOffset, (int) (bloomOffset - indexOffset)));
+            int blockCount = index.readInt();
+            String[] firstKeys = new String[blockCount];
+            long[] offsets = new long[blockCount];
+            int[] lengths = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                firstKeys[i] = index.readUTF();
+                offsets[i] = index.readLong();
+                lengths[i] = index.readInt();
+            }
+            BloomFilter bloom = BloomFilter.readFrom(
+                    stream(read(channel, bloomOffset, (int) (size - FOOTER_BYTES - bloomOffset))));
+            return new SSTable(id, path, entryCount, size, channel, cache, firstKeys, offsets, lengths, bloom);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Looks a key up in this table.
+     *
+     * @return The value, {@link #TOMBSTONE} if the key was deleted, or null if the table does not mention it.
+     */
+    byte[] get(String key) throws IOException {
+        if (!bloom.mightContain(key)) {
+            return null;
+        }
+        int blockIndex = floorBlock(key);
+        if (blockIndex < 0) {
+            return null;
+        }
+        Block block = block(blockIndex);
+        int found = Arrays.binarySearch(block.keys, key);
+        return found >= 0 ? block.values[found] : null;
+    }
+
+    /**
+     * Adds every entry whose key starts with the prefix to the map, unless a
+     * newer source already put the key there.
+     */
+    void scan(String prefix, Map<String, byte[]> into) throws IOException {
+        int blockIndex = Math.max(0, floorBlock(prefix));
+        for (; blockIndex < firstKeys.length; blockIndex++) {
+            if (firstKeys[blockIndex].compareTo(prefix) > 0 && !firstKeys[blockIndex].startsWith(prefix)) {
+                return;
+            }
+            Block block = block(blockIndex);
+            for (int i = 0; i < block.keys.length; i++) {
+                if (block.keys[i].startsWith(prefix)) {
+                    into.putIfAbsent(block.keys[i], block.values[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Iterates over every entry of the table in key order, for compaction.
+     */
+    Iterator<Map.Entry<String, byte[]>> iterator() {
+        return iterator("");
+    }
+
+    /**
+     * Iterates in key order over the entries from a key onwards. Blocks are
+     * read past the cache, so that a long scan does not evict the blocks
+     * point lookups keep using.
+     *
+     * @param from The first key to return, if the table has it.
+     */
+    Iterator<Map.Entry<String, byte[]>> iterator(String from) {
+        return new Iterator<Map.Entry<String, byte[]>>() {
+            private int blockIndex = Math.max(0, floorBlock(from));
+            private Block block;
+            private int entry;
+
+            @Override
+            public boolean hasNext() {
+                while (block == null || entry == block.keys.length) {
+                    if (blockIndex == firstKeys.length) {
+                        return false;
+                    }
+                    try {
+                        block = readBlock(blockIndex++);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    entry = 0;
+                    while (entry < block.keys.length && block.keys[entry].compareTo(from) < 0) {
+                        entry++;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public Map.Entry<String, byte[]> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry<String, byte[]> next = Map.entry(block.keys[entry], block.values[entry]);
+                entry++;
+                return next;
+            }
+        };
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Finds the last block whose first key is at or before the given key.
+     */
+    private int floorBlock(String key) {
+        int found = Arrays.binarySearch(firstKeys, key);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    private Block block(int blockIndex) throws IOException {
+        return cache.get(id, blockIndex, () -> readBlock(blockIndex));
+    }
+
+    private Block readBlock(int blockIndex) throws IOException {
+        DataInputStream in = stream(read(channel, blockOffsets[blockIndex], blockLengths[blockIndex]));
+        List<String> keys = new ArrayList<>();
+        List<byte[]> values = new ArrayList<>();
+        while (in.available() > 0) {
+            keys.add(in.readUTF());
+            int length = in.readInt();
+            if (length < 0) {
+                values.add(TOMBSTONE);
+            } else {
+                byte[] value = new byte[length];
+                in.readFully(value);
+                values.add(value);
+            }
+        }
+        return new Block(keys.toArray(new String[0]), values.toArray(new byte[0][]), blockLengths[blockIndex]);
+    }
+
+    private static DataInputStream stream(ByteBuffer bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes.array(), 0, bytes.limit()));
+    }
+
+    /**
+     * Reads a range of the file with positional reads, which are safe to
+     * issue from many threads at once.
+     */
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Table file ended early.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -1,24 +1,34 @@
 package bankapp;
 
+import java.util.Currency;
+import java.util.UUID;
+
 /**
  * Represents a savings account that accrues interest over time
  * and limits the number of withdrawals per month.
  */
 public class SavingsAccount extends BankAccount {
 
-    private int withdrawalCount;
-    private int withdrawalLimit;
+    /** The number of withdrawals allowed per month by default. */
+    private static final int DEFAULT_WITHDRAWAL_LIMIT = 3;
+
     private double interestRate;
 
+    /** Which balance interest is paid on. */
+    private volatile InterestMode interestMode;
+
+    /** When the current accrual period began, in epoch milliseconds. */
+    private long accrualStartMillis;
+
+    /** The account's balance-time integral at the start of the current accrual period. */
+    private double accrualStartBalanceMillis;
+
     /**
      * Constructs a new SavingsAccount with a zero balance,
      * a default interest rate of 1%, and a withdrawal limit of 3 per month.
      */
     public SavingsAccount() {
-        super();
-        this.withdrawalCount = 0;
-        this.withdrawalLimit = 3;
-        this.interestRate = 0.01; // 1% interest
+        this(0.01); // 1% interest
     }
     
     /**
@@ -28,52 +38,116 @@ public class SavingsAccount extends BankAccount {
      * @param interestRate
      * */
     public SavingsAccount(double interestRate) {
-    	super();
-    	this.withdrawalCount = 0;
-    	this.withdrawalLimit = 3;
-    	this.interestRate = interestRate;
+    	this(interestRate, BankClock.system());
     }
 
     /**
-     * Withdraws a specified amount from the savings account, enforcing
-     * a withdrawal limit per month.
+     * Constructs a new SavingsAccount with a zero balance, a withdrawal limit
+     * of 3 per calendar month measured by the given clock, and the given
+     * interest rate.
      *
-     * @param amount The amount to withdraw.
-     * @throws IllegalArgumentException if the withdrawal limit is exceeded or insufficient funds.
+     * @param interestRate The interest rate (e.g., 0.02 for 2%).
+     * @param clock        The clock that decides when the monthly limit rolls over.
      */
-    @Override
-    public void withdraw(double amount) {
-        if (withdrawalCount >= withdrawalLimit) {
-            throw new IllegalArgumentException("Withdrawal limit reached for this month.");
-        }
-        super.withdraw(amount);
-        withdrawalCount++;
+    public SavingsAccount(double interestRate, BankClock clock) {
+        this(interestRate, clock, DEFAULT_CURRENCY);
     }
 
     /**
-     * Applies interest to the current balance.
+     * Constructs a new SavingsAccount with a zero balance held in the given
+     * currency, a withdrawal limit of 3 per calendar month, and the given
+     * interest rate.
+     *
+     * @param interestRate The interest rate (e.g., 0.02 for 2%).
+     * @param clock        The clock that decides when the monthly limit rolls over.
+     * @param currency     The currency the balance is held in.
+     */
+    public SavingsAccount(double interestRate, BankClock clock, Currency currency) {
+        this(UUID.randomUUID(), interestRate, clock, currency);
+    }
+
+    /**
+     * Constructs a savings account with a known ID, for restoring one from storage.
+     */
+    SavingsAccount(UUID id, double interestRate, BankClock clock, Currency currency) {
+        super(id, clock, currency);
+        this.interestRate = interestRate;
+        this.interestMode = InterestMode.CURRENT_BALANCE;
+        this.accrualStartMillis = clock.currentTimeMillis();
+        this.accrualStartBalanceMillis = getBalanceMillisAt(accrualStartMillis);
+        addWithdrawalLimit(LimitRule.count(DEFAULT_WITHDRAWAL_LIMIT, LimitWindow.calendarMonth()));
+    }
+
+    /**
+     * Applies interest to the current balance, or to the average daily
+     * balance since the previous accrual if that mode is selected.
      * Call this method monthly to accrue interest.
      */
-    public void accrueInterest() {
-        double interest = getCurrentBalance() * interestRate;
-        deposit(interest);
+    public synchronized void accrueInterest() {
+        long now = getClock().currentTimeMillis();
+        double base = interestMode == InterestMode.AVERAGE_DAILY_BALANCE
+                ? averageBalanceUntil(now)
+                : getCurrentBalance();
+        accrualStartMillis = now;
+        accrualStartBalanceMillis = getBalanceMillisAt(now);
+        deposit(base * interestRate);
+    }
+
+    /**
+     * Gets the time-weighted average balance since the previous accrual, or
+     * since the account was opened if interest has not accrued yet. This is
+     * read from a running integral, so it costs the same however many
+     * transactions the period had.
+     *
+     * @return The average balance over the current accrual period.
+     */
+    public synchronized double getAverageBalanceSinceLastAccrual() {
+        return averageBalanceUntil(getClock().currentTimeMillis());
+    }
+
+    private double averageBalanceUntil(long now) {
+        long elapsed = now - accrualStartMillis;
+        if (elapsed <= 0) {
+            return getCurrentBalance();
+        }
+        return (getBalanceMillisAt(now) - accrualStartBalanceMillis) / elapsed;
+    }
+
+    /**
+     * Selects which balance interest is paid on.
+     *
+     * @param mode The interest mode.
+     */
+    public void setInterestMode(InterestMode mode) {
+        this.interestMode = mode;
     }
 
     /**
-     * Resets the monthly withdrawal counter.
-     * Call this method at the start of each month.
+     * Gets which balance interest is paid on.
+     *
+     * @return The interest mode.
+     */
+    public InterestMode getInterestMode() {
+        return interestMode;
+    }
+
+    /**
+     * Resets the monthly withdrawal counter. The counter rolls over on its
+     * own at the start of each month, so this is only needed for
+     * administrative corrections.
      */
     public void resetWithdrawalCount() {
-        this.withdrawalCount = 0;
+        getWithdrawalLimits().resetUsage();
     }
 
     /**
-     * Sets a new monthly withdrawal limit.
+     * Sets a new monthly withdrawal limit. Withdrawals already made this
+     * month still count against the new limit.
      * 
      * @param limit The maximum number of withdrawals allowed per month.
      */
     public void setWithdrawalLimit(int limit) {
-        this.withdrawalLimit = limit;
+        getWithdrawalLimits().replaceLimit(LimitRule.count(limit, LimitWindow.calendarMonth()));
     }
 
     /**
@@ -85,13 +159,22 @@ public class SavingsAccount extends BankAccount {
         this.interestRate = rate;
     }
 
+    /**
+     * Gets the interest rate for this savings account.
+     *
+     * @return The interest rate (e.g., 0.02 for 2%).
+     */
+    public double getInterestRate() {
+        return interestRate;
+    }
+
     /**
      * Gets the number of withdrawals made this month.
      *
      * @return The current withdrawal count.
      */
     public int getWithdrawalCount() {
-        return withdrawalCount;
+        return (int) getWithdrawalLimits().getUsed(LimitRule.Kind.COUNT, LimitWindow.Type.CALENDAR_MONTH);
     }
 
     /**
@@ -100,6 +183,7 @@ public class SavingsAccount extends BankAccount {
      * @return The maximum withdrawals allowed per month.
      */
     public int getWithdrawalLimit() {
-        return withdrawalLimit;
+        LimitRule rule = getWithdrawalLimits().getRule(LimitRule.Kind.COUNT, LimitWindow.Type.CALENDAR_MONTH);
+        return rule != null ? (int) rule.getMaximum() : Integer.MAX_VALUE;
     }
 }
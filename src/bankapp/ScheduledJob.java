@@ -0,0 +1,86 @@
+package bankapp;
+
+/**
+ * A job held by a {@link TimingWheelScheduler}. Jobs are intrusive list
+ * nodes in the wheel's slots, so cancelling one is O(1).
+ */
+public class ScheduledJob {
+
+    final Runnable task;
+    final Recurrence recurrence;
+    final TimingWheelScheduler scheduler;
+
+    /** When the job is next due, in epoch milliseconds. */
+    volatile long dueMillis;
+
+    /** The wheel tick the job is filed under. */
+    long dueTick;
+
+    /** The wheel level and slot holding the job, or -1 when not filed. */
+    int level = -1;
+    int slot = -1;
+
+    /** Neighbours in the slot's doubly linked list. */
+    ScheduledJob prev;
+    ScheduledJob next;
+
+    private volatile boolean cancelled;
+    private volatile long runCount;
+
+    ScheduledJob(TimingWheelScheduler scheduler, Runnable task, long dueMillis, Recurrence recurrence) {
+        this.scheduler = scheduler;
+        this.task = task;
+        this.dueMillis = dueMillis;
+        this.recurrence = recurrence;
+    }
+
+    /**
+     * Cancels the job so that it will not run again. A run already in
+     * progress is allowed to finish.
+     *
+     * @return true if the job was cancelled by this call, false if it was already cancelled.
+     */
+    public boolean cancel() {
+        if (cancelled) {
+            return false;
+        }
+        cancelled = true;
+        scheduler.remove(this);
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Indicates whether the job runs more than once.
+     *
+     * @return true if the job has a recurrence.
+     */
+    public boolean isRecurring() {
+        return recurrence != null;
+    }
+
+    /**
+     * Returns when the job is next due.
+     *
+     * @return The due time in epoch milliseconds.
+     */
+    public long getDueMillis() {
+        return dueMillis;
+    }
+
+    /**
+     * Returns how many times the job has run.
+     *
+     * @return The run count.
+     */
+    public long getRunCount() {
+        return runCount;
+    }
+
+    void markRun() {
+        runCount++;
+    }
+}
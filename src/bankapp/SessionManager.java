@@ -0,0 +1,301 @@
+package bankapp;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Issues opaque session tokens after a successful login so that later
+ * requests can be authenticated with a single map lookup instead of
+ * rehashing the password.
+ * <p>
+ * A session ends when it reaches its time-to-live, when it has been idle for
+ * longer than the idle timeout, when it is revoked, or when the cache is full
+ * and it is the oldest session. Expired sessions are dropped when they are
+ * next presented and by {@link #evictExpired()}.
+ */
+public class SessionManager {
+
+    /** Random bytes per token; 256 bits cannot be guessed. */
+    private static final int TOKEN_BYTES = 32;
+
+    private static final class Session {
+        final User user;
+        final String token;
+        final long expiresAt;
+        volatile long lastAccess;
+
+        Session(User user, String token, long createdAt, long expiresAt) {
+            this.user = user;
+            this.token = token;
+            this.expiresAt = expiresAt;
+            this.lastAccess = createdAt;
+        }
+    }
+
+    private final BankClock clock;
+    private final long ttlMillis;
+    private final long idleMillis;
+    private final int maxSessions;
+    private final SecureRandom random;
+
+    private final Map<String, Session> sessions;
+
+    /** Tokens per username, so every session of a user can be revoked at once. */
+    private final Map<String, Set<String>> tokensByUser;
+
+    /** Tokens in issue order; the head is the first to be evicted when full. */
+    private final Queue<String> issueOrder;
+
+    /** Entries in {@link #issueOrder}, including tokens already ended. */
+    private final AtomicInteger queued;
+
+    private final AtomicInteger size;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder expirations;
+    private final LongAdder evictions;
+
+    /**
+     * Constructs a session manager.
+     *
+     * @param clock       The clock session ages are measured with.
+     * @param ttl         How long a session lasts from login.
+     * @param idleTimeout How long a session lasts without being used.
+     * @param maxSessions The most sessions held at once.
+     * @throws IllegalArgumentException if a duration or the capacity is not positive.
+     */
+    public SessionManager(BankClock clock, Duration ttl, Duration idleTimeout, int maxSessions) {
+        if (ttl.toMillis() <= 0 || idleTimeout.toMillis() <= 0 || maxSessions <= 0) {
+            throw new IllegalArgumentException("Session lifetimes and capacity must be positive.");
+        }
+        this.clock = clock;
+        this.ttlMillis = ttl.toMillis();
+        this.idleMillis = idleTimeout.toMillis();
+        this.maxSessions = maxSessions;
+        this.random = new SecureRandom();
+        this.sessions = new ConcurrentHashMap<>();
+        this.tokensByUser = new ConcurrentHashMap<>();
+        this.issueOrder = new ConcurrentLinkedQueue<>();
+        this.queued = new AtomicInteger();
+        this.size = new AtomicInteger();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.expirations = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    /**
+     * Opens a session for an authenticated user.
+     *
+     * @param user The user who has just logged in.
+     * @return The session token.
+     */
+    public String open(User user) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        long now = clock.currentTimeMillis();
+        Session session = new Session(user, token, now, now + ttlMillis);
+
+        tokensByUser.compute(user.getUsername(), (name, tokens) -> {
+            Set<String> updated = tokens != null ? tokens : ConcurrentHashMap.newKeySet();
+            updated.add(token);
+            return updated;
+        });
+        sessions.put(token, session);
+        issueOrder.add(token);
+        if (queued.incrementAndGet() > 2 * maxSessions) {
+            compactIssueOrder();
+        }
+        if (size.incrementAndGet() > maxSessions) {
+            evictOldest();
+        }
+        return token;
+    }
+
+    /**
+     * Returns the user a token belongs to and marks the session as used.
+     *
+     * @param token The session token.
+     * @return The user, or null if the token is unknown, expired or revoked.
+     */
+    public User validate(String token) {
+        Session session = token != null ? sessions.get(token) : null;
+        if (session == null) {
+            misses.increment();
+            return null;
+        }
+        long now = clock.currentTimeMillis();
+        if (isExpired(session, now)) {
+            if (remove(session)) {
+                expirations.increment();
+            }
+            misses.increment();
+            return null;
+        }
+        session.lastAccess = now;
+        hits.increment();
+        return session.user;
+    }
+
+    /**
+     * Ends a session.
+     *
+     * @param token The session token.
+     * @return true if the session was open.
+     */
+    public boolean revoke(String token) {
+        Session session = token != null ? sessions.get(token) : null;
+        return session != null && remove(session);
+    }
+
+    /**
+     * Ends every session of a user, for example when their accounts change.
+     *
+     * @param username The user's username.
+     * @return The number of sessions ended.
+     */
+    public int revokeAll(String username) {
+        Set<String> tokens = tokensByUser.get(username);
+        if (tokens == null) {
+            return 0;
+        }
+        int revoked = 0;
+        for (String token : tokens.toArray(new String[0])) {
+            if (revoke(token)) {
+                revoked++;
+            }
+        }
+        return revoked;
+    }
+
+    /**
+     * Drops every session past its time-to-live or idle timeout.
+     *
+     * @return The number of sessions dropped.
+     */
+    public int evictExpired() {
+        long now = clock.currentTimeMillis();
+        int dropped = 0;
+        for (Session session : sessions.values()) {
+            if (isExpired(session, now) && remove(session)) {
+                expirations.increment();
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Returns the number of open sessions.
+     *
+     * @return The session count.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Returns how many validations found an open session.
+     *
+     * @return The hit count.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns how many validations found no open session.
+     *
+     * @return The miss count.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the fraction of validations that found an open session.
+     *
+     * @return The hit rate, or 0 if nothing has been validated.
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Returns how many sessions ended by time-to-live or idle timeout.
+     *
+     * @return The expiration count.
+     */
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    /**
+     * Returns how many sessions were dropped because the cache was full.
+     *
+     * @return The eviction count.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private boolean isExpired(Session session, long now) {
+        return now >= session.expiresAt || now - session.lastAccess >= idleMillis;
+    }
+
+    private void evictOldest() {
+        while (size.get() > maxSessions) {
+            String token = issueOrder.poll();
+            if (token == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            Session session = sessions.get(token);
+            if (session != null && remove(session)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Removes a session; only the caller that actually removes it returns true.
+     */
+    private boolean remove(Session session) {
+        if (!sessions.remove(session.token, session)) {
+            return false;
+        }
+        size.decrementAndGet();
+        tokensByUser.computeIfPresent(session.user.getUsername(), (name, tokens) -> {
+            tokens.remove(session.token);
+            return tokens.isEmpty() ? null : tokens;
+        });
+        // The token stays in issueOrder until it is polled or compacted away.
+        return true;
+    }
+
+    /**
+     * Drops ended sessions' tokens from the issue order so that revocations
+     * without eviction pressure cannot grow it without bound.
+     */
+    private void compactIssueOrder() {
+        issueOrder.removeIf(token -> {
+            if (sessions.containsKey(token)) {
+                return false;
+            }
+            queued.decrementAndGet();
+            return true;
+        });
+    }
+}
@@ -0,0 +1,136 @@
+package bankapp;
+
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coordinates writers and point-in-time snapshots of a {@link Bank}.
+ * <p>
+ * Writers never block: they stamp the balance versions they install with the
+ * current epoch and announce themselves in a counter for that epoch's parity.
+ * Taking a snapshot advances the epoch and waits only for writers already
+ * stamped with the previous epoch to finish, after which every change
+ * stamped at or before the snapshot epoch is installed and every later
+ * change is stamped above it.
+ * <p>
+ * A writer whose change depends on the balance it replaces, such as a
+ * withdrawal that needs the funds, must not be stamped below the version it
+ * read: a snapshot would otherwise include the withdrawal but not the deposit
+ * that paid for it. Such writers {@link #renew(long)} their stamp first.
+ */
+class SnapshotCoordinator {
+
+    /** Coordinator shared by accounts that are not registered with a bank. */
+    static final SnapshotCoordinator DETACHED = new SnapshotCoordinator();
+
+    /** The epoch new writers are stamped with. Starts at 1 so genesis versions (0) sort first. */
+    private final AtomicLong epoch;
+
+    /** In-flight writer counts, indexed by epoch parity. */
+    private final AtomicLong[] writers;
+
+    /** Open snapshot counts keyed by epoch; guarded by {@code this}. */
+    private final TreeMap<Long, Integer> openSnapshots;
+
+    /** The oldest epoch any open snapshot reads at, or Long.MAX_VALUE if none. */
+    private volatile long oldestOpenEpoch;
+
+    SnapshotCoordinator() {
+        this.epoch = new AtomicLong(1);
+        this.writers = new AtomicLong[] { new AtomicLong(), new AtomicLong() };
+        this.openSnapshots = new TreeMap<>();
+        this.oldestOpenEpoch = Long.MAX_VALUE;
+    }
+
+    /**
+     * Announces a writer and returns the epoch its changes must be stamped
+     * with. Every call must be paired with {@link #exit(long)}.
+     *
+     * @return The writer's epoch stamp.
+     */
+    long enter() {
+        while (true) {
+            long stamp = epoch.get();
+            AtomicLong counter = writers[(int) (stamp & 1)];
+            counter.incrementAndGet();
+            if (epoch.get() == stamp) {
+                return stamp;
+            }
+            // A snapshot advanced the epoch concurrently; retry under the new one.
+            counter.decrementAndGet();
+        }
+    }
+
+    /**
+     * Marks a writer previously announced by {@link #enter()} as finished.
+     *
+     * @param stamp The stamp returned by {@code enter()}.
+     */
+    void exit(long stamp) {
+        writers[(int) (stamp & 1)].decrementAndGet();
+    }
+
+    /**
+     * Moves a writer that has read a balance installed under a later epoch
+     * up to the current epoch, so that no snapshot can include its change
+     * without the change it was based on. The writer must not have
+     * installed anything under its old stamp.
+     *
+     * @param stamp The writer's current stamp.
+     * @return The writer's new stamp, to be passed to {@link #exit(long)} instead.
+     */
+    long renew(long stamp) {
+        long renewed = enter();
+        exit(stamp);
+        return renewed;
+    }
+
+    /**
+     * Returns the oldest epoch that a snapshot may read at, as seen by a
+     * writer holding the given stamp. Versions older than this are prunable.
+     *
+     * @param stamp The writer's stamp.
+     * @return The pruning horizon.
+     */
+    long pruneHorizon(long stamp) {
+        // Snapshots this writer has not observed yet all read at epochs >= its stamp.
+        return Math.min(oldestOpenEpoch, stamp);
+    }
+
+    /**
+     * Opens a snapshot: advances the epoch and waits for in-flight writers of
+     * the previous epoch to finish.
+     *
+     * @return The epoch the snapshot reads at.
+     */
+    synchronized long open() {
+        long snapshotEpoch = epoch.get();
+        openSnapshots.merge(snapshotEpoch, 1, Integer::sum);
+        oldestOpenEpoch = openSnapshots.firstKey();
+        epoch.set(snapshotEpoch + 1);
+        AtomicLong counter = writers[(int) (snapshotEpoch & 1)];
+        while (counter.get() != 0) {
+            Thread.onSpinWait();
+        }
+        return snapshotEpoch;
+    }
+
+    /**
+     * Closes a snapshot previously returned by {@link #open()}, allowing the
+     * versions it pinned to be pruned.
+     *
+     * @param snapshotEpoch The snapshot's epoch.
+     */
+    synchronized void close(long snapshotEpoch) {
+        Integer count = openSnapshots.get(snapshotEpoch);
+        if (count == null) {
+            return;
+        }
+        if (count == 1) {
+            openSnapshots.remove(snapshotEpoch);
+        } else {
+            openSnapshots.put(snapshotEpoch, count - 1);
+        }
+        oldestOpenEpoch = openSnapshots.isEmpty() ? Long.MAX_VALUE : openSnapshots.firstKey();
+    }
+}
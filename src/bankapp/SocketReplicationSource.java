@@ -0,0 +1,92 @@
+package bankapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ReplicationSource} that reads events streamed by a
+ * {@link JournalServer}. A background thread decodes frames into a queue so
+ * that replicas never block on the socket while applying events.
+ */
+public class SocketReplicationSource implements ReplicationSource, AutoCloseable {
+
+    private final Socket socket;
+    private final BlockingQueue<LedgerEvent> received;
+    private volatile long headSequence;
+    private volatile boolean open;
+
+    /**
+     * Connects to a journal server and starts streaming events after the
+     * given sequence number.
+     *
+     * @param host          The server host, normally "localhost".
+     * @param port          The server port.
+     * @param afterSequence The last sequence number already applied locally.
+     * @throws IOException If the connection fails.
+     */
+    public SocketReplicationSource(String host, int port, long afterSequence) throws IOException {
+        this.socket = new Socket(host, port);
+        this.received = new LinkedBlockingQueue<>();
+        this.open = true;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        out.writeLong(afterSequence);
+        out.flush();
+        Thread reader = new Thread(this::readLoop, "replication-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void readLoop() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            while (open) {
+                int count = in.readInt();
+                headSequence = in.readLong();
+                for (int i = 0; i < count; i++) {
+                    received.add(LedgerEvent.readFrom(in));
+                }
+            }
+        } catch (IOException e) {
+            if (open) {
+                System.out.println("Replication stream closed: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public List<LedgerEvent> poll(long afterSequence, int maxEvents, long timeoutMillis) throws InterruptedException {
+        List<LedgerEvent> events = new ArrayList<>();
+        LedgerEvent first = received.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return events;
+        }
+        events.add(first);
+        received.drainTo(events, maxEvents - 1);
+        events.removeIf(event -> event.getSequence() <= afterSequence);
+        return events;
+    }
+
+    @Override
+    public long headSequence() {
+        return headSequence;
+    }
+
+    /**
+     * Closes the connection to the journal server.
+     *
+     * @throws IOException If the socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        open = false;
+        socket.close();
+    }
+}
@@ -0,0 +1,236 @@
+package bankapp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Binary encodings of users, accounts and transactions for
+ * {@link LsmBankRepository}.
+ */
+final class StorageCodec {
+
+    private static final byte PLAIN = 0;
+    private static final byte CHECKINGS = 1;
+    private static final byte SAVINGS = 2;
+
+    private StorageCodec() {
+    }
+
+    /**
+     * The stored fields of a user, before their accounts are loaded.
+     */
+    static final class UserRecord {
+        final boolean admin;
+        final String passwordHash;
+        final String hashSalt;
+        final UUID currentAccountId;
+        final List<UUID> accountIds;
+        final List<StoredLimit> limits;
+
+        UserRecord(boolean admin, String passwordHash, String hashSalt, UUID currentAccountId,
+                List<UUID> accountIds, List<StoredLimit> limits) {
+            this.admin = admin;
+            this.passwordHash = passwordHash;
+            this.hashSalt = hashSalt;
+            this.currentAccountId = currentAccountId;
+            this.accountIds = accountIds;
+            this.limits = limits;
+        }
+    }
+
+    /**
+     * A stored withdrawal limit rule and its usage when it was stored.
+     */
+    static final class StoredLimit {
+        final LimitRule rule;
+        final double used;
+        final long storedMillis;
+
+        StoredLimit(LimitRule rule, double used, long storedMillis) {
+            this.rule = rule;
+            this.used = used;
+            this.storedMillis = storedMillis;
+        }
+    }
+
+    static byte[] encodeUser(User user) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeBoolean(user.isAdmin());
+        out.writeUTF(user.getPasswordHash());
+        out.writeUTF(user.getHashSalt());
+        writeUuid(out, user.getCurrentAccountId());
+        List<BankAccount> accounts = user.getAllAccounts();
+        out.writeInt(accounts.size());
+        for (BankAccount account : accounts) {
+            writeUuid(out, account.getId());
+        }
+        writeLimits(out, user.getWithdrawalLimits());
+        return bytes.toByteArray();
+    }
+
+    static UserRecord decodeUser(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        boolean admin = in.readBoolean();
+        String passwordHash = in.readUTF();
+        String hashSalt = in.readUTF();
+        UUID currentAccountId = readUuid(in);
+        int count = in.readInt();
+        List<UUID> accountIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            accountIds.add(readUuid(in));
+        }
+        return new UserRecord(admin, passwordHash, hashSalt, currentAccountId, accountIds, readLimits(in));
+    }
+
+    static User buildUser(String username, UserRecord record, List<BankAccount> accounts, BankClock clock) {
+        User user = record.admin
+                ? new Admin(username, record.passwordHash, record.hashSalt, accounts, record.currentAccountId, clock)
+                : new User(username, record.passwordHash, record.hashSalt, accounts, record.currentAccountId, clock);
+        restoreLimits(user.getWithdrawalLimits(), record.limits);
+        return user;
+    }
+
+    /**
+     * Encodes an account's balance, settings and withdrawal limits with
+     * their usage. Holds are not stored: a pending hold keeps its account
+     * loaded, and holds do not outlive the process.
+     */
+    static byte[] encodeAccount(BankAccount account) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        if (account instanceof SavingsAccount) {
+            out.writeByte(SAVINGS);
+        } else if (account instanceof CheckingsAccount) {
+            out.writeByte(CHECKINGS);
+        } else {
+            out.writeByte(PLAIN);
+        }
+        out.writeUTF(account.getCurrency().getCurrencyCode());
+        String nickname = account.getNicknameOrNull();
+        out.writeBoolean(nickname != null);
+        if (nickname != null) {
+            out.writeUTF(nickname);
+        }
+        out.writeDouble(account.getCurrentBalance());
+        if (account instanceof SavingsAccount) {
+            SavingsAccount savings = (SavingsAccount) account;
+            out.writeDouble(savings.getInterestRate());
+            out.writeUTF(savings.getInterestMode().name());
+        } else if (account instanceof CheckingsAccount) {
+            CheckingsAccount checkings = (CheckingsAccount) account;
+            out.writeDouble(checkings.getOverdraftLimit());
+            out.writeDouble(checkings.getOverdraftFee());
+            out.writeDouble(checkings.getPendingFees());
+        }
+        writeLimits(out, account.getWithdrawalLimits());
+        return bytes.toByteArray();
+    }
+
+    static BankAccount decodeAccount(UUID id, byte[] bytes, BankClock clock, List<Transaction> transactions,
+            List<Transaction> failed) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        byte kind = in.readByte();
+        Currency currency = Currency.getInstance(in.readUTF());
+        String nickname = in.readBoolean() ? in.readUTF() : null;
+        double balance = in.readDouble();
+        BankAccount account;
+        if (kind == SAVINGS) {
+            SavingsAccount savings = new SavingsAccount(id, in.readDouble(), clock, currency);
+            savings.setInterestMode(InterestMode.valueOf(in.readUTF()));
+            account = savings;
+        } else if (kind == CHECKINGS) {
+            CheckingsAccount checkings = new CheckingsAccount(id, clock, currency);
+            checkings.setOverdraftLimit(in.readDouble());
+            checkings.setOverdraftFee(in.readDouble());
+            checkings.restorePendingFees(in.readDouble());
+            account = checkings;
+        } else if (kind == PLAIN) {
+            account = new BankAccount(id, clock, currency);
+        } else {
+            throw new IOException("Unknown account kind: " + kind);
+        }
+        // The stored limits include a savings account's monthly limit, in place of the default one.
+        account.getWithdrawalLimits().clear();
+        restoreLimits(account.getWithdrawalLimits(), readLimits(in));
+        account.setNickname(nickname);
+        account.restore(balance, transactions, failed);
+        return account;
+    }
+
+    static byte[] encodeTransaction(Transaction transaction) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(transaction.getType());
+        out.writeDouble(transaction.getAmount());
+        out.writeLong(transaction.getTimestampMillis());
+        return bytes.toByteArray();
+    }
+
+    static Transaction decodeTransaction(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        return new Transaction(in.readUTF(), in.readDouble(), in.readLong());
+    }
+
+    private static void writeLimits(DataOutputStream out, WithdrawalLimits limits) throws IOException {
+        List<LimitCounter> counters = limits.counters();
+        long now = limits.currentTimeMillis();
+        out.writeInt(counters.size());
+        for (LimitCounter counter : counters) {
+            LimitRule rule = counter.rule;
+            out.writeByte(rule.getKind().ordinal());
+            out.writeDouble(rule.getMaximum());
+            out.writeByte(rule.getWindow().getType().ordinal());
+            out.writeLong(rule.getWindow().getLengthMillis());
+            out.writeDouble(counter.used(now));
+            out.writeLong(now);
+        }
+    }
+
+    private static List<StoredLimit> readLimits(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<StoredLimit> limits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LimitRule.Kind kind = LimitRule.Kind.values()[in.readByte()];
+            double maximum = in.readDouble();
+            LimitWindow.Type type = LimitWindow.Type.values()[in.readByte()];
+            long lengthMillis = in.readLong();
+            LimitWindow window = switch (type) {
+                case CALENDAR_DAY -> LimitWindow.calendarDay();
+                case CALENDAR_MONTH -> LimitWindow.calendarMonth();
+                case SLIDING -> LimitWindow.sliding(Duration.ofMillis(lengthMillis));
+            };
+            LimitRule rule = kind == LimitRule.Kind.COUNT
+                    ? LimitRule.count((int) maximum, window)
+                    : LimitRule.amount(maximum, window);
+            limits.add(new StoredLimit(rule, in.readDouble(), in.readLong()));
+        }
+        return limits;
+    }
+
+    private static void restoreLimits(WithdrawalLimits limits, List<StoredLimit> stored) {
+        for (StoredLimit limit : stored) {
+            limits.restoreLimit(limit.rule, limit.used, limit.storedMillis);
+        }
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID id) throws IOException {
+        out.writeBoolean(id != null);
+        if (id != null) {
+            out.writeLong(id.getMostSignificantBits());
+            out.writeLong(id.getLeastSignificantBits());
+        }
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+    }
+}
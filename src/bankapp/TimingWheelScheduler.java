@@ -0,0 +1,340 @@
+package bankapp;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An in-process scheduler for recurring banking jobs such as monthly
+ * interest, limit resets and standing transfers, built as a hierarchical
+ * timing wheel.
+ * <p>
+ * Time is divided into ticks. Level 0 holds jobs due within the next 64
+ * ticks, one slot per tick; each higher level covers 64 times the range of
+ * the one below, and its slots are cascaded down as time reaches them.
+ * Scheduling and cancelling are O(1) regardless of how many jobs are held,
+ * and all jobs due in the same tick are fired together as a batch. Empty
+ * stretches of time are skipped using per-level occupancy bitmaps, so
+ * advancing a stopped clock by months costs only as much as the jobs found.
+ * <p>
+ * The scheduler never reads the time itself except through its
+ * {@link BankClock}; tests drive it deterministically with a
+ * {@link ManualClock} and {@link #runPending()}.
+ */
+public class TimingWheelScheduler implements AutoCloseable {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 6;
+
+    /** Pseudo-level holding jobs that are already due. */
+    private static final int OVERDUE = LEVELS;
+
+    private final BankClock clock;
+    private final long tickMillis;
+
+    /** Heads of each slot's job list; row {@link #OVERDUE} has a single slot. */
+    private final ScheduledJob[][] slots;
+
+    /** Bit s of occupied[l] is set while slot s of level l holds jobs. */
+    private final long[] occupied;
+
+    /** Serializes calls to {@link #runPending()}. */
+    private final Object runLock;
+
+    /** The last tick the wheel has processed. */
+    private long currentTick;
+
+    /** The number of jobs currently filed in the wheel. */
+    private int size;
+
+    private Thread driver;
+    private volatile boolean running;
+
+    /**
+     * Constructs a scheduler with the given tick resolution.
+     *
+     * @param clock The clock that decides which jobs are due.
+     * @param tick  The resolution of the wheel; jobs never fire early but may fire up to one tick late.
+     * @throws IllegalArgumentException if the tick is not positive.
+     */
+    public TimingWheelScheduler(BankClock clock, Duration tick) {
+        if (tick.toMillis() <= 0) {
+            throw new IllegalArgumentException("Tick must be at least one millisecond.");
+        }
+        this.clock = clock;
+        this.tickMillis = tick.toMillis();
+        this.slots = new ScheduledJob[LEVELS + 1][SLOTS];
+        this.occupied = new long[LEVELS];
+        this.runLock = new Object();
+        this.currentTick = clock.currentTimeMillis() / tickMillis;
+    }
+
+    /**
+     * Schedules a job to run once.
+     *
+     * @param task      The work to run.
+     * @param runAtMillis When to run it, in epoch milliseconds.
+     * @return A handle that can cancel the job.
+     */
+    public ScheduledJob schedule(Runnable task, long runAtMillis) {
+        return scheduleRecurring(task, runAtMillis, null);
+    }
+
+    /**
+     * Schedules a job to run repeatedly.
+     *
+     * @param task         The work to run.
+     * @param firstRunMillis When to run it first, in epoch milliseconds.
+     * @param recurrence   When to run it after each run; null for a one-off job.
+     * @return A handle that can cancel the job.
+     * @throws IllegalArgumentException if the run time is beyond the wheel's range.
+     */
+    public ScheduledJob scheduleRecurring(Runnable task, long firstRunMillis, Recurrence recurrence) {
+        ScheduledJob job = new ScheduledJob(this, task, firstRunMillis, recurrence);
+        synchronized (this) {
+            insert(job);
+        }
+        return job;
+    }
+
+    /**
+     * Returns the number of jobs waiting to run.
+     *
+     * @return The pending job count.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Runs every job due at the clock's current time, including further
+     * occurrences of recurring jobs that fell due while the clock was ahead.
+     *
+     * @return The number of job runs performed.
+     */
+    public int runPending() {
+        synchronized (runLock) {
+            long targetTick = clock.currentTimeMillis() / tickMillis;
+            int runs = 0;
+            List<ScheduledJob> batch;
+            while (!(batch = advanceTo(targetTick)).isEmpty()) {
+                for (ScheduledJob job : batch) {
+                    if (job.isCancelled()) {
+                        continue;
+                    }
+                    try {
+                        job.task.run();
+                    } catch (RuntimeException exception) {
+                        System.out.println("Scheduled job failed: " + exception.getMessage());
+                    }
+                    job.markRun();
+                    runs++;
+                    reschedule(job);
+                }
+            }
+            return runs;
+        }
+    }
+
+    /**
+     * Starts a daemon thread that calls {@link #runPending()} once per tick.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        driver = new Thread(() -> {
+            while (running) {
+                runPending();
+                try {
+                    Thread.sleep(tickMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "timing-wheel");
+        driver.setDaemon(true);
+        driver.start();
+    }
+
+    /**
+     * Stops the background driver, if started. Pending jobs stay scheduled.
+     */
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = driver;
+            driver = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void reschedule(ScheduledJob job) {
+        if (job.recurrence == null || job.isCancelled()) {
+            return;
+        }
+        long next = job.recurrence.nextRunAfter(job.dueMillis);
+        if (next <= job.dueMillis) {
+            System.out.println("Recurring job did not advance its run time; cancelling it.");
+            job.cancel();
+            return;
+        }
+        job.dueMillis = next;
+        synchronized (this) {
+            if (!job.isCancelled()) {
+                insert(job);
+            }
+        }
+    }
+
+    /**
+     * Processes ticks up to the target and collects every job that fell due.
+     */
+    private synchronized List<ScheduledJob> advanceTo(long targetTick) {
+        List<ScheduledJob> batch = new ArrayList<>();
+        drainSlot(OVERDUE, 0, batch);
+        while (currentTick < targetTick) {
+            long next = nextOccupiedTick();
+            if (next > targetTick) {
+                currentTick = targetTick;
+                break;
+            }
+            currentTick = next;
+            // Cascade higher levels whose slot starts at this tick, highest first.
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK));
+                }
+            }
+            drainSlot(0, (int) (currentTick & SLOT_MASK), batch);
+            drainSlot(OVERDUE, 0, batch);
+        }
+        return batch;
+    }
+
+    /**
+     * Finds the earliest tick after the current one at which any occupied
+     * slot must be fired or cascaded.
+     */
+    private long nextOccupiedTick() {
+        long earliest = Long.MAX_VALUE;
+        for (int level = 0; level < LEVELS; level++) {
+            long bits = occupied[level];
+            if (bits == 0) {
+                continue;
+            }
+            int shift = SLOT_BITS * level;
+            int current = (int) ((currentTick >>> shift) & SLOT_MASK);
+            long rotation = currentTick >>> (shift + SLOT_BITS);
+            long later = current == SLOT_MASK ? 0 : bits & (-1L << (current + 1));
+            long tick;
+            if (later != 0) {
+                tick = ((rotation << SLOT_BITS) | Long.numberOfTrailingZeros(later)) << shift;
+            } else {
+                tick = (((rotation + 1) << SLOT_BITS) | Long.numberOfTrailingZeros(bits)) << shift;
+            }
+            earliest = Math.min(earliest, tick);
+        }
+        return earliest;
+    }
+
+    private void cascade(int level, int slot) {
+        ScheduledJob job = slots[level][slot];
+        slots[level][slot] = null;
+        occupied[level] &= ~(1L << slot);
+        while (job != null) {
+            ScheduledJob next = job.next;
+            job.prev = null;
+            job.next = null;
+            job.level = -1;
+            size--;
+            file(job);
+            job = next;
+        }
+    }
+
+    private void drainSlot(int level, int slot, List<ScheduledJob> batch) {
+        ScheduledJob job = slots[level][slot];
+        if (job == null) {
+            return;
+        }
+        slots[level][slot] = null;
+        if (level < LEVELS) {
+            occupied[level] &= ~(1L << slot);
+        }
+        while (job != null) {
+            ScheduledJob next = job.next;
+            job.prev = null;
+            job.next = null;
+            job.level = -1;
+            size--;
+            batch.add(job);
+            job = next;
+        }
+    }
+
+    /**
+     * Files a job by its due time relative to the current tick.
+     */
+    private void insert(ScheduledJob job) {
+        job.dueTick = Math.floorDiv(job.dueMillis + tickMillis - 1, tickMillis);
+        file(job);
+    }
+
+    private void file(ScheduledJob job) {
+        long delta = job.dueTick - currentTick;
+        int level;
+        int slot;
+        if (delta <= 0) {
+            level = OVERDUE;
+            slot = 0;
+        } else {
+            level = (63 - Long.numberOfLeadingZeros(delta)) / SLOT_BITS;
+            if (level >= LEVELS) {
+                throw new IllegalArgumentException("Job is scheduled too far in the future.");
+            }
+            slot = (int) ((job.dueTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+            occupied[level] |= 1L << slot;
+        }
+        ScheduledJob head = slots[level][slot];
+        job.next = head;
+        if (head != null) {
+            head.prev = job;
+        }
+        slots[level][slot] = job;
+        job.level = level;
+        job.slot = slot;
+        size++;
+    }
+
+    /**
+     * Unlinks a cancelled job from whichever slot holds it.
+     */
+    synchronized void remove(ScheduledJob job) {
+        if (job.level < 0) {
+            return;
+        }
+        if (job.prev != null) {
+            job.prev.next = job.next;
+        } else {
+            slots[job.level][job.slot] = job.next;
+            if (job.next == null && job.level < LEVELS) {
+                occupied[job.level] &= ~(1L << job.slot);
+            }
+        }
+        if (job.next != null) {
+            job.next.prev = job.prev;
+        }
+        job.prev = null;
+        job.next = null;
+        job.level = -1;
+        size--;
+    }
+}
@@ -0,0 +1,529 @@
+package bankapp;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * A bounded cache that decides what to keep by how often, not just how
+ * recently, each key has been asked for, following the W-TinyLFU policy.
+ * <p>
+ * New entries land in a small window ordered by recency. An entry pushed out
+ * of the window is only admitted to the main region if it has been requested
+ * more often than the entry it would displace, as estimated by a compact
+ * count-min sketch of recent requests. The main region is split into a
+ * probation segment and a protected segment that entries reach on their
+ * second hit, so a burst of one-off lookups, such as a full scan, cannot
+ * flush out the frequently used entries.
+ * <p>
+ * Capacity is a total weight rather than a count, and each entry's weight is
+ * measured when it is added or replaced, and again whenever the caller
+ * reports through {@link #reweigh} that a cached value has changed size.
+ * All methods are thread-safe. Lookups read a
+ * concurrent map and take no lock: each one is recorded in one of several
+ * small read buffers, chosen by thread, and the recorded reads are applied
+ * to the recency order and the sketch in batches by whichever thread finds
+ * the policy lock free. A read arriving at a full buffer is dropped, which
+ * only makes the policy's picture of popularity slightly less complete.
+ *
+ * @param <K> The key type.
+ * @param <V> The value type.
+ */
+public class TinyLfuCache<K, V> {
+
+    /** The share of the capacity given to the admission window, in percent. */
+    private static final int WINDOW_PERCENT = 1;
+
+    /** The share of the main region given to the protected segment, in percent. */
+    private static final int PROTECTED_PERCENT = 80;
+
+    /** How many reads a read buffer can hold before further reads are dropped. */
+    private static final int READ_BUFFER_SIZE = 32;
+
+    /** How many pending reads make a lookup try to apply its buffer. */
+    private static final int READ_DRAIN_THRESHOLD = 16;
+
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final ToIntFunction<V> weigher;
+
+    private final ConcurrentHashMap<K, Node<K, V>> nodes;
+    private final ReadBuffer[] readBuffers;
+
+    /** Guards the segments, the sketch and draining the read buffers. */
+    private final ReentrantLock policyLock;
+    private final Segment<K, V> window;
+    private final Segment<K, V> probation;
+    private final Segment<K, V> protectedSegment;
+    private final FrequencySketch sketch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maximumWeight The most total weight the cache may hold.
+     * @param weigher       Measures an entry's weight; must be at least 1.
+     */
+    public TinyLfuCache(long maximumWeight, ToIntFunction<V> weigher) {
+        if (maximumWeight < 1) {
+            throw new IllegalArgumentException("Maximum weight must be positive.");
+        }
+        this.maximumWeight = maximumWeight;
+        this.windowMaximum = Math.max(1, maximumWeight * WINDOW_PERCENT / 100);
+        this.protectedMaximum = (maximumWeight - windowMaximum) * PROTECTED_PERCENT / 100;
+        this.weigher = weigher;
+        this.nodes = new ConcurrentHashMap<>();
+        this.readBuffers = new ReadBuffer[Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1];
+        for (int i = 0; i < readBuffers.length; i++) {
+            readBuffers[i] = new ReadBuffer();
+        }
+        this.policyLock = new ReentrantLock();
+        this.window = new Segment<>();
+        this.probation = new Segment<>();
+        this.protectedSegment = new Segment<>();
+        this.sketch = new FrequencySketch((int) Math.min(maximumWeight, 1 << 24));
+    }
+
+    /**
+     * Looks up a cached value and records the request.
+     *
+     * @param key The key.
+     * @return The value, or null if it is not cached.
+     */
+    public V get(K key) {
+        Node<K, V> node = nodes.get(key);
+        ReadBuffer buffer = readBuffers[(int) Thread.currentThread().getId() & (readBuffers.length - 1)];
+        // A miss is recorded by its key, so that the sketch still counts the request.
+        int pending = buffer.offer(node != null ? node : key);
+        if (pending >= READ_DRAIN_THRESHOLD && policyLock.tryLock()) {
+            try {
+                drainReads();
+            } finally {
+                policyLock.unlock();
+            }
+        }
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return node.value;
+    }
+
+    /**
+     * Adds or replaces a value. A new entry may be turned away straight
+     * away if it is requested less often than what it would displace.
+     *
+     * @param key   The key.
+     * @param value The value.
+     */
+    public void put(K key, V value) {
+        int weight = Math.max(1, weigher.applyAsInt(value));
+        policyLock.lock();
+        try {
+            drainReads();
+            Node<K, V> node = nodes.get(key);
+            if (node != null) {
+                node.value = value;
+                node.segment.weight += weight - node.weight;
+                node.weight = weight;
+                onHit(node);
+                evictFromMain();
+                return;
+            }
+            if (weight > maximumWeight) {
+                rejections.increment();
+                return;
+            }
+            node = new Node<>(key, value, weight);
+            nodes.put(key, node);
+            window.addLast(node);
+            while (window.weight > windowMaximum && window.head != node) {
+                admit(window.head);
+            }
+            evictFromMain();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * Measures a cached value's weight again after it has changed in place,
+     * evicting entries if that takes the cache over its maximum. Unlike
+     * {@link #put}, this does not count as a request for the entry.
+     *
+     * @param key The key; nothing happens if it is not cached.
+     */
+    public void reweigh(K key) {
+        Node<K, V> node = nodes.get(key);
+        if (node == null) {
+            return;
+        }
+        int weight = Math.max(1, weigher.applyAsInt(node.value));
+        policyLock.lock();
+        try {
+            if (node.segment == null || weight == node.weight) {
+                return;
+            }
+            node.segment.weight += weight - node.weight;
+            node.weight = weight;
+            evictFromMain();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * Removes a value if it is cached.
+     *
+     * @param key The key.
+     */
+    public void invalidate(K key) {
+        policyLock.lock();
+        try {
+            drainReads();
+            Node<K, V> node = nodes.remove(key);
+            if (node != null) {
+                node.segment.remove(node);
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of cached entries.
+     *
+     * @return The entry count.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Retrieves the total weight of the cached entries.
+     *
+     * @return The weight, at most the maximum weight.
+     */
+    public long getWeight() {
+        policyLock.lock();
+        try {
+            return weight();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Retrieves the share of lookups that found their value cached.
+     *
+     * @return The hit rate between 0 and 1, or 0 before any lookup.
+     */
+    public double getHitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * Retrieves the number of entries removed to make room for others.
+     *
+     * @return The eviction count.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Retrieves the number of new entries turned away because they were
+     * requested less often than the entries they would have displaced.
+     *
+     * @return The rejection count.
+     */
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    private long weight() {
+        return window.weight + probation.weight + protectedSegment.weight;
+    }
+
+    /**
+     * Applies every buffered read to the sketch and the recency order.
+     * Entries evicted since they were read are only counted in the sketch.
+     */
+    private void drainReads() {
+        for (ReadBuffer buffer : readBuffers) {
+            Object read;
+            while ((read = buffer.poll()) != null) {
+                if (read instanceof Node) {
+                    @SuppressWarnings("unchecked")
+                    Node<K, V> node = (Node<K, V>) read;
+                    sketch.increment(node.key.hashCode());
+                    if (node.segment != null) {
+                        onHit(node);
+                    }
+                } else {
+                    sketch.increment(read.hashCode());
+                }
+            }
+        }
+    }
+
+    private void onHit(Node<K, V> node) {
+        if (node.segment == window || node.segment == protectedSegment) {
+            node.segment.moveToLast(node);
+            return;
+        }
+        probation.remove(node);
+        protectedSegment.addLast(node);
+        while (protectedSegment.weight > protectedMaximum && protectedSegment.head != node) {
+            Node<K, V> demoted = protectedSegment.head;
+            protectedSegment.remove(demoted);
+            probation.addLast(demoted);
+        }
+    }
+
+    /**
+     * Moves the oldest entry of the window into the main region if it is
+     * requested more often than the entries it would displace there, and
+     * drops it otherwise.
+     */
+    private void admit(Node<K, V> candidate) {
+        window.remove(candidate);
+        long room = maximumWeight - weight();
+        Node<K, V> victim = victim(null);
+        // The candidate is judged against the first victim alone, before anything is evicted.
+        if (room < candidate.weight && victim != null
+                && sketch.frequency(victim.key.hashCode()) >= sketch.frequency(candidate.key.hashCode())) {
+            nodes.remove(candidate.key, candidate);
+            rejections.increment();
+            return;
+        }
+        while (room < candidate.weight && victim != null) {
+            room += victim.weight;
+            Node<K, V> next = victim(victim);
+            evict(victim);
+            victim = next;
+        }
+        probation.addLast(candidate);
+    }
+
+    /**
+     * Evicts from the main region until the cache is back under its maximum,
+     * which a replaced entry that grew heavier can push it over.
+     */
+    private void evictFromMain() {
+        while (weight() > maximumWeight) {
+            Node<K, V> victim = victim(null);
+            if (victim == null) {
+                victim = window.head;
+            }
+            evict(victim);
+        }
+    }
+
+    /**
+     * Picks the main region's next eviction victim after the given one: the
+     * least recently used entry on probation, then in the protected segment.
+     */
+    private Node<K, V> victim(Node<K, V> after) {
+        if (after == null) {
+            return probation.head != null ? probation.head : protectedSegment.head;
+        }
+        if (after.next != null) {
+            return after.next;
+        }
+        return after.segment == probation ? protectedSegment.head : null;
+    }
+
+    private void evict(Node<K, V> node) {
+        node.segment.remove(node);
+        nodes.remove(node.key, node);
+        evictions.increment();
+    }
+
+    /**
+     * A cached entry, linked into the segment it currently belongs to.
+     */
+    private static final class Node<K, V> {
+        final K key;
+        volatile V value;
+        int weight;
+        Segment<K, V> segment;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * A bounded buffer of reads that many threads add to without locking
+     * and one thread at a time, holding the policy lock, takes from.
+     */
+    private static final class ReadBuffer {
+        private final AtomicReferenceArray<Object> slots = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        private final AtomicLong writes = new AtomicLong();
+        private volatile long reads;
+
+        /**
+         * Records a read unless the buffer is full.
+         *
+         * @return How many reads are waiting to be applied.
+         */
+        int offer(Object read) {
+            long write = writes.get();
+            long pending = write - reads;
+            if (pending < READ_BUFFER_SIZE && writes.compareAndSet(write, write + 1)) {
+                slots.lazySet((int) (write & (READ_BUFFER_SIZE - 1)), read);
+                return (int) pending + 1;
+            }
+            return (int) pending;
+        }
+
+        /**
+         * Takes the oldest read, or returns null if there is none or its
+         * writer has not stored it yet. Called only with the policy lock held.
+         */
+        Object poll() {
+            long read = reads;
+            if (read == writes.get()) {
+                return null;
+            }
+            int slot = (int) (read & (READ_BUFFER_SIZE - 1));
+            Object value = slots.get(slot);
+            if (value != null) {
+                slots.lazySet(slot, null);
+                reads = read + 1;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * A doubly linked list of entries from least to most recently used,
+     * together with their total weight.
+     */
+    private static final class Segment<K, V> {
+        Node<K, V> head;
+        Node<K, V> tail;
+        long weight;
+
+        void addLast(Node<K, V> node) {
+            node.segment = this;
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            weight += node.weight;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.segment = null;
+            weight -= node.weight;
+        }
+
+        void moveToLast(Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    /**
+     * Estimates how often keys were requested recently, using four 4-bit
+     * counters per key in a count-min sketch. All counters are halved once
+     * the sample reaches ten times the table size, so old popularity fades.
+     */
+    static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L };
+        private static final long HALF_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int counterMask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedKeys) {
+            int words = Integer.highestOneBit(Math.max(16, expectedKeys) - 1) << 1 >>> 2;
+            this.table = new long[Math.max(4, words)];
+            this.counterMask = table.length * 16 - 1;
+            this.sampleSize = 10 * Math.max(16, expectedKeys);
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                int counter = index(hash, i);
+                int word = counter >>> 4;
+                int shift = (counter & 15) << 2;
+                if (((table[word] >>> shift) & 0xF) < 15) {
+                    table[word] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & HALF_MASK;
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(int hash) {
+            int frequency = 15;
+            for (int i = 0; i < SEEDS.length; i++) {
+                int counter = index(hash, i);
+                frequency = Math.min(frequency, (int) (table[counter >>> 4] >>> ((counter & 15) << 2)) & 0xF);
+            }
+            return frequency;
+        }
+
+        private int index(int hash, int row) {
+            long mixed = (hash + SEEDS[row]) * SEEDS[row];
+            return (int) (mixed >>> 32) & counterMask;
+        }
+    }
+}
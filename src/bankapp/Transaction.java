@@ -1,20 +1,35 @@
 package bankapp;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 
 public class Transaction {
 	private String type; // "Deposit" or "Withdrawal"
     private double amount;
-    private LocalDateTime timestamp;
+    private long timestampMillis; // epoch millis; converted to a date only for display
     
     public Transaction(String type, double amount) {
+    	this(type, amount, System.currentTimeMillis());
+    }
+
+    /**
+     * Creates a transaction stamped with a time supplied by the caller,
+     * typically from a {@link BankClock}, so that logs can be replayed
+     * deterministically.
+     *
+     * @param type            The kind of transaction, e.g. "Deposit".
+     * @param amount          The amount of money involved.
+     * @param timestampMillis When the transaction happened, in epoch milliseconds.
+     */
+    public Transaction(String type, double amount, long timestampMillis) {
     	this.type = type;
         this.amount = amount;
-    	this.timestamp = LocalDateTime.now();
+    	this.timestampMillis = timestampMillis;
     }
     
     public String toString() {
     	return String.format("[%s] %s of $%.2f", 
-            timestamp != null ? timestamp.toString() : "No Timestamp", 
+            getTimestamp().toString(), 
             type, 
             amount);
     }
@@ -27,5 +42,24 @@ public class Transaction {
 		return amount;
 	}
 
+	/**
+	 * Retrieves when the transaction happened as a raw epoch value.
+	 *
+	 * @return The timestamp in epoch milliseconds.
+	 */
+	public long getTimestampMillis() {
+		return timestampMillis;
+	}
+
+	/**
+	 * Retrieves when the transaction happened in the system time zone.
+	 * The date is derived on each call, so prefer {@link #getTimestampMillis()}
+	 * for comparisons.
+	 *
+	 * @return The local date and time of the transaction.
+	 */
+	public LocalDateTime getTimestamp() {
+		return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestampMillis), ZoneId.systemDefault());
+	}
 	
-}
\ No newline at end of file
+}
@@ -0,0 +1,164 @@
+package bankapp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The checks {@link Bank#transferFunds(String, String, double)} runs on each
+ * transfer before committing it. Stages run in the order they were added;
+ * the first to block a transfer stops it, and the pipeline's verdict is the
+ * most severe of the stages' verdicts. An empty pipeline allows everything.
+ * <p>
+ * Flagged transfers go ahead but are kept, most recent first, for review.
+ */
+public class TransferPipeline {
+
+    /** How many flagged transfers are kept for review. */
+    private static final int RECENT_FLAGS = 100;
+
+    private final List<TransferStage> stages;
+    private final ArrayDeque<FlaggedTransfer> recentFlags;
+
+    private final LongAdder evaluated = new LongAdder();
+    private final LongAdder flagged = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+
+    /**
+     * A transfer that was let through with a flag, and why.
+     */
+    public static final class FlaggedTransfer {
+        private final TransferRequest request;
+        private final TransferVerdict verdict;
+
+        FlaggedTransfer(TransferRequest request, TransferVerdict verdict) {
+            this.request = request;
+            this.verdict = verdict;
+        }
+
+        public TransferRequest getRequest() {
+            return request;
+        }
+
+        public TransferVerdict getVerdict() {
+            return verdict;
+        }
+    }
+
+    /**
+     * Creates a pipeline with no stages.
+     */
+    public TransferPipeline() {
+        this.stages = new CopyOnWriteArrayList<>();
+        this.recentFlags = new ArrayDeque<>();
+    }
+
+    /**
+     * Appends a stage to the pipeline.
+     *
+     * @param stage The stage to run after those already added.
+     */
+    public void addStage(TransferStage stage) {
+        stages.add(stage);
+    }
+
+    /**
+     * Removes a previously added stage.
+     *
+     * @param stage The stage to remove.
+     * @return true if the stage was part of the pipeline.
+     */
+    public boolean removeStage(TransferStage stage) {
+        return stages.remove(stage);
+    }
+
+    /**
+     * Runs a transfer through every stage.
+     *
+     * @param request The transfer about to be committed.
+     * @return The most severe verdict, or {@link TransferVerdict#ALLOW} if no stage objected.
+     */
+    TransferVerdict evaluate(TransferRequest request) {
+        evaluated.increment();
+        TransferVerdict result = TransferVerdict.ALLOW;
+        for (TransferStage stage : stages) {
+            TransferVerdict verdict = stage.evaluate(request);
+            if (verdict.getAction().compareTo(result.getAction()) > 0) {
+                result = verdict;
+            }
+            if (result.isBlocked()) {
+                blocked.increment();
+                for (TransferStage passed : stages) {
+                    if (passed == stage) {
+                        break;
+                    }
+                    passed.onAborted(request);
+                }
+                return result;
+            }
+        }
+        if (result.isFlagged()) {
+            flagged.increment();
+            synchronized (recentFlags) {
+                recentFlags.addFirst(new FlaggedTransfer(request, result));
+                if (recentFlags.size() > RECENT_FLAGS) {
+                    recentFlags.removeLast();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tells every stage that a transfer it let through has been committed.
+     */
+    void committed(TransferRequest request) {
+        for (TransferStage stage : stages) {
+            stage.onCommitted(request);
+        }
+    }
+
+    /**
+     * Tells every stage that a transfer they all let through was rejected
+     * when it was applied.
+     */
+    void aborted(TransferRequest request) {
+        for (TransferStage stage : stages) {
+            stage.onAborted(request);
+        }
+    }
+
+    /**
+     * Retrieves whether any stages have been added.
+     *
+     * @return true if the pipeline has no stages.
+     */
+    public boolean isEmpty() {
+        return stages.isEmpty();
+    }
+
+    /**
+     * Retrieves the most recently flagged transfers, newest first.
+     *
+     * @return A copy of up to the last 100 flagged transfers.
+     */
+    public List<FlaggedTransfer> getRecentFlags() {
+        synchronized (recentFlags) {
+            return new ArrayList<>(recentFlags);
+        }
+    }
+
+    public long getEvaluatedCount() {
+        return evaluated.sum();
+    }
+
+    public long getFlaggedCount() {
+        return flagged.sum();
+    }
+
+    public long getBlockedCount() {
+        return blocked.sum();
+    }
+}
@@ -0,0 +1,61 @@
+package bankapp;
+
+import java.util.UUID;
+
+/**
+ * A transfer that has passed the bank's basic checks and is about to be
+ * committed, as presented to each {@link TransferStage}.
+ */
+public class TransferRequest {
+
+    private final String fromUsername;
+    private final UUID fromAccountId;
+    private final String toUsername;
+    private final UUID toAccountId;
+    private final double amount;
+    private final long timestampMillis;
+
+    TransferRequest(String fromUsername, UUID fromAccountId, String toUsername, UUID toAccountId, double amount,
+            long timestampMillis) {
+        this.fromUsername = fromUsername;
+        this.fromAccountId = fromAccountId;
+        this.toUsername = toUsername;
+        this.toAccountId = toAccountId;
+        this.amount = amount;
+        this.timestampMillis = timestampMillis;
+    }
+
+    public String getFromUsername() {
+        return fromUsername;
+    }
+
+    public UUID getFromAccountId() {
+        return fromAccountId;
+    }
+
+    public String getToUsername() {
+        return toUsername;
+    }
+
+    public UUID getToAccountId() {
+        return toAccountId;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    /**
+     * Retrieves when the transfer was requested.
+     *
+     * @return The request time in epoch milliseconds.
+     */
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("$%.2f from %s to %s", amount, fromUsername, toUsername);
+    }
+}
@@ -0,0 +1,37 @@
+package bankapp;
+
+/**
+ * One step of a {@link TransferPipeline}, consulted before a transfer is
+ * committed. Stages are called concurrently from every thread transferring
+ * funds and must be thread-safe and quick.
+ */
+public interface TransferStage {
+
+    /**
+     * Decides whether a transfer may go ahead.
+     *
+     * @param request The transfer about to be committed.
+     * @return The stage's verdict; {@link TransferVerdict#ALLOW} if it has no objection.
+     */
+    TransferVerdict evaluate(TransferRequest request);
+
+    /**
+     * Called after a transfer this stage allowed or flagged has been
+     * committed. Transfers that were blocked, or that failed afterwards,
+     * are not reported.
+     *
+     * @param request The committed transfer.
+     */
+    default void onCommitted(TransferRequest request) {
+    }
+
+    /**
+     * Called when a transfer this stage allowed or flagged is not committed
+     * after all, because a later stage blocked it or the accounts rejected
+     * it, so that anything the stage counted for it can be taken back.
+     *
+     * @param request The abandoned transfer.
+     */
+    default void onAborted(TransferRequest request) {
+    }
+}
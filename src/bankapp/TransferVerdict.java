@@ -0,0 +1,66 @@
+package bankapp;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of running a transfer through a {@link TransferStage} or a
+ * whole {@link TransferPipeline}: whether to let it through, let it through
+ * but flag it for review, or block it, with the score and reasons behind the
+ * decision.
+ */
+public class TransferVerdict {
+
+    /** What to do with a transfer, from least to most severe. */
+    public enum Action {
+        ALLOW, FLAG, BLOCK
+    }
+
+    /** The verdict of a stage with no objection. */
+    public static final TransferVerdict ALLOW = new TransferVerdict(Action.ALLOW, 0, Collections.emptyList());
+
+    private final Action action;
+    private final int score;
+    private final List<String> reasons;
+
+    /**
+     * Creates a verdict.
+     *
+     * @param action  What to do with the transfer.
+     * @param score   How suspicious the transfer looked; 0 if not at all.
+     * @param reasons Why, in a few words each.
+     */
+    public TransferVerdict(Action action, int score, List<String> reasons) {
+        this.action = action;
+        this.score = score;
+        this.reasons = Collections.unmodifiableList(reasons);
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public List<String> getReasons() {
+        return reasons;
+    }
+
+    public boolean isBlocked() {
+        return action == Action.BLOCK;
+    }
+
+    public boolean isFlagged() {
+        return action == Action.FLAG;
+    }
+
+    @Override
+    public String toString() {
+        if (reasons.isEmpty()) {
+            return action.toString();
+        }
+        return action + " (score " + score + ": " + String.join(", ", reasons) + ")";
+    }
+}
@@ -20,11 +20,29 @@ public class User {
     /** The salt used for hashing the user's password. */
     private final String hashSalt;
 
-    /** A map of bank accounts owned by this user, identified by their UUIDs. */
-    private Map<UUID, BankAccount> accounts;
+    /**
+     * The bank accounts owned by this user, identified by their UUIDs.
+     * Accounts change rarely, so writers replace the map with an updated copy
+     * under the user's lock and readers look it up without locking. Each
+     * replacement is stamped like a balance change and keeps the maps that
+     * open snapshots may still read.
+     */
+    private volatile AccountSet accounts;
 
     /** The UUID of the currently active account. */
-    private UUID currentAccountId;
+    private volatile UUID currentAccountId;
+
+    /** Journal of the bank this user is registered with; null until registered. */
+    private volatile MutationJournal journal;
+
+    /** Snapshot coordinator of the bank this user is registered with; null until registered. */
+    private volatile SnapshotCoordinator snapshots;
+
+    /** Withdrawal limits that apply across all of this user's accounts. */
+    private final WithdrawalLimits withdrawalLimits;
+
+    /** The snapshot epoch the user was registered under; snapshots at earlier epochs exclude them. */
+    private volatile long registeredEpoch;
 
     /**
      * Constructs a new user with a username and password.
@@ -35,13 +53,30 @@ public class User {
      * @throws NoSuchAlgorithmException If SHA-512 algorithm is not available.
      */
     public User(String username, String password) throws NoSuchAlgorithmException {
+        this(username, password, BankClock.system());
+    }
+
+    /**
+     * Constructs a new user whose default checkings account and withdrawal
+     * limits follow the given clock, such as the clock of the bank they are
+     * registering with.
+     *
+     * @param username The username of the user.
+     * @param password The raw password to be hashed.
+     * @param clock    The clock limit windows and the default account follow.
+     * @throws NoSuchAlgorithmException If SHA-512 algorithm is not available.
+     */
+    public User(String username, String password, BankClock clock) throws NoSuchAlgorithmException {
         this.username = username;
         this.hashSalt = generateSalt();
         this.passwordHash = hashPassword(password, hashSalt);
-        this.accounts = new HashMap<>();
+        this.withdrawalLimits = new WithdrawalLimits(clock);
 
-        BankAccount defaultAccount = new CheckingsAccount();
-        this.accounts.put(defaultAccount.getId(), defaultAccount);
+        BankAccount defaultAccount = new CheckingsAccount(clock);
+        UuidMap<BankAccount> owned = new UuidMap<>();
+        owned.put(defaultAccount.getId(), defaultAccount);
+        this.accounts = new AccountSet(0, owned, null);
+        defaultAccount.attach(this);
         this.currentAccountId = defaultAccount.getId();
     }
     
@@ -51,7 +86,8 @@ public class User {
 	 * generated salt.
 	 * In addition, if specified savings account, it creates a 
 	 * savings account. Otherwise, it creates the account with a
-	 * checkings account. 
+	 * checkings account. The user's withdrawal limits follow the
+	 * savings account's clock.
 	 * 
 	 * @param username The username of the user.
 	 * @param password The raw password to be hashed.
@@ -63,17 +99,54 @@ public class User {
 		this.username = username;
 		this.hashSalt = generateSalt();
 		this.passwordHash = hashPassword(password, hashSalt);
-		this.accounts.put(savingsAccount.getId(), savingsAccount);
+		this.withdrawalLimits = new WithdrawalLimits(savingsAccount.getClock());
+		UuidMap<BankAccount> owned = new UuidMap<>();
+		owned.put(savingsAccount.getId(), savingsAccount);
+		this.accounts = new AccountSet(0, owned, null);
+		savingsAccount.attach(this);
 		this.currentAccountId = savingsAccount.getId();
 	}
 
+    /**
+     * Constructs a user loaded from storage, with their stored password hash
+     * and accounts. Nothing is journaled.
+     *
+     * @param username         The username of the user.
+     * @param passwordHash     The stored password hash.
+     * @param hashSalt         The stored salt.
+     * @param accounts         The user's accounts.
+     * @param currentAccountId The UUID of the active account.
+     * @param clock            The clock the user's withdrawal limits follow.
+     */
+    User(String username, String passwordHash, String hashSalt, List<BankAccount> accounts, UUID currentAccountId,
+            BankClock clock) {
+        this.username = username;
+        this.hashSalt = hashSalt;
+        this.passwordHash = passwordHash;
+        this.withdrawalLimits = new WithdrawalLimits(clock);
+        UuidMap<BankAccount> owned = new UuidMap<>();
+        for (BankAccount account : accounts) {
+            owned.put(account.getId(), account);
+        }
+        this.accounts = new AccountSet(0, owned, null);
+        this.currentAccountId = owned.containsKey(currentAccountId) ? currentAccountId : owned.anyKey();
+    }
+
     /**
      * Adds a new bank account to the user's account list.
      * 
      * @param account The account to add.
      */
     public void addAccount(BankAccount account) {
-        accounts.put(account.getId(), account);
+        synchronized (this) {
+            UuidMap<BankAccount> updated = new UuidMap<>(accounts.map);
+            updated.put(account.getId(), account);
+            replaceAccounts(updated);
+        }
+        account.attach(this);
+        if (journal != null) {
+            journal.append(LedgerEvent.accountOpened(username, account));
+        }
     }
 
     /**
@@ -83,12 +156,22 @@ public class User {
      * @param accountId The UUID of the account to remove.
      */
     public void removeAccount(UUID accountId) {
-        if (accounts.containsKey(accountId)) {
-            accounts.remove(accountId);
+        BankAccount removed;
+        synchronized (this) {
+            if (!accounts.map.containsKey(accountId)) {
+                return;
+            }
+            UuidMap<BankAccount> updated = new UuidMap<>(accounts.map);
+            removed = updated.remove(accountId);
+            replaceAccounts(updated);
             if (accountId.equals(currentAccountId)) {
-                currentAccountId = accounts.keySet().stream().findFirst().orElse(null);
+                currentAccountId = updated.anyKey();
             }
         }
+        removed.attach(null);
+        if (journal != null) {
+            journal.append(LedgerEvent.accountClosed(username, accountId));
+        }
     }
 
     /**
@@ -98,7 +181,7 @@ public class User {
      * @throws IllegalArgumentException If the account does not exist.
      */
     public void switchToAccount(UUID accountId) throws IllegalArgumentException{
-        if (accounts.containsKey(accountId)) {
+        if (accounts.map.containsKey(accountId)) {
             currentAccountId = accountId;
             return;
         } 
@@ -113,7 +196,114 @@ public class User {
      * @return The current BankAccount object.
      */
     public BankAccount getCurrentAccount() {
-        return accounts.get(currentAccountId);
+        UUID current = currentAccountId;
+        return accounts.map.get(current);
+    }
+
+    /**
+     * Retrieves one of the user's accounts by its ID.
+     *
+     * @param accountId The UUID of the account.
+     * @return The account, or null if the user has no such account.
+     */
+    public BankAccount getAccount(UUID accountId) {
+        return accounts.map.get(accountId);
+    }
+
+    /**
+     * Binds this user and all of their accounts to the bank they were
+     * registered with, recording each existing account as opened.
+     *
+     * @param journal   The bank's mutation journal.
+     * @param snapshots The bank's snapshot coordinator.
+     */
+    void attachToBank(MutationJournal journal, SnapshotCoordinator snapshots) {
+        this.journal = journal;
+        this.snapshots = snapshots;
+        for (BankAccount account : accounts.map.values()) {
+            account.attach(this);
+            journal.append(LedgerEvent.accountOpened(username, account));
+        }
+    }
+
+    /**
+     * Binds a user loaded from storage to the bank that loaded them. The
+     * accounts were recorded as opened when the user was first registered,
+     * so nothing is journaled again.
+     *
+     * @param journal   The bank's mutation journal.
+     * @param snapshots The bank's snapshot coordinator.
+     */
+    void attachLoaded(MutationJournal journal, SnapshotCoordinator snapshots) {
+        this.journal = journal;
+        this.snapshots = snapshots;
+        for (BankAccount account : accounts.map.values()) {
+            account.attach(this);
+        }
+    }
+
+    /**
+     * Retrieves the ID of the active account.
+     *
+     * @return The current account's UUID, or null if the user has no accounts.
+     */
+    UUID getCurrentAccountId() {
+        return currentAccountId;
+    }
+
+    /**
+     * Retrieves the journal of the bank this user is registered with.
+     *
+     * @return The journal, or null if the user is not registered.
+     */
+    MutationJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Retrieves the snapshot coordinator of the bank this user is registered with.
+     *
+     * @return The coordinator, or null if the user is not registered.
+     */
+    SnapshotCoordinator getSnapshots() {
+        return snapshots;
+    }
+
+    /**
+     * Retrieves the withdrawal limits that apply across all of this user's
+     * accounts, in addition to each account's own limits.
+     *
+     * @return The user's withdrawal limits.
+     */
+    public WithdrawalLimits getWithdrawalLimits() {
+        return withdrawalLimits;
+    }
+
+    /**
+     * Adds a withdrawal limit that applies across all of this user's accounts.
+     *
+     * @param rule The limit to enforce.
+     */
+    public void addWithdrawalLimit(LimitRule rule) {
+        withdrawalLimits.addLimit(rule);
+    }
+
+    /**
+     * Records the snapshot epoch this user is being registered under.
+     *
+     * @param registeredEpoch The writer stamp of the registration.
+     */
+    void setRegisteredEpoch(long registeredEpoch) {
+        this.registeredEpoch = registeredEpoch;
+    }
+
+    /**
+     * Retrieves the snapshot epoch this user was registered under.
+     *
+     * @return The registration epoch, or 0 if the user is not registered.
+     */
+    long getRegisteredEpoch() {
+        return registeredEpoch;
     }
 
     /**
@@ -122,7 +312,34 @@ public class User {
      * @return A list of all BankAccount objects owned by the user.
      */
     public List<BankAccount> getAllAccounts() {
-        return new ArrayList<>(accounts.values());
+        return new ArrayList<>(accounts.map.values());
+    }
+
+    /**
+     * Retrieves the accounts the user owned as seen by a snapshot at the
+     * given epoch, which excludes accounts opened after it and includes
+     * accounts closed after it.
+     *
+     * @param epoch The snapshot epoch.
+     * @return The accounts the user owned at that epoch.
+     */
+    List<BankAccount> getAccountsAt(long epoch) {
+        AccountSet set = accounts;
+        while (set.stamp > epoch && set.prev != null) {
+            set = set.prev;
+        }
+        return new ArrayList<>(set.map.values());
+    }
+
+    /**
+     * Totals the user's current account balances separately per currency.
+     *
+     * @return The user's balances by currency.
+     */
+    public CurrencyTotals getTotalsByCurrency() {
+        CurrencyTotals.Builder totals = new CurrencyTotals.Builder();
+        accounts.map.forEachValue(account -> totals.add(account.getCurrency(), account.getCurrentBalance()));
+        return totals.build();
     }
 
     /**
@@ -167,7 +384,12 @@ public class User {
      * @throws NoSuchAlgorithmException If SHA-512 algorithm is not available.
      */
     public boolean isPasswordCorrect(String inputPassword) throws NoSuchAlgorithmException {
-        return this.passwordHash.equals(hashPassword(inputPassword, this.hashSalt));
+        if (inputPassword == null) {
+            return false;
+        }
+        // Compare digests in constant time so response timing reveals nothing about the stored hash.
+        return MessageDigest.isEqual(Base64.getDecoder().decode(this.passwordHash),
+                digestPassword(inputPassword, this.hashSalt));
     }
 
     /**
@@ -188,10 +410,40 @@ public class User {
      * @throws NoSuchAlgorithmException If SHA-512 algorithm is not available.
      */
     private static String hashPassword(String password, String salt) throws NoSuchAlgorithmException {
+        return Base64.getEncoder().encodeToString(digestPassword(password, salt));
+    }
+
+    /**
+     * Computes the raw SHA-512 digest of a salted password.
+     *
+     * @param password The password to be hashed.
+     * @param salt     The salt used for hashing.
+     * @return The digest bytes.
+     * @throws NoSuchAlgorithmException If SHA-512 algorithm is not available.
+     */
+    private static byte[] digestPassword(String password, String salt) throws NoSuchAlgorithmException {
         MessageDigest md = MessageDigest.getInstance("SHA-512");
         md.update(salt.getBytes());
-        byte[] hashedBytes = md.digest(password.getBytes());
-        return Base64.getEncoder().encodeToString(hashedBytes);
+        return md.digest(password.getBytes());
+    }
+
+    /**
+     * Installs a new account map under a writer stamp of the bank's snapshot
+     * coordinator and drops maps no snapshot can read any more. Called with
+     * the user's lock held, so the stamps of successive maps never decrease.
+     *
+     * @param updated The user's accounts after the change.
+     */
+    private void replaceAccounts(UuidMap<BankAccount> updated) {
+        SnapshotCoordinator coordinator = snapshots != null ? snapshots : SnapshotCoordinator.DETACHED;
+        long stamp = coordinator.enter();
+        try {
+            AccountSet next = new AccountSet(stamp, updated, accounts);
+            accounts = next;
+            next.prune(coordinator.pruneHorizon(stamp));
+        } finally {
+            coordinator.exit(stamp);
+        }
     }
 
     /**
@@ -205,4 +457,32 @@ public class User {
         random.nextBytes(saltBytes);
         return Base64.getEncoder().encodeToString(saltBytes);
     }
+
+    /**
+     * One version of a user's account map, linked to the version it replaced.
+     */
+    private static final class AccountSet {
+        final long stamp;
+        final UuidMap<BankAccount> map;
+        volatile AccountSet prev;
+
+        AccountSet(long stamp, UuidMap<BankAccount> map, AccountSet prev) {
+            this.stamp = stamp;
+            this.map = map;
+            this.prev = prev;
+        }
+
+        /**
+         * Drops the versions below the newest one every snapshot at or after
+         * the horizon already sees.
+         */
+        void prune(long horizon) {
+            for (AccountSet set = this; set != null; set = set.prev) {
+                if (set.stamp <= horizon) {
+                    set.prev = null;
+                    return;
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,283 @@
+package bankapp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * A hash map from UUIDs to values, specialised for account lookups.
+ * Keys are stored as their two {@code long} halves side by side in one
+ * primitive array and probed linearly, so a lookup allocates nothing, calls
+ * no {@code hashCode}/{@code equals}, and usually touches a single cache line.
+ * Removal shifts later entries of the probe run back instead of leaving
+ * tombstones, so lookups never slow down as accounts come and go.
+ * <p>
+ * Values must not be null. The map is not thread-safe; callers provide
+ * their own locking.
+ *
+ * @param <V> The value type.
+ */
+public class UuidMap<V> {
+
+    private static final int MIN_CAPACITY = 8;
+
+    /** Maximum fill before the table doubles: three quarters. */
+    private static final int LOAD_NUMERATOR = 3;
+    private static final int LOAD_DENOMINATOR = 4;
+
+    /** Key halves: slot i holds {@code keys[2i]} (msb) and {@code keys[2i + 1]} (lsb). */
+    private long[] keys;
+
+    /** Values by slot; null marks an empty slot. */
+    private Object[] values;
+
+    private int size;
+
+    /**
+     * Constructs an empty map.
+     */
+    public UuidMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty map that holds the expected number of entries
+     * without resizing.
+     *
+     * @param expectedSize The number of entries expected.
+     */
+    public UuidMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_NUMERATOR / LOAD_DENOMINATOR < expectedSize) {
+            capacity <<= 1;
+        }
+        this.keys = new long[capacity * 2];
+        this.values = new Object[capacity];
+    }
+
+    /**
+     * Constructs a copy of another map.
+     *
+     * @param other The map to copy.
+     */
+    public UuidMap(UuidMap<V> other) {
+        this.keys = other.keys.clone();
+        this.values = other.values.clone();
+        this.size = other.size;
+    }
+
+    /**
+     * Returns the value for a key.
+     *
+     * @param key The key, may be null.
+     * @return The value, or null if the key is absent.
+     */
+    public V get(UUID key) {
+        return key == null ? null : get(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    /**
+     * Returns the value for a key given as its two halves.
+     *
+     * @param msb The most significant bits of the key.
+     * @param lsb The least significant bits of the key.
+     * @return The value, or null if the key is absent.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long msb, long lsb) {
+        int slot = find(msb, lsb);
+        return slot >= 0 ? (V) values[slot] : null;
+    }
+
+    /**
+     * Returns whether a key is present.
+     *
+     * @param key The key, may be null.
+     * @return true if the key is present.
+     */
+    public boolean containsKey(UUID key) {
+        return key != null && find(key.getMostSignificantBits(), key.getLeastSignificantBits()) >= 0;
+    }
+
+    /**
+     * Associates a value with a key, replacing any previous value.
+     *
+     * @param key   The key.
+     * @param value The value, not null.
+     * @return The previous value, or null if the key was absent.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(UUID key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("UuidMap values cannot be null.");
+        }
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        int mask = values.length - 1;
+        int slot = hash(msb, lsb) & mask;
+        while (values[slot] != null) {
+            if (keys[2 * slot] == msb && keys[2 * slot + 1] == lsb) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[2 * slot] = msb;
+        keys[2 * slot + 1] = lsb;
+        values[slot] = value;
+        if (++size > values.length * LOAD_NUMERATOR / LOAD_DENOMINATOR) {
+            resize(values.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key The key, may be null.
+     * @return The removed value, or null if the key was absent.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(UUID key) {
+        if (key == null) {
+            return null;
+        }
+        int slot = find(key.getMostSignificantBits(), key.getLeastSignificantBits());
+        if (slot < 0) {
+            return null;
+        }
+        V removed = (V) values[slot];
+        shiftBack(slot);
+        size--;
+        return removed;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return The entry count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether the map is empty.
+     *
+     * @return true if there are no entries.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns any one key, or null if the map is empty.
+     *
+     * @return A key in the map.
+     */
+    public UUID anyKey() {
+        for (int slot = 0; slot < values.length; slot++) {
+            if (values[slot] != null) {
+                return new UUID(keys[2 * slot], keys[2 * slot + 1]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Visits every value.
+     *
+     * @param visitor The callback for each value.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> visitor) {
+        for (Object value : values) {
+            if (value != null) {
+                visitor.accept((V) value);
+            }
+        }
+    }
+
+    /**
+     * Returns the values as a new list.
+     *
+     * @return The values, in no particular order.
+     */
+    public List<V> values() {
+        List<V> result = new ArrayList<>(size);
+        forEachValue(result::add);
+        return result;
+    }
+
+    private int find(long msb, long lsb) {
+        int mask = values.length - 1;
+        int slot = hash(msb, lsb) & mask;
+        while (values[slot] != null) {
+            if (keys[2 * slot] == msb && keys[2 * slot + 1] == lsb) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Empties a slot and moves back any later entry of the same probe run
+     * that would otherwise become unreachable.
+     */
+    private void shiftBack(int hole) {
+        int mask = values.length - 1;
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (values[slot] == null) {
+                break;
+            }
+            int home = hash(keys[2 * slot], keys[2 * slot + 1]) & mask;
+            // Move the entry if its home is not cyclically within (hole, slot].
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                keys[2 * hole] = keys[2 * slot];
+                keys[2 * hole + 1] = keys[2 * slot + 1];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+        values[hole] = null;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity * 2];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int old = 0; old < oldValues.length; old++) {
+            if (oldValues[old] == null) {
+                continue;
+            }
+            long msb = oldKeys[2 * old];
+            long lsb = oldKeys[2 * old + 1];
+            int slot = hash(msb, lsb) & mask;
+            while (values[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[2 * slot] = msb;
+            keys[2 * slot + 1] = lsb;
+            values[slot] = oldValues[old];
+        }
+    }
+
+    /**
+     * Mixes both halves; random UUIDs are already well distributed, but
+     * name-based or sequential ones may not be.
+     */
+    static int hash(long msb, long lsb) {
+        long h = msb * 0x9e3779b97f4a7c15L ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
@@ -0,0 +1,235 @@
+package bankapp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link TransferStage} that scores each transfer against the sending
+ * account's recent activity and blocks or flags the suspicious ones.
+ * <p>
+ * Each rule a transfer breaks adds to its score:
+ * <ul>
+ * <li>more transfers in the last minute than allowed: 60 points;</li>
+ * <li>more transfers in the last hour than allowed: 40 points;</li>
+ * <li>more money sent in the last hour than allowed: 60 points;</li>
+ * <li>a recipient the account has not recently paid: 10 points, or 50 if
+ * the amount is large.</li>
+ * </ul>
+ * A score at or above the flag score lets the transfer through with a flag;
+ * at or above the block score stops it. Counts and sums include the transfer
+ * being scored and are kept per account in a {@link VelocityWindow}. A
+ * transfer that is let through is counted in the same step that scores it,
+ * so concurrent transfers from one account each see the others, and taken
+ * back if it is not committed after all.
+ * <p>
+ * Accounts idle for an hour are forgotten by {@link #removeIdle()}, which
+ * is run on a schedule with {@link RecurringJobs#scheduleVelocitySweep}
+ * rather than on the transfer path, so the windows held stay proportional
+ * to the accounts recently active without any transfer paying for a sweep.
+ */
+public class VelocityScoringStage implements TransferStage {
+
+    private static final long IDLE_MILLIS = 3_600_000;
+
+    private final BankClock clock;
+    private final int maxTransfersPerMinute;
+    private final int maxTransfersPerHour;
+    private final double maxAmountPerHour;
+    private final double largeNewRecipientAmount;
+    private final int flagScore;
+    private final int blockScore;
+
+    private final ConcurrentHashMap<UUID, VelocityWindow> windows;
+
+    /**
+     * Creates a stage with the default limits: 5 transfers a minute, 30 an
+     * hour, $10,000 an hour, $1,000 counting as large for a new recipient,
+     * flagging at 50 points and blocking at 100.
+     *
+     * @param clock The clock transfers are timed by.
+     */
+    public VelocityScoringStage(BankClock clock) {
+        this(new Builder(clock));
+    }
+
+    private VelocityScoringStage(Builder builder) {
+        this.clock = builder.clock;
+        this.maxTransfersPerMinute = builder.maxTransfersPerMinute;
+        this.maxTransfersPerHour = builder.maxTransfersPerHour;
+        this.maxAmountPerHour = builder.maxAmountPerHour;
+        this.largeNewRecipientAmount = builder.largeNewRecipientAmount;
+        this.flagScore = builder.flagScore;
+        this.blockScore = builder.blockScore;
+        this.windows = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public TransferVerdict evaluate(TransferRequest request) {
+        long now = request.getTimestampMillis();
+        while (true) {
+            VelocityWindow window = windows.computeIfAbsent(request.getFromAccountId(), id -> new VelocityWindow());
+            synchronized (window) {
+                // A window swept away since it was looked up would lose the reservation.
+                if (windows.get(request.getFromAccountId()) == window) {
+                    return score(window, request, now);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scores a transfer against its account's window, and counts it in the
+     * window unless it is blocked. Called holding the window's lock.
+     */
+    private TransferVerdict score(VelocityWindow window, TransferRequest request, long now) {
+        int score = 0;
+        List<String> reasons = new ArrayList<>(2);
+        int perMinute = 1 + window.countLastMinute(now);
+        int perHour = 1 + window.countLastHour(now);
+        double amountPerHour = request.getAmount() + window.sumLastHour(now);
+        if (perMinute > maxTransfersPerMinute) {
+            score += 60;
+            reasons.add(perMinute + " transfers in a minute");
+        }
+        if (perHour > maxTransfersPerHour) {
+            score += 40;
+            reasons.add(perHour + " transfers in an hour");
+        }
+        if (amountPerHour > maxAmountPerHour) {
+            score += 60;
+            reasons.add(String.format("$%.2f sent in an hour", amountPerHour));
+        }
+        if (!window.isRecentRecipient(request.getToAccountId())) {
+            if (request.getAmount() >= largeNewRecipientAmount) {
+                score += 50;
+                reasons.add("large amount to a new recipient");
+            } else {
+                score += 10;
+            }
+        }
+        if (score >= blockScore) {
+            return new TransferVerdict(TransferVerdict.Action.BLOCK, score, reasons);
+        }
+        window.reserve(now, request.getAmount());
+        if (score >= flagScore) {
+            return new TransferVerdict(TransferVerdict.Action.FLAG, score, reasons);
+        }
+        return score == 0 ? TransferVerdict.ALLOW : new TransferVerdict(TransferVerdict.Action.ALLOW, score, reasons);
+    }
+
+    @Override
+    public void onCommitted(TransferRequest request) {
+        VelocityWindow window = windows.get(request.getFromAccountId());
+        if (window != null) {
+            window.addRecipient(request.getToAccountId());
+        }
+    }
+
+    @Override
+    public void onAborted(TransferRequest request) {
+        VelocityWindow window = windows.get(request.getFromAccountId());
+        if (window != null) {
+            window.release(request.getTimestampMillis(), request.getAmount());
+        }
+    }
+
+    /**
+     * Forgets accounts that have sent nothing for an hour, whose windows
+     * would score them as if new anyway, apart from their recent recipients.
+     * This walks every tracked account, so it belongs on a schedule such as
+     * {@link RecurringJobs#scheduleVelocitySweep}, not on the transfer path.
+     *
+     * @return The number of accounts forgotten.
+     */
+    public int removeIdle() {
+        long cutoff = clock.currentTimeMillis() - IDLE_MILLIS;
+        int removed = 0;
+        for (UUID accountId : windows.keySet()) {
+            VelocityWindow window = windows.get(accountId);
+            if (window == null) {
+                continue;
+            }
+            synchronized (window) {
+                if (window.getLastActivityMillis() < cutoff && windows.remove(accountId, window)) {
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Retrieves the number of accounts with recorded activity.
+     *
+     * @return The number of accounts tracked.
+     */
+    public int getTrackedAccountCount() {
+        return windows.size();
+    }
+
+    /**
+     * Builds a {@link VelocityScoringStage} with custom limits. Anything not
+     * set keeps its default.
+     */
+    public static final class Builder {
+        private final BankClock clock;
+        private int maxTransfersPerMinute = 5;
+        private int maxTransfersPerHour = 30;
+        private double maxAmountPerHour = 10_000;
+        private double largeNewRecipientAmount = 1_000;
+        private int flagScore = 50;
+        private int blockScore = 100;
+
+        /**
+         * Starts a builder.
+         *
+         * @param clock The clock transfers are timed by.
+         */
+        public Builder(BankClock clock) {
+            this.clock = clock;
+        }
+
+        public Builder maxTransfersPerMinute(int count) {
+            this.maxTransfersPerMinute = count;
+            return this;
+        }
+
+        public Builder maxTransfersPerHour(int count) {
+            this.maxTransfersPerHour = count;
+            return this;
+        }
+
+        public Builder maxAmountPerHour(double amount) {
+            this.maxAmountPerHour = amount;
+            return this;
+        }
+
+        public Builder largeNewRecipientAmount(double amount) {
+            this.largeNewRecipientAmount = amount;
+            return this;
+        }
+
+        /**
+         * Sets the scores at which transfers are flagged and blocked.
+         *
+         * @param flag  The lowest score that flags a transfer.
+         * @param block The lowest score that blocks a transfer; at least the flag score.
+         * @return This builder.
+         */
+        public Builder scores(int flag, int block) {
+            if (flag <= 0 || block < flag) {
+                throw new IllegalArgumentException(
+                        "Scores must be positive, and the block score at least the flag score.");
+            }
+            this.flagScore = flag;
+            this.blockScore = block;
+            return this;
+        }
+
+        public VelocityScoringStage build() {
+            return new VelocityScoringStage(this);
+        }
+    }
+}
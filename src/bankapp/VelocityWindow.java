@@ -0,0 +1,159 @@
+package bankapp;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Recent outgoing transfer activity of one account, kept in fixed-size ring
+ * buffers: transfer counts and sums over the last minute in five-second
+ * buckets and over the last hour in five-minute buckets, plus the last few
+ * recipients. A window takes well under a kilobyte whatever the account's
+ * volume, and every query is a pass over a dozen buckets.
+ * <p>
+ * Windows slide in whole buckets, so "the last minute" spans between 55 and
+ * 60 seconds. All methods synchronize on the window.
+ */
+final class VelocityWindow {
+
+    private static final int BUCKETS = 12;
+    private static final long MINUTE_BUCKET_MILLIS = 5_000;
+    private static final long HOUR_BUCKET_MILLIS = 300_000;
+
+    /** How many distinct recent recipients are remembered. */
+    static final int RECENT_RECIPIENTS = 16;
+
+    private final Ring minute = new Ring(MINUTE_BUCKET_MILLIS);
+    private final Ring hour = new Ring(HOUR_BUCKET_MILLIS);
+
+    /** Recent recipients' ID halves, overwritten oldest first. */
+    private final long[] recipientHigh = new long[RECENT_RECIPIENTS];
+    private final long[] recipientLow = new long[RECENT_RECIPIENTS];
+    private int recipients;
+    private int nextRecipient;
+
+    private long lastActivityMillis;
+
+    /**
+     * Counts and sums per bucket; a bucket whose period is not the one being
+     * asked about is stale and counts as empty.
+     */
+    private static final class Ring {
+        final long bucketMillis;
+        final long[] periods = new long[BUCKETS];
+        final int[] counts = new int[BUCKETS];
+        final double[] sums = new double[BUCKETS];
+
+        Ring(long bucketMillis) {
+            this.bucketMillis = bucketMillis;
+            Arrays.fill(periods, Long.MIN_VALUE);
+        }
+
+        void add(long nowMillis, double amount) {
+            long period = Math.floorDiv(nowMillis, bucketMillis);
+            int bucket = Math.floorMod(period, BUCKETS);
+            if (periods[bucket] != period) {
+                periods[bucket] = period;
+                counts[bucket] = 0;
+                sums[bucket] = 0;
+            }
+            counts[bucket]++;
+            sums[bucket] += amount;
+        }
+
+        /**
+         * Takes back a transfer added at the given time, unless its bucket
+         * has since been reused for a later period.
+         */
+        void remove(long atMillis, double amount) {
+            long period = Math.floorDiv(atMillis, bucketMillis);
+            int bucket = Math.floorMod(period, BUCKETS);
+            if (periods[bucket] == period && counts[bucket] > 0) {
+                counts[bucket]--;
+                sums[bucket] = counts[bucket] == 0 ? 0 : sums[bucket] - amount;
+            }
+        }
+
+        int count(long nowMillis) {
+            long oldest = Math.floorDiv(nowMillis, bucketMillis) - BUCKETS + 1;
+            int count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                if (periods[i] >= oldest) {
+                    count += counts[i];
+                }
+            }
+            return count;
+        }
+
+        double sum(long nowMillis) {
+            long oldest = Math.floorDiv(nowMillis, bucketMillis) - BUCKETS + 1;
+            double sum = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                if (periods[i] >= oldest) {
+                    sum += sums[i];
+                }
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * Counts a transfer out of the account that is about to be committed.
+     */
+    synchronized void reserve(long nowMillis, double amount) {
+        minute.add(nowMillis, amount);
+        hour.add(nowMillis, amount);
+        lastActivityMillis = Math.max(lastActivityMillis, nowMillis);
+    }
+
+    /**
+     * Takes back a transfer counted by {@link #reserve} that was not
+     * committed after all.
+     */
+    synchronized void release(long reservedMillis, double amount) {
+        minute.remove(reservedMillis, amount);
+        hour.remove(reservedMillis, amount);
+    }
+
+    /**
+     * Remembers the recipient of a committed transfer.
+     */
+    synchronized void addRecipient(UUID recipient) {
+        if (!isRecentRecipient(recipient)) {
+            recipientHigh[nextRecipient] = recipient.getMostSignificantBits();
+            recipientLow[nextRecipient] = recipient.getLeastSignificantBits();
+            nextRecipient = (nextRecipient + 1) % RECENT_RECIPIENTS;
+            recipients = Math.min(recipients + 1, RECENT_RECIPIENTS);
+        }
+    }
+
+    synchronized int countLastMinute(long nowMillis) {
+        return minute.count(nowMillis);
+    }
+
+    synchronized int countLastHour(long nowMillis) {
+        return hour.count(nowMillis);
+    }
+
+    synchronized double sumLastHour(long nowMillis) {
+        return hour.sum(nowMillis);
+    }
+
+    /**
+     * Retrieves whether the account sent money to a recipient among its
+     * last few distinct recipients.
+     */
+    synchronized boolean isRecentRecipient(UUID recipient) {
+        long high = recipient.getMostSignificantBits();
+        long low = recipient.getLeastSignificantBits();
+        for (int i = 0; i < recipients; i++) {
+            if (recipientHigh[i] == high && recipientLow[i] == low) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    synchronized long getLastActivityMillis() {
+        return lastActivityMillis;
+    }
+}
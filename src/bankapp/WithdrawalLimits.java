@@ -0,0 +1,208 @@
+package bankapp;
+
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A thread-safe set of withdrawal limits for one account or one user. Each
+ * rule's window rolls over automatically based on the injected clock, so no
+ * manual monthly reset is needed.
+ */
+public class WithdrawalLimits {
+
+    private final BankClock clock;
+    private final ZoneId zone;
+    private final List<LimitCounter> counters;
+
+    /**
+     * Constructs an empty set of limits whose calendar windows follow the
+     * system time zone.
+     *
+     * @param clock The clock used to decide which window a withdrawal falls in.
+     */
+    public WithdrawalLimits(BankClock clock) {
+        this(clock, ZoneId.systemDefault());
+    }
+
+    /**
+     * Constructs an empty set of limits.
+     *
+     * @param clock The clock used to decide which window a withdrawal falls in.
+     * @param zone  The time zone calendar windows roll over in.
+     */
+    public WithdrawalLimits(BankClock clock, ZoneId zone) {
+        this.clock = clock;
+        this.zone = zone;
+        this.counters = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Adds a limit rule.
+     *
+     * @param rule The rule to enforce.
+     */
+    public void addLimit(LimitRule rule) {
+        counters.add(LimitCounter.forRule(rule, zone));
+    }
+
+    /**
+     * Replaces the rule of the same kind and window type with a new rule, or
+     * adds it if there was none. Usage in the current window carries over.
+     *
+     * @param rule The replacement rule.
+     */
+    public synchronized void replaceLimit(LimitRule rule) {
+        LimitCounter previous = find(rule.getKind(), rule.getWindow().getType());
+        LimitCounter replacement = LimitCounter.forRule(rule, zone);
+        if (previous == null) {
+            counters.add(replacement);
+            return;
+        }
+        long now = clock.currentTimeMillis();
+        replacement.seed(previous.used(now), now);
+        counters.set(counters.indexOf(previous), replacement);
+    }
+
+    /**
+     * Adds a limit rule restored from storage, with the usage it had when it
+     * was stored counted at the time it was stored. A calendar window the
+     * clock has since left starts empty; in a sliding window the whole
+     * usage expires a full window after it was stored, so restored usage is
+     * never undercounted.
+     *
+     * @param rule         The rule to enforce.
+     * @param used         The usage stored with the rule.
+     * @param storedMillis When the usage was stored, in epoch milliseconds.
+     */
+    void restoreLimit(LimitRule rule, double used, long storedMillis) {
+        LimitCounter counter = LimitCounter.forRule(rule, zone);
+        counter.seed(used, storedMillis);
+        counters.add(counter);
+    }
+
+    /**
+     * Retrieves the counters behind the rules, for storing their usage.
+     */
+    List<LimitCounter> counters() {
+        return counters;
+    }
+
+    /**
+     * Retrieves the current time on the clock the windows follow.
+     */
+    long currentTimeMillis() {
+        return clock.currentTimeMillis();
+    }
+
+    /**
+     * Removes every limit rule.
+     */
+    public void clear() {
+        counters.clear();
+    }
+
+    /**
+     * Returns whether any limit rules are configured.
+     *
+     * @return true if there are no rules.
+     */
+    public boolean isEmpty() {
+        return counters.isEmpty();
+    }
+
+    /**
+     * Records a withdrawal against every rule, or none if any rule would be
+     * exceeded.
+     *
+     * @param amount The withdrawal amount.
+     * @return null if the withdrawal is allowed, otherwise the first rule it would exceed.
+     */
+    public LimitRule tryAcquire(double amount) {
+        return tryAcquire(amount, clock.currentTimeMillis());
+    }
+
+    /**
+     * Records a withdrawal against every rule at the given time, or none if
+     * any rule would be exceeded.
+     *
+     * @param amount The withdrawal amount.
+     * @param now    The current time on this set's clock, from {@link #currentTimeMillis()}.
+     * @return null if the withdrawal is allowed, otherwise the first rule it would exceed.
+     */
+    LimitRule tryAcquire(double amount, long now) {
+        if (counters.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < counters.size(); i++) {
+            LimitCounter counter = counters.get(i);
+            if (!counter.tryAcquire(counter.rule.usageOf(amount), now)) {
+                for (int j = 0; j < i; j++) {
+                    LimitCounter acquired = counters.get(j);
+                    acquired.release(acquired.rule.usageOf(amount), now, now);
+                }
+                return counter.rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gives back a withdrawal previously recorded by {@link #tryAcquire(double)}
+     * that did not go through. The usage is taken from the windows it was
+     * recorded in, so a release after a sliding window has moved on does not
+     * eat into usage recorded since.
+     *
+     * @param amount     The withdrawal amount.
+     * @param acquiredAt When the withdrawal was recorded, on this set's clock.
+     */
+    void release(double amount, long acquiredAt) {
+        long now = clock.currentTimeMillis();
+        for (LimitCounter counter : counters) {
+            counter.release(counter.rule.usageOf(amount), acquiredAt, now);
+        }
+    }
+
+    /**
+     * Returns the usage of the first rule matching the given kind and window
+     * type, within its current window.
+     *
+     * @param kind The rule kind.
+     * @param type The window type.
+     * @return The usage, or 0 if no such rule exists.
+     */
+    public double getUsed(LimitRule.Kind kind, LimitWindow.Type type) {
+        LimitCounter counter = find(kind, type);
+        return counter != null ? counter.used(clock.currentTimeMillis()) : 0;
+    }
+
+    /**
+     * Returns the first rule matching the given kind and window type.
+     *
+     * @param kind The rule kind.
+     * @param type The window type.
+     * @return The rule, or null if none exists.
+     */
+    public LimitRule getRule(LimitRule.Kind kind, LimitWindow.Type type) {
+        LimitCounter counter = find(kind, type);
+        return counter != null ? counter.rule : null;
+    }
+
+    /**
+     * Clears usage of every rule in its current window.
+     */
+    public void resetUsage() {
+        for (LimitCounter counter : counters) {
+            counter.reset();
+        }
+    }
+
+    private LimitCounter find(LimitRule.Kind kind, LimitWindow.Type type) {
+        for (LimitCounter counter : counters) {
+            if (counter.rule.getKind() == kind && counter.rule.getWindow().getType() == type) {
+                return counter;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,151 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import bankapp.Bank;
+import bankapp.DurableJournal;
+import bankapp.FsyncPolicy;
+
+/**
+ * Measures durable transfers per second under each {@link FsyncPolicy},
+ * alongside how long each sync took and how many transfers it covered.
+ * <p>
+ * Each case runs a fresh bank for a fixed time with a number of threads,
+ * each keeping up to a number of transfers in flight: it submits transfers
+ * with {@link Bank#submitTransfer} and waits for the oldest to become
+ * durable once its window is full. One thread with one transfer in flight
+ * pays for a whole sync per transfer; more threads, or more transfers in
+ * flight, let each sync cover many transfers. Count-based policies are
+ * skipped for cases with fewer transfers in flight than a sync waits for,
+ * which would never fill a group.
+ * <p>
+ * Run with {@code java -cp <classes> benchmarks.GroupCommitBenchmark
+ * [seconds per case] [directory]}; the directory defaults to a temporary
+ * one and should be on the device being measured.
+ */
+public class GroupCommitBenchmark {
+
+    private static final int USERS = 64;
+
+    /** Threads and transfers in flight per thread for each case. */
+    private static final int[][] CASES = { { 1, 1 }, { 16, 1 }, { 64, 1 }, { 16, 32 } };
+
+    private static final int GROUP_SIZE = 64;
+    private static final FsyncPolicy EVERY_GROUP = FsyncPolicy.everyOperations(GROUP_SIZE);
+
+    private static final List<FsyncPolicy> POLICIES = List.of(FsyncPolicy.everyOperation(),
+            FsyncPolicy.everyMillis(2), FsyncPolicy.everyMillis(10), EVERY_GROUP);
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        Path directory = args.length > 1 ? Files.createDirectories(Path.of(args[1]))
+                : Files.createTempDirectory("group-commit-benchmark");
+        PrintStream console = System.out;
+        // The bank reports every registration and transfer on standard output.
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            console.printf("%-20s %8s %9s %14s %12s %12s%n", "policy", "threads", "in flight", "transfers/s",
+                    "sync ms", "per sync");
+            int run = 0;
+            for (FsyncPolicy policy : POLICIES) {
+                for (int[] test : CASES) {
+                    int threads = test[0];
+                    int window = test[1];
+                    if (policy == EVERY_GROUP && threads * window < GROUP_SIZE) {
+                        continue;
+                    }
+                    Path file = directory.resolve("journal-" + run++ + ".log");
+                    measure(console, policy, threads, window, seconds, file);
+                    Files.deleteIfExists(file);
+                }
+            }
+        } finally {
+            System.setOut(console);
+            if (args.length < 2) {
+                try (Stream<Path> files = Files.walk(directory)) {
+                    files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+                }
+            }
+        }
+    }
+
+    private static void measure(PrintStream console, FsyncPolicy policy, int threads, int window, int seconds,
+            Path file) throws Exception {
+        Bank bank = new Bank();
+        for (int i = 0; i < USERS; i++) {
+            bank.registerUser("user" + i, "pass" + i);
+            bank.getUser("user" + i).getCurrentAccount().deposit(1_000_000_000);
+        }
+        LongAdder completed = new LongAdder();
+        DurableJournal durable = bank.enableDurability(file, policy);
+        try {
+            durable.flush().join();
+            long start = System.nanoTime();
+            long deadline = start + seconds * 1_000_000_000L;
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int first = t;
+                workers[t] = new Thread(() -> transfer(bank, first, window, deadline, completed));
+                workers[t].start();
+            }
+            for (Thread worker : workers) {
+                // A worker waiting on a count-based policy after the others stop needs a nudge.
+                while (worker.isAlive()) {
+                    worker.join(10);
+                    if (System.nanoTime() > deadline) {
+                        durable.flush();
+                    }
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            console.printf("%-20s %8d %9d %,14.0f %12.3f %12.1f%n", policy, threads, window,
+                    completed.sum() / (elapsed / 1e9), durable.getAverageSyncMillis(),
+                    durable.getAverageGroupSize());
+        } finally {
+            durable.close();
+        }
+    }
+
+    /**
+     * Submits transfers between pairs of users until the deadline, keeping
+     * up to a window of them in flight, and counts those that become durable.
+     */
+    private static void transfer(Bank bank, int first, int window, long deadline, LongAdder completed) {
+        ArrayDeque<CompletableFuture<Boolean>> inFlight = new ArrayDeque<>();
+        int i = first;
+        while (System.nanoTime() < deadline) {
+            if (inFlight.size() == window) {
+                await(inFlight.poll(), completed);
+            }
+            String from = "user" + (i % USERS);
+            String to = "user" + ((i + 1) % USERS);
+            inFlight.add(bank.submitTransfer(from, to, 1));
+            i += 7;
+        }
+        // The last transfers may wait on a count-based policy; stop counting rather than wait.
+        for (CompletableFuture<Boolean> transfer : inFlight) {
+            if (transfer.isDone()) {
+                await(transfer, completed);
+            }
+        }
+    }
+
+    private static void await(CompletableFuture<Boolean> transfer, LongAdder completed) {
+        try {
+            if (transfer.join()) {
+                completed.increment();
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Transfer failed to become durable.", e);
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import bankapp.Admin;
+import bankapp.Bank;
+import bankapp.BankAccount;
+import bankapp.CheckingsAccount;
+import bankapp.User;
+
+/**
+ * Drives a {@link Bank} with a mixed workload from many threads for a fixed
+ * time, then checks that no money was created or destroyed.
+ * <p>
+ * The bank is built with a configurable number of users and accounts per
+ * user, each account funded with the same opening balance. Every thread then
+ * repeatedly picks an operation — deposit, withdrawal, transfer, login or an
+ * admin scan of the total balance — and the users it acts on, skewed by a
+ * Zipf distribution so that a few users see most of the traffic. Each thread
+ * draws from its own random stream derived from the seed, so a run with the
+ * same options issues the same sequence of operations per thread; only their
+ * interleaving and the number completed in the time allowed vary.
+ * <p>
+ * At the end the generator prints throughput and latency percentiles per
+ * operation, then compares the bank's total balance with the opening total
+ * adjusted by every successful deposit and withdrawal. It exits with status 1
+ * if the two differ.
+ * <p>
+ * Run with {@code java -cp <classes> benchmarks.LoadGenerator [--users n]
+ * [--accounts n] [--threads n] [--seconds n] [--skew s] [--seed n]
+ * [--scan-percent p]}.
+ */
+public class LoadGenerator {
+
+    private static final double OPENING_BALANCE = 1_000;
+    private static final int MAX_AMOUNT = 100;
+    private static final String PASSWORD = "load-test";
+
+    /** The operations issued, in the order they are reported. */
+    private enum Operation {
+        DEPOSIT, WITHDRAWAL, TRANSFER, LOGIN, SCAN
+    }
+
+    private final int users;
+    private final int accountsPerUser;
+    private final int threads;
+    private final int seconds;
+    private final double skew;
+    private final long seed;
+    private final double scanPercent;
+
+    private Bank bank;
+    private Admin admin;
+    private ZipfSampler sampler;
+
+    LoadGenerator(String[] args) {
+        int users = 10_000;
+        int accountsPerUser = 2;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int seconds = 30;
+        double skew = 1.1;
+        long seed = 42;
+        double scanPercent = 0.1;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+            case "--users":
+                users = Integer.parseInt(value);
+                break;
+            case "--accounts":
+                accountsPerUser = Integer.parseInt(value);
+                break;
+            case "--threads":
+                threads = Integer.parseInt(value);
+                break;
+            case "--seconds":
+                seconds = Integer.parseInt(value);
+                break;
+            case "--skew":
+                skew = Double.parseDouble(value);
+                break;
+            case "--seed":
+                seed = Long.parseLong(value);
+                break;
+            case "--scan-percent":
+                scanPercent = Double.parseDouble(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (users < 2 || accountsPerUser < 1 || threads < 1 || seconds < 1) {
+            throw new IllegalArgumentException("Need at least two users, one account, one thread and one second.");
+        }
+        this.users = users;
+        this.accountsPerUser = accountsPerUser;
+        this.threads = threads;
+        this.seconds = seconds;
+        this.skew = skew;
+        this.seed = seed;
+        this.scanPercent = scanPercent;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator(args);
+        PrintStream console = System.out;
+        // The bank reports every registration, login and transfer on standard output.
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        boolean conserved;
+        try {
+            conserved = generator.run(console);
+        } finally {
+            System.setOut(console);
+        }
+        if (!conserved) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Builds the bank, runs the workload and reports on it.
+     *
+     * @return true if the total balance matches the expected total.
+     */
+    boolean run(PrintStream console) throws Exception {
+        long start = System.nanoTime();
+        setup();
+        console.printf("%,d users with %d accounts each set up in %.1f s%n", users, accountsPerUser,
+                (System.nanoTime() - start) / 1e9);
+        console.printf("%d threads for %d s, Zipf skew %.2f, seed %d%n", threads, seconds, skew, seed);
+
+        Worker[] workers = new Worker[threads];
+        Thread[] running = new Thread[threads];
+        // Derive each thread's stream in order, so thread t always gets the same one.
+        SplittableRandom root = new SplittableRandom(seed);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Worker(root.split(), deadline);
+            running[t] = new Thread(workers[t], "load-" + t);
+        }
+        start = System.nanoTime();
+        for (Thread thread : running) {
+            thread.start();
+        }
+        for (Thread thread : running) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        report(console, workers, elapsed);
+        return checkConservation(console, workers);
+    }
+
+    private void setup() throws NoSuchAlgorithmException {
+        bank = new Bank();
+        for (int i = 0; i < users; i++) {
+            bank.registerUser(username(i), PASSWORD);
+            User user = bank.getUser(username(i));
+            for (int a = 1; a < accountsPerUser; a++) {
+                user.addAccount(new CheckingsAccount());
+            }
+            for (BankAccount account : user.getAllAccounts()) {
+                account.deposit(OPENING_BALANCE);
+            }
+        }
+        admin = new Admin("load-admin", PASSWORD);
+        bank.registerUser(admin);
+        sampler = new ZipfSampler(users, skew);
+    }
+
+    private void report(PrintStream console, Worker[] workers, double elapsed) {
+        long total = 0;
+        console.printf("%-11s %12s %10s %10s %10s %10s %10s %10s%n", "operation", "count", "failed",
+                "p50 us", "p90 us", "p99 us", "p99.9 us", "max us");
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram merged = new LatencyHistogram();
+            long failed = 0;
+            for (Worker worker : workers) {
+                merged.add(worker.latencies[operation.ordinal()]);
+                failed += worker.failures[operation.ordinal()];
+            }
+            total += merged.count();
+            console.printf("%-11s %,12d %,10d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    operation.name().toLowerCase(), merged.count(), failed, merged.percentile(50) / 1e3,
+                    merged.percentile(90) / 1e3, merged.percentile(99) / 1e3, merged.percentile(99.9) / 1e3,
+                    merged.max() / 1e3);
+        }
+        console.printf("%,d operations in %.1f s: %,.0f ops/s%n", total, elapsed, total / elapsed);
+    }
+
+    /**
+     * Compares the bank's total balance with the opening total plus every
+     * successful deposit and minus every successful withdrawal. Transfers
+     * and logins must leave the total unchanged. Amounts are whole dollars,
+     * so the sums are exact.
+     */
+    private boolean checkConservation(PrintStream console, Worker[] workers) throws IllegalAccessException {
+        double expected = OPENING_BALANCE * users * accountsPerUser;
+        for (Worker worker : workers) {
+            expected += worker.deposited - worker.withdrawn;
+        }
+        double actual = bank.calculateTotalSystemBalanceBasedOnAllUsers(admin);
+        boolean conserved = actual == expected;
+        console.printf("total balance %,.2f, expected %,.2f: %s%n", actual, expected,
+                conserved ? "conserved" : "MISMATCH");
+        return conserved;
+    }
+
+    private static String username(int index) {
+        return "user" + index;
+    }
+
+    /**
+     * Issues operations until the deadline, timing each one.
+     */
+    private final class Worker implements Runnable {
+        final SplittableRandom random;
+        final long deadline;
+        final LatencyHistogram[] latencies;
+        final long[] failures;
+        long deposited;
+        long withdrawn;
+
+        Worker(SplittableRandom random, long deadline) {
+            this.random = random;
+            this.deadline = deadline;
+            this.latencies = new LatencyHistogram[Operation.values().length];
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = new LatencyHistogram();
+            }
+            this.failures = new long[latencies.length];
+        }
+
+        @Override
+        public void run() {
+            try {
+                long now = System.nanoTime();
+                while (now < deadline) {
+                    Operation operation = pick();
+                    int user = sampler.sample(random);
+                    int other = sampler.sample(random);
+                    if (other == user) {
+                        other = (user + 1) % users;
+                    }
+                    int account = random.nextInt(accountsPerUser);
+                    int amount = 1 + random.nextInt(MAX_AMOUNT);
+                    boolean succeeded = perform(operation, user, other, account, amount);
+                    long end = System.nanoTime();
+                    latencies[operation.ordinal()].record(end - now);
+                    if (!succeeded) {
+                        failures[operation.ordinal()]++;
+                    }
+                    now = end;
+                }
+            } catch (NoSuchAlgorithmException | IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private Operation pick() {
+            double roll = random.nextDouble() * 100;
+            if (roll < scanPercent) {
+                return Operation.SCAN;
+            }
+            // The rest splits 30/25/30/15 between deposits, withdrawals, transfers and logins.
+            roll = random.nextDouble() * 100;
+            if (roll < 30) {
+                return Operation.DEPOSIT;
+            } else if (roll < 55) {
+                return Operation.WITHDRAWAL;
+            } else if (roll < 85) {
+                return Operation.TRANSFER;
+            }
+            return Operation.LOGIN;
+        }
+
+        private boolean perform(Operation operation, int user, int other, int account, int amount)
+                throws NoSuchAlgorithmException, IllegalAccessException {
+            switch (operation) {
+            case DEPOSIT: {
+                List<BankAccount> accounts = bank.getUser(username(user)).getAllAccounts();
+                accounts.get(account % accounts.size()).deposit(amount);
+                deposited += amount;
+                return true;
+            }
+            case WITHDRAWAL: {
+                List<BankAccount> accounts = bank.getUser(username(user)).getAllAccounts();
+                try {
+                    accounts.get(account % accounts.size()).withdraw(amount);
+                } catch (IllegalArgumentException e) {
+                    return false;
+                }
+                withdrawn += amount;
+                return true;
+            }
+            case TRANSFER:
+                return bank.transferFunds(username(user), username(other), amount);
+            case LOGIN:
+                return bank.login(username(user), PASSWORD) != null;
+            default:
+                return bank.calculateTotalSystemBalanceBasedOnAllUsers(admin) > 0;
+            }
+        }
+    }
+
+    /**
+     * Draws user indexes from a Zipf distribution, where the user of rank k
+     * is chosen with probability proportional to 1 / k^skew.
+     */
+    static final class ZipfSampler {
+        private final double[] cumulative;
+
+        ZipfSampler(int size, double skew) {
+            cumulative = new double[size];
+            double sum = 0;
+            for (int k = 0; k < size; k++) {
+                sum += 1 / Math.pow(k + 1, skew);
+                cumulative[k] = sum;
+            }
+            for (int k = 0; k < size; k++) {
+                cumulative[k] /= sum;
+            }
+        }
+
+        int sample(SplittableRandom random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+        }
+    }
+
+    /**
+     * Counts latencies in buckets whose width grows with the value, keeping
+     * every recorded value within about 3% of its bucket's lower bound.
+     */
+    static final class LatencyHistogram {
+        private static final int SUB_BUCKETS = 32;
+
+        private final long[] counts = new long[64 * SUB_BUCKETS];
+        private long count;
+        private long max;
+
+        void record(long nanos) {
+            long value = Math.max(0, nanos);
+            counts[bucket(value)]++;
+            count++;
+            max = Math.max(max, value);
+        }
+
+        void add(LatencyHistogram other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            count += other.count;
+            max = Math.max(max, other.max);
+        }
+
+        long count() {
+            return count;
+        }
+
+        long max() {
+            return max;
+        }
+
+        /**
+         * Returns the lower bound of the bucket holding the given percentile.
+         */
+        long percentile(double percent) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(count * percent / 100);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(lowerBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        private static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int magnitude = 63 - Long.numberOfLeadingZeros(value);
+            int shift = magnitude - 5;
+            return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+        }
+
+        private static long lowerBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            return (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import bankapp.Bank;
+import bankapp.BankClock;
+import bankapp.LsmBankRepository;
+import bankapp.TinyLfuCache;
+import bankapp.User;
+
+/**
+ * Measures a {@link Bank} backed by an {@link LsmBankRepository} whose
+ * working set holds a fraction of its users: microseconds per
+ * {@code getUser}, {@code login} and {@code transferFunds} for users in the
+ * working set, and per {@code getUser} for users that must be loaded from
+ * disk. Cold lookups compete with the hot users for the working set, whose
+ * frequency-aware admission should keep the hot users loaded.
+ * <p>
+ * Run with {@code java -cp <classes> benchmarks.LsmBankBenchmark [users]}.
+ */
+public class LsmBankBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int HOT_USERS = 1_000;
+    private static final int OPERATIONS_PER_ROUND = 200_000;
+
+    public static void main(String[] args) throws IOException, NoSuchAlgorithmException {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        PrintStream console = System.out;
+        // The bank reports every registration and transfer on standard output.
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Path directory = Files.createTempDirectory("lsm-bank-benchmark");
+        try (LsmBankRepository repository = new LsmBankRepository(directory, BankClock.system(), HOT_USERS * 8,
+                64L << 20)) {
+            Bank bank = new Bank(BankClock.system(), repository);
+            long start = System.nanoTime();
+            for (int i = 0; i < users; i++) {
+                bank.registerUser("user" + i, "pass" + i);
+                bank.getUser("user" + i).getCurrentAccount().deposit(1_000_000);
+            }
+            console.printf("%,d users registered in %.1f s, %d tables%n", users,
+                    (System.nanoTime() - start) / 1e9, repository.getStore().getTableCount());
+
+            for (int round = 1; round <= ROUNDS; round++) {
+                long getUser = time(i -> bank.getUser("user" + (i % HOT_USERS)));
+                long login = time(i -> bank.login("user" + (i % HOT_USERS), "pass" + (i % HOT_USERS)));
+                long transfer = time(i -> bank.transferFunds("user" + (i % HOT_USERS),
+                        "user" + ((i + 1) % HOT_USERS), 1));
+                long cold = time(i -> bank.getUser("user" + (HOT_USERS + (i * 7919L) % (users - HOT_USERS))));
+                console.printf("round %d: getUser %.2f us, login %.2f us, transferFunds %.2f us,"
+                        + " cold getUser %.2f us%n", round, getUser / 1e3, login / 1e3, transfer / 1e3, cold / 1e3);
+            }
+            console.printf("block cache: %,d hits, %,d misses%n", repository.getStore().getCacheHits(),
+                    repository.getStore().getCacheMisses());
+            TinyLfuCache<String, User> cache = repository.getUserCache();
+            console.printf("user cache: %.1f%% hit rate, %,d evictions, %,d rejections, %,d users loaded%n",
+                    cache.getHitRate() * 100, cache.getEvictionCount(), cache.getRejectionCount(),
+                    repository.getLoadCount());
+        } finally {
+            System.setOut(console);
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private interface Operation {
+        void run(int i) throws NoSuchAlgorithmException;
+    }
+
+    /**
+     * Returns the mean nanoseconds per operation.
+     */
+    private static long time(Operation operation) throws NoSuchAlgorithmException {
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS_PER_ROUND; i++) {
+            operation.run(i);
+        }
+        return (System.nanoTime() - start) / OPERATIONS_PER_ROUND;
+    }
+}
@@ -0,0 +1,112 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import bankapp.Bank;
+import bankapp.BankClock;
+import bankapp.DurableJournal;
+import bankapp.FsyncPolicy;
+import bankapp.JournalRecovery;
+
+/**
+ * Measures how long {@link JournalRecovery} takes to rebuild a bank as its
+ * journal grows, and how that changes with the number of threads replaying
+ * it. For each size, a bank with a fixed set of users makes that many random
+ * transfers with durability enabled, and the journal file it leaves is
+ * recovered a few times on pools of 1, 2, 4 and up to every available
+ * processor; the fastest recovery for each pool is reported.
+ * <p>
+ * Run with {@code java -cp <classes> benchmarks.RecoveryBenchmark
+ * [events...]}.
+ */
+public class RecoveryBenchmark {
+
+    private static final int USERS = 10_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        long[] sizes = { 10_000, 100_000, 1_000_000 };
+        if (args.length > 0) {
+            sizes = new long[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Long.parseLong(args[i]);
+            }
+        }
+        TreeSet<Integer> parallelism = new TreeSet<>();
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= Math.max(4, processors); threads *= 2) {
+            parallelism.add(threads);
+        }
+        parallelism.add(processors);
+
+        PrintStream console = System.out;
+        // The bank reports every registration and transfer on standard output.
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Path directory = Files.createTempDirectory("recovery-benchmark");
+        try {
+            console.printf("%12s %10s %8s %12s %14s %9s%n", "events", "MB", "threads", "recovery ms", "events/s",
+                    "speedup");
+            for (long size : sizes) {
+                Path file = directory.resolve("journal-" + size + ".log");
+                write(file, size);
+                double serial = 0;
+                for (int threads : parallelism) {
+                    ForkJoinPool pool = new ForkJoinPool(threads);
+                    double best = Double.MAX_VALUE;
+                    long events = 0;
+                    try {
+                        for (int round = 0; round < ROUNDS; round++) {
+                            JournalRecovery recovery = JournalRecovery.recover(file, BankClock.system(), pool);
+                            best = Math.min(best, recovery.getRecoveryMillis());
+                            events = recovery.getRecordCount();
+                        }
+                    } finally {
+                        pool.shutdown();
+                    }
+                    if (threads == 1) {
+                        serial = best;
+                    }
+                    console.printf("%,12d %10.1f %8d %12.1f %,14.0f %8.2fx%n", events, Files.size(file) / 1e6,
+                            threads, best, events / (best / 1e3), serial / best);
+                }
+                Files.delete(file);
+            }
+        } finally {
+            System.setOut(console);
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Writes a journal of roughly the given number of events.
+     */
+    private static void write(Path file, long events) throws Exception {
+        Bank bank = new Bank();
+        int users = (int) Math.min(USERS, Math.max(2, events / 10));
+        try (DurableJournal durable = bank.enableDurability(file, FsyncPolicy.everyOperations(4_096))) {
+            for (int i = 0; i < users; i++) {
+                bank.registerUser("user" + i, "pass" + i);
+                bank.getUser("user" + i).getCurrentAccount().deposit(1_000_000);
+            }
+            SplittableRandom random = new SplittableRandom(42);
+            while (bank.getJournal().headSequence() < events) {
+                int from = random.nextInt(users);
+                int to = (from + 1 + random.nextInt(users - 1)) % users;
+                bank.transferFunds("user" + from, "user" + to, 1 + random.nextInt(100));
+            }
+            // The journal keeps every event in memory; only the file is needed from here.
+            bank.getJournal().truncateThrough(bank.getJournal().headSequence());
+            durable.flush().join();
+        }
+    }
+}
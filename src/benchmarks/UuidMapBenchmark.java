@@ -0,0 +1,101 @@
+package benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import bankapp.UuidMap;
+
+/**
+ * Compares {@link UuidMap} with {@link HashMap} for UUID-keyed account
+ * lookups: nanoseconds per successful lookup and retained heap per entry.
+ * <p>
+ * Run with {@code java -cp <classes> benchmarks.UuidMapBenchmark [entries]}.
+ */
+public class UuidMapBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int LOOKUPS_PER_ROUND = 20_000_000;
+
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long before = usedHeap();
+        UUID[] keys = new UUID[entries];
+        for (int i = 0; i < entries; i++) {
+            keys[i] = UUID.randomUUID();
+        }
+        // HashMap retains its key objects; UuidMap copies the halves and needs none.
+        long keyBytes = usedHeap() - before;
+        // Look up through distinct but equal UUID instances, as callers would.
+        UUID[] probes = new UUID[entries];
+        for (int i = 0; i < entries; i++) {
+            probes[i] = new UUID(keys[i].getMostSignificantBits(), keys[i].getLeastSignificantBits());
+        }
+
+        before = usedHeap();
+        Map<UUID, Object> hashMap = new HashMap<>();
+        for (UUID key : keys) {
+            hashMap.put(key, Boolean.TRUE);
+        }
+        long hashMapBytes = usedHeap() - before;
+
+        before = usedHeap();
+        UuidMap<Object> uuidMap = new UuidMap<>();
+        for (UUID key : keys) {
+            uuidMap.put(key, Boolean.TRUE);
+        }
+        long uuidMapBytes = usedHeap() - before;
+
+        System.out.printf("%,d entries%n", entries);
+        System.out.printf("HashMap: %.1f bytes/entry including its UUID keys%n",
+                (double) (hashMapBytes + keyBytes) / entries);
+        System.out.printf("UuidMap: %.1f bytes/entry%n", (double) uuidMapBytes / entries);
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            long hashMapNanos = timeHashMap(hashMap, probes);
+            long uuidMapNanos = timeUuidMap(uuidMap, probes);
+            System.out.printf("round %d: HashMap %.1f ns/lookup, UuidMap %.1f ns/lookup%n", round,
+                    (double) hashMapNanos / LOOKUPS_PER_ROUND, (double) uuidMapNanos / LOOKUPS_PER_ROUND);
+        }
+    }
+
+    private static long timeHashMap(Map<UUID, Object> map, UUID[] probes) {
+        int found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS_PER_ROUND; i++) {
+            if (map.get(probes[(int) ((i * 0x9E3779B1L) % probes.length)]) != null) {
+                found++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        check(found);
+        return elapsed;
+    }
+
+    private static long timeUuidMap(UuidMap<Object> map, UUID[] probes) {
+        int found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS_PER_ROUND; i++) {
+            if (map.get(probes[(int) ((i * 0x9E3779B1L) % probes.length)]) != null) {
+                found++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        check(found);
+        return elapsed;
+    }
+
+    private static void check(int found) {
+        if (found != LOOKUPS_PER_ROUND) {
+            throw new IllegalStateException("Lookups missed " + (LOOKUPS_PER_ROUND - found) + " keys.");
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
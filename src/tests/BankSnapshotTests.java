@@ -0,0 +1,222 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bankapp.Admin;
+import bankapp.Bank;
+import bankapp.BankAccount;
+import bankapp.BankSnapshot;
+import bankapp.CheckingsAccount;
+import bankapp.LedgerEventType;
+import bankapp.User;
+
+/**
+ * Unit tests for {@link BankSnapshot}, which provides consistent
+ * point-in-time views of a {@link Bank} without blocking writers.
+ */
+public class BankSnapshotTests {
+
+    private Bank bank;
+    private Admin admin;
+
+    @BeforeEach
+    void setup() throws NoSuchAlgorithmException {
+        bank = new Bank();
+        admin = new Admin("owner", "adminPass");
+        bank.registerUser(admin);
+        bank.registerUser("alice", "pass1");
+        bank.registerUser("bob", "pass2");
+    }
+
+    /**
+     * Tests that changes made after a snapshot is taken are not visible in it.
+     */
+    @Test
+    public void testSnapshotIgnoresLaterChanges() {
+        BankAccount aliceAccount = bank.getUser("alice").getCurrentAccount();
+        aliceAccount.deposit(100.0);
+
+        try (BankSnapshot snapshot = bank.snapshot()) {
+            aliceAccount.deposit(50.0);
+            aliceAccount.withdraw(30.0);
+            bank.registerUser("carol", "pass3");
+
+            assertEquals(100.0, snapshot.getBalance(aliceAccount), 0.001);
+            assertEquals(100.0, snapshot.getTotalBalance(), 0.001);
+            assertEquals(3, snapshot.getUsers().size());
+            int users = 0;
+            for (User user : snapshot.users()) {
+                assertNotEquals("carol", user.getUsername());
+                users++;
+            }
+            assertEquals(3, users);
+        }
+        assertEquals(120.0, aliceAccount.getCurrentBalance(), 0.001);
+    }
+
+    /**
+     * Tests that accounts opened or closed and withdrawals made or declined
+     * after a snapshot is taken are not visible in it.
+     */
+    @Test
+    public void testSnapshotIgnoresLaterAccountsAndWithdrawals() {
+        User alice = bank.getUser("alice");
+        BankAccount aliceAccount = alice.getCurrentAccount();
+        aliceAccount.deposit(100.0);
+        aliceAccount.withdraw(10.0);
+
+        try (BankSnapshot snapshot = bank.snapshot()) {
+            aliceAccount.withdraw(10.0);
+            assertThrows(IllegalArgumentException.class, () -> aliceAccount.withdraw(1_000.0));
+            CheckingsAccount opened = new CheckingsAccount();
+            alice.addAccount(opened);
+            opened.deposit(500.0);
+            alice.removeAccount(aliceAccount.getId());
+
+            assertEquals(1, snapshot.getAccounts(alice).size());
+            assertEquals(aliceAccount.getId(), snapshot.getAccounts(alice).get(0).getId());
+            assertEquals(90.0, snapshot.getUserBalance(alice), 0.001);
+            assertEquals(1, snapshot.getWithdrawals(aliceAccount));
+            assertEquals(0, snapshot.getFailedWithdrawals(aliceAccount));
+        }
+        try (BankSnapshot snapshot = bank.snapshot()) {
+            assertEquals(1, snapshot.getAccounts(alice).size());
+            assertEquals(500.0, snapshot.getUserBalance(alice), 0.001);
+            assertEquals(2, snapshot.getWithdrawals(aliceAccount));
+            assertEquals(1, snapshot.getFailedWithdrawals(aliceAccount));
+        }
+    }
+
+    /**
+     * Tests that a closed snapshot can no longer be read.
+     */
+    @Test
+    public void testClosedSnapshotRejectsReads() {
+        BankAccount aliceAccount = bank.getUser("alice").getCurrentAccount();
+        BankSnapshot snapshot = bank.snapshot();
+        snapshot.close();
+        assertThrows(IllegalStateException.class, () -> snapshot.getBalance(aliceAccount));
+    }
+
+    /**
+     * Tests that admin totals never observe a transfer half-applied while
+     * transfers run concurrently.
+     */
+    @Test
+    public void testTotalsAreConsistentDuringConcurrentTransfers() throws Exception {
+        User alice = bank.getUser("alice");
+        User bob = bank.getUser("bob");
+        alice.getCurrentAccount().deposit(1000.0);
+        bob.getCurrentAccount().deposit(1000.0);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread aliceToBob = new Thread(() -> {
+            while (running.get()) {
+                bank.transferFunds("alice", "bob", 1.0);
+            }
+        });
+        Thread bobToAlice = new Thread(() -> {
+            while (running.get()) {
+                bank.transferFunds("bob", "alice", 1.0);
+            }
+        });
+        aliceToBob.start();
+        bobToAlice.start();
+        try {
+            for (int i = 0; i < 500; i++) {
+                assertEquals(2000.0, bank.calculateTotalSystemBalanceBasedOnAllUsers(admin), 0.001);
+            }
+        } finally {
+            running.set(false);
+            aliceToBob.join();
+            bobToAlice.join();
+        }
+        assertEquals(2000.0, alice.getCurrentAccount().getCurrentBalance()
+                + bob.getCurrentAccount().getCurrentBalance(), 0.001);
+    }
+
+    /**
+     * Tests that a declined withdrawal is journaled after its writer stamp is
+     * released, so a journal listener can take a snapshot without waiting on
+     * the writer that notified it.
+     */
+    @Test
+    public void testDeclinedWithdrawalJournaledOutsideStamp() throws InterruptedException {
+        AtomicBoolean snapshotTaken = new AtomicBoolean();
+        bank.getJournal().addListener(event -> {
+            if (event.getType() == LedgerEventType.FAILED_WITHDRAWAL) {
+                try (BankSnapshot snapshot = bank.snapshot()) {
+                    snapshotTaken.set(snapshot.getUsers().size() == 3);
+                }
+            }
+        });
+        Thread withdrawal = new Thread(() -> {
+            try {
+                bank.getUser("alice").getCurrentAccount().withdraw(10.0);
+            } catch (IllegalArgumentException expected) {
+                // Alice has no funds.
+            }
+        });
+        withdrawal.setDaemon(true);
+        withdrawal.start();
+        withdrawal.join(5_000);
+        assertFalse(withdrawal.isAlive(), "Taking a snapshot waited on the declined withdrawal.");
+        assertTrue(snapshotTaken.get());
+    }
+
+    /**
+     * Tests that snapshots taken while money is relayed between accounts,
+     * each transfer spending what the previous one delivered, never see a
+     * transfer whose funds came from a change the snapshot excludes.
+     */
+    @Test
+    public void testSnapshotsNeverSeeSpendingBeforeItsFunding() throws InterruptedException {
+        int users = 4;
+        for (int i = 0; i < users; i++) {
+            bank.registerUser("relay" + i, "pass");
+        }
+        bank.getUser("relay0").getCurrentAccount().deposit(10);
+        PrintStream console = System.out;
+        // The bank reports every transfer on standard output.
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        AtomicBoolean done = new AtomicBoolean();
+        Thread[] relays = new Thread[users];
+        try {
+            for (int t = 0; t < users; t++) {
+                String from = "relay" + t;
+                String to = "relay" + ((t + 1) % users);
+                relays[t] = new Thread(() -> {
+                    while (!done.get()) {
+                        bank.transferFunds(from, to, 4);
+                    }
+                });
+                relays[t].start();
+            }
+            long deadline = System.currentTimeMillis() + 2_000;
+            int snapshots = 0;
+            while (System.currentTimeMillis() < deadline) {
+                try (BankSnapshot snapshot = bank.snapshot()) {
+                    for (User user : snapshot.getUsers()) {
+                        assertTrue(snapshot.getUserBalance(user) >= 0, user.getUsername() + " was overdrawn at snapshot " + snapshots);
+                    }
+                    assertEquals(10.0, snapshot.getTotalBalance(), 0.001);
+                }
+                snapshots++;
+            }
+        } finally {
+            done.set(true);
+            for (Thread relay : relays) {
+                relay.join();
+            }
+            System.setOut(console);
+        }
+    }
+}
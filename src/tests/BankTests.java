@@ -15,6 +15,8 @@ import org.junit.jupiter.api.Test;
 
 import bankapp.Admin;
 import bankapp.Bank;
+import bankapp.BankAccount;
+import bankapp.SavingsAccount;
 import bankapp.User;
 
 /**
@@ -272,4 +274,24 @@ public class BankTests {
         assertEquals("All registered users should be returned via iteration", expectedUsernames, iteratedUsernames);
     }
 
+    /**
+     * Tests that accounts can be found by ID across users, including accounts
+     * opened after registration, and that closed accounts are no longer found.
+     */
+    @Test
+    public void testFindAccountById() {
+        accounts.registerUser("alice", "pass1");
+        User alice = accounts.getUser("alice");
+        BankAccount checking = alice.getCurrentAccount();
+        SavingsAccount savings = new SavingsAccount(0.01);
+        alice.addAccount(savings);
+
+        assertEquals(checking, accounts.findAccount(checking.getId()));
+        assertEquals(savings, accounts.findAccount(savings.getId()));
+
+        alice.removeAccount(savings.getId());
+        assertNull(accounts.findAccount(savings.getId()));
+        assertNull(accounts.findAccount(null));
+    }
+
 }
@@ -0,0 +1,116 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bankapp.Bank;
+import bankapp.CheckingsAccount;
+import bankapp.User;
+
+/**
+ * Unit tests for overdrafts on {@link CheckingsAccount}.
+ */
+public class CheckingsAccountTests {
+
+    private CheckingsAccount account;
+
+    @BeforeEach
+    void setup() {
+        account = new CheckingsAccount();
+        account.deposit(50.0);
+    }
+
+    /**
+     * Tests that a checking account without an overdraft cannot go negative.
+     */
+    @Test
+    public void testNoOverdraftByDefault() {
+        assertEquals(0.0, account.getOverdraftLimit(), 0.001);
+        assertThrows(IllegalArgumentException.class, () -> account.withdraw(60.0));
+        assertEquals(50.0, account.getCurrentBalance(), 0.001);
+    }
+
+    /**
+     * Tests that withdrawals may use the overdraft but not exceed it.
+     */
+    @Test
+    public void testWithdrawWithinOverdraft() {
+        account.setOverdraftLimit(100.0);
+        assertEquals(150.0, account.getAvailableBalance(), 0.001);
+        account.withdraw(120.0);
+        assertEquals(-70.0, account.getCurrentBalance(), 0.001);
+        assertThrows(IllegalArgumentException.class, () -> account.withdraw(40.0));
+        account.withdraw(30.0);
+        assertEquals(-100.0, account.getCurrentBalance(), 0.001);
+        assertThrows(IllegalArgumentException.class, () -> account.setOverdraftLimit(-1.0));
+    }
+
+    /**
+     * Tests that fees are queued for each overdrawn withdrawal and charged together.
+     */
+    @Test
+    public void testOverdraftFeesQueuedAndCollected() {
+        account.setOverdraftLimit(100.0);
+        account.setOverdraftFee(5.0);
+        account.withdraw(40.0);
+        account.withdraw(20.0);
+        account.withdraw(20.0);
+        assertEquals(10.0, account.getPendingFees(), 0.001);
+        assertEquals(-30.0, account.getCurrentBalance(), 0.001);
+
+        assertEquals(10.0, account.collectFees(), 0.001);
+        assertEquals(-40.0, account.getCurrentBalance(), 0.001);
+        assertEquals(0.0, account.getPendingFees(), 0.001);
+        assertEquals("Overdraft Fee", account.getTransactionLog().get(account.getTransactionLog().size() - 1).getType());
+        assertEquals(0.0, account.collectFees(), 0.001);
+    }
+
+    /**
+     * Tests that concurrent debits never take the balance past the overdraft limit.
+     */
+    @Test
+    public void testConcurrentDebitsRespectLimit() throws InterruptedException {
+        account.setOverdraftLimit(950.0);
+        AtomicInteger succeeded = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    try {
+                        account.withdraw(1.0);
+                        succeeded.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        // Limit reached.
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1000, succeeded.get());
+        assertEquals(-950.0, account.getCurrentBalance(), 0.001);
+    }
+
+    /**
+     * Tests that transfers may draw on the sender's overdraft.
+     */
+    @Test
+    public void testTransferUsesOverdraft() {
+        Bank bank = new Bank();
+        bank.registerUser("alice", "pass1");
+        bank.registerUser("bob", "pass2");
+        User alice = bank.getUser("alice");
+        CheckingsAccount checking = (CheckingsAccount) alice.getCurrentAccount();
+        checking.setOverdraftLimit(200.0);
+
+        assertTrue(bank.transferFunds("alice", "bob", 150.0));
+        assertEquals(-150.0, checking.getCurrentBalance(), 0.001);
+        assertFalse(bank.transferFunds("alice", "bob", 100.0));
+    }
+}
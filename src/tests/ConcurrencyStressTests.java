@@ -0,0 +1,462 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bankapp.Bank;
+import bankapp.BankAccount;
+import bankapp.BankSnapshot;
+import bankapp.CheckingsAccount;
+import bankapp.LimitRule;
+import bankapp.LimitWindow;
+import bankapp.ManualClock;
+import bankapp.SavingsAccount;
+import bankapp.User;
+
+/**
+ * Stress tests that run transfers, deposits and withdrawals from many
+ * threads at once and check the recorded histories: money is conserved,
+ * balances never go negative, limits are never exceeded, and every history
+ * on a single account can be explained by some sequential order of its
+ * operations.
+ * <p>
+ * Each thread draws its operations from a seeded {@link Random}, so a failure
+ * can be rerun with the same operations, though not the same interleaving.
+ */
+public class ConcurrencyStressTests {
+
+    private static final int THREADS = 8;
+    private static final long SEED = 237;
+
+    private PrintStream console;
+
+    @BeforeEach
+    void silenceBank() {
+        // The bank reports every transfer on standard output.
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @AfterEach
+    void restoreOutput() {
+        System.setOut(console);
+    }
+
+    /**
+     * Runs a task on every thread at once and rethrows the first failure.
+     */
+    private static void runConcurrently(int threads, ThreadTask task) throws Exception {
+        CyclicBarrier start = new CyclicBarrier(threads);
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        Thread[] running = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            running[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    task.run(index);
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            running[t].start();
+        }
+        for (Thread thread : running) {
+            thread.join();
+        }
+        if (!failures.isEmpty()) {
+            Throwable failure = failures.peek();
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            throw new AssertionError(failure);
+        }
+    }
+
+    private interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+
+    /**
+     * Tests that concurrent transfers conserve money at every snapshot and
+     * leave each balance equal to its opening balance plus the transfers
+     * recorded in and out of it.
+     */
+    @Test
+    public void testTransfersConserveMoney() throws Exception {
+        int users = 16;
+        double opening = 500;
+        Bank bank = new Bank();
+        for (int i = 0; i < users; i++) {
+            bank.registerUser("user" + i, "pass");
+            bank.getUser("user" + i).getCurrentAccount().deposit(opening);
+        }
+        double[] expected = new double[users];
+        Arrays.fill(expected, opening);
+        ConcurrentLinkedQueue<int[]> history = new ConcurrentLinkedQueue<>();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger snapshotsChecked = new AtomicInteger();
+
+        Thread auditor = new Thread(() -> {
+            while (!done.get()) {
+                try (BankSnapshot snapshot = bank.snapshot()) {
+                    assertEquals(users * opening, snapshot.getTotalBalance(), 0.001);
+                    for (User user : snapshot.getUsers()) {
+                        assertTrue(snapshot.getUserBalance(user) >= 0);
+                    }
+                }
+                snapshotsChecked.incrementAndGet();
+            }
+        });
+        ConcurrentLinkedQueue<Throwable> auditFailures = new ConcurrentLinkedQueue<>();
+        auditor.setUncaughtExceptionHandler((thread, e) -> auditFailures.add(e));
+        auditor.start();
+
+        runConcurrently(THREADS, thread -> {
+            Random random = new Random(SEED + thread);
+            for (int i = 0; i < 5_000; i++) {
+                int from = random.nextInt(users);
+                int to = (from + 1 + random.nextInt(users - 1)) % users;
+                int amount = 1 + random.nextInt(200);
+                if (bank.transferFunds("user" + from, "user" + to, amount)) {
+                    history.add(new int[] { from, to, amount });
+                }
+            }
+        });
+        done.set(true);
+        auditor.join();
+        assertTrue(auditFailures.isEmpty(), "snapshot check failed: " + auditFailures.peek());
+        assertTrue(snapshotsChecked.get() > 0);
+
+        for (int[] transfer : history) {
+            expected[transfer[0]] -= transfer[2];
+            expected[transfer[1]] += transfer[2];
+        }
+        double total = 0;
+        for (int i = 0; i < users; i++) {
+            double balance = bank.getUser("user" + i).getCurrentAccount().getCurrentBalance();
+            assertEquals(expected[i], balance, 0.001, "user" + i);
+            assertTrue(balance >= 0);
+            total += balance;
+        }
+        assertEquals(users * opening, total, 0.001);
+        assertFalse(history.isEmpty());
+    }
+
+    /**
+     * Tests that transfers in both directions between the same users, the
+     * pattern most likely to deadlock with per-account locks, all complete.
+     */
+    @Test
+    public void testOpposingTransfersComplete() throws Exception {
+        Bank bank = new Bank();
+        bank.registerUser("alice", "pass");
+        bank.registerUser("bob", "pass");
+        bank.getUser("alice").getCurrentAccount().deposit(1_000_000);
+        bank.getUser("bob").getCurrentAccount().deposit(1_000_000);
+
+        runConcurrently(THREADS, thread -> {
+            String from = thread % 2 == 0 ? "alice" : "bob";
+            String to = thread % 2 == 0 ? "bob" : "alice";
+            for (int i = 0; i < 10_000; i++) {
+                assertTrue(bank.transferFunds(from, to, 1));
+            }
+        });
+        assertEquals(1_000_000, bank.getUser("alice").getCurrentAccount().getCurrentBalance(), 0.001);
+        assertEquals(1_000_000, bank.getUser("bob").getCurrentAccount().getCurrentBalance(), 0.001);
+    }
+
+    /**
+     * Tests that racing deposits and withdrawals on one account never drive
+     * it negative and leave exactly the net of the successful operations.
+     */
+    @Test
+    public void testDepositsAndWithdrawalsNeverOverdraw() throws Exception {
+        CheckingsAccount account = new CheckingsAccount();
+        account.deposit(100);
+        AtomicLong net = new AtomicLong(100);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicBoolean sawNegative = new AtomicBoolean();
+        Thread observer = new Thread(() -> {
+            while (!done.get()) {
+                if (account.getCurrentBalance() < 0) {
+                    sawNegative.set(true);
+                }
+            }
+        });
+        observer.start();
+
+        runConcurrently(THREADS, thread -> {
+            Random random = new Random(SEED + thread);
+            for (int i = 0; i < 20_000; i++) {
+                int amount = 1 + random.nextInt(50);
+                if (random.nextInt(100) < 45) {
+                    account.deposit(amount);
+                    net.addAndGet(amount);
+                } else {
+                    try {
+                        account.withdraw(amount);
+                        net.addAndGet(-amount);
+                    } catch (IllegalArgumentException e) {
+                        // Insufficient funds.
+                    }
+                }
+            }
+        });
+        done.set(true);
+        observer.join();
+
+        assertFalse(sawNegative.get());
+        assertEquals(net.get(), account.getCurrentBalance(), 0.001);
+        assertTrue(account.getCurrentBalance() >= 0);
+    }
+
+    /**
+     * Tests that the balance rollups of an account hammered from several
+     * threads close at the account's actual balance, whatever order the
+     * changes reached its log in.
+     */
+    @Test
+    public void testRollupsCloseAtAccountBalance() throws Exception {
+        ManualClock clock = new ManualClock(LocalDate.of(2025, 3, 10).atStartOfDay(ZoneId.systemDefault())
+                .toInstant().toEpochMilli());
+        CheckingsAccount account = new CheckingsAccount(clock);
+        account.deposit(1_000);
+
+        runConcurrently(THREADS, thread -> {
+            Random random = new Random(SEED + thread);
+            for (int i = 0; i < 5_000; i++) {
+                int amount = 1 + random.nextInt(50);
+                if (random.nextBoolean()) {
+                    account.deposit(amount);
+                } else {
+                    try {
+                        account.withdraw(amount);
+                    } catch (IllegalArgumentException e) {
+                        // Insufficient funds.
+                    }
+                }
+            }
+        });
+
+        assertEquals(account.getCurrentBalance(),
+                account.getDailySummary(LocalDate.of(2025, 3, 10)).getClosingBalance(), 0.001);
+        assertEquals(account.getCurrentBalance(),
+                account.getMonthlySummary(YearMonth.of(2025, 3)).getClosingBalance(), 0.001);
+    }
+
+    /**
+     * Tests that a savings account's monthly withdrawal limit admits exactly
+     * the allowed number of withdrawals however many threads race for them.
+     */
+    @Test
+    public void testSavingsWithdrawalLimitUnderContention() throws Exception {
+        for (int trial = 0; trial < 200; trial++) {
+            SavingsAccount account = new SavingsAccount(0.01);
+            account.deposit(1_000);
+            AtomicInteger succeeded = new AtomicInteger();
+            runConcurrently(THREADS, thread -> {
+                for (int i = 0; i < 2; i++) {
+                    try {
+                        account.withdraw(10);
+                        succeeded.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        // Limit reached.
+                    }
+                }
+            });
+            assertEquals(3, succeeded.get());
+            assertEquals(3, account.getWithdrawalCount());
+            assertEquals(970, account.getCurrentBalance(), 0.001);
+        }
+    }
+
+    /**
+     * Tests that an amount limit holds under contention, and that a
+     * withdrawal refused for insufficient funds gives back its share.
+     */
+    @Test
+    public void testAmountLimitUnderContention() throws Exception {
+        CheckingsAccount account = new CheckingsAccount();
+        account.deposit(300);
+        account.addWithdrawalLimit(LimitRule.amount(500, LimitWindow.calendarDay()));
+        AtomicLong withdrawn = new AtomicLong();
+        runConcurrently(THREADS, thread -> {
+            Random random = new Random(SEED + thread);
+            for (int i = 0; i < 200; i++) {
+                int amount = 1 + random.nextInt(20);
+                try {
+                    account.withdraw(amount);
+                    withdrawn.addAndGet(amount);
+                } catch (IllegalArgumentException e) {
+                    // Limit or funds exhausted; top up to keep funds from being the bottleneck.
+                    account.deposit(5);
+                }
+            }
+        });
+        assertTrue(withdrawn.get() <= 500, "withdrew " + withdrawn.get());
+        assertTrue(account.getCurrentBalance() >= 0);
+    }
+
+    /**
+     * Tests that many short concurrent histories on one account are each
+     * linearizable: some order of the operations, consistent with which
+     * finished before which began, gives every operation its observed result
+     * when replayed on a plain sequential balance.
+     */
+    @Test
+    public void testSingleAccountHistoriesLinearizable() throws Exception {
+        int threads = 3;
+        int operationsPerThread = 4;
+        Random seeds = new Random(SEED);
+        for (int trial = 0; trial < 300; trial++) {
+            BankAccount account = new CheckingsAccount();
+            account.deposit(20);
+            AtomicLong clock = new AtomicLong();
+            List<List<Operation>> perThread = new ArrayList<>();
+            long[] threadSeeds = new long[threads];
+            for (int t = 0; t < threads; t++) {
+                perThread.add(new ArrayList<>());
+                threadSeeds[t] = seeds.nextLong();
+            }
+            runConcurrently(threads, thread -> {
+                Random random = new Random(threadSeeds[thread]);
+                for (int i = 0; i < operationsPerThread; i++) {
+                    Operation operation = new Operation(random.nextInt(3), 1 + random.nextInt(15));
+                    operation.invoked = clock.incrementAndGet();
+                    operation.perform(account);
+                    operation.returned = clock.incrementAndGet();
+                    perThread.get(thread).add(operation);
+                }
+            });
+            List<Operation> history = new ArrayList<>();
+            for (List<Operation> operations : perThread) {
+                history.addAll(operations);
+            }
+            if (!linearizable(history, new boolean[history.size()], 20)) {
+                fail("not linearizable: " + history);
+            }
+        }
+    }
+
+    /**
+     * One recorded operation on an account: a deposit, a withdrawal that may
+     * fail, or a balance read.
+     */
+    private static final class Operation {
+        static final int DEPOSIT = 0;
+        static final int WITHDRAW = 1;
+        static final int READ = 2;
+
+        final int kind;
+        final int amount;
+        long invoked;
+        long returned;
+        boolean succeeded;
+        double observed;
+
+        Operation(int kind, int amount) {
+            this.kind = kind;
+            this.amount = amount;
+        }
+
+        void perform(BankAccount account) {
+            if (kind == DEPOSIT) {
+                account.deposit(amount);
+                succeeded = true;
+            } else if (kind == WITHDRAW) {
+                try {
+                    account.withdraw(amount);
+                    succeeded = true;
+                } catch (IllegalArgumentException e) {
+                    succeeded = false;
+                }
+            } else {
+                observed = account.getCurrentBalance();
+                succeeded = true;
+            }
+        }
+
+        /**
+         * Applies this operation to a sequential balance, returning the new
+         * balance or NaN if the result would differ from the observed one.
+         */
+        double apply(double balance) {
+            if (kind == DEPOSIT) {
+                return balance + amount;
+            } else if (kind == WITHDRAW) {
+                boolean allowed = balance - amount >= 0;
+                if (allowed != succeeded) {
+                    return Double.NaN;
+                }
+                return allowed ? balance - amount : balance;
+            }
+            return observed == balance ? balance : Double.NaN;
+        }
+
+        @Override
+        public String toString() {
+            String name = kind == DEPOSIT ? "deposit" : kind == WITHDRAW ? "withdraw" : "read";
+            String result = kind == READ ? "=" + observed : succeeded ? "" : " failed";
+            return name + "(" + amount + ")" + result + " [" + invoked + "," + returned + "]";
+        }
+    }
+
+    /**
+     * Searches for a sequential order of the remaining operations that
+     * respects real-time order and reproduces every result. An operation may
+     * go next only if no other remaining operation returned before it was
+     * invoked.
+     */
+    private static boolean linearizable(List<Operation> history, boolean[] done, double balance) {
+        boolean remaining = false;
+        for (int i = 0; i < history.size(); i++) {
+            if (done[i]) {
+                continue;
+            }
+            remaining = true;
+            Operation candidate = history.get(i);
+            if (!minimal(history, done, candidate)) {
+                continue;
+            }
+            double next = candidate.apply(balance);
+            if (Double.isNaN(next)) {
+                continue;
+            }
+            done[i] = true;
+            boolean found = linearizable(history, done, next);
+            done[i] = false;
+            if (found) {
+                return true;
+            }
+        }
+        return !remaining;
+    }
+
+    private static boolean minimal(List<Operation> history, boolean[] done, Operation candidate) {
+        for (int j = 0; j < history.size(); j++) {
+            if (!done[j] && history.get(j).returned < candidate.invoked) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,216 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bankapp.Bank;
+import bankapp.DurableJournal;
+import bankapp.FsyncPolicy;
+
+/**
+ * Unit tests for {@link DurableJournal} and durable transfers.
+ */
+public class DurableJournalTests {
+
+    private Path directory;
+    private Path file;
+    private Bank bank;
+
+    @BeforeEach
+    void setup() throws IOException {
+        directory = Files.createTempDirectory("durable-journal");
+        file = directory.resolve("journal.log");
+        bank = new Bank();
+        bank.registerUser("alice", "pass1");
+        bank.registerUser("bob", "pass2");
+        bank.getUser("alice").getCurrentAccount().deposit(10_000);
+        bank.getUser("bob").getCurrentAccount().deposit(10_000);
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Counts the records in the journal file, checking each one's checksum.
+     */
+    private int countRecords() throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        int records = 0;
+        while (bytes.hasRemaining()) {
+            int length = bytes.getInt();
+            int expected = bytes.getInt();
+            CRC32C checksum = new CRC32C();
+            checksum.update(bytes.array(), bytes.position(), length);
+            assertEquals(expected, (int) checksum.getValue());
+            bytes.position(bytes.position() + length);
+            records++;
+        }
+        return records;
+    }
+
+    /**
+     * Tests that transfers submitted from many threads all become durable,
+     * with the earlier history written first.
+     */
+    @Test
+    public void testConcurrentTransfersBecomeDurable() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try (DurableJournal durable = bank.enableDurability(file, FsyncPolicy.everyOperation())) {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                String from = t % 2 == 0 ? "alice" : "bob";
+                String to = t % 2 == 0 ? "bob" : "alice";
+                results.add(threads.submit(() -> {
+                    List<CompletableFuture<Boolean>> transfers = new ArrayList<>();
+                    for (int i = 0; i < 50; i++) {
+                        transfers.add(bank.submitTransfer(from, to, 1));
+                    }
+                    for (CompletableFuture<Boolean> transfer : transfers) {
+                        if (!transfer.get(10, TimeUnit.SECONDS)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get(30, TimeUnit.SECONDS));
+            }
+            assertEquals(bank.getJournal().headSequence(), durable.getDurableSequence());
+            assertTrue(durable.getSyncCount() >= 1);
+            assertTrue(durable.getSyncCount() <= bank.getJournal().headSequence());
+            assertTrue(durable.getAverageGroupSize() >= 1);
+        } finally {
+            threads.shutdownNow();
+        }
+        assertEquals(bank.getJournal().headSequence(), countRecords());
+    }
+
+    /**
+     * Tests that a count-based policy holds transfers until enough have
+     * accumulated, and that flushing syncs the rest.
+     */
+    @Test
+    public void testEveryOperationsPolicy() throws Exception {
+        try (DurableJournal durable = bank.enableDurability(file, FsyncPolicy.everyOperations(5))) {
+            durable.flush().get(5, TimeUnit.SECONDS);
+            long syncs = durable.getSyncCount();
+            List<CompletableFuture<Boolean>> transfers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                transfers.add(bank.submitTransfer("alice", "bob", 1));
+            }
+            Thread.sleep(50);
+            for (CompletableFuture<Boolean> transfer : transfers) {
+                assertFalse(transfer.isDone());
+            }
+            transfers.add(bank.submitTransfer("alice", "bob", 1));
+            for (CompletableFuture<Boolean> transfer : transfers) {
+                assertTrue(transfer.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(syncs + 1, durable.getSyncCount());
+
+            CompletableFuture<Boolean> straggler = bank.submitTransfer("bob", "alice", 1);
+            durable.flush().get(5, TimeUnit.SECONDS);
+            assertTrue(straggler.isDone());
+        }
+    }
+
+    /**
+     * Tests that a time-based policy syncs without further activity.
+     */
+    @Test
+    public void testEveryMillisPolicy() throws Exception {
+        try (DurableJournal durable = bank.enableDurability(file, FsyncPolicy.everyMillis(20))) {
+            assertTrue(bank.submitTransfer("alice", "bob", 5).get(5, TimeUnit.SECONDS));
+            assertEquals(bank.getJournal().headSequence(), durable.getDurableSequence());
+            assertEquals("every 20 ms", durable.getPolicy().toString());
+        }
+        assertThrows(IllegalArgumentException.class, () -> FsyncPolicy.everyMillis(0));
+        assertThrows(IllegalArgumentException.class, () -> FsyncPolicy.everyOperations(0));
+    }
+
+    /**
+     * Tests rejected transfers, transfers without durability, and a closed
+     * journal.
+     */
+    @Test
+    public void testRejectedTransfersAndClose() throws Exception {
+        assertTrue(bank.submitTransfer("alice", "bob", 1).getNow(false));
+        DurableJournal durable = bank.enableDurability(file, FsyncPolicy.everyOperations(1_000));
+        assertThrows(IllegalStateException.class, () -> bank.enableDurability(file, FsyncPolicy.everyOperation()));
+        assertFalse(bank.submitTransfer("alice", "bob", 1_000_000).getNow(true));
+        assertFalse(bank.submitTransfer("alice", "nobody", 1).getNow(true));
+
+        CompletableFuture<Boolean> pending = bank.submitTransfer("alice", "bob", 1);
+        durable.close();
+        assertTrue(pending.get(5, TimeUnit.SECONDS));
+        assertEquals(bank.getJournal().headSequence(), countRecords());
+
+        CompletableFuture<Boolean> late = bank.submitTransfer("alice", "bob", 1);
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> late.get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+    }
+
+    /**
+     * Tests that waiting for a sequence number the journal never reaches
+     * fails once the journal is closed, instead of waiting forever.
+     */
+    @Test
+    public void testCloseFailsWaitersBeyondHead() throws Exception {
+        DurableJournal durable = bank.enableDurability(file, FsyncPolicy.everyOperations(1_000));
+        assertTrue(bank.transferFunds("alice", "bob", 1));
+        long head = bank.getJournal().headSequence();
+        CompletableFuture<Long> reached = durable.durableThrough(head);
+        CompletableFuture<Long> beyond = durable.durableThrough(head + 5);
+        durable.close();
+
+        assertEquals(Long.valueOf(head), reached.get(5, TimeUnit.SECONDS));
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> beyond.get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+    }
+
+    /**
+     * Tests that durability refuses a journal that has dropped its first
+     * events, and a file that already holds another bank's events, since
+     * neither file could be recovered.
+     */
+    @Test
+    public void testRefusesFileRecoveryCouldNotRead() throws Exception {
+        bank.enableDurability(file, FsyncPolicy.everyOperation()).close();
+        long size = Files.size(file);
+        Bank other = new Bank();
+        assertThrows(IOException.class, () -> other.enableDurability(file, FsyncPolicy.everyOperation()));
+        assertEquals(size, Files.size(file));
+        other.enableDurability(directory.resolve("other.log"), FsyncPolicy.everyOperation()).close();
+
+        Bank trimmed = new Bank();
+        trimmed.registerUser("carol", "pass3");
+        trimmed.getJournal().truncateThrough(1);
+        Path fresh = directory.resolve("trimmed.log");
+        assertThrows(IllegalStateException.class, () -> trimmed.enableDurability(fresh, FsyncPolicy.everyOperation()));
+        assertEquals(0, Files.size(fresh));
+    }
+}
@@ -0,0 +1,180 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bankapp.Bank;
+import bankapp.CheckingsAccount;
+import bankapp.Hold;
+import bankapp.HoldLedger;
+import bankapp.HoldState;
+import bankapp.LimitRule;
+import bankapp.LimitWindow;
+import bankapp.ManualClock;
+
+/**
+ * Unit tests for authorization holds in {@link HoldLedger}.
+ */
+public class HoldLedgerTests {
+
+    private ManualClock clock;
+    private HoldLedger holds;
+    private CheckingsAccount account;
+
+    @BeforeEach
+    void setup() {
+        clock = new ManualClock(1_000_000L);
+        holds = new HoldLedger(clock);
+        account = new CheckingsAccount(clock);
+        account.deposit(100.0);
+    }
+
+    /**
+     * Tests that a hold reserves funds against the available balance only.
+     */
+    @Test
+    public void testAuthorizeReservesFunds() {
+        Hold hold = holds.authorize(account, 60.0, Duration.ofMinutes(10));
+        assertEquals(HoldState.PENDING, hold.getState());
+        assertEquals(100.0, account.getCurrentBalance(), 0.001);
+        assertEquals(60.0, account.getHeldAmount(), 0.001);
+        assertEquals(40.0, account.getAvailableBalance(), 0.001);
+
+        assertThrows(IllegalArgumentException.class, () -> holds.authorize(account, 50.0, Duration.ofMinutes(10)));
+        assertThrows(IllegalArgumentException.class, () -> account.withdraw(50.0));
+        account.withdraw(40.0);
+        assertEquals(0.0, account.getAvailableBalance(), 0.001);
+    }
+
+    /**
+     * Tests that a partial capture debits the captured amount and frees the rest.
+     */
+    @Test
+    public void testCaptureDebitsAndReleasesRemainder() {
+        Hold hold = holds.authorize(account, 60.0, Duration.ofMinutes(10));
+        holds.capture(hold.getId(), 45.0);
+
+        assertEquals(HoldState.CAPTURED, hold.getState());
+        assertEquals(55.0, account.getCurrentBalance(), 0.001);
+        assertEquals(0.0, account.getHeldAmount(), 0.001);
+        assertEquals(55.0, account.getAvailableBalance(), 0.001);
+        assertEquals(0, holds.size());
+        assertThrows(IllegalArgumentException.class, () -> holds.capture(hold.getId(), 10.0));
+        assertFalse(holds.release(hold.getId()));
+    }
+
+    /**
+     * Tests that a capture counts against withdrawal limits, and that one
+     * over a limit is rejected and leaves the hold pending.
+     */
+    @Test
+    public void testCaptureCountsAgainstLimits() {
+        account.addWithdrawalLimit(LimitRule.amount(50.0, LimitWindow.calendarDay()));
+        Hold first = holds.authorize(account, 40.0, Duration.ofMinutes(10));
+        Hold second = holds.authorize(account, 40.0, Duration.ofMinutes(10));
+        holds.capture(first.getId(), 40.0);
+
+        assertThrows(IllegalArgumentException.class, () -> holds.capture(second.getId(), 40.0));
+        assertEquals(HoldState.PENDING, second.getState());
+        assertEquals(40.0, account.getHeldAmount(), 0.001);
+        assertThrows(IllegalArgumentException.class, () -> account.withdraw(20.0));
+        holds.capture(second.getId(), 10.0);
+        assertEquals(50.0, account.getCurrentBalance(), 0.001);
+    }
+
+    /**
+     * Tests that over-captures are rejected and releases return the funds.
+     */
+    @Test
+    public void testReleaseAndInvalidCapture() {
+        Hold hold = holds.authorize(account, 30.0, Duration.ofMinutes(10));
+        assertThrows(IllegalArgumentException.class, () -> holds.capture(hold.getId(), 31.0));
+        assertTrue(holds.release(hold.getId()));
+        assertEquals(HoldState.RELEASED, hold.getState());
+        assertEquals(100.0, account.getAvailableBalance(), 0.001);
+        assertFalse(holds.release(hold.getId()));
+        assertThrows(IllegalArgumentException.class, () -> holds.authorize(account, 0.0, Duration.ofMinutes(1)));
+        assertThrows(IllegalArgumentException.class, () -> holds.authorize(account, 1.0, Duration.ZERO));
+    }
+
+    /**
+     * Tests that only lapsed holds are expired, and that a lapsed hold cannot be captured.
+     */
+    @Test
+    public void testExpiry() {
+        Hold shortHold = holds.authorize(account, 10.0, Duration.ofMinutes(1));
+        Hold longHold = holds.authorize(account, 20.0, Duration.ofMinutes(30));
+        Hold lapsing = holds.authorize(account, 5.0, Duration.ofMinutes(2));
+
+        clock.advance(Duration.ofMinutes(1).toMillis());
+        assertEquals(1, holds.expireDue());
+        assertEquals(HoldState.EXPIRED, shortHold.getState());
+        assertEquals(HoldState.PENDING, longHold.getState());
+        assertEquals(25.0, account.getHeldAmount(), 0.001);
+
+        clock.advance(Duration.ofMinutes(1).toMillis());
+        assertThrows(IllegalArgumentException.class, () -> holds.capture(lapsing.getId(), 5.0));
+        assertEquals(HoldState.EXPIRED, lapsing.getState());
+        assertEquals(0, holds.expireDue());
+        assertEquals(20.0, account.getHeldAmount(), 0.001);
+        assertEquals(1, holds.size());
+    }
+
+    /**
+     * Tests that concurrent authorizations never reserve more than the available balance.
+     */
+    @Test
+    public void testConcurrentAuthorizationsRespectBalance() throws InterruptedException {
+        ConcurrentLinkedQueue<Hold> placed = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    try {
+                        placed.add(holds.authorize(account, 1.0, Duration.ofMinutes(10)));
+                    } catch (IllegalArgumentException e) {
+                        // Balance fully reserved.
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(100, placed.size());
+        assertEquals(100.0, account.getHeldAmount(), 0.001);
+        for (Hold hold : placed) {
+            holds.capture(hold.getId(), 1.0);
+        }
+        assertEquals(0.0, account.getCurrentBalance(), 0.001);
+        assertEquals(0.0, account.getHeldAmount(), 0.001);
+    }
+
+    /**
+     * Tests the bank-level authorize, capture and release operations.
+     */
+    @Test
+    public void testBankHolds() {
+        Bank bank = new Bank(clock);
+        bank.registerUser("alice", "pass1");
+        bank.getUser("alice").getCurrentAccount().deposit(50.0);
+
+        Hold hold = bank.authorizeHold("alice", 40.0, Duration.ofMinutes(5));
+        assertNotNull(hold);
+        assertNull(bank.authorizeHold("alice", 20.0, Duration.ofMinutes(5)));
+        assertNull(bank.authorizeHold("nobody", 1.0, Duration.ofMinutes(5)));
+        assertFalse(bank.transferFunds("alice", "alice", 20.0));
+        assertTrue(bank.captureHold(hold.getId(), 40.0));
+        assertFalse(bank.captureHold(hold.getId(), 40.0));
+        assertEquals(10.0, bank.getUser("alice").getCurrentAccount().getCurrentBalance(), 0.001);
+    }
+}
@@ -0,0 +1,461 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bankapp.Admin;
+import bankapp.Bank;
+import bankapp.BankAccount;
+import bankapp.BankClock;
+import bankapp.CheckingsAccount;
+import bankapp.DurableJournal;
+import bankapp.FsyncPolicy;
+import bankapp.JournalRecovery;
+import bankapp.LedgerEvent;
+import bankapp.LedgerEventType;
+import bankapp.SavingsAccount;
+import bankapp.User;
+
+/**
+ * Unit tests for {@link JournalRecovery}, including recovery of a journal
+ * whose writer was killed part-way through.
+ */
+public class JournalRecoveryTests {
+
+    private static final int USERS = 8;
+    private static final double OPENING_BALANCE = 1_000;
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    private Path directory;
+    private Path file;
+
+    @BeforeEach
+    void setup() throws IOException {
+        directory = Files.createTempDirectory("journal-recovery");
+        file = directory.resolve("journal.log");
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Registers users with funded accounts and moves money between them.
+     */
+    private static void populate(Bank bank) {
+        for (int i = 0; i < USERS; i++) {
+            bank.registerUser("user" + i, "pass" + i);
+            bank.getUser("user" + i).getCurrentAccount().deposit(OPENING_BALANCE);
+        }
+        for (int i = 0; i < 40; i++) {
+            assertTrue(bank.transferFunds("user" + (i % USERS), "user" + ((i * 3 + 1) % USERS), 1 + i % 7));
+        }
+    }
+
+    private static double totalBalance(Bank bank) {
+        double total = 0;
+        for (User user : bank) {
+            for (BankAccount account : user.getAllAccounts()) {
+                total += account.getCurrentBalance();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Tests that users, credentials, accounts, balances and histories come
+     * back, and that the recovered bank can keep journaling to the file.
+     */
+    @Test
+    public void testRecoversBank() throws Exception {
+        Bank bank = new Bank();
+        try (DurableJournal durable = bank.enableDurability(file, FsyncPolicy.everyOperation())) {
+            populate(bank);
+            bank.registerUser(new Admin("admin", "secret"));
+            User alice = bank.getUser("user0");
+            SavingsAccount savings = new SavingsAccount();
+            alice.addAccount(savings);
+            savings.deposit(250);
+            savings.withdraw(50);
+            assertThrows(IllegalArgumentException.class, () -> savings.withdraw(10_000));
+            CheckingsAccount euros = new CheckingsAccount(BankClock.system(), EUR);
+            bank.getUser("user1").addAccount(euros);
+            euros.deposit(75);
+            assertEquals(Long.valueOf(bank.getJournal().headSequence()), durable.flush().get(5, TimeUnit.SECONDS));
+        }
+
+        JournalRecovery recovery = JournalRecovery.recover(file);
+        Bank recovered = recovery.getBank();
+        assertEquals(bank.getJournal().headSequence(), recovery.getLastSequence());
+        assertEquals(bank.getJournal().headSequence(), recovery.getRecordCount());
+        assertEquals(0, recovery.getTruncatedBytes());
+        assertEquals(totalBalance(bank), recovery.getTotalBalance(), 1e-9);
+        for (User original : bank) {
+            User copy = recovered.getUser(original.getUsername());
+            assertNotNull(copy);
+            assertEquals(original.isAdmin(), copy.isAdmin());
+            assertEquals(original.getCurrentAccount().getId(), copy.getCurrentAccount().getId());
+            for (BankAccount account : original.getAllAccounts()) {
+                BankAccount restored = copy.getAccount(account.getId());
+                assertEquals(account.getClass(), restored.getClass());
+                assertEquals(account.getCurrency(), restored.getCurrency());
+                assertEquals(account.getCurrentBalance(), restored.getCurrentBalance(), 1e-9);
+            }
+        }
+        assertNotNull(recovered.login("user3", "pass3"));
+        assertNotNull(recovered.login("admin", "secret"));
+
+        try (DurableJournal durable = recovered.enableDurability(file, FsyncPolicy.everyOperation())) {
+            assertTrue(recovered.submitTransfer("user1", "user2", 100).get(5, TimeUnit.SECONDS));
+            assertEquals(Long.valueOf(recovered.getJournal().headSequence()),
+                    durable.flush().get(5, TimeUnit.SECONDS));
+        }
+        JournalRecovery again = JournalRecovery.recover(file);
+        assertEquals(recovery.getLastSequence() + 1, again.getLastSequence());
+        assertEquals(recovered.getUser("user2").getCurrentAccount().getCurrentBalance(),
+                again.getBank().getUser("user2").getCurrentAccount().getCurrentBalance(), 1e-9);
+    }
+
+    /**
+     * Tests that a journal cut at any point, or with a corrupted last record,
+     * recovers the complete records before the damage and truncates the rest.
+     */
+    @Test
+    public void testTruncatesTornTail() throws Exception {
+        Bank bank = new Bank();
+        try (DurableJournal durable = bank.enableDurability(file, FsyncPolicy.everyOperation())) {
+            populate(bank);
+            assertEquals(Long.valueOf(bank.getJournal().headSequence()), durable.flush().get(5, TimeUnit.SECONDS));
+        }
+        byte[] journal = Files.readAllBytes(file);
+        long events = bank.getJournal().headSequence();
+        long[] recordEnds = new long[(int) events];
+        int offset = 0;
+        for (int i = 0; i < events; i++) {
+            int length = ((journal[offset] & 0xff) << 24) | ((journal[offset + 1] & 0xff) << 16)
+                    | ((journal[offset + 2] & 0xff) << 8) | (journal[offset + 3] & 0xff);
+            offset += 8 + length;
+            recordEnds[i] = offset;
+        }
+        assertEquals(journal.length, offset);
+
+        Random random = new Random(42);
+        for (int trial = 0; trial < 20; trial++) {
+            int cut = trial == 0 ? 3 : random.nextInt(journal.length);
+            Files.write(file, Arrays.copyOf(journal, cut));
+            int complete = 0;
+            while (complete < recordEnds.length && recordEnds[complete] <= cut) {
+                complete++;
+            }
+            JournalRecovery recovery = JournalRecovery.recover(file);
+            assertEquals(complete, recovery.getLastSequence());
+            long validLength = complete == 0 ? 0 : recordEnds[complete - 1];
+            assertEquals(cut - validLength, recovery.getTruncatedBytes());
+            assertEquals(validLength, Files.size(file));
+        }
+
+        byte[] corrupted = journal.clone();
+        corrupted[journal.length - 2] ^= 0x40;
+        Files.write(file, corrupted);
+        JournalRecovery recovery = JournalRecovery.recover(file);
+        assertEquals(events - 1, recovery.getLastSequence());
+        assertEquals(USERS * OPENING_BALANCE, recovery.getTotalBalance(), 1e-9);
+    }
+
+    /**
+     * Tests that damage with valid records after it, or a record out of
+     * sequence, fails recovery and leaves the file as it was.
+     */
+    @Test
+    public void testRejectsDamageBeforeTail() throws Exception {
+        Bank bank = new Bank();
+        try (DurableJournal durable = bank.enableDurability(file, FsyncPolicy.everyOperation())) {
+            populate(bank);
+            durable.flush().get(5, TimeUnit.SECONDS);
+        }
+        byte[] journal = Files.readAllBytes(file);
+        int middle = journal.length / 2;
+
+        byte[] corrupted = journal.clone();
+        corrupted[middle] ^= 0x40;
+        Files.write(file, corrupted);
+        assertThrows(IOException.class, () -> JournalRecovery.recover(file));
+        assertArrayEquals(corrupted, Files.readAllBytes(file));
+
+        byte[] zeroed = journal.clone();
+        Arrays.fill(zeroed, middle, middle + 64, (byte) 0);
+        Files.write(file, zeroed);
+        assertThrows(IOException.class, () -> JournalRecovery.recover(file));
+        assertArrayEquals(zeroed, Files.readAllBytes(file));
+
+        int length = ((journal[0] & 0xff) << 24) | ((journal[1] & 0xff) << 16) | ((journal[2] & 0xff) << 8)
+                | (journal[3] & 0xff);
+        byte[] repeated = Arrays.copyOf(journal, journal.length + 8 + length);
+        System.arraycopy(journal, 0, repeated, journal.length, 8 + length);
+        Files.write(file, repeated);
+        assertThrows(IOException.class, () -> JournalRecovery.recover(file));
+        assertArrayEquals(repeated, Files.readAllBytes(file));
+    }
+
+    /**
+     * Tests that replaying on several threads rebuilds exactly the bank that
+     * replaying on one does, with transfers crossing between every account.
+     */
+    @Test
+    public void testParallelReplayMatchesSerial() throws Exception {
+        Bank bank = new Bank();
+        int users = 64;
+        try (DurableJournal durable = bank.enableDurability(file, FsyncPolicy.everyOperations(1_024))) {
+            for (int i = 0; i < users; i++) {
+                bank.registerUser("user" + i, "pass" + i);
+                bank.getUser("user" + i).getCurrentAccount().deposit(OPENING_BALANCE);
+                if (i % 4 == 0) {
+                    SavingsAccount savings = new SavingsAccount();
+                    bank.getUser("user" + i).addAccount(savings);
+                    savings.deposit(OPENING_BALANCE);
+                }
+            }
+            Random random = new Random(11);
+            for (int i = 0; i < 20_000; i++) {
+                int from = random.nextInt(users);
+                int to = (from + 1 + random.nextInt(users - 1)) % users;
+                bank.transferFunds("user" + from, "user" + to, 1 + random.nextInt(50));
+            }
+            assertEquals(Long.valueOf(bank.getJournal().headSequence()), durable.flush().get(5, TimeUnit.SECONDS));
+        }
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool several = new ForkJoinPool(4);
+        try {
+            JournalRecovery serial = JournalRecovery.recover(file, BankClock.system(), single);
+            JournalRecovery parallel = JournalRecovery.recover(file, BankClock.system(), several);
+            assertEquals(bank.getJournal().headSequence(), serial.getRecordCount());
+            assertEquals(serial.getRecordCount(), parallel.getRecordCount());
+            assertEquals(serial.getLastSequence(), parallel.getLastSequence());
+            assertEquals(serial.getTotalBalance(), parallel.getTotalBalance(), 1e-6);
+            for (User original : bank) {
+                User one = serial.getBank().getUser(original.getUsername());
+                User many = parallel.getBank().getUser(original.getUsername());
+                assertEquals(Integer.valueOf(original.getAllAccounts().size()),
+                        Integer.valueOf(many.getAllAccounts().size()));
+                for (BankAccount account : original.getAllAccounts()) {
+                    double expected = account.getCurrentBalance();
+                    assertEquals(expected, one.getAccount(account.getId()).getCurrentBalance(), 1e-9);
+                    assertEquals(expected, many.getAccount(account.getId()).getCurrentBalance(), 1e-9);
+                }
+            }
+        } finally {
+            single.shutdown();
+            several.shutdown();
+        }
+    }
+
+    /**
+     * Tests that balance adjustments racing deposits to the same account are
+     * journaled in the order they were applied, so replay rebuilds the
+     * acknowledged balance.
+     */
+    @Test
+    public void testConcurrentAdjustmentsReplayInOrder() throws Exception {
+        Bank bank = new Bank();
+        try (DurableJournal durable = bank.enableDurability(file, FsyncPolicy.everyOperations(1_024))) {
+            bank.registerUser("alice", "pass");
+            BankAccount account = bank.getUser("alice").getCurrentAccount();
+            Thread adjuster = new Thread(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    account.setCurrentBalance(i % 10);
+                }
+            });
+            adjuster.start();
+            for (int i = 0; i < 2_000; i++) {
+                account.deposit(1);
+            }
+            adjuster.join();
+            assertEquals(Long.valueOf(bank.getJournal().headSequence()), durable.flush().get(5, TimeUnit.SECONDS));
+        }
+
+        JournalRecovery recovery = JournalRecovery.recover(file);
+        assertEquals(bank.getUser("alice").getCurrentAccount().getCurrentBalance(),
+                recovery.getBank().getUser("alice").getCurrentAccount().getCurrentBalance(), 1e-9);
+    }
+
+    /**
+     * Tests that an account's changes are replayed in the order they were
+     * applied, as numbered by their versions, when concurrent changes were
+     * journaled the other way round.
+     */
+    @Test
+    public void testReplaysChangesInVersionOrder() throws Exception {
+        Bank bank = new Bank();
+        try (DurableJournal durable = bank.enableDurability(file, FsyncPolicy.everyOperation())) {
+            populate(bank);
+            BankAccount account = bank.getUser("user0").getCurrentAccount();
+            account.deposit(1);
+            LedgerEvent last = bank.getJournal().readAfter(bank.getJournal().headSequence() - 1, 1).get(0);
+            // A deposit and then an adjustment, whose events were journaled in the opposite order.
+            bank.getJournal().append(LedgerEvent.balanceChange(LedgerEventType.BALANCE_ADJUSTED, "user0",
+                    account.getId(), 500, last.getAccountVersion() + 2, 500));
+            bank.getJournal().append(LedgerEvent.balanceChange(LedgerEventType.DEPOSIT, "user0", account.getId(), 10,
+                    last.getAccountVersion() + 1, last.getBalanceAfter() + 10));
+            assertEquals(Long.valueOf(bank.getJournal().headSequence()), durable.flush().get(5, TimeUnit.SECONDS));
+        }
+
+        JournalRecovery recovery = JournalRecovery.recover(file);
+        assertEquals(500, recovery.getBank().getUser("user0").getCurrentAccount().getCurrentBalance(), 1e-9);
+    }
+
+    /**
+     * Tests that a journal whose events do not add up to the balances
+     * journaled with them is refused rather than rebuilt differently.
+     */
+    @Test
+    public void testRejectsJournalThatDoesNotAddUp() throws Exception {
+        Bank bank = new Bank();
+        try (DurableJournal durable = bank.enableDurability(file, FsyncPolicy.everyOperation())) {
+            populate(bank);
+            BankAccount account = bank.getUser("user0").getCurrentAccount();
+            account.deposit(1);
+            long version = bank.getJournal().readAfter(bank.getJournal().headSequence() - 1, 1).get(0)
+                    .getAccountVersion();
+            // The next change, but with a balance showing that a change before it went missing.
+            bank.getJournal().append(LedgerEvent.balanceChange(LedgerEventType.DEPOSIT, "user0", account.getId(), 10,
+                    version + 1, account.getCurrentBalance() + 25));
+            assertEquals(Long.valueOf(bank.getJournal().headSequence()), durable.flush().get(5, TimeUnit.SECONDS));
+        }
+        assertThrows(IllegalStateException.class, () -> JournalRecovery.recover(file));
+    }
+
+    /**
+     * Tests that a journal missing its beginning is refused.
+     */
+    @Test
+    public void testRejectsJournalWithoutBeginning() throws Exception {
+        Bank bank = new Bank();
+        populate(bank);
+        bank.enableDurability(file, FsyncPolicy.everyOperation()).close();
+        byte[] journal = Files.readAllBytes(file);
+        int length = ((journal[0] & 0xff) << 24) | ((journal[1] & 0xff) << 16) | ((journal[2] & 0xff) << 8)
+                | (journal[3] & 0xff);
+        Files.write(file, Arrays.copyOfRange(journal, 8 + length, journal.length));
+        assertThrows(IOException.class, () -> JournalRecovery.recover(file));
+    }
+
+    /**
+     * Tests that a bank killed at random points while transferring recovers
+     * every transfer it reported durable, with no money created or lost.
+     */
+    @Test
+    public void testRecoversAfterProcessIsKilled() throws Exception {
+        Random random = new Random(7);
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Path errors = directory.resolve("writer.err");
+        for (int round = 0; round < 3; round++) {
+            Files.deleteIfExists(file);
+            Process writer = new ProcessBuilder(java, "-cp", childClassPath(), CrashingWriter.class.getName(),
+                    file.toString()).redirectError(errors.toFile()).start();
+            AtomicLong acknowledged = new AtomicLong();
+            BufferedReader output = new BufferedReader(new InputStreamReader(writer.getInputStream()));
+            String first = output.readLine();
+            if (first == null) {
+                writer.waitFor(10, TimeUnit.SECONDS);
+                fail("The writer exited before it was ready: " + Files.readString(errors));
+            }
+            assertEquals("ready", first);
+            Thread reader = new Thread(() -> {
+                try {
+                    String line;
+                    while ((line = output.readLine()) != null) {
+                        acknowledged.set(Long.parseLong(line));
+                    }
+                } catch (IOException | NumberFormatException e) {
+                    // The pipe closes, possibly mid-line, when the writer is killed.
+                }
+            });
+            reader.start();
+            Thread.sleep(100 + random.nextInt(400));
+            writer.destroyForcibly();
+            assertTrue(writer.waitFor(10, TimeUnit.SECONDS));
+            reader.join();
+            assertTrue(acknowledged.get() > 0);
+
+            JournalRecovery recovery = JournalRecovery.recover(file);
+            assertTrue(recovery.getLastSequence() >= acknowledged.get(),
+                    "Recovered through " + recovery.getLastSequence() + " but " + acknowledged.get()
+                            + " was acknowledged.");
+            assertEquals(USERS * OPENING_BALANCE, recovery.getTotalBalance(), 1e-6);
+            assertEquals(USERS * OPENING_BALANCE, totalBalance(recovery.getBank()), 1e-6);
+        }
+    }
+
+    /**
+     * Builds the class path for a child JVM from where the test and bank
+     * classes were loaded, since the launcher's class path property may not
+     * list them, for example when tests are run from a single jar.
+     */
+    private static String childClassPath() throws Exception {
+        Set<String> entries = new LinkedHashSet<>();
+        for (Class<?> type : new Class<?>[] { CrashingWriter.class, Bank.class }) {
+            entries.add(Path.of(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString());
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    /**
+     * Run in a separate process by {@link #testRecoversAfterProcessIsKilled}:
+     * transfers money until killed, printing each sequence number reported
+     * durable.
+     */
+    public static final class CrashingWriter {
+
+        public static void main(String[] args) throws Exception {
+            PrintStream acknowledgements = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            Bank bank = new Bank();
+            DurableJournal durable = bank.enableDurability(Path.of(args[0]), FsyncPolicy.everyMillis(1));
+            for (int i = 0; i < USERS; i++) {
+                bank.registerUser("user" + i, "pass" + i);
+                bank.getUser("user" + i).getCurrentAccount().deposit(OPENING_BALANCE);
+            }
+            durable.flush().join();
+            acknowledgements.println("ready");
+            acknowledgements.flush();
+            Random random = new Random();
+            while (true) {
+                int from = random.nextInt(USERS);
+                int to = (from + 1 + random.nextInt(USERS - 1)) % USERS;
+                if (bank.submitTransfer("user" + from, "user" + to, 1 + random.nextInt(20)).join()) {
+                    acknowledgements.println(durable.getDurableSequence());
+                    acknowledgements.flush();
+                }
+            }
+        }
+
+        private CrashingWriter() {
+        }
+    }
+}
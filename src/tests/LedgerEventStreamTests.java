@@ -0,0 +1,237 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bankapp.Bank;
+import bankapp.BankAccount;
+import bankapp.LedgerEvent;
+import bankapp.LedgerEventStream;
+import bankapp.LedgerEventType;
+import bankapp.MutationJournal;
+
+/**
+ * Unit tests for {@link LedgerEventStream}.
+ */
+public class LedgerEventStreamTests {
+
+    private ExecutorService executor;
+    private Bank bank;
+
+    @BeforeEach
+    void setup() {
+        executor = Executors.newSingleThreadExecutor();
+        bank = new Bank();
+    }
+
+    @AfterEach
+    void cleanup() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A subscriber that records what it receives and requests a fixed
+     * number of batches up front.
+     */
+    private static final class Recorder implements Flow.Subscriber<List<LedgerEvent>> {
+        final List<List<LedgerEvent>> batches = new ArrayList<>();
+        final long initialDemand;
+        Flow.Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        Recorder(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialDemand > 0) {
+                subscription.request(initialDemand);
+            }
+        }
+
+        @Override
+        public synchronized void onNext(List<LedgerEvent> batch) {
+            batches.add(batch);
+        }
+
+        @Override
+        public synchronized void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public synchronized void onComplete() {
+            completed = true;
+        }
+
+        synchronized List<LedgerEvent> events() {
+            List<LedgerEvent> events = new ArrayList<>();
+            for (List<LedgerEvent> batch : batches) {
+                events.addAll(batch);
+            }
+            return events;
+        }
+
+        synchronized int batchCount() {
+            return batches.size();
+        }
+    }
+
+    /**
+     * Waits for deliveries already handed to the executor to finish.
+     */
+    private void settle() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            executor.submit(() -> { }).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private BankAccount registerAlice() {
+        bank.registerUser("alice", "pass1");
+        return bank.getUser("alice").getCurrentAccount();
+    }
+
+    private static void assertContiguous(List<LedgerEvent> events, long first, long last) {
+        assertEquals(last - first + 1, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(first + i, events.get(i).getSequence());
+        }
+    }
+
+    /**
+     * Tests that registrations, deposits, withdrawals, failed withdrawals
+     * and transfers all reach a subscriber in journal order.
+     */
+    @Test
+    public void testDeliversEveryKindOfChange() throws Exception {
+        // The bank's own stream delivers on the common pool; one on the test executor can be waited for.
+        assertNotNull(bank.getEventStream());
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+        new LedgerEventStream(bank.getJournal(), executor, 64, 8).subscribe(recorder);
+        bank.registerUser("alice", "pass1");
+        bank.registerUser("bob", "pass2");
+        BankAccount account = bank.getUser("alice").getCurrentAccount();
+        account.deposit(100);
+        account.withdraw(30);
+        assertThrows(IllegalArgumentException.class, () -> account.withdraw(500));
+        assertTrue(bank.transferFunds("alice", "bob", 20));
+        settle();
+
+        List<LedgerEventType> types = new ArrayList<>();
+        for (LedgerEvent event : recorder.events()) {
+            types.add(event.getType());
+        }
+        assertTrue(types.contains(LedgerEventType.USER_REGISTERED));
+        assertEquals(List.of(LedgerEventType.DEPOSIT, LedgerEventType.WITHDRAWAL,
+                LedgerEventType.FAILED_WITHDRAWAL, LedgerEventType.TRANSFER),
+                types.subList(types.size() - 4, types.size()));
+        assertContiguous(recorder.events(), 1, bank.getJournal().headSequence());
+        assertNull(recorder.error);
+    }
+
+    /**
+     * Tests that a subscriber receives no more batches than it requested,
+     * each no larger than the batch size.
+     */
+    @Test
+    public void testBackpressureAndBatching() throws Exception {
+        BankAccount account = registerAlice();
+        long base = bank.getJournal().headSequence();
+        LedgerEventStream stream = new LedgerEventStream(bank.getJournal(), executor, 100, 4);
+        Recorder recorder = new Recorder(1);
+        stream.subscribe(recorder);
+        for (int i = 0; i < 10; i++) {
+            account.deposit(1);
+        }
+        settle();
+        assertEquals(1, recorder.batchCount());
+        assertTrue(recorder.events().size() <= 4);
+
+        recorder.subscription.request(10);
+        settle();
+        assertContiguous(recorder.events(), base + 1, base + 10);
+        for (List<LedgerEvent> batch : recorder.batches) {
+            assertTrue(batch.size() <= 4);
+        }
+    }
+
+    /**
+     * Tests that a subscriber whose buffer overflows catches up from the
+     * journal without missing or repeating events, and fails once the
+     * events it missed are truncated.
+     */
+    @Test
+    public void testOverflowCatchesUpFromJournal() throws Exception {
+        BankAccount account = registerAlice();
+        MutationJournal journal = bank.getJournal();
+        long base = journal.headSequence();
+        LedgerEventStream stream = new LedgerEventStream(journal, executor, 4, 3);
+        Recorder slow = new Recorder(0);
+        Recorder truncated = new Recorder(0);
+        stream.subscribe(slow);
+        stream.subscribe(truncated);
+        for (int i = 0; i < 50; i++) {
+            account.deposit(1);
+        }
+
+        slow.subscription.request(Long.MAX_VALUE);
+        settle();
+        assertContiguous(slow.events(), base + 1, base + 50);
+        account.deposit(1);
+        settle();
+        assertContiguous(slow.events(), base + 1, base + 51);
+
+        journal.truncateThrough(base + 40);
+        truncated.subscription.request(Long.MAX_VALUE);
+        settle();
+        assertTrue(truncated.error instanceof IllegalStateException);
+        assertEquals(1, stream.getSubscriberCount());
+    }
+
+    /**
+     * Tests that a subscriber can replay retained events from a sequence
+     * number, and that closing the stream completes subscribers.
+     */
+    @Test
+    public void testReplayAndClose() throws Exception {
+        BankAccount account = registerAlice();
+        MutationJournal journal = bank.getJournal();
+        long base = journal.headSequence();
+        LedgerEventStream stream = new LedgerEventStream(journal, executor, 16, 16);
+        for (int i = 0; i < 5; i++) {
+            account.deposit(1);
+        }
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+        stream.subscribe(recorder, base + 2);
+        account.deposit(1);
+        settle();
+        assertContiguous(recorder.events(), base + 3, base + 6);
+
+        stream.close();
+        settle();
+        assertTrue(recorder.completed);
+        Recorder late = new Recorder(1);
+        stream.subscribe(late);
+        settle();
+        assertTrue(late.completed);
+
+        Recorder invalid = new Recorder(0);
+        new LedgerEventStream(journal, executor, 4, 4).subscribe(invalid);
+        invalid.subscription.request(0);
+        settle();
+        assertTrue(invalid.error instanceof IllegalArgumentException);
+    }
+}
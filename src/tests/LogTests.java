@@ -4,9 +4,22 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
 import org.junit.Test;
 
+import bankapp.BankClock;
+import bankapp.CoarseClock;
 import bankapp.Log;
+import bankapp.LogRollup;
+import bankapp.ManualClock;
+import bankapp.NanoAnchoredClock;
 
 public class LogTests {
 	
@@ -63,4 +76,129 @@ public class LogTests {
 	    assertEquals("Failed Withdrawal", failedLog.getTransactions().get(0).getType());
 	    assertEquals(20.0, failedLog.getTransactions().get(0).getAmount(), 0.005);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testTransactionsUseInjectedClock() {
+	    ManualClock clock = new ManualClock(1_700_000_000_000L);
+	    Log log = new Log(clock);
+
+	    log.addTransaction("Deposit", 10.0);
+	    clock.advance(5_000);
+	    log.addTransaction("Withdrawal", 5.0);
+
+	    assertEquals(1_700_000_000_000L, log.getTransactions().get(0).getTimestampMillis());
+	    assertEquals(1_700_000_005_000L, log.getTransactions().get(1).getTimestampMillis());
+	    assertEquals(LocalDateTime.ofInstant(Instant.ofEpochMilli(1_700_000_005_000L), ZoneId.systemDefault()),
+	            log.getTransactions().get(1).getTimestamp());
+	}
+
+	@Test
+	public void testNanoAnchoredClockIsMonotonic() {
+	    NanoAnchoredClock clock = new NanoAnchoredClock();
+	    long previous = clock.currentTimeMillis();
+	    assertTrue(Math.abs(previous - System.currentTimeMillis()) < 1_000);
+	    for (int i = 0; i < 10_000; i++) {
+	        long now = clock.currentTimeMillis();
+	        assertTrue(now >= previous);
+	        previous = now;
+	    }
+	}
+
+	@Test
+	public void testCoarseClockRefreshesAtResolution() throws InterruptedException {
+	    ManualClock source = new ManualClock(1_700_000_000_000L);
+	    CoarseClock clock = new CoarseClock(source, 5);
+	    Log log = new Log(clock);
+	    source.advance(5_000);
+	    long deadline = System.nanoTime() + 5_000_000_000L;
+	    while (clock.currentTimeMillis() != 1_700_000_005_000L) {
+	        if (System.nanoTime() > deadline) {
+	            fail("Coarse clock never refreshed.");
+	        }
+	        Thread.sleep(1);
+	    }
+	    log.addTransaction("Deposit", 10.0);
+	    assertEquals(1_700_000_005_000L, log.getTransactions().get(0).getTimestampMillis());
+
+	    clock.close();
+	    Thread.sleep(50);
+	    source.advance(5_000);
+	    Thread.sleep(50);
+	    assertEquals(1_700_000_005_000L, clock.currentTimeMillis());
+
+	    try (CoarseClock system = BankClock.coarse(Duration.ofMillis(10))) {
+	        assertTrue(Math.abs(system.currentTimeMillis() - System.currentTimeMillis()) < 1_000);
+	    }
+	}
+
+	@Test
+	public void testDailyAndMonthlyRollups() {
+	    ManualClock clock = new ManualClock(LocalDate.of(2025, 3, 1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli());
+	    Log log = new Log(clock, ZoneOffset.UTC);
+
+	    clock.advance(3_600_000);
+	    log.addTransaction("Deposit", 100.0, 100.0);
+	    log.addTransaction("Withdrawal", 30.0, 70.0);
+	    clock.advance(86_400_000);
+	    log.addTransaction("Deposit", 50.0, 120.0);
+	    log.addTransaction("Failed Withdrawal", 500.0);
+
+	    LogRollup first = log.getDailyRollup(LocalDate.of(2025, 3, 1));
+	    assertEquals(2, first.getCount());
+	    assertEquals(100.0, first.getDepositTotal(), 0.005);
+	    assertEquals(30.0, first.getWithdrawalTotal(), 0.005);
+	    assertEquals(0.0, first.getOpeningBalance(), 0.005);
+	    assertEquals(70.0, first.getClosingBalance(), 0.005);
+	    assertEquals(100.0, first.getMaxBalance(), 0.005);
+
+	    LogRollup second = log.getDailyRollup(LocalDate.of(2025, 3, 2));
+	    assertEquals(70.0, second.getOpeningBalance(), 0.005);
+	    assertEquals(1, second.getOtherCount());
+
+	    LogRollup month = log.getMonthlyRollup(YearMonth.of(2025, 3));
+	    assertEquals(4, month.getCount());
+	    assertEquals(150.0, month.getDepositTotal(), 0.005);
+	    assertEquals(0.0, month.getMinBalance(), 0.005);
+
+	    LogRollup range = log.summarize(LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 3));
+	    assertEquals(4, range.getCount());
+	    assertEquals(120.0, range.getClosingBalance(), 0.005);
+	}
+
+	@Test
+	public void testAverageDailyBalance() {
+	    long march1 = LocalDate.of(2025, 3, 1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+	    ManualClock clock = new ManualClock(march1);
+	    Log log = new Log(clock, ZoneOffset.UTC);
+
+	    // 100 for the first 10 days, then 400 for the remaining 21 days of March.
+	    log.addTransaction("Deposit", 100.0, 100.0);
+	    clock.advance(10 * 86_400_000L);
+	    log.addTransaction("Deposit", 300.0, 400.0);
+	    clock.setTime(LocalDate.of(2025, 4, 15).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli());
+
+	    double expected = (100.0 * 10 + 400.0 * 21) / 31;
+	    assertEquals(expected, log.averageDailyBalance(YearMonth.of(2025, 3)), 0.001);
+	    assertEquals(expected, log.averageDailyBalance(LocalDate.of(2025, 3, 1), LocalDate.of(2025, 4, 1)), 0.001);
+	    // April has no activity, so the March closing balance carries through to now.
+	    assertEquals(400.0, log.averageDailyBalance(YearMonth.of(2025, 4)), 0.001);
+	    assertEquals(400.0, log.averageDailyBalance(LocalDate.of(2025, 4, 1), LocalDate.of(2025, 5, 1)), 0.001);
+	}
+
+	@Test
+	public void testBalanceChangesFollowRunningBalance() {
+	    ManualClock clock = new ManualClock(LocalDate.of(2025, 3, 1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli());
+	    Log log = new Log(clock, ZoneOffset.UTC);
+
+	    // A withdrawal logged before the deposit that funded it still closes at the right balance.
+	    log.addBalanceChange("Deposit", 100.0, 100.0);
+	    log.addBalanceChange("Withdrawal", 130.0, -130.0);
+	    log.addBalanceChange("Deposit", 50.0, 50.0);
+	    log.recordBalanceChange(-5.0);
+
+	    LogRollup day = log.getDailyRollup(LocalDate.of(2025, 3, 1));
+	    assertEquals(0.0, day.getOpeningBalance(), 0.005);
+	    assertEquals(15.0, day.getClosingBalance(), 0.005);
+	    assertEquals(-30.0, day.getMinBalance(), 0.005);
+	}
+}
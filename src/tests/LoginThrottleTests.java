@@ -0,0 +1,128 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bankapp.Bank;
+import bankapp.LoginThrottle;
+import bankapp.ManualClock;
+
+/**
+ * Unit tests for {@link LoginThrottle} and throttled {@link Bank} logins.
+ */
+public class LoginThrottleTests {
+
+    private ManualClock clock;
+    private LoginThrottle throttle;
+
+    @BeforeEach
+    void setup() {
+        clock = new ManualClock(0);
+        throttle = new LoginThrottle(clock, Duration.ofMinutes(1), 3, 5);
+    }
+
+    /**
+     * Tests that a username is throttled after repeated failures and recovers as they decay.
+     */
+    @Test
+    public void testUsernameThrottleDecays() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(throttle.tryAttempt("alice", null));
+        }
+        assertFalse(throttle.tryAttempt("alice", null));
+        assertTrue(throttle.tryAttempt("bob", null));
+
+        clock.advance(Duration.ofMinutes(1).toMillis());
+        assertEquals(1.5, throttle.getUsernameScore("alice"), 0.001);
+        assertTrue(throttle.tryAttempt("alice", null));
+        assertEquals(1, throttle.getRejectedCount());
+    }
+
+    /**
+     * Tests that one source trying many usernames is throttled for all of them.
+     */
+    @Test
+    public void testSourceThrottle() {
+        for (int i = 0; i < 5; i++) {
+            assertTrue(throttle.tryAttempt("user" + i, "10.0.0.1"));
+        }
+        assertFalse(throttle.tryAttempt("someone", "10.0.0.1"));
+        assertTrue(throttle.tryAttempt("someone", "10.0.0.2"));
+        throttle.recordSuccess("user0");
+        assertFalse(throttle.tryAttempt("user0", "10.0.0.1"));
+    }
+
+    /**
+     * Tests that a successful login clears the username's failures.
+     */
+    @Test
+    public void testSuccessClearsUsername() {
+        assertTrue(throttle.tryAttempt("alice", null));
+        assertTrue(throttle.tryAttempt("alice", null));
+        throttle.recordSuccess("alice");
+        assertEquals(0, throttle.getUsernameScore("alice"), 0.001);
+    }
+
+    /**
+     * Tests that the bank rejects even the correct password while a username is throttled.
+     */
+    @Test
+    public void testBankLoginThrottled() throws NoSuchAlgorithmException {
+        ManualClock bankClock = new ManualClock(0);
+        Bank bank = new Bank(bankClock);
+        bank.registerUser("alice", "pass1");
+        for (int i = 0; i < 5; i++) {
+            assertNull(bank.login("alice", "guess" + i, "10.0.0.9"));
+        }
+        assertNull(bank.login("alice", "pass1"));
+        assertEquals(1, bank.getLoginThrottle().getRejectedCount());
+
+        bankClock.advance(Duration.ofMinutes(10).toMillis());
+        assertNotNull(bank.login("alice", "pass1"));
+    }
+
+    /**
+     * Tests that concurrent attempts on one username are admitted no more
+     * often than the threshold allows, and that a successful login takes
+     * back the attempt it counted against its source.
+     */
+    @Test
+    public void testConcurrentAttemptsCountedBeforeAdmission() throws InterruptedException {
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[16];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (throttle.tryAttempt("alice", null)) {
+                    admitted.incrementAndGet();
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Integer.valueOf(3), Integer.valueOf(admitted.get()));
+        assertEquals(13, throttle.getRejectedCount());
+
+        assertTrue(throttle.tryAttempt("bob", "10.0.0.1"));
+        throttle.recordSuccess("bob", "10.0.0.1");
+        for (int i = 0; i < 5; i++) {
+            assertTrue(throttle.tryAttempt("user" + i, "10.0.0.1"));
+        }
+        assertFalse(throttle.tryAttempt("carol", "10.0.0.1"));
+    }
+}
@@ -0,0 +1,260 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bankapp.Admin;
+import bankapp.Bank;
+import bankapp.BankAccount;
+import bankapp.BankClock;
+import bankapp.CheckingsAccount;
+import bankapp.LimitRule;
+import bankapp.LimitWindow;
+import bankapp.LsmBankRepository;
+import bankapp.SavingsAccount;
+import bankapp.User;
+
+/**
+ * Unit tests for a {@link Bank} backed by an {@link LsmBankRepository}.
+ */
+public class LsmBankRepositoryTests {
+
+    private Path directory;
+
+    @BeforeEach
+    void setup() throws IOException {
+        directory = Files.createTempDirectory("lsm-bank");
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private LsmBankRepository open(int workingSetSize) throws IOException {
+        return new LsmBankRepository(directory, BankClock.system(), workingSetSize, 1 << 20);
+    }
+
+    /**
+     * Tests that users, balances, settings and logs survive reopening the repository.
+     */
+    @Test
+    public void testStateSurvivesRestart() throws Exception {
+        UUID savingsId;
+        try (LsmBankRepository repository = open(100)) {
+            Bank bank = new Bank(BankClock.system(), repository);
+            bank.registerUser("alice", "pass1");
+            bank.registerUser("bob", "pass2");
+            bank.registerUser(new Admin("admin", "secret"));
+            User alice = bank.getUser("alice");
+            CheckingsAccount checking = (CheckingsAccount) alice.getCurrentAccount();
+            checking.setOverdraftLimit(50);
+            checking.setNickname("Everyday");
+            checking.deposit(200);
+            SavingsAccount savings = new SavingsAccount(0.02);
+            alice.addAccount(savings);
+            savings.deposit(1_000);
+            savingsId = savings.getId();
+            assertThrows(IllegalArgumentException.class, () -> savings.withdraw(5_000));
+            assertTrue(bank.transferFunds("alice", "bob", 75));
+        }
+
+        try (LsmBankRepository repository = open(100)) {
+            Bank bank = new Bank(BankClock.system(), repository);
+            assertEquals(3, repository.size());
+            assertNotNull(bank.login("alice", "pass1"));
+            assertNull(bank.login("alice", "wrong"));
+            User alice = bank.getUser("alice");
+            CheckingsAccount checking = (CheckingsAccount) alice.getCurrentAccount();
+            assertEquals(125, checking.getCurrentBalance(), 0.001);
+            assertEquals(50, checking.getOverdraftLimit(), 0.001);
+            assertEquals("Everyday", checking.getNickname());
+            assertEquals(2, checking.getTransactionLog().size());
+
+            BankAccount savings = bank.findAccount(savingsId);
+            assertTrue(savings instanceof SavingsAccount);
+            assertEquals(0.02, ((SavingsAccount) savings).getInterestRate(), 0.0001);
+            assertEquals(1_000, savings.getCurrentBalance(), 0.001);
+            assertEquals(1, savings.getFailedTransactionLog().size());
+            assertEquals(75, bank.getUser("bob").getCurrentAccount().getCurrentBalance(), 0.001);
+            assertTrue(bank.getUser("admin").isAdmin());
+            assertFalse(bank.registerUser("alice", "again"));
+
+            // Changes after a reload are written through as well.
+            checking.withdraw(25);
+            alice.removeAccount(savingsId);
+        }
+
+        try (LsmBankRepository repository = open(100)) {
+            Bank bank = new Bank(BankClock.system(), repository);
+            User alice = bank.getUser("alice");
+            assertEquals(100, alice.getCurrentAccount().getCurrentBalance(), 0.001);
+            assertEquals(3, alice.getCurrentAccount().getTransactionLog().size());
+            assertEquals(1, alice.getAllAccounts().size());
+            assertNull(bank.findAccount(savingsId));
+        }
+    }
+
+    /**
+     * Tests that the bank works over more users than the working set holds,
+     * and that a user still referenced is never loaded twice.
+     */
+    @Test
+    public void testWorkingSetSmallerThanBank() throws Exception {
+        try (LsmBankRepository repository = open(16)) {
+            Bank bank = new Bank(BankClock.system(), repository);
+            User first = null;
+            for (int i = 0; i < 500; i++) {
+                bank.registerUser("user" + i, "pass");
+                bank.getUser("user" + i).getCurrentAccount().deposit(i + 1);
+                if (i == 0) {
+                    first = bank.getUser("user0");
+                }
+            }
+            assertSame(first, bank.getUser("user0"));
+            for (int i = 1; i < 500; i++) {
+                assertTrue(bank.transferFunds("user" + i, "user0", 1));
+            }
+            assertEquals(500, first.getCurrentAccount().getCurrentBalance(), 0.001);
+            assertEquals(251, bank.getUser("user251").getCurrentAccount().getCurrentBalance(), 0.001);
+
+            Admin admin = new Admin("admin", "secret");
+            bank.registerUser(admin);
+            assertEquals(125_250, bank.calculateTotalSystemBalanceBasedOnAllUsers(admin), 0.001);
+        }
+    }
+
+    /**
+     * Tests that frequently used users are served from memory after a
+     * restart, even while a stream of other users passes through.
+     */
+    @Test
+    public void testHotUsersStayLoaded() throws Exception {
+        try (LsmBankRepository repository = open(1_000)) {
+            Bank bank = new Bank(BankClock.system(), repository);
+            for (int i = 0; i < 1_000; i++) {
+                bank.registerUser("user" + i, "pass");
+            }
+        }
+        try (LsmBankRepository repository = open(150)) {
+            Bank bank = new Bank(BankClock.system(), repository);
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < 20; i++) {
+                    assertNotNull(bank.getUser("user" + i));
+                }
+            }
+            assertEquals(20, repository.getLoadCount());
+            for (int i = 20; i < 1_000; i++) {
+                assertNotNull(bank.getUser("user" + i));
+            }
+            System.gc();
+            long loads = repository.getLoadCount();
+            for (int i = 0; i < 20; i++) {
+                assertNotNull(bank.getUser("user" + i));
+            }
+            assertEquals(loads, repository.getLoadCount());
+            assertTrue(repository.getUserCache().getHitRate() > 0);
+            assertTrue(repository.getUserCache().getWeight() <= 150);
+        }
+    }
+
+    /**
+     * Tests that a user's weight in the working set grows with the
+     * transactions written for them, so the bound holds as histories grow.
+     */
+    @Test
+    public void testWorkingSetWeighsNewTransactions() throws Exception {
+        try (LsmBankRepository repository = open(100)) {
+            Bank bank = new Bank(BankClock.system(), repository);
+            bank.registerUser("alice", "pass1");
+            BankAccount account = bank.getUser("alice").getCurrentAccount();
+            long registered = repository.getUserCache().getWeight();
+            for (int i = 0; i < 5; i++) {
+                account.deposit(10);
+            }
+            assertEquals(registered + 5, repository.getUserCache().getWeight());
+            for (int i = 0; i < 200; i++) {
+                account.deposit(10);
+            }
+            assertTrue(repository.getUserCache().getWeight() <= 100);
+        }
+    }
+
+    /**
+     * Tests that account and user withdrawal limits, and what has been used
+     * of them, are read back with the user.
+     */
+    @Test
+    public void testLimitUsageSurvivesReload() throws Exception {
+        UUID savingsId;
+        try (LsmBankRepository repository = open(100)) {
+            Bank bank = new Bank(BankClock.system(), repository);
+            bank.registerUser("alice", "pass1");
+            User alice = bank.getUser("alice");
+            alice.addWithdrawalLimit(LimitRule.count(3, LimitWindow.calendarDay()));
+            BankAccount checking = alice.getCurrentAccount();
+            checking.addWithdrawalLimit(LimitRule.amount(100, LimitWindow.sliding(Duration.ofHours(1))));
+            SavingsAccount savings = new SavingsAccount(0.02);
+            alice.addAccount(savings);
+            savings.setWithdrawalLimit(1);
+            savingsId = savings.getId();
+            checking.deposit(1_000);
+            savings.deposit(1_000);
+            checking.withdraw(60);
+            savings.withdraw(10);
+        }
+
+        try (LsmBankRepository repository = open(100)) {
+            Bank bank = new Bank(BankClock.system(), repository);
+            User alice = bank.getUser("alice");
+            BankAccount checking = alice.getCurrentAccount();
+            BankAccount savings = bank.findAccount(savingsId);
+            assertEquals(1, ((SavingsAccount) savings).getWithdrawalLimit());
+            assertEquals(2, alice.getWithdrawalLimits().getUsed(LimitRule.Kind.COUNT, LimitWindow.Type.CALENDAR_DAY),
+                    0.001);
+            assertThrows(IllegalArgumentException.class, () -> savings.withdraw(10));
+            assertThrows(IllegalArgumentException.class, () -> checking.withdraw(50));
+            checking.withdraw(40);
+            assertEquals(3, alice.getWithdrawalLimits().getUsed(LimitRule.Kind.COUNT, LimitWindow.Type.CALENDAR_DAY),
+                    0.001);
+            assertEquals(900, checking.getCurrentBalance(), 0.001);
+        }
+    }
+
+    /**
+     * Tests that a user with a pending hold stays loaded while other users
+     * pass through the working set, so the hold still settles against the
+     * account the bank hands out.
+     */
+    @Test
+    public void testPendingHoldKeepsOwnerLoaded() throws Exception {
+        try (LsmBankRepository repository = open(16)) {
+            Bank bank = new Bank(BankClock.system(), repository);
+            bank.registerUser("alice", "pass1");
+            bank.getUser("alice").getCurrentAccount().deposit(100);
+            UUID holdId = bank.authorizeHold("alice", 40, Duration.ofMinutes(5)).getId();
+            for (int i = 0; i < 200; i++) {
+                bank.registerUser("user" + i, "pass");
+            }
+            System.gc();
+            BankAccount account = bank.getUser("alice").getCurrentAccount();
+            assertEquals(40, account.getHeldAmount(), 0.001);
+            assertTrue(bank.captureHold(holdId, 40));
+            assertEquals(60, account.getCurrentBalance(), 0.001);
+            assertEquals(0, account.getHeldAmount(), 0.001);
+        }
+    }
+}
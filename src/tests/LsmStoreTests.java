@@ -0,0 +1,222 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bankapp.LsmStore;
+
+/**
+ * Unit tests for {@link LsmStore}.
+ */
+public class LsmStoreTests {
+
+    private Path directory;
+
+    @BeforeEach
+    void setup() throws IOException {
+        directory = Files.createTempDirectory("lsm-store");
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Tests puts, overwrites and deletes across the memtable and flushed tables.
+     */
+    @Test
+    public void testGetAcrossMemtableAndTables() throws IOException {
+        try (LsmStore store = new LsmStore(directory, 1 << 20, 1 << 20)) {
+            store.put("a", bytes("1"));
+            store.put("b", bytes("2"));
+            store.flush();
+            store.put("a", bytes("3"));
+            store.delete("b");
+            store.put("c", bytes("4"));
+
+            assertEquals("3", string(store.get("a")));
+            assertNull(store.get("b"));
+            assertEquals("4", string(store.get("c")));
+            assertNull(store.get("missing"));
+
+            store.flush();
+            assertEquals(2, store.getTableCount());
+            assertEquals("3", string(store.get("a")));
+            assertNull(store.get("b"));
+        }
+    }
+
+    /**
+     * Tests that prefix scans merge sources, newest first, and hide deleted keys.
+     */
+    @Test
+    public void testScan() throws IOException {
+        try (LsmStore store = new LsmStore(directory, 1 << 20, 1 << 20)) {
+            store.put("t/1/0", bytes("old"));
+            store.put("t/1/1", bytes("x"));
+            store.put("t/2/0", bytes("other"));
+            store.flush();
+            store.put("t/1/0", bytes("new"));
+            store.delete("t/1/1");
+            store.put("t/1/2", bytes("y"));
+
+            NavigableMap<String, byte[]> found = store.scan("t/1/");
+            assertEquals(2, found.size());
+            assertEquals("new", string(found.get("t/1/0")));
+            assertEquals("y", string(found.get("t/1/2")));
+        }
+    }
+
+    /**
+     * Tests that a cursor returns what a scan does without collecting it
+     * first, and keeps going when a compaction retires the tables it reads.
+     */
+    @Test
+    public void testCursor() throws IOException {
+        try (LsmStore store = new LsmStore(directory, 1 << 20, 1 << 20)) {
+            for (int i = 0; i < 3_000; i++) {
+                store.put(String.format("u/%05d", i), bytes("v" + i));
+                if (i % 1_000 == 999) {
+                    store.flush();
+                }
+            }
+            store.put("a/0", bytes("before"));
+            store.put("v/0", bytes("after"));
+            store.delete("u/00007");
+            store.put("u/00008", bytes("newer"));
+
+            Iterator<Map.Entry<String, byte[]>> cursor = store.cursor("u/");
+            List<String> keys = new ArrayList<>();
+            while (cursor.hasNext()) {
+                Map.Entry<String, byte[]> entry = cursor.next();
+                keys.add(entry.getKey());
+                if (entry.getKey().equals("u/00008")) {
+                    assertEquals("newer", string(entry.getValue()));
+                }
+                if (keys.size() == 1_500) {
+                    store.compact();
+                }
+            }
+            assertEquals(new ArrayList<>(store.scan("u/").keySet()), keys);
+            assertEquals(2_999, keys.size());
+            assertFalse(keys.contains("u/00007"));
+            assertFalse(store.cursor("w/").hasNext());
+        }
+    }
+
+    /**
+     * Tests that unflushed writes are recovered from the log and tables from disk.
+     */
+    @Test
+    public void testReopenRecoversWrites() throws IOException {
+        try (LsmStore store = new LsmStore(directory, 1 << 20, 1 << 20)) {
+            store.put("flushed", bytes("1"));
+            store.flush();
+            Map<String, byte[]> batch = new LinkedHashMap<>();
+            batch.put("logged", bytes("2"));
+            batch.put("flushed", null);
+            store.write(batch);
+        }
+        try (LsmStore store = new LsmStore(directory, 1 << 20, 1 << 20)) {
+            assertNull(store.get("flushed"));
+            assertEquals("2", string(store.get("logged")));
+        }
+    }
+
+    /**
+     * Tests that a batch torn or zero-filled by a crash is dropped whole and
+     * cut off the log, while damage before the log's tail fails the open.
+     */
+    @Test
+    public void testReplaysOnlyWholeBatches() throws IOException {
+        try (LsmStore store = new LsmStore(directory, 1 << 20, 1 << 20)) {
+            store.put("first", bytes("1"));
+            Map<String, byte[]> batch = new LinkedHashMap<>();
+            batch.put("second", bytes("2"));
+            batch.put("third", bytes("3"));
+            store.write(batch);
+        }
+        Path wal = directory.resolve("wal.log");
+        byte[] log = Files.readAllBytes(wal);
+        int firstBatch = 8 + (((log[0] & 0xff) << 24) | ((log[1] & 0xff) << 16) | ((log[2] & 0xff) << 8)
+                | (log[3] & 0xff));
+
+        for (int cut = firstBatch; cut < log.length; cut += 3) {
+            Files.write(wal, Arrays.copyOf(log, cut));
+            try (LsmStore store = new LsmStore(directory, 1 << 20, 1 << 20)) {
+                assertEquals("1", string(store.get("first")));
+                assertNull(store.get("second"));
+                assertNull(store.get("third"));
+            }
+            assertEquals(firstBatch, Files.size(wal));
+        }
+
+        Files.write(wal, Arrays.copyOf(log, log.length + 4_096));
+        try (LsmStore store = new LsmStore(directory, 1 << 20, 1 << 20)) {
+            assertEquals("3", string(store.get("third")));
+        }
+        assertEquals(log.length, Files.size(wal));
+
+        byte[] damaged = log.clone();
+        damaged[firstBatch - 1] ^= 0x40;
+        Files.write(wal, damaged);
+        assertThrows(IOException.class, () -> new LsmStore(directory, 1 << 20, 1 << 20));
+        assertArrayEquals(damaged, Files.readAllBytes(wal));
+    }
+
+    /**
+     * Tests that many writes flush and compact automatically without losing
+     * data, and that repeated reads are served from the block cache.
+     */
+    @Test
+    public void testFlushAndCompaction() throws IOException {
+        try (LsmStore store = new LsmStore(directory, 64 << 10, 1 << 20)) {
+            for (int i = 0; i < 20_000; i++) {
+                store.put(String.format("key%06d", i % 5_000), bytes("value" + i));
+            }
+            assertTrue(store.getTableCount() <= 5);
+            for (int i = 0; i < 5_000; i++) {
+                assertEquals("value" + (15_000 + i), string(store.get(String.format("key%06d", i))));
+            }
+            store.compact();
+            assertEquals(1, store.getTableCount());
+            long misses = store.getCacheMisses();
+            for (int i = 0; i < 100; i++) {
+                store.get("key000042");
+            }
+            assertTrue(store.getCacheMisses() - misses <= 1);
+            assertEquals(5_000, store.scan("key").size());
+        }
+        try (LsmStore store = new LsmStore(directory, 64 << 10, 1 << 20)) {
+            assertEquals("value19999", string(store.get("key004999")));
+        }
+    }
+}
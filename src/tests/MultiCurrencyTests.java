@@ -0,0 +1,128 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Currency;
+
+import org.junit.jupiter.api.Test;
+
+import bankapp.Admin;
+import bankapp.Bank;
+import bankapp.BankAccount;
+import bankapp.CheckingsAccount;
+import bankapp.CurrencyTotals;
+import bankapp.FxRateTable;
+import bankapp.ManualClock;
+import bankapp.User;
+
+/**
+ * Unit tests for per-currency balances, {@link FxRateTable} and {@link CurrencyTotals}.
+ */
+public class MultiCurrencyTests {
+
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final Currency EUR = Currency.getInstance("EUR");
+    private static final Currency JPY = Currency.getInstance("JPY");
+
+    /**
+     * Tests that totals are summed exactly in minor units.
+     */
+    @Test
+    public void testFixedPointTotals() {
+        CurrencyTotals.Builder builder = new CurrencyTotals.Builder();
+        for (int i = 0; i < 1000; i++) {
+            builder.add(USD, 0.1);
+        }
+        builder.add(JPY, 1234.6);
+        CurrencyTotals totals = builder.build();
+        assertEquals(10_000, totals.getMinorUnits(USD));
+        assertEquals(100.0, totals.getAmount(USD));
+        assertEquals(1235, totals.getMinorUnits(JPY));
+        assertEquals(0, totals.getMinorUnits(EUR));
+        assertEquals("JPY 1235, USD 100.00", totals.toString());
+    }
+
+    /**
+     * Tests conversion between currencies with different minor units, and rate versioning.
+     */
+    @Test
+    public void testConversion() {
+        FxRateTable rates = new FxRateTable(USD);
+        assertEquals(0, rates.getVersion());
+        rates.setRate(EUR, 0.5);
+        rates.setRate(JPY, 150);
+        assertEquals(2, rates.getVersion());
+
+        assertEquals(200, rates.convert(100, EUR, USD));
+        assertEquals(15_000, rates.convert(10_000, USD, JPY));
+        assertEquals(10_000, rates.convert(30_000, JPY, EUR));
+
+        CurrencyTotals totals = new CurrencyTotals.Builder().add(USD, 10).add(EUR, 10).add(JPY, 1500).build();
+        assertEquals(4_000, rates.convert(totals, USD));
+
+        assertThrows(IllegalArgumentException.class, () -> rates.setRate(USD, 2));
+        assertThrows(IllegalArgumentException.class, () -> rates.setRate(EUR, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> rates.convert(100, Currency.getInstance("GBP"), USD));
+        assertEquals(2, rates.getVersion());
+    }
+
+    /**
+     * Tests that system totals are per currency, converted at current rates,
+     * and refreshed after balances or rates change.
+     */
+    @Test
+    public void testSystemTotals() throws Exception {
+        ManualClock clock = new ManualClock(0);
+        Bank bank = new Bank(clock);
+        Admin admin = new Admin("admin", "pass");
+        bank.registerUser(admin);
+        bank.registerUser("alice", "pass1");
+        User alice = bank.getUser("alice");
+        alice.getCurrentAccount().deposit(100);
+        CheckingsAccount euros = new CheckingsAccount(clock, EUR);
+        alice.addAccount(euros);
+        euros.deposit(50);
+        bank.getFxRates().setRate(EUR, 0.5);
+
+        assertEquals(200.0, bank.calculateTotalSystemBalanceBasedOnAllUsers(admin), 0.001);
+        CurrencyTotals byCurrency = bank.calculateTotalsByCurrency(admin);
+        assertEquals(100.0, byCurrency.getAmount(USD));
+        assertEquals(50.0, byCurrency.getAmount(EUR));
+        assertEquals(byCurrency.toString(), alice.getTotalsByCurrency().toString());
+
+        bank.getFxRates().setRate(EUR, 0.25);
+        assertEquals(300.0, bank.calculateTotalSystemBalanceBasedOnAllUsers(admin), 0.001);
+        euros.withdraw(25);
+        assertEquals(200.0, bank.calculateTotalSystemBalanceBasedOnAllUsers(admin), 0.001);
+
+        assertThrows(IllegalAccessException.class, () -> bank.calculateTotalsByCurrency(alice));
+    }
+
+    /**
+     * Tests that transfers between accounts held in different currencies
+     * are rejected without moving any money.
+     */
+    @Test
+    public void testCrossCurrencyTransferRejected() {
+        ManualClock clock = new ManualClock(0);
+        Bank bank = new Bank(clock);
+        bank.registerUser("alice", "pass1");
+        bank.registerUser("bob", "pass2");
+        User alice = bank.getUser("alice");
+        User bob = bank.getUser("bob");
+        alice.getCurrentAccount().deposit(100);
+        BankAccount dollars = bob.getCurrentAccount();
+        CheckingsAccount yen = new CheckingsAccount(clock, JPY);
+        bob.addAccount(yen);
+        bob.switchToAccount(yen.getId());
+
+        assertFalse(bank.transferFunds("alice", "bob", 50));
+        assertEquals(100.0, alice.getCurrentAccount().getCurrentBalance(), 0.001);
+        assertEquals(0.0, yen.getCurrentBalance(), 0.001);
+
+        bob.switchToAccount(dollars.getId());
+        assertTrue(bank.transferFunds("alice", "bob", 50));
+        assertEquals(50.0, dollars.getCurrentBalance(), 0.001);
+    }
+}
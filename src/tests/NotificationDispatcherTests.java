@@ -0,0 +1,340 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bankapp.Bank;
+import bankapp.BankAccount;
+import bankapp.MutationJournal;
+import bankapp.Notification;
+import bankapp.NotificationDispatcher;
+import bankapp.NotificationEndpoint;
+
+/**
+ * Unit tests for {@link NotificationDispatcher}.
+ */
+public class NotificationDispatcherTests {
+
+    private Path directory;
+    private Bank bank;
+    private StubEndpoint endpoint;
+
+    @BeforeEach
+    void setup() throws IOException {
+        directory = Files.createTempDirectory("notifications");
+        bank = new Bank();
+        endpoint = new StubEndpoint();
+        for (String username : List.of("alice", "bob", "carol")) {
+            bank.registerUser(username, "pass");
+            bank.getUser(username).getCurrentAccount().deposit(1_000);
+        }
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * An endpoint that records what it receives and can be told to fail or
+     * hold deliveries to particular destinations.
+     */
+    private static final class StubEndpoint implements NotificationEndpoint {
+        final Map<String, List<List<Notification>>> batches = new ConcurrentHashMap<>();
+        final Map<String, Integer> failuresLeft = new ConcurrentHashMap<>();
+        final Map<String, CountDownLatch> gates = new ConcurrentHashMap<>();
+
+        @Override
+        public void deliver(String destination, List<Notification> notifications) throws IOException {
+            CountDownLatch gate = gates.get(destination);
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    throw new IOException("Interrupted.");
+                }
+            }
+            if (failuresLeft.getOrDefault(destination, 0) > 0) {
+                failuresLeft.merge(destination, -1, Integer::sum);
+                throw new IOException("Destination unavailable.");
+            }
+            record(destination, notifications);
+        }
+
+        synchronized void record(String destination, List<Notification> notifications) {
+            batches.computeIfAbsent(destination, key -> new ArrayList<>()).add(new ArrayList<>(notifications));
+        }
+
+        synchronized List<Notification> received(String destination) {
+            List<Notification> received = new ArrayList<>();
+            for (List<Notification> batch : batches.getOrDefault(destination, List.of())) {
+                received.addAll(batch);
+            }
+            return received;
+        }
+    }
+
+    private NotificationDispatcher.Builder builder() {
+        return new NotificationDispatcher.Builder(endpoint, directory)
+                .backoff(Duration.ofMillis(5), Duration.ofMillis(20));
+    }
+
+    private NotificationDispatcher open(NotificationDispatcher.Builder builder) throws IOException {
+        NotificationDispatcher dispatcher = builder.build();
+        dispatcher.register("alice", "hook://alice");
+        dispatcher.register("bob", "hook://bob");
+        dispatcher.register("carol", "hook://carol");
+        dispatcher.subscribeTo(bank.getEventStream());
+        return dispatcher;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Timed out waiting for notifications.");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Tests that received transfers and declined withdrawals are sent to the
+     * right destinations, in order and in batches no larger than the limit.
+     */
+    @Test
+    public void testBatchesPerDestination() throws Exception {
+        try (NotificationDispatcher dispatcher = open(builder().maxBatchSize(3))) {
+            BankAccount alice = bank.getUser("alice").getCurrentAccount();
+            for (int i = 0; i < 7; i++) {
+                assertTrue(bank.transferFunds("bob", "alice", 10));
+            }
+            assertThrows(IllegalArgumentException.class, () -> alice.withdraw(50_000));
+            assertTrue(bank.transferFunds("alice", "bob", 5));
+            await(() -> dispatcher.getDeliveredCount() == 9);
+
+            List<Notification> toAlice = endpoint.received("hook://alice");
+            assertEquals(8, toAlice.size());
+            for (int i = 0; i < 7; i++) {
+                assertEquals(Notification.Kind.TRANSFER_RECEIVED, toAlice.get(i).getKind());
+                assertEquals(10.0, toAlice.get(i).getAmount());
+            }
+            assertEquals(Notification.Kind.WITHDRAWAL_DECLINED, toAlice.get(7).getKind());
+            assertEquals(alice.getId(), toAlice.get(7).getAccountId());
+            for (int i = 1; i < toAlice.size(); i++) {
+                assertTrue(toAlice.get(i).getId() > toAlice.get(i - 1).getId());
+            }
+            synchronized (endpoint) {
+                for (List<Notification> batch : endpoint.batches.get("hook://alice")) {
+                    assertTrue(batch.size() <= 3);
+                }
+            }
+            List<Notification> toBob = endpoint.received("hook://bob");
+            assertEquals(1, toBob.size());
+            assertEquals("bob", toBob.get(0).getUsername());
+            assertTrue(endpoint.received("hook://carol").isEmpty());
+            assertEquals(0, dispatcher.getPendingCount());
+        }
+    }
+
+    /**
+     * Tests that failed deliveries are retried until they succeed, and given
+     * up on as dead letters after too many attempts.
+     */
+    @Test
+    public void testRetriesAndDeadLetters() throws Exception {
+        endpoint.failuresLeft.put("hook://alice", 2);
+        endpoint.failuresLeft.put("hook://carol", Integer.MAX_VALUE);
+        try (NotificationDispatcher dispatcher = open(builder().maxAttempts(3))) {
+            assertTrue(bank.transferFunds("bob", "alice", 10));
+            assertTrue(bank.transferFunds("bob", "carol", 20));
+            await(() -> dispatcher.getDeliveredCount() == 1 && dispatcher.getDeadLetters().size() == 1);
+
+            assertEquals(1, endpoint.received("hook://alice").size());
+            assertEquals(2 + 3, dispatcher.getFailedDeliveryCount());
+            assertEquals("carol", dispatcher.getDeadLetters().get(0).getUsername());
+            assertEquals(0, dispatcher.getPendingCount());
+
+            // Carol's later notifications are still attempted.
+            endpoint.failuresLeft.put("hook://carol", 0);
+            assertTrue(bank.transferFunds("bob", "carol", 30));
+            await(() -> endpoint.received("hook://carol").size() == 1);
+            assertEquals(30.0, endpoint.received("hook://carol").get(0).getAmount());
+        }
+    }
+
+    /**
+     * Tests that undelivered notifications are sent after the dispatcher is
+     * reopened over the same queue, and new ones continue their numbering.
+     */
+    @Test
+    public void testQueueSurvivesRestart() throws Exception {
+        endpoint.failuresLeft.put("hook://alice", Integer.MAX_VALUE);
+        NotificationDispatcher.Builder failing = builder().backoff(Duration.ofHours(1), Duration.ofHours(1));
+        List<Long> ids = new ArrayList<>();
+        try (NotificationDispatcher dispatcher = open(failing)) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(bank.transferFunds("bob", "alice", 1 + i));
+            }
+            await(() -> dispatcher.getPendingCount() == 4);
+        }
+        assertTrue(endpoint.received("hook://alice").isEmpty());
+
+        endpoint.failuresLeft.clear();
+        try (NotificationDispatcher dispatcher = open(builder())) {
+            await(() -> dispatcher.getDeliveredCount() == 4);
+            for (Notification notification : endpoint.received("hook://alice")) {
+                ids.add(notification.getId());
+            }
+            assertEquals(4.0, endpoint.received("hook://alice").get(3).getAmount());
+
+            assertTrue(bank.transferFunds("bob", "alice", 9));
+            await(() -> dispatcher.getDeliveredCount() == 5);
+            assertTrue(endpoint.received("hook://alice").get(4).getId() > ids.get(3));
+        }
+        try (NotificationDispatcher dispatcher = open(builder())) {
+            assertEquals(0, dispatcher.getPendingCount());
+        }
+    }
+
+    /**
+     * Tests that notification IDs keep rising after a restart over a fully
+     * drained queue, and that dead letters are kept until cleared.
+     */
+    @Test
+    public void testIdsAndDeadLettersSurviveRestart() throws Exception {
+        endpoint.failuresLeft.put("hook://carol", Integer.MAX_VALUE);
+        long lastId;
+        try (NotificationDispatcher dispatcher = open(builder().maxAttempts(1))) {
+            assertTrue(bank.transferFunds("bob", "alice", 10));
+            assertTrue(bank.transferFunds("bob", "carol", 20));
+            await(() -> dispatcher.getDeliveredCount() == 1 && dispatcher.getDeadLetters().size() == 1);
+            lastId = dispatcher.getDeadLetters().get(0).getId();
+        }
+
+        try (NotificationDispatcher dispatcher = open(builder())) {
+            assertEquals(0, dispatcher.getPendingCount());
+            assertEquals(1, dispatcher.getDeadLetters().size());
+            assertEquals("carol", dispatcher.getDeadLetters().get(0).getUsername());
+            assertTrue(bank.transferFunds("bob", "alice", 30));
+            await(() -> endpoint.received("hook://alice").size() == 2);
+            assertTrue(endpoint.received("hook://alice").get(1).getId() > lastId);
+            assertEquals(1, dispatcher.clearDeadLetters());
+        }
+
+        try (NotificationDispatcher dispatcher = open(builder())) {
+            assertTrue(dispatcher.getDeadLetters().isEmpty());
+        }
+    }
+
+    /**
+     * Tests that a destination that never answers holds up neither other
+     * destinations nor the bank.
+     */
+    @Test
+    public void testSlowDestinationIsIsolated() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        endpoint.gates.put("hook://carol", gate);
+        try (NotificationDispatcher dispatcher = open(builder().deliveryThreads(2))) {
+            for (int i = 0; i < 20; i++) {
+                assertTrue(bank.transferFunds("alice", "carol", 1));
+                assertTrue(bank.transferFunds("carol", "bob", 1));
+            }
+            await(() -> endpoint.received("hook://bob").size() == 20);
+            assertTrue(endpoint.received("hook://carol").isEmpty());
+            assertTrue(dispatcher.getPendingCount() > 0);
+
+            gate.countDown();
+            await(() -> dispatcher.getDeliveredCount() == 40);
+            assertEquals(20, endpoint.received("hook://carol").size());
+        }
+    }
+
+    /**
+     * Tests that events are not taken while their notifications cannot be
+     * stored, that they are read again once the store accepts them, and
+     * that the dispatcher stops visibly when it never does.
+     */
+    @Test
+    public void testStoreFailureRetriesThenStops() throws Exception {
+        // Too long to be stored, so queueing alice's notifications fails.
+        String unstorable = "hook://" + "a".repeat(70_000);
+        try (NotificationDispatcher dispatcher = open(builder().maxAttempts(1_000))) {
+            dispatcher.register("alice", unstorable);
+            assertTrue(bank.transferFunds("bob", "alice", 10));
+            assertTrue(bank.transferFunds("alice", "bob", 5));
+            await(() -> dispatcher.getFailure() instanceof IOException);
+            assertEquals(0, dispatcher.getPendingCount());
+            assertTrue(endpoint.received("hook://bob").isEmpty());
+
+            dispatcher.register("alice", "hook://alice");
+            await(() -> dispatcher.getDeliveredCount() == 2);
+            assertEquals(1, endpoint.received("hook://alice").size());
+            assertEquals(10.0, endpoint.received("hook://alice").get(0).getAmount());
+            assertEquals(1, endpoint.received("hook://bob").size());
+            assertFalse(dispatcher.isStopped());
+        }
+
+        try (NotificationDispatcher dispatcher = open(builder().maxAttempts(2))) {
+            dispatcher.register("alice", unstorable);
+            assertTrue(bank.transferFunds("bob", "alice", 20));
+            await(dispatcher::isStopped);
+            assertTrue(dispatcher.getFailure() instanceof IOException);
+
+            dispatcher.register("alice", "hook://alice");
+            assertTrue(bank.transferFunds("carol", "bob", 30));
+            Thread.sleep(100);
+            assertEquals(1, endpoint.received("hook://bob").size());
+            assertEquals(1, endpoint.received("hook://alice").size());
+        }
+    }
+
+    /**
+     * Tests that a reopened dispatcher picks up the events it missed while
+     * closed, and skips past those the journal no longer retains.
+     */
+    @Test
+    public void testResumesAfterStoredSequence() throws Exception {
+        try (NotificationDispatcher dispatcher = open(builder())) {
+            assertTrue(bank.transferFunds("bob", "alice", 1));
+            await(() -> dispatcher.getDeliveredCount() == 1);
+        }
+        assertTrue(bank.transferFunds("bob", "alice", 2));
+        try (NotificationDispatcher dispatcher = open(builder())) {
+            await(() -> dispatcher.getDeliveredCount() == 1);
+            assertEquals(2.0, endpoint.received("hook://alice").get(1).getAmount());
+            assertNull(dispatcher.getFailure());
+        }
+
+        assertTrue(bank.transferFunds("bob", "alice", 3));
+        MutationJournal journal = bank.getJournal();
+        journal.truncateThrough(journal.headSequence());
+        try (NotificationDispatcher dispatcher = open(builder())) {
+            await(() -> dispatcher.getFailure() instanceof IllegalStateException);
+            assertTrue(bank.transferFunds("bob", "alice", 4));
+            await(() -> dispatcher.getDeliveredCount() == 1);
+            assertEquals(3, endpoint.received("hook://alice").size());
+            assertEquals(4.0, endpoint.received("hook://alice").get(2).getAmount());
+            assertFalse(dispatcher.isStopped());
+        }
+    }
+}
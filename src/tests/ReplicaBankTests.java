@@ -0,0 +1,274 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bankapp.Admin;
+import bankapp.Bank;
+import bankapp.BankClock;
+import bankapp.JournalServer;
+import bankapp.LedgerEvent;
+import bankapp.LedgerEventType;
+import bankapp.MutationJournal;
+import bankapp.ReplicaBank;
+import bankapp.SavingsAccount;
+import bankapp.SocketReplicationSource;
+import bankapp.User;
+
+/**
+ * Unit tests for {@link ReplicaBank}, which maintains a read-only copy of a
+ * {@link Bank} by tailing its mutation journal.
+ */
+public class ReplicaBankTests {
+
+    private Bank bank;
+    private User alice;
+    private User bob;
+
+    @BeforeEach
+    void setup() throws NoSuchAlgorithmException {
+        bank = new Bank();
+        bank.registerUser("alice", "pass1");
+        bank.registerUser("bob", "pass2");
+        bank.registerUser(new Admin("owner", "adminPass"));
+        alice = bank.getUser("alice");
+        bob = bank.getUser("bob");
+    }
+
+    /**
+     * Tests that users, admins and balances are replicated in-process.
+     */
+    @Test
+    public void testReplicaMirrorsUsersAndBalances() throws InterruptedException {
+        alice.getCurrentAccount().deposit(200.0);
+        bob.getCurrentAccount().deposit(50.0);
+        bob.getCurrentAccount().withdraw(20.0);
+
+        ReplicaBank replica = new ReplicaBank(bank.getJournal());
+        replica.catchUp();
+
+        assertEquals(3, replica.getUsernames().size());
+        assertTrue(replica.isAdmin("owner"));
+        assertFalse(replica.isAdmin("alice"));
+        assertEquals(200.0, replica.getUserBalance("alice"), 0.001);
+        assertEquals(30.0, replica.getUserBalance("bob"), 0.001);
+        assertEquals(230.0, replica.getSystemBalance(), 0.001);
+        assertEquals(3, replica.getAllTransactions().size());
+        assertEquals(0, replica.getLagInEvents());
+    }
+
+    /**
+     * Tests that a transfer is replicated as a single event moving money
+     * between both accounts.
+     */
+    @Test
+    public void testTransferIsReplicatedAtomically() throws InterruptedException {
+        alice.getCurrentAccount().deposit(100.0);
+        bank.transferFunds("alice", "bob", 40.0);
+
+        ReplicaBank replica = new ReplicaBank(bank.getJournal());
+        replica.catchUp();
+
+        assertEquals(60.0, replica.getUserBalance("alice"), 0.001);
+        assertEquals(40.0, replica.getUserBalance("bob"), 0.001);
+        assertEquals(LedgerEventType.TRANSFER, replica.getAllTransactions().get(1).getType());
+    }
+
+    /**
+     * Tests that accounts opened and closed after registration are tracked,
+     * and that lag is reported until the replica catches up.
+     */
+    @Test
+    public void testAccountLifecycleAndLag() throws InterruptedException {
+        ReplicaBank replica = new ReplicaBank(bank.getJournal());
+        replica.catchUp();
+
+        SavingsAccount savings = new SavingsAccount();
+        alice.addAccount(savings);
+        savings.deposit(500.0);
+        assertEquals(2, replica.getLagInEvents());
+
+        replica.catchUp();
+        assertEquals(500.0, replica.getAccountBalance(savings.getId()), 0.001);
+        assertEquals("SavingsAccount", replica.getAccountType(savings.getId()));
+
+        alice.removeAccount(savings.getId());
+        replica.catchUp();
+        assertEquals(0.0, replica.getUserBalance("alice"), 0.001);
+        assertEquals(1, replica.getAccountIds("alice").size());
+    }
+
+    /**
+     * Tests that a replica can follow the journal over a local socket.
+     */
+    @Test
+    public void testReplicaFollowsOverSocket() throws Exception {
+        alice.getCurrentAccount().deposit(75.0);
+        try (JournalServer server = new JournalServer(bank.getJournal(), 0)) {
+            server.start();
+            try (SocketReplicationSource source = new SocketReplicationSource("localhost", server.getPort(), 0);
+                    ReplicaBank replica = new ReplicaBank(source)) {
+                replica.start();
+                bank.transferFunds("alice", "bob", 25.0);
+
+                long deadline = System.currentTimeMillis() + 5000;
+                while (replica.getAppliedSequence() < bank.getJournal().headSequence()
+                        && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertEquals(bank.getJournal().headSequence(), replica.getAppliedSequence());
+                assertEquals(50.0, replica.getUserBalance("alice"), 0.001);
+                assertEquals(25.0, replica.getUserBalance("bob"), 0.001);
+            }
+        }
+    }
+
+    /**
+     * Tests that the journal keeps only its newest events, plus those a
+     * registered replica has not applied yet, and lets them go once it has.
+     */
+    @Test
+    public void testJournalRetentionFollowsReplicas() throws InterruptedException {
+        MutationJournal journal = new MutationJournal(BankClock.system(), 8);
+        UUID account = UUID.randomUUID();
+        ReplicaBank replica = new ReplicaBank(journal);
+        for (int i = 0; i < 100; i++) {
+            journal.append(LedgerEvent.balanceChange(LedgerEventType.DEPOSIT, "alice", account, 1));
+        }
+        assertEquals(100, journal.readAfter(0, 1_000).size());
+
+        replica.catchUp();
+        journal.append(LedgerEvent.balanceChange(LedgerEventType.DEPOSIT, "alice", account, 1));
+        assertTrue(journal.size() < 16, "Retained " + journal.size() + " events.");
+
+        replica.close();
+        for (int i = 0; i < 100; i++) {
+            journal.append(LedgerEvent.balanceChange(LedgerEventType.DEPOSIT, "alice", account, 1));
+        }
+        assertTrue(journal.size() < 16, "Retained " + journal.size() + " events.");
+        assertThrows(IllegalStateException.class, () -> journal.readAfter(0, 1));
+    }
+
+    /**
+     * Tests that a replica whose events were let go before it read them
+     * stops and reports why, rather than its follower dying silently.
+     */
+    @Test
+    public void testFollowerFailureIsReported() throws InterruptedException {
+        MutationJournal journal = new MutationJournal(BankClock.system(), 8);
+        UUID account = UUID.randomUUID();
+        for (int i = 0; i < 100; i++) {
+            journal.append(LedgerEvent.balanceChange(LedgerEventType.DEPOSIT, "alice", account, 1));
+        }
+        ReplicaBank replica = new ReplicaBank(journal);
+        replica.start();
+        for (int i = 0; i < 500 && !replica.isFailed(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(replica.getFailure() instanceof IllegalStateException);
+        assertThrows(IllegalStateException.class, replica::catchUp);
+        replica.close();
+    }
+
+    /**
+     * Tests that a replica started from a snapshot matches the primary once
+     * caught up, even when the journal no longer holds the bank's early
+     * events and transfers run while the snapshot is taken.
+     */
+    @Test
+    public void testStartsFromSnapshot() throws InterruptedException {
+        alice.getCurrentAccount().deposit(10_000);
+        bob.getCurrentAccount().deposit(10_000);
+        assertThrows(IllegalArgumentException.class, () -> bob.getCurrentAccount().withdraw(1_000_000));
+        MutationJournal journal = bank.getJournal();
+        journal.truncateThrough(journal.headSequence());
+
+        Thread[] threads = new Thread[2];
+        for (int t = 0; t < threads.length; t++) {
+            String from = t == 0 ? "alice" : "bob";
+            String to = t == 0 ? "bob" : "alice";
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    bank.transferFunds(from, to, 1 + i % 5);
+                    if (i % 100 == 0) {
+                        bank.transferFunds(from, to, 1_000_000);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        ReplicaBank replica = ReplicaBank.fromSnapshot(bank);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        replica.catchUp();
+        assertFalse(replica.isFailed());
+
+        assertEquals(20_000, replica.getSystemBalance(), 1e-6);
+        assertEquals(alice.getCurrentAccount().getCurrentBalance(), replica.getUserBalance("alice"), 1e-6);
+        assertEquals(bob.getCurrentAccount().getCurrentBalance(),
+                replica.getAccountBalance(bob.getCurrentAccount().getId()), 1e-6);
+        assertTrue(replica.isAdmin("owner"));
+        assertEquals(alice.getCurrentAccount().getFailedTransactionLog().size()
+                + bob.getCurrentAccount().getFailedTransactionLog().size(), replica.getFailedWithdrawalCount());
+
+        SavingsAccount savings = new SavingsAccount(0.01);
+        alice.addAccount(savings);
+        savings.deposit(50);
+        replica.catchUp();
+        assertEquals(20_050, replica.getSystemBalance(), 1e-6);
+        assertEquals(0, replica.getLagInEvents());
+        replica.close();
+    }
+
+    /**
+     * Tests that ordered listeners see every event in sequence order, outside
+     * the journal lock, before the append returns.
+     */
+    @Test
+    public void testOrderedListenersRunOutsideJournalLock() throws InterruptedException {
+        MutationJournal journal = bank.getJournal();
+        List<Long> seen = new ArrayList<>();
+        AtomicBoolean underLock = new AtomicBoolean();
+        journal.addOrderedListener(event -> {
+            underLock.compareAndSet(false, Thread.holdsLock(journal));
+            synchronized (seen) {
+                seen.add(event.getSequence());
+            }
+        });
+        long first = journal.headSequence() + 1;
+        AtomicBoolean late = new AtomicBoolean();
+        UUID account = alice.getCurrentAccount().getId();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    long sequence = journal.append(
+                            LedgerEvent.balanceChange(LedgerEventType.FAILED_WITHDRAWAL, "alice", account, 1))
+                            .getSequence();
+                    synchronized (seen) {
+                        late.compareAndSet(false, !seen.contains(sequence));
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertFalse(underLock.get(), "An ordered listener ran under the journal lock.");
+        assertFalse(late.get(), "An append returned before its event was delivered.");
+        assertEquals(Integer.valueOf(800), Integer.valueOf(seen.size()));
+        for (int i = 0; i < seen.size(); i++) {
+            assertEquals(Long.valueOf(first + i), seen.get(i));
+        }
+    }
+}
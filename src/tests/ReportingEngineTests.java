@@ -0,0 +1,132 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import bankapp.Bank;
+import bankapp.BankAccount;
+import bankapp.BankClock;
+import bankapp.BankReport;
+import bankapp.CheckingsAccount;
+import bankapp.CurrencyTotals;
+import bankapp.ReportingEngine;
+import bankapp.SavingsAccount;
+import bankapp.User;
+
+/**
+ * Unit tests for {@link ReportingEngine} and the {@link BankReport}s it produces.
+ */
+public class ReportingEngineTests {
+
+    private static final Currency USD = BankAccount.DEFAULT_CURRENCY;
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    /**
+     * Tests per-user totals, top-N ordering, histograms and failed-withdrawal rates.
+     */
+    @Test
+    public void testReportFigures() {
+        Bank bank = new Bank();
+        bank.registerUser("alice", "pass1");
+        bank.registerUser("bob", "pass2");
+        User alice = bank.getUser("alice");
+        User bob = bank.getUser("bob");
+        alice.getCurrentAccount().deposit(500);
+        SavingsAccount savings = new SavingsAccount(0.01);
+        alice.addAccount(savings);
+        savings.deposit(20_000);
+        bob.getCurrentAccount().deposit(50);
+        bob.getCurrentAccount().withdraw(10);
+        assertThrows(IllegalArgumentException.class, () -> bob.getCurrentAccount().withdraw(1_000));
+
+        BankReport report = new ReportingEngine(bank).run(2);
+
+        assertEquals(20_500, report.getUserTotals().get("alice").getAmount(USD), 0.001);
+        assertEquals(40, report.getUserTotals().get("bob").getAmount(USD), 0.001);
+
+        List<BankReport.AccountEntry> top = report.getTopAccounts(USD);
+        assertEquals(2, top.size());
+        assertEquals(savings.getId(), top.get(0).getAccountId());
+        assertEquals("alice", top.get(1).getOwner());
+
+        // Buckets: <0, <100, <1k, <10k, <100k, rest.
+        assertArrayEquals(new long[] { 0, 1, 1, 0, 0, 0 }, report.getHistogram(USD, "CheckingsAccount"));
+        assertArrayEquals(new long[] { 0, 0, 0, 0, 1, 0 }, report.getHistogram(USD, "SavingsAccount"));
+
+        assertEquals(1, report.getFailedWithdrawals());
+        assertEquals(0.5, report.getFailedWithdrawalRate(), 0.001);
+        assertEquals(0.5, report.getFailedWithdrawalRate("CheckingsAccount"), 0.001);
+        assertEquals(0, report.getFailedWithdrawalRate("SavingsAccount"), 0.001);
+    }
+
+    /**
+     * Tests that a report over enough users to split across tasks matches a
+     * sequential computation.
+     */
+    @Test
+    public void testParallelMatchesSequential() {
+        Bank bank = new Bank();
+        double expectedTotal = 0;
+        for (int i = 0; i < 2_000; i++) {
+            bank.registerUser("user" + i, "pass");
+            bank.getUser("user" + i).getCurrentAccount().deposit(i);
+            expectedTotal += i;
+        }
+        BankReport report = new ReportingEngine(bank, new ForkJoinPool(4)).run(10);
+
+        double total = 0;
+        for (CurrencyTotals userTotal : report.getUserTotals().values()) {
+            total += userTotal.getAmount(USD);
+        }
+        assertEquals(expectedTotal, total, 0.001);
+        assertEquals(2_000, report.getUserTotals().size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1_999 - i, report.getTopAccounts(USD).get(i).getBalance(), 0.001);
+        }
+        long accounts = 0;
+        for (long count : report.getHistogram(USD, "CheckingsAccount")) {
+            accounts += count;
+        }
+        assertEquals(2_000, accounts);
+    }
+
+    /**
+     * Tests that balances in different currencies are totalled, ranked and
+     * bucketed separately.
+     */
+    @Test
+    public void testCurrenciesReportedSeparately() {
+        Bank bank = new Bank();
+        bank.registerUser("alice", "pass1");
+        User alice = bank.getUser("alice");
+        alice.getCurrentAccount().deposit(500);
+        CheckingsAccount euros = new CheckingsAccount(BankClock.system(), EUR);
+        alice.addAccount(euros);
+        euros.deposit(2_000);
+
+        BankReport report = new ReportingEngine(bank).run(5);
+
+        assertEquals(500, report.getUserTotals().get("alice").getAmount(USD), 0.001);
+        assertEquals(2_000, report.getUserTotals().get("alice").getAmount(EUR), 0.001);
+        assertEquals(2, report.getCurrencies().size());
+        assertEquals(1, report.getTopAccounts(USD).size());
+        assertEquals(euros.getId(), report.getTopAccounts(EUR).get(0).getAccountId());
+        assertArrayEquals(new long[] { 0, 0, 1, 0, 0, 0 }, report.getHistogram(USD, "CheckingsAccount"));
+        assertArrayEquals(new long[] { 0, 0, 0, 1, 0, 0 }, report.getHistogram(EUR, "CheckingsAccount"));
+    }
+
+    /**
+     * Tests that invalid report parameters are rejected.
+     */
+    @Test
+    public void testInvalidParameters() {
+        ReportingEngine engine = new ReportingEngine(new Bank());
+        assertThrows(IllegalArgumentException.class, () -> engine.run(-1));
+        assertThrows(IllegalArgumentException.class, () -> engine.run(3, new double[] { 10, 5 }));
+    }
+}
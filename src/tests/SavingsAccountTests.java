@@ -3,6 +3,8 @@ package tests;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.BeforeEach;
+import bankapp.InterestMode;
+import bankapp.ManualClock;
 import bankapp.SavingsAccount;
 
 /**
@@ -117,4 +119,29 @@ public class SavingsAccountTests {
         account.accrueInterest();
         assertEquals(0.0, account.getCurrentBalance(), 0.001);
     }
+
+    /**
+     * Tests that average-daily-balance interest pays only for the time money was held.
+     */
+    @Test
+    public void testAverageDailyBalanceInterest() {
+        ManualClock clock = new ManualClock(1_700_000_000_000L);
+        SavingsAccount savings = new SavingsAccount(0.01, clock);
+        savings.setInterestMode(InterestMode.AVERAGE_DAILY_BALANCE);
+
+        // 1000 held for 20 days, then 4000 more deposited for the last 10 days.
+        savings.deposit(1000.0);
+        clock.advance(20 * 86_400_000L);
+        savings.deposit(4000.0);
+        clock.advance(10 * 86_400_000L);
+
+        double average = (1000.0 * 20 + 5000.0 * 10) / 30;
+        assertEquals(average, savings.getAverageBalanceSinceLastAccrual(), 0.001);
+        savings.accrueInterest();
+        assertEquals(5000.0 + average * 0.01, savings.getCurrentBalance(), 0.001);
+
+        // The next period starts fresh from the new balance.
+        clock.advance(30 * 86_400_000L);
+        assertEquals(5000.0 + average * 0.01, savings.getAverageBalanceSinceLastAccrual(), 0.001);
+    }
 }
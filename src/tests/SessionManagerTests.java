@@ -0,0 +1,120 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bankapp.Bank;
+import bankapp.BankAccount;
+import bankapp.CheckingsAccount;
+import bankapp.ManualClock;
+import bankapp.SessionManager;
+import bankapp.User;
+
+/**
+ * Unit tests for {@link SessionManager} and the session methods of {@link Bank}.
+ */
+public class SessionManagerTests {
+
+    private ManualClock clock;
+    private SessionManager sessions;
+    private User alice;
+
+    @BeforeEach
+    void setup() throws NoSuchAlgorithmException {
+        clock = new ManualClock(1_000_000L);
+        sessions = new SessionManager(clock, Duration.ofHours(1), Duration.ofMinutes(10), 3);
+        alice = new User("alice", "pass1");
+    }
+
+    /**
+     * Tests that a token resolves to its user until it is revoked.
+     */
+    @Test
+    public void testValidateAndRevoke() {
+        String token = sessions.open(alice);
+        assertSame(alice, sessions.validate(token));
+        assertTrue(sessions.revoke(token));
+        assertNull(sessions.validate(token));
+        assertFalse(sessions.revoke(token));
+        assertNull(sessions.validate(null));
+        assertEquals(1, sessions.getHitCount());
+        assertEquals(2, sessions.getMissCount());
+        assertEquals(1.0 / 3, sessions.getHitRate(), 0.001);
+    }
+
+    /**
+     * Tests that idle sessions expire while active ones last until their time-to-live.
+     */
+    @Test
+    public void testIdleAndTtlExpiry() {
+        String idle = sessions.open(alice);
+        String active = sessions.open(alice);
+        for (int i = 0; i < 5; i++) {
+            clock.advance(Duration.ofMinutes(9).toMillis());
+            assertSame(alice, sessions.validate(active));
+        }
+        assertNull(sessions.validate(idle));
+
+        clock.advance(Duration.ofMinutes(9).toMillis());
+        assertSame(alice, sessions.validate(active));
+        clock.advance(Duration.ofMinutes(9).toMillis());
+        assertNull(sessions.validate(active));
+        assertEquals(2, sessions.getExpirationCount());
+        assertEquals(0, sessions.size());
+    }
+
+    /**
+     * Tests that the oldest session is evicted when the cache is full.
+     */
+    @Test
+    public void testOldestEvictedWhenFull() {
+        String first = sessions.open(alice);
+        sessions.open(alice);
+        sessions.open(alice);
+        String fourth = sessions.open(alice);
+        assertEquals(3, sessions.size());
+        assertEquals(1, sessions.getEvictionCount());
+        assertNull(sessions.validate(first));
+        assertSame(alice, sessions.validate(fourth));
+    }
+
+    /**
+     * Tests that a sweep drops expired sessions that are never presented again.
+     */
+    @Test
+    public void testEvictExpired() {
+        sessions.open(alice);
+        sessions.open(alice);
+        clock.advance(Duration.ofMinutes(11).toMillis());
+        assertEquals(2, sessions.evictExpired());
+        assertEquals(0, sessions.size());
+    }
+
+    /**
+     * Tests bank login sessions, logout, and revocation when an account is closed.
+     */
+    @Test
+    public void testBankSessions() throws NoSuchAlgorithmException {
+        Bank bank = new Bank();
+        bank.registerUser("bob", "pass2");
+        assertNull(bank.loginForSession("bob", "wrong"));
+
+        String token = bank.loginForSession("bob", "pass2");
+        User bob = bank.authenticate(token);
+        assertNotNull(bob);
+        assertTrue(bank.logout(token));
+        assertNull(bank.authenticate(token));
+
+        BankAccount extra = new CheckingsAccount();
+        bob.addAccount(extra);
+        String other = bank.loginForSession("bob", "pass2");
+        assertSame(bob, bank.authenticate(other));
+        bob.removeAccount(extra.getId());
+        assertNull(bank.authenticate(other));
+    }
+}
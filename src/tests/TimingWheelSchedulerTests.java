@@ -0,0 +1,150 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bankapp.Bank;
+import bankapp.ManualClock;
+import bankapp.Recurrence;
+import bankapp.RecurringJobs;
+import bankapp.SavingsAccount;
+import bankapp.ScheduledJob;
+import bankapp.TimingWheelScheduler;
+
+/**
+ * Unit tests for {@link TimingWheelScheduler} and {@link RecurringJobs},
+ * driven deterministically by a {@link ManualClock}.
+ */
+public class TimingWheelSchedulerTests {
+
+    private static final long START = ZonedDateTime.of(2025, 1, 15, 9, 0, 0, 0, ZoneOffset.UTC)
+            .toInstant().toEpochMilli();
+
+    private ManualClock clock;
+    private TimingWheelScheduler scheduler;
+
+    @BeforeEach
+    void setup() {
+        clock = new ManualClock(START);
+        scheduler = new TimingWheelScheduler(clock, Duration.ofSeconds(1));
+    }
+
+    /**
+     * Tests that one-off jobs run once, in due order, and not before they are due.
+     */
+    @Test
+    public void testJobsRunWhenDue() {
+        List<String> runs = new ArrayList<>();
+        scheduler.schedule(() -> runs.add("late"), START + Duration.ofHours(5).toMillis());
+        scheduler.schedule(() -> runs.add("soon"), START + 1500);
+
+        clock.advance(1000);
+        assertEquals(0, scheduler.runPending());
+
+        clock.advance(1000);
+        assertEquals(1, scheduler.runPending());
+        clock.advance(Duration.ofDays(1).toMillis());
+        assertEquals(1, scheduler.runPending());
+        assertEquals(List.of("soon", "late"), runs);
+        assertEquals(0, scheduler.size());
+    }
+
+    /**
+     * Tests that cancelled jobs never run and are removed immediately.
+     */
+    @Test
+    public void testCancelledJobDoesNotRun() {
+        AtomicInteger runs = new AtomicInteger();
+        ScheduledJob job = scheduler.schedule(runs::incrementAndGet, START + Duration.ofDays(3).toMillis());
+        assertEquals(1, scheduler.size());
+        assertTrue(job.cancel());
+        assertFalse(job.cancel());
+        assertEquals(0, scheduler.size());
+
+        clock.advance(Duration.ofDays(4).toMillis());
+        scheduler.runPending();
+        assertEquals(0, runs.get());
+    }
+
+    /**
+     * Tests that a recurring job catches up on every occurrence it missed.
+     */
+    @Test
+    public void testRecurringJobCatchesUp() {
+        AtomicInteger runs = new AtomicInteger();
+        ScheduledJob job = scheduler.scheduleRecurring(runs::incrementAndGet, START + 60_000,
+                Recurrence.every(Duration.ofMinutes(1)));
+
+        clock.advance(Duration.ofMinutes(10).toMillis());
+        assertEquals(10, scheduler.runPending());
+        assertEquals(10, job.getRunCount());
+        assertEquals(START + Duration.ofMinutes(11).toMillis(), job.getDueMillis());
+    }
+
+    /**
+     * Tests that many jobs spread over a long horizon all fire exactly once.
+     */
+    @Test
+    public void testManyJobsAcrossLevels() {
+        AtomicInteger runs = new AtomicInteger();
+        int jobs = 20_000;
+        for (int i = 0; i < jobs; i++) {
+            scheduler.schedule(runs::incrementAndGet, START + (long) i * 7_919_000L);
+        }
+        for (int day = 0; day < 2000 && runs.get() < jobs; day += 30) {
+            clock.advance(Duration.ofDays(30).toMillis());
+            scheduler.runPending();
+        }
+        assertEquals(jobs, runs.get());
+        assertEquals(0, scheduler.size());
+    }
+
+    /**
+     * Tests monthly interest accrual and a standing transfer through the bank.
+     */
+    @Test
+    public void testMonthlyInterestAndStandingTransfer() {
+        SavingsAccount savings = new SavingsAccount(0.01, clock);
+        savings.deposit(1000.0);
+        RecurringJobs.scheduleInterest(scheduler, savings, START, Recurrence.monthly(START, ZoneOffset.UTC));
+
+        Bank bank = new Bank();
+        bank.registerUser("alice", "pass1");
+        bank.registerUser("bob", "pass2");
+        bank.getUser("alice").getCurrentAccount().deposit(100.0);
+        RecurringJobs.scheduleStandingTransfer(scheduler, bank, "alice", "bob", 10.0, START,
+                Recurrence.monthly(START, ZoneOffset.UTC));
+
+        clock.setTime(ZonedDateTime.of(2025, 3, 15, 9, 0, 0, 0, ZoneOffset.UTC).toInstant().toEpochMilli());
+        scheduler.runPending();
+
+        assertEquals(1030.301, savings.getCurrentBalance(), 0.001);
+        assertEquals(30.0, bank.getUser("bob").getCurrentAccount().getCurrentBalance(), 0.001);
+    }
+
+    /**
+     * Tests that a monthly recurrence returns to its original day after
+     * being clamped to the end of a shorter month.
+     */
+    @Test
+    public void testMonthlyKeepsOriginalDay() {
+        long first = ZonedDateTime.of(2025, 1, 31, 9, 0, 0, 0, ZoneOffset.UTC).toInstant().toEpochMilli();
+        Recurrence monthly = Recurrence.monthly(first, ZoneOffset.UTC);
+
+        long february = monthly.nextRunAfter(first);
+        long march = monthly.nextRunAfter(february);
+        long april = monthly.nextRunAfter(march);
+        assertEquals(ZonedDateTime.of(2025, 2, 28, 9, 0, 0, 0, ZoneOffset.UTC).toInstant().toEpochMilli(), february);
+        assertEquals(ZonedDateTime.of(2025, 3, 31, 9, 0, 0, 0, ZoneOffset.UTC).toInstant().toEpochMilli(), march);
+        assertEquals(ZonedDateTime.of(2025, 4, 30, 9, 0, 0, 0, ZoneOffset.UTC).toInstant().toEpochMilli(), april);
+    }
+}
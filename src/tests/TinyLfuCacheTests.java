@@ -0,0 +1,177 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import bankapp.TinyLfuCache;
+
+/**
+ * Unit tests for {@link TinyLfuCache}.
+ */
+public class TinyLfuCacheTests {
+
+    /**
+     * Tests that lookups are counted as hits and misses.
+     */
+    @Test
+    public void testHitAndMissCounts() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100, value -> 1);
+        assertNull(cache.get("a"));
+        cache.put("a", "alpha");
+        assertEquals("alpha", cache.get("a"));
+        assertEquals("alpha", cache.get("a"));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2.0 / 3, cache.getHitRate(), 0.0001);
+
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+        assertThrows(IllegalArgumentException.class, () -> new TinyLfuCache<String, String>(0, value -> 1));
+    }
+
+    /**
+     * Tests that the cache never holds more than its maximum weight.
+     */
+    @Test
+    public void testBoundedByWeight() {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(1_000, value -> value % 10 + 1);
+        for (int i = 0; i < 10_000; i++) {
+            cache.put(i, i);
+            assertTrue(cache.getWeight() <= 1_000);
+        }
+        assertTrue(cache.getEvictionCount() + cache.getRejectionCount() > 0);
+
+        TinyLfuCache<String, Integer> small = new TinyLfuCache<>(100, value -> value);
+        small.put("big", 500);
+        assertNull(small.get("big"));
+        assertEquals(1, small.getRejectionCount());
+    }
+
+    /**
+     * Tests that replacing a value with a heavier one re-weighs the entry.
+     */
+    @Test
+    public void testReplacingReweighs() {
+        TinyLfuCache<String, Integer> cache = new TinyLfuCache<>(100, value -> value);
+        cache.put("a", 10);
+        cache.put("b", 10);
+        assertEquals(20, cache.getWeight());
+        cache.put("a", 30);
+        assertEquals(40, cache.getWeight());
+        assertEquals(Integer.valueOf(30), cache.get("a"));
+    }
+
+    /**
+     * Tests that a value growing in place is weighed again on request,
+     * and evicted once it no longer fits.
+     */
+    @Test
+    public void testReweighsValueThatGrew() {
+        TinyLfuCache<String, int[]> cache = new TinyLfuCache<>(100, value -> value[0]);
+        int[] a = { 10 };
+        cache.put("a", a);
+        cache.put("b", new int[] { 10 });
+        a[0] = 30;
+        assertEquals(20, cache.getWeight());
+        cache.reweigh("a");
+        assertEquals(40, cache.getWeight());
+        cache.reweigh("missing");
+
+        a[0] = 500;
+        cache.reweigh("a");
+        assertTrue(cache.getWeight() <= 100);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getHitCount());
+    }
+
+    /**
+     * Tests that frequently used entries survive a scan of many keys that are
+     * each used once.
+     */
+    @Test
+    public void testFrequentEntriesSurviveScan() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(200, value -> 1);
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 100; i++) {
+                if (cache.get("hot" + i) == null) {
+                    cache.put("hot" + i, "hot");
+                }
+            }
+        }
+        for (int i = 0; i < 10_000; i++) {
+            if (cache.get("cold" + i) == null) {
+                cache.put("cold" + i, "cold");
+            }
+        }
+        int survivors = 0;
+        for (int i = 0; i < 100; i++) {
+            if (cache.get("hot" + i) != null) {
+                survivors++;
+            }
+        }
+        assertTrue(survivors >= 95, "only " + survivors + " hot entries survived");
+        assertTrue(cache.getRejectionCount() > 9_000);
+    }
+
+    /**
+     * Tests that an entry leaving the window is judged against the first
+     * entry it would displace only, so it is never turned away after other
+     * entries were already evicted to make room for it.
+     */
+    @Test
+    public void testAdmissionDecidedBeforeEvicting() {
+        TinyLfuCache<String, Integer> cache = new TinyLfuCache<>(100, value -> value);
+        cache.put("cold", 1);
+        cache.put("hot", 98);
+        for (int i = 0; i < 4; i++) {
+            cache.get("hot");
+        }
+        cache.put("candidate", 1);
+        cache.get("candidate");
+        cache.get("candidate");
+
+        // The heavy newcomer pushes the candidate out of the window; making
+        // room for it takes both the cold entry and the hot one.
+        cache.put("heavy", 50);
+        assertEquals(0, cache.getRejectionCount());
+        assertEquals(2, cache.getEvictionCount());
+        assertEquals(Integer.valueOf(1), cache.get("candidate"));
+        assertNull(cache.get("cold"));
+        assertTrue(cache.getWeight() <= 100);
+    }
+
+    /**
+     * Tests that lookups from many threads while entries are added keep the
+     * cache within its weight and every value matching its key.
+     */
+    @Test
+    public void testConcurrentLookups() throws InterruptedException {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(500, value -> 1);
+        AtomicBoolean wrong = new AtomicBoolean();
+        Thread[] readers = new Thread[4];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(() -> {
+                for (int i = 0; i < 200_000; i++) {
+                    Integer value = cache.get(i % 1_000);
+                    if (value != null && value != i % 1_000) {
+                        wrong.set(true);
+                    }
+                }
+            });
+            readers[t].start();
+        }
+        for (int i = 0; i < 20_000; i++) {
+            cache.put(i % 1_000, i % 1_000);
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertFalse(wrong.get());
+        assertTrue(cache.getWeight() <= 500);
+        assertEquals(800_000, cache.getHitCount() + cache.getMissCount());
+    }
+}
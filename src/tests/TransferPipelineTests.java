@@ -0,0 +1,214 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bankapp.Bank;
+import bankapp.LimitRule;
+import bankapp.LimitWindow;
+import bankapp.ManualClock;
+import bankapp.Recurrence;
+import bankapp.RecurringJobs;
+import bankapp.TimingWheelScheduler;
+import bankapp.TransferPipeline;
+import bankapp.TransferStage;
+import bankapp.TransferVerdict;
+import bankapp.VelocityScoringStage;
+
+/**
+ * Unit tests for the {@link TransferPipeline} and {@link VelocityScoringStage}.
+ */
+public class TransferPipelineTests {
+
+    private ManualClock clock;
+    private Bank bank;
+
+    @BeforeEach
+    void setup() {
+        clock = new ManualClock(1_000_000_000L);
+        bank = new Bank(clock);
+        bank.registerUser("alice", "pass1");
+        bank.registerUser("bob", "pass2");
+        bank.registerUser("carol", "pass3");
+        bank.getUser("alice").getCurrentAccount().deposit(100_000);
+    }
+
+    private double balance(String username) {
+        return bank.getUser(username).getCurrentAccount().getCurrentBalance();
+    }
+
+    /**
+     * Tests that a blocking stage stops a transfer before any money moves,
+     * and that an empty pipeline allows everything.
+     */
+    @Test
+    public void testBlockingStageStopsTransfer() {
+        assertTrue(bank.transferFunds("alice", "bob", 10));
+        TransferStage blockLarge = request -> request.getAmount() > 500
+                ? new TransferVerdict(TransferVerdict.Action.BLOCK, 100, List.of("too large"))
+                : TransferVerdict.ALLOW;
+        bank.getTransferPipeline().addStage(blockLarge);
+
+        assertFalse(bank.transferFunds("alice", "bob", 600));
+        assertEquals(10, balance("bob"), 0.001);
+        assertTrue(bank.transferFunds("alice", "bob", 400));
+        assertEquals(1, bank.getTransferPipeline().getBlockedCount());
+        assertEquals(2, bank.getTransferPipeline().getEvaluatedCount());
+
+        assertTrue(bank.getTransferPipeline().removeStage(blockLarge));
+        assertTrue(bank.transferFunds("alice", "bob", 600));
+    }
+
+    /**
+     * Tests that too many transfers in a minute are blocked until the
+     * minute has passed.
+     */
+    @Test
+    public void testVelocityBlocksBursts() {
+        bank.getTransferPipeline().addStage(new VelocityScoringStage.Builder(clock)
+                .maxTransfersPerMinute(3).scores(50, 60).build());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(bank.transferFunds("alice", "bob", 10));
+            clock.advance(1_000);
+        }
+        assertFalse(bank.transferFunds("alice", "bob", 10));
+        assertEquals(30, balance("bob"), 0.001);
+
+        clock.advance(60_000);
+        assertTrue(bank.transferFunds("alice", "bob", 10));
+    }
+
+    /**
+     * Tests that the hourly amount limit counts money sent in earlier minutes.
+     */
+    @Test
+    public void testHourlyAmountLimit() {
+        bank.getTransferPipeline().addStage(new VelocityScoringStage.Builder(clock)
+                .maxAmountPerHour(1_000).largeNewRecipientAmount(10_000).scores(50, 60).build());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(bank.transferFunds("alice", "bob", 200));
+            clock.advance(600_000);
+        }
+        assertFalse(bank.transferFunds("alice", "bob", 300));
+        assertTrue(bank.transferFunds("alice", "bob", 150));
+
+        clock.advance(3_600_000);
+        assertTrue(bank.transferFunds("alice", "bob", 900));
+    }
+
+    /**
+     * Tests that a large transfer to a new recipient is flagged but goes
+     * through, while one to a known recipient is not flagged.
+     */
+    @Test
+    public void testLargeNewRecipientFlagged() {
+        TransferPipeline pipeline = bank.getTransferPipeline();
+        pipeline.addStage(new VelocityScoringStage(clock));
+
+        assertTrue(bank.transferFunds("alice", "bob", 50));
+        assertEquals(0, pipeline.getFlaggedCount());
+        assertTrue(bank.transferFunds("alice", "bob", 2_000));
+        assertEquals(0, pipeline.getFlaggedCount());
+
+        assertTrue(bank.transferFunds("alice", "carol", 2_000));
+        assertEquals(1, pipeline.getFlaggedCount());
+        assertEquals(2_000, balance("carol"), 0.001);
+        TransferPipeline.FlaggedTransfer flagged = pipeline.getRecentFlags().get(0);
+        assertEquals("carol", flagged.getRequest().getToUsername());
+        assertTrue(flagged.getVerdict().getReasons().contains("large amount to a new recipient"));
+    }
+
+    /**
+     * Tests that only committed transfers count toward an account's window.
+     */
+    @Test
+    public void testFailedTransfersNotCounted() {
+        VelocityScoringStage stage = new VelocityScoringStage.Builder(clock)
+                .maxTransfersPerMinute(2).scores(50, 60).build();
+        bank.getTransferPipeline().addStage(stage);
+        for (int i = 0; i < 5; i++) {
+            assertFalse(bank.transferFunds("bob", "alice", 10));
+        }
+        assertEquals(0, stage.getTrackedAccountCount());
+
+        assertTrue(bank.transferFunds("alice", "bob", 10));
+        assertTrue(bank.transferFunds("alice", "bob", 10));
+        assertEquals(1, stage.getTrackedAccountCount());
+        clock.advance(3_700_000);
+        assertEquals(1, stage.removeIdle());
+        assertEquals(0, stage.getTrackedAccountCount());
+    }
+
+    /**
+     * Tests that a transfer let through by the velocity stage is taken back
+     * out of the account's window when a later stage blocks it or the
+     * account rejects it.
+     */
+    @Test
+    public void testAbandonedTransfersReleased() {
+        bank.getTransferPipeline().addStage(new VelocityScoringStage.Builder(clock)
+                .maxTransfersPerMinute(2).scores(50, 60).build());
+        bank.getTransferPipeline().addStage(request -> request.getAmount() > 500
+                ? new TransferVerdict(TransferVerdict.Action.BLOCK, 100, List.of("too large"))
+                : TransferVerdict.ALLOW);
+        bank.getUser("alice").getCurrentAccount().addWithdrawalLimit(LimitRule.amount(100, LimitWindow.calendarDay()));
+
+        assertFalse(bank.transferFunds("alice", "bob", 600));
+        assertTrue(bank.transferFunds("alice", "bob", 50));
+        assertFalse(bank.transferFunds("alice", "bob", 80));
+        assertTrue(bank.transferFunds("alice", "bob", 40));
+        assertFalse(bank.transferFunds("alice", "bob", 1));
+        assertEquals(90, balance("bob"), 0.001);
+    }
+
+    /**
+     * Tests that a transfer is counted in its account's window as soon as it
+     * is let through, so a second transfer evaluated before the first
+     * commits is scored with it.
+     */
+    @Test
+    public void testInFlightTransferCounted() {
+        bank.getTransferPipeline().addStage(new VelocityScoringStage.Builder(clock)
+                .maxTransfersPerMinute(1).scores(50, 60).build());
+        AtomicBoolean nested = new AtomicBoolean();
+        AtomicBoolean nestedAllowed = new AtomicBoolean(true);
+        bank.getTransferPipeline().addStage(request -> {
+            // Another transfer from the same account arrives while this one is in flight.
+            if (nested.compareAndSet(false, true)) {
+                nestedAllowed.set(bank.transferFunds("alice", "carol", 10));
+            }
+            return TransferVerdict.ALLOW;
+        });
+
+        assertTrue(bank.transferFunds("alice", "bob", 10));
+        assertFalse(nestedAllowed.get());
+        assertEquals(0, balance("carol"), 0.001);
+    }
+
+    /**
+     * Tests that idle accounts are swept by a scheduled job, and that
+     * transfers alone no longer sweep them.
+     */
+    @Test
+    public void testIdleAccountsSweptOnSchedule() {
+        VelocityScoringStage stage = new VelocityScoringStage(clock);
+        bank.getTransferPipeline().addStage(stage);
+        TimingWheelScheduler scheduler = new TimingWheelScheduler(clock, Duration.ofSeconds(1));
+        RecurringJobs.scheduleVelocitySweep(scheduler, stage, clock.currentTimeMillis() + 300_000,
+                Recurrence.every(Duration.ofMinutes(5)));
+        assertTrue(bank.transferFunds("alice", "bob", 10));
+        assertEquals(1, stage.getTrackedAccountCount());
+
+        clock.advance(3_700_000);
+        assertTrue(bank.transferFunds("bob", "carol", 5));
+        assertEquals(2, stage.getTrackedAccountCount());
+        scheduler.runPending();
+        assertEquals(1, stage.getTrackedAccountCount());
+    }
+}
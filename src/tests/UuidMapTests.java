@@ -0,0 +1,93 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import bankapp.UuidMap;
+
+/**
+ * Unit tests for {@link UuidMap}, the open-addressing map behind account lookups.
+ */
+public class UuidMapTests {
+
+    /**
+     * Tests basic put, get, replace and remove.
+     */
+    @Test
+    public void testPutGetRemove() {
+        UuidMap<String> map = new UuidMap<>();
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        assertNull(map.put(a, "a"));
+        assertNull(map.put(b, "b"));
+        assertEquals("a", map.put(a, "a2"));
+        assertEquals(2, map.size());
+        assertEquals("a2", map.get(a));
+        assertTrue(map.containsKey(b));
+
+        assertEquals("b", map.remove(b));
+        assertNull(map.get(b));
+        assertNull(map.remove(b));
+        assertNull(map.get((UUID) null));
+        assertEquals(1, map.size());
+        assertEquals(a, map.anyKey());
+    }
+
+    /**
+     * Tests that null values are rejected.
+     */
+    @Test
+    public void testNullValueRejected() {
+        UuidMap<String> map = new UuidMap<>();
+        assertThrows(IllegalArgumentException.class, () -> map.put(UUID.randomUUID(), null));
+    }
+
+    /**
+     * Tests that random inserts and removes agree with {@link HashMap},
+     * exercising resizing and backward-shift deletion on colliding keys.
+     */
+    @Test
+    public void testMatchesHashMap() {
+        UuidMap<Integer> map = new UuidMap<>();
+        Map<UUID, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        UUID[] pool = new UUID[2_000];
+        for (int i = 0; i < pool.length; i++) {
+            // Sequential keys stress the hash mixing and form long probe runs.
+            pool[i] = new UUID(0, i);
+        }
+        for (int step = 0; step < 50_000; step++) {
+            UUID key = pool[random.nextInt(pool.length)];
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, step), map.put(key, step));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (UUID key : pool) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+        assertEquals(expected.size(), map.values().size());
+    }
+
+    /**
+     * Tests that a copy is independent of the original.
+     */
+    @Test
+    public void testCopyIsIndependent() {
+        UuidMap<String> original = new UuidMap<>();
+        UUID key = UUID.randomUUID();
+        original.put(key, "x");
+        UuidMap<String> copy = new UuidMap<>(original);
+        copy.remove(key);
+        assertEquals("x", original.get(key));
+        assertTrue(copy.isEmpty());
+    }
+}
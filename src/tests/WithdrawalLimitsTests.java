@@ -0,0 +1,198 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bankapp.Bank;
+import bankapp.BankClock;
+import bankapp.CheckingsAccount;
+import bankapp.LimitRule;
+import bankapp.LimitWindow;
+import bankapp.ManualClock;
+import bankapp.SavingsAccount;
+import bankapp.User;
+import bankapp.WithdrawalLimits;
+
+/**
+ * Unit tests for withdrawal limits on {@link SavingsAccount},
+ * {@link CheckingsAccount} and {@link User}.
+ */
+public class WithdrawalLimitsTests {
+
+    private ManualClock clock;
+
+    @BeforeEach
+    void setup() {
+        clock = new ManualClock(ZonedDateTime.now().withDayOfMonth(10).toInstant().toEpochMilli());
+    }
+
+    /**
+     * Tests that a savings account rejects the fourth withdrawal in a month.
+     */
+    @Test
+    public void testSavingsMonthlyLimitEnforced() {
+        SavingsAccount account = new SavingsAccount(0.01, clock);
+        account.deposit(100.0);
+        for (int i = 0; i < 3; i++) {
+            account.withdraw(10.0);
+        }
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> account.withdraw(10.0));
+        assertEquals("Withdrawal limit reached for this month.", exception.getMessage());
+        assertEquals(3, account.getWithdrawalCount());
+        assertEquals(70.0, account.getCurrentBalance(), 0.001);
+    }
+
+    /**
+     * Tests that the monthly limit rolls over without a manual reset.
+     */
+    @Test
+    public void testSavingsLimitRollsOverNextMonth() {
+        SavingsAccount account = new SavingsAccount(0.01, clock);
+        account.deposit(100.0);
+        for (int i = 0; i < 3; i++) {
+            account.withdraw(10.0);
+        }
+        clock.advance(Duration.ofDays(31).toMillis());
+        assertEquals(0, account.getWithdrawalCount());
+        account.withdraw(10.0);
+        assertEquals(1, account.getWithdrawalCount());
+    }
+
+    /**
+     * Tests that a failed withdrawal for insufficient funds does not use up
+     * the withdrawal limit.
+     */
+    @Test
+    public void testFailedWithdrawalDoesNotCountAgainstLimit() {
+        SavingsAccount account = new SavingsAccount(0.01, clock);
+        account.deposit(5.0);
+        assertThrows(IllegalArgumentException.class, () -> account.withdraw(10.0));
+        assertEquals(0, account.getWithdrawalCount());
+    }
+
+    /**
+     * Tests that changing the limit keeps withdrawals already made this month.
+     */
+    @Test
+    public void testSetWithdrawalLimitKeepsUsage() {
+        SavingsAccount account = new SavingsAccount(0.01, clock);
+        account.deposit(100.0);
+        account.withdraw(10.0);
+        account.setWithdrawalLimit(1);
+        assertEquals(1, account.getWithdrawalLimit());
+        assertEquals(1, account.getWithdrawalCount());
+        assertThrows(IllegalArgumentException.class, () -> account.withdraw(10.0));
+    }
+
+    /**
+     * Tests a sliding-window amount limit on a checkings account.
+     */
+    @Test
+    public void testCheckingsSlidingAmountLimit() {
+        CheckingsAccount account = new CheckingsAccount(clock);
+        account.addWithdrawalLimit(LimitRule.amount(100.0, LimitWindow.sliding(Duration.ofHours(1))));
+        account.deposit(500.0);
+
+        account.withdraw(60.0);
+        clock.advance(Duration.ofMinutes(30).toMillis());
+        account.withdraw(40.0);
+        assertThrows(IllegalArgumentException.class, () -> account.withdraw(1.0));
+
+        // The first withdrawal leaves the window after an hour
+        clock.advance(Duration.ofMinutes(31).toMillis());
+        account.withdraw(50.0);
+        assertEquals(350.0, account.getCurrentBalance(), 0.001);
+    }
+
+    /**
+     * Tests that a declined withdrawal gives its usage back to the sliding
+     * sub-bucket it was counted in, even when the clock has moved on to a
+     * later one, so that usage never goes negative as the buckets expire.
+     */
+    @Test
+    public void testReleaseReturnsUsageToItsBucket() {
+        // Every read moves the clock on by a minute, a whole sub-bucket of the window.
+        AtomicBoolean ticking = new AtomicBoolean(true);
+        BankClock ticker = () -> {
+            if (ticking.get()) {
+                clock.advance(Duration.ofMinutes(1).toMillis());
+            }
+            return clock.currentTimeMillis();
+        };
+        CheckingsAccount account = new CheckingsAccount(ticker);
+        account.addWithdrawalLimit(LimitRule.amount(1_000.0, LimitWindow.sliding(Duration.ofMinutes(64))));
+        account.deposit(50.0);
+        account.withdraw(40.0);
+        assertThrows(IllegalArgumentException.class, () -> account.withdraw(500.0));
+        ticking.set(false);
+
+        WithdrawalLimits limits = account.getWithdrawalLimits();
+        assertEquals(40.0, limits.getUsed(LimitRule.Kind.AMOUNT, LimitWindow.Type.SLIDING), 0.001);
+        for (int minute = 0; minute < 70; minute++) {
+            clock.advance(Duration.ofMinutes(1).toMillis());
+            assertTrue(limits.getUsed(LimitRule.Kind.AMOUNT, LimitWindow.Type.SLIDING) >= 0);
+        }
+        assertEquals(0.0, limits.getUsed(LimitRule.Kind.AMOUNT, LimitWindow.Type.SLIDING), 0.001);
+    }
+
+    /**
+     * Tests that calendar day windows roll over at midnight.
+     */
+    @Test
+    public void testCalendarDayWindowRollsAtMidnight() {
+        ManualClock utcClock = new ManualClock(
+                ZonedDateTime.of(2025, 3, 4, 23, 0, 0, 0, ZoneOffset.UTC).toInstant().toEpochMilli());
+        WithdrawalLimits limits = new WithdrawalLimits(utcClock, ZoneOffset.UTC);
+        limits.addLimit(LimitRule.count(1, LimitWindow.calendarDay()));
+
+        assertNull(limits.tryAcquire(5.0));
+        assertNotNull(limits.tryAcquire(5.0));
+        utcClock.advance(Duration.ofHours(1).toMillis());
+        assertNull(limits.tryAcquire(5.0));
+    }
+
+    /**
+     * Tests that a user's limit applies across all of their accounts.
+     */
+    @Test
+    public void testUserLimitSpansAccounts() throws NoSuchAlgorithmException {
+        User user = new User("john_doe", "securepassword123");
+        user.addWithdrawalLimit(LimitRule.count(2, LimitWindow.calendarDay()));
+        CheckingsAccount second = new CheckingsAccount();
+        user.addAccount(second);
+        user.getCurrentAccount().deposit(100.0);
+        second.deposit(100.0);
+
+        user.getCurrentAccount().withdraw(10.0);
+        second.withdraw(10.0);
+        assertThrows(IllegalArgumentException.class, () -> second.withdraw(10.0));
+    }
+
+    /**
+     * Tests that a user registered with a bank has their limits roll over on
+     * the bank's clock rather than the system clock.
+     */
+    @Test
+    public void testUserLimitFollowsBankClock() {
+        Bank bank = new Bank(clock);
+        bank.registerUser("john_doe", "securepassword123");
+        User user = bank.getUser("john_doe");
+        user.addWithdrawalLimit(LimitRule.count(1, LimitWindow.calendarDay()));
+        user.getCurrentAccount().deposit(100.0);
+
+        user.getCurrentAccount().withdraw(10.0);
+        assertThrows(IllegalArgumentException.class, () -> user.getCurrentAccount().withdraw(10.0));
+        clock.advance(Duration.ofDays(1).toMillis());
+        user.getCurrentAccount().withdraw(10.0);
+        assertEquals(80.0, user.getCurrentAccount().getCurrentBalance(), 0.001);
+    }
+}